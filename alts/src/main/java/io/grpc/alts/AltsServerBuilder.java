@@ -93,6 +93,20 @@ public final class AltsServerBuilder extends ServerBuilder<AltsServerBuilder> {
     return this;
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public AltsServerBuilder adaptiveConcurrencyLimit(int initialLimit, int maxLimit) {
+    delegate.adaptiveConcurrencyLimit(initialLimit, maxLimit);
+    return this;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public AltsServerBuilder virtualThreadExecutor() {
+    delegate.virtualThreadExecutor();
+    return this;
+  }
+
   /** {@inheritDoc} */
   @Override
   public AltsServerBuilder directExecutor() {
@@ -42,12 +42,12 @@ final class AesGcmAeadCrypter implements AeadCrypter {
   // Conscrypt if available, otherwise null. Conscrypt is much faster than Java 8's JSSE
   private static final Provider CONSCRYPT = getConscrypt();
 
-  private final byte[] key;
+  private final SecretKeySpec key;
   private final Cipher cipher;
 
   AesGcmAeadCrypter(byte[] key) throws GeneralSecurityException {
     checkArgument(key.length == KEY_LENGTH);
-    this.key = key;
+    this.key = new SecretKeySpec(key, AES);
     if (CONSCRYPT != null) {
       cipher = Cipher.getInstance(AES_GCM, CONSCRYPT);
     } else {
@@ -61,7 +61,7 @@ final class AesGcmAeadCrypter implements AeadCrypter {
     checkArgument(nonce.length == NONCE_LENGTH);
     cipher.init(
         Cipher.ENCRYPT_MODE,
-        new SecretKeySpec(this.key, AES),
+        key,
         new GCMParameterSpec(TAG_LENGTH * 8, nonce));
     if (aad != null) {
       cipher.updateAAD(aad);
@@ -75,7 +75,7 @@ final class AesGcmAeadCrypter implements AeadCrypter {
     checkArgument(nonce.length == NONCE_LENGTH);
     cipher.init(
         Cipher.DECRYPT_MODE,
-        new SecretKeySpec(this.key, AES),
+        key,
         new GCMParameterSpec(TAG_LENGTH * 8, nonce));
     if (aad != null) {
       cipher.updateAAD(aad);
@@ -45,6 +45,7 @@ final class AesGcmHkdfAeadCrypter implements AeadCrypter {
   private final byte[] kdfCounter = new byte[KDF_COUNTER_LENGTH];
   private final byte[] nonceMask;
   private final byte[] nonceBuffer = new byte[NONCE_LENGTH];
+  private Mac mac;
 
   private AeadCrypter aeadCrypter;
 
@@ -93,7 +94,11 @@ final class AesGcmHkdfAeadCrypter implements AeadCrypter {
     }
     System.arraycopy(nonce, KDF_COUNTER_OFFSET, kdfCounter, 0, KDF_COUNTER_LENGTH);
     int aeKeyLen = AesGcmAeadCrypter.getKeyLength();
-    byte[] aeKey = Arrays.copyOf(hkdfExpandSha256(kdfKey, kdfCounter), aeKeyLen);
+    if (mac == null) {
+      mac = Mac.getInstance("HMACSHA256");
+      mac.init(new SecretKeySpec(kdfKey, mac.getAlgorithm()));
+    }
+    byte[] aeKey = Arrays.copyOf(hkdfExpandSha256(mac, kdfCounter), aeKeyLen);
     aeadCrypter = new AesGcmAeadCrypter(aeKey);
   }
 
@@ -104,9 +109,8 @@ final class AesGcmHkdfAeadCrypter implements AeadCrypter {
     }
   }
 
-  private static byte[] hkdfExpandSha256(byte[] key, byte[] info) throws GeneralSecurityException {
-    Mac mac = Mac.getInstance("HMACSHA256");
-    mac.init(new SecretKeySpec(key, mac.getAlgorithm()));
+  private static byte[] hkdfExpandSha256(Mac mac, byte[] info) {
+    // The Mac is initialized with the key once and reset by doFinal.
     mac.update(info);
     mac.update((byte) 0x01);
     return mac.doFinal();
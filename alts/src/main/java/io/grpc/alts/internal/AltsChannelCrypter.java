@@ -38,6 +38,7 @@ final class AltsChannelCrypter implements ChannelCrypterNetty {
   private final byte[] outCounter = new byte[COUNTER_LENGTH];
   private final byte[] inCounter = new byte[COUNTER_LENGTH];
   private final byte[] oldCounter = new byte[COUNTER_LENGTH];
+  private byte[] scratch = new byte[0];
 
   AltsChannelCrypter(byte[] key, boolean isClient) {
     checkArgument(key.length == KEY_LENGTH);
@@ -56,11 +57,26 @@ final class AltsChannelCrypter implements ChannelCrypterNetty {
 
   @Override
   public void encrypt(ByteBuf outBuf, List<ByteBuf> plainBufs) throws GeneralSecurityException {
-    byte[] tempArr = new byte[outBuf.writableBytes()];
+    int outIndex = outBuf.writerIndex();
+    int outLength = outBuf.writableBytes();
+    int plainLength = outLength - TAG_LENGTH;
+    if (outBuf.nioBufferCount() == 1) {
+      // Copy plaintext into its final position and encrypt in place.
+      for (ByteBuf plainBuf : plainBufs) {
+        outBuf.writeBytes(plainBuf);
+      }
+      ByteBuffer out = outBuf.nioBuffer(outIndex, outLength);
+      ByteBuffer plain = outBuf.nioBuffer(outIndex, plainLength);
+      aeadCrypter.encrypt(out, plain, incrementOutCounter());
+      outBuf.writerIndex(outIndex + outLength);
+      return;
+    }
+
+    byte[] tempArr = getScratch(outLength);
 
     // Copy plaintext into tempArr.
     {
-      ByteBuf tempBuf = Unpooled.wrappedBuffer(tempArr, 0, tempArr.length - TAG_LENGTH);
+      ByteBuf tempBuf = Unpooled.wrappedBuffer(tempArr, 0, plainLength);
       tempBuf.resetWriterIndex();
       for (ByteBuf plainBuf : plainBufs) {
         tempBuf.writeBytes(plainBuf);
@@ -69,24 +85,39 @@ final class AltsChannelCrypter implements ChannelCrypterNetty {
 
     // Encrypt into tempArr.
     {
-      ByteBuffer out = ByteBuffer.wrap(tempArr);
-      ByteBuffer plain = ByteBuffer.wrap(tempArr, 0, tempArr.length - TAG_LENGTH);
+      ByteBuffer out = ByteBuffer.wrap(tempArr, 0, outLength);
+      ByteBuffer plain = ByteBuffer.wrap(tempArr, 0, plainLength);
 
       byte[] counter = incrementOutCounter();
       aeadCrypter.encrypt(out, plain, counter);
     }
-    outBuf.writeBytes(tempArr);
+    outBuf.writeBytes(tempArr, 0, outLength);
   }
 
   @Override
   public void decrypt(ByteBuf outBuf, ByteBuf tagBuf, List<ByteBuf> ciphertextBufs)
       throws GeneralSecurityException {
     // There is enough space for the ciphertext including the tag in outBuf.
-    byte[] tempArr = new byte[outBuf.writableBytes()];
+    int outLength = outBuf.writableBytes();
+    if (outBuf.nioBufferCount() == 1) {
+      // Copy ciphertext and tag into outBuf and decrypt in place.
+      int outIndex = outBuf.writerIndex();
+      for (ByteBuf ciphertextBuf : ciphertextBufs) {
+        outBuf.writeBytes(ciphertextBuf);
+      }
+      outBuf.writeBytes(tagBuf);
+      ByteBuffer ciphertextAndTag = outBuf.nioBuffer(outIndex, outLength);
+      ByteBuffer out = outBuf.nioBuffer(outIndex, outLength);
+      aeadCrypter.decrypt(out, ciphertextAndTag, incrementInCounter());
+      outBuf.writerIndex(outIndex + outLength - TAG_LENGTH);
+      return;
+    }
+
+    byte[] tempArr = getScratch(outLength);
 
     // Copy ciphertext and tag into tempArr.
     {
-      ByteBuf tempBuf = Unpooled.wrappedBuffer(tempArr);
+      ByteBuf tempBuf = Unpooled.wrappedBuffer(tempArr, 0, outLength);
       tempBuf.resetWriterIndex();
       for (ByteBuf ciphertextBuf : ciphertextBufs) {
         tempBuf.writeBytes(ciphertextBuf);
@@ -94,34 +125,58 @@ final class AltsChannelCrypter implements ChannelCrypterNetty {
       tempBuf.writeBytes(tagBuf);
     }
 
-    decryptInternal(outBuf, tempArr);
+    decryptInternal(outBuf, tempArr, outLength);
   }
 
   @Override
   public void decrypt(
       ByteBuf outBuf, ByteBuf ciphertextAndTagDirect) throws GeneralSecurityException {
-    byte[] tempArr = new byte[ciphertextAndTagDirect.readableBytes()];
+    int ciphertextAndTagLength = ciphertextAndTagDirect.readableBytes();
+    if (outBuf.nioBufferCount() == 1 && ciphertextAndTagDirect.nioBufferCount() == 1) {
+      // Decrypt straight from the input into outBuf without an intermediate copy.
+      int outIndex = outBuf.writerIndex();
+      ByteBuffer ciphertextAndTag = ciphertextAndTagDirect.nioBuffer();
+      ByteBuffer out = outBuf.nioBuffer(outIndex, outBuf.writableBytes());
+      aeadCrypter.decrypt(out, ciphertextAndTag, incrementInCounter());
+      ciphertextAndTagDirect.skipBytes(ciphertextAndTagLength);
+      outBuf.writerIndex(outIndex + ciphertextAndTagLength - TAG_LENGTH);
+      return;
+    }
+
+    byte[] tempArr = getScratch(ciphertextAndTagLength);
 
     // Copy ciphertext and tag into tempArr.
     {
-      ByteBuf tempBuf = Unpooled.wrappedBuffer(tempArr);
+      ByteBuf tempBuf = Unpooled.wrappedBuffer(tempArr, 0, ciphertextAndTagLength);
       tempBuf.resetWriterIndex();
       tempBuf.writeBytes(ciphertextAndTagDirect);
     }
 
-    decryptInternal(outBuf, tempArr);
+    decryptInternal(outBuf, tempArr, ciphertextAndTagLength);
   }
 
-  private void decryptInternal(ByteBuf outBuf, byte[] tempArr) throws GeneralSecurityException {
+  private void decryptInternal(ByteBuf outBuf, byte[] tempArr, int length)
+      throws GeneralSecurityException {
     // Perform in-place decryption on tempArr.
     {
-      ByteBuffer ciphertextAndTag = ByteBuffer.wrap(tempArr);
-      ByteBuffer out = ByteBuffer.wrap(tempArr);
+      ByteBuffer ciphertextAndTag = ByteBuffer.wrap(tempArr, 0, length);
+      ByteBuffer out = ByteBuffer.wrap(tempArr, 0, length);
       byte[] counter = incrementInCounter();
       aeadCrypter.decrypt(out, ciphertextAndTag, counter);
     }
 
-    outBuf.writeBytes(tempArr, 0, tempArr.length - TAG_LENGTH);
+    outBuf.writeBytes(tempArr, 0, length - TAG_LENGTH);
+  }
+
+  /**
+   * Returns a scratch array of at least {@code length} bytes for buffers that are not backed by a
+   * single NIO buffer. The array is reused across frames.
+   */
+  private byte[] getScratch(int length) {
+    if (scratch.length < length) {
+      scratch = new byte[length];
+    }
+    return scratch;
   }
 
   @Override
@@ -131,7 +186,7 @@ final class AltsChannelCrypter implements ChannelCrypterNetty {
 
   @Override
   public void destroy() {
-    // no destroy required
+    scratch = new byte[0];
   }
 
   /** Increments {@code counter}, store the unincremented value in {@code oldCounter}. */
@@ -159,6 +159,42 @@ public abstract class ChannelCrypterNettyTestBase {
         .isEqualTo(frameDecrypt.out);
   }
 
+  @Test
+  public void encryptDecryptCompositeOutput() throws GeneralSecurityException {
+    String message = "Hello world";
+    byte[] messageBytes = message.getBytes(UTF_8);
+    int tagLen = client.getSuffixLength();
+    FrameEncrypt frameEncrypt = createFrameEncrypt(message);
+    frameEncrypt.out = compositeOutBuffer(messageBytes.length + tagLen);
+
+    client.encrypt(frameEncrypt.out, frameEncrypt.plain);
+    assertThat(frameEncrypt.out.readableBytes()).isEqualTo(messageBytes.length + tagLen);
+    FrameDecrypt frameDecrypt = frameDecryptOfEncrypt(frameEncrypt);
+    frameDecrypt.out = compositeOutBuffer(messageBytes.length + tagLen);
+
+    server.decrypt(frameDecrypt.out, frameDecrypt.tag, frameDecrypt.ciphertext);
+    assertThat(frameDecrypt.out.toString(UTF_8)).isEqualTo(message);
+
+    FrameEncrypt frameEncrypt2 = createFrameEncrypt(message);
+    client.encrypt(frameEncrypt2.out, frameEncrypt2.plain);
+    ByteBuf out2 = compositeOutBuffer(messageBytes.length + tagLen);
+
+    // Call decrypt overload that takes ciphertext and tag.
+    server.decrypt(out2, frameEncrypt2.out);
+    assertThat(out2.toString(UTF_8)).isEqualTo(message);
+  }
+
+  /** Returns an empty buffer of the given capacity that is backed by two NIO buffers. */
+  private ByteBuf compositeOutBuffer(int capacity) {
+    int firstLen = capacity / 2;
+    ByteBuf first = Unpooled.directBuffer(firstLen);
+    ByteBuf second = Unpooled.directBuffer(capacity - firstLen);
+    ByteBuf composite = Unpooled.wrappedBuffer(
+        first.writerIndex(first.capacity()), second.writerIndex(second.capacity()));
+    ref.register(composite);
+    return composite.writerIndex(0);
+  }
+
   @Test
   public void reflection() throws GeneralSecurityException {
     String message = "Hello world";
@@ -19,8 +19,6 @@ package io.grpc;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 /**
  * Encloses classes related to the compression and decompression of messages.
@@ -31,6 +29,10 @@ public interface Codec extends Compressor, Decompressor {
   /**
    * A gzip compressor and decompressor.  In the future this will likely support other
    * compression methods, such as compression level.
+   *
+   * <p>The zlib state backing the streams is borrowed from a small pool shared by all threads and
+   * reused across messages, so callers should close the streams they obtain once they are done
+   * with them.
    */
   final class Gzip implements Codec {
     @Override
@@ -40,12 +42,12 @@ public interface Codec extends Compressor, Decompressor {
 
     @Override
     public OutputStream compress(OutputStream os) throws IOException {
-      return new GZIPOutputStream(os);
+      return PooledGzip.compress(os);
     }
 
     @Override
     public InputStream decompress(InputStream is) throws IOException {
-      return new GZIPInputStream(is);
+      return PooledGzip.decompress(is);
     }
   }
 
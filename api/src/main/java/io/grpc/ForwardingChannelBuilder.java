@@ -71,6 +71,12 @@ public abstract class ForwardingChannelBuilder<T extends ForwardingChannelBuilde
     return thisT();
   }
 
+  @Override
+  public T virtualThreadExecutor() {
+    delegate().virtualThreadExecutor();
+    return thisT();
+  }
+
   @Override
   public T offloadExecutor(Executor executor) {
     delegate().offloadExecutor(executor);
@@ -187,6 +193,12 @@ public abstract class ForwardingChannelBuilder<T extends ForwardingChannelBuilde
     return thisT();
   }
 
+  @Override
+  public T maxConnectionsPerSubchannel(int maxConnections, int maxStreamsPerConnection) {
+    delegate().maxConnectionsPerSubchannel(maxConnections, maxStreamsPerConnection);
+    return thisT();
+  }
+
   @Override
   public T maxRetryAttempts(int maxRetryAttempts) {
     delegate().maxRetryAttempts(maxRetryAttempts);
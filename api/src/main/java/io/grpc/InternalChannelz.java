@@ -16,6 +16,7 @@
 
 package io.grpc;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
@@ -289,6 +290,9 @@ public final class InternalChannelz {
     public final long callsFailed;
     public final long lastCallStartedNanos;
     public final List<InternalInstrumented<SocketStats>> listenSockets;
+    public final Map<String, MethodStats> methodStats;
+    /** {@code null} if the server does not limit its concurrency. */
+    @Nullable public final ConcurrencyLimitStats concurrencyLimit;
 
     /**
      * Creates an instance.
@@ -299,11 +303,31 @@ public final class InternalChannelz {
         long callsFailed,
         long lastCallStartedNanos,
         List<InternalInstrumented<SocketStats>> listenSockets) {
+      this(
+          callsStarted,
+          callsSucceeded,
+          callsFailed,
+          lastCallStartedNanos,
+          listenSockets,
+          Collections.<String, MethodStats>emptyMap(),
+          null);
+    }
+
+    private ServerStats(
+        long callsStarted,
+        long callsSucceeded,
+        long callsFailed,
+        long lastCallStartedNanos,
+        List<InternalInstrumented<SocketStats>> listenSockets,
+        Map<String, MethodStats> methodStats,
+        @Nullable ConcurrencyLimitStats concurrencyLimit) {
       this.callsStarted = callsStarted;
       this.callsSucceeded = callsSucceeded;
       this.callsFailed = callsFailed;
       this.lastCallStartedNanos = lastCallStartedNanos;
       this.listenSockets = checkNotNull(listenSockets);
+      this.methodStats = checkNotNull(methodStats);
+      this.concurrencyLimit = concurrencyLimit;
     }
 
     public static final class Builder {
@@ -312,6 +336,8 @@ public final class InternalChannelz {
       private long callsFailed;
       private long lastCallStartedNanos;
       public List<InternalInstrumented<SocketStats>> listenSockets = new ArrayList<>();
+      private Map<String, MethodStats> methodStats = Collections.emptyMap();
+      @Nullable private ConcurrencyLimitStats concurrencyLimit;
 
       public Builder setCallsStarted(long callsStarted) {
         this.callsStarted = callsStarted;
@@ -342,6 +368,18 @@ public final class InternalChannelz {
         return this;
       }
 
+      /** Sets the per-method stats, keyed by full method name. */
+      public Builder setMethodStats(Map<String, MethodStats> methodStats) {
+        this.methodStats = Collections.unmodifiableMap(checkNotNull(methodStats, "methodStats"));
+        return this;
+      }
+
+      /** Sets the state of the server's concurrency limiter. */
+      public Builder setConcurrencyLimit(@Nullable ConcurrencyLimitStats concurrencyLimit) {
+        this.concurrencyLimit = concurrencyLimit;
+        return this;
+      }
+
       /**
        * Builds an instance.
        */
@@ -351,7 +389,9 @@ public final class InternalChannelz {
             callsSucceeded,
             callsFailed,
             lastCallStartedNanos,
-            listenSockets);
+            listenSockets,
+            methodStats,
+            concurrencyLimit);
       }
     }
   }
@@ -370,6 +410,8 @@ public final class InternalChannelz {
     public final long lastCallStartedNanos;
     public final List<InternalWithLogId> subchannels;
     public final List<InternalWithLogId> sockets;
+    /** Per-method histograms of a channel's calls. Always empty for subchannels. */
+    public final Map<String, MethodStats> methodStats;
 
     /**
      * Creates an instance.
@@ -383,7 +425,8 @@ public final class InternalChannelz {
         long callsFailed,
         long lastCallStartedNanos,
         List<InternalWithLogId> subchannels,
-        List<InternalWithLogId> sockets) {
+        List<InternalWithLogId> sockets,
+        Map<String, MethodStats> methodStats) {
       checkState(
           subchannels.isEmpty() || sockets.isEmpty(),
           "channels can have subchannels only, subchannels can have either sockets OR subchannels, "
@@ -397,6 +440,7 @@ public final class InternalChannelz {
       this.lastCallStartedNanos = lastCallStartedNanos;
       this.subchannels = checkNotNull(subchannels);
       this.sockets = checkNotNull(sockets);
+      this.methodStats = checkNotNull(methodStats);
     }
 
     public static final class Builder {
@@ -409,6 +453,7 @@ public final class InternalChannelz {
       private long lastCallStartedNanos;
       private List<InternalWithLogId> subchannels = Collections.emptyList();
       private List<InternalWithLogId> sockets = Collections.emptyList();
+      private Map<String, MethodStats> methodStats = Collections.emptyMap();
 
       public Builder setTarget(String target) {
         this.target = target;
@@ -459,6 +504,12 @@ public final class InternalChannelz {
         return this;
       }
 
+      /** Sets the per-method stats, keyed by full method name. */
+      public Builder setMethodStats(Map<String, MethodStats> methodStats) {
+        this.methodStats = Collections.unmodifiableMap(checkNotNull(methodStats, "methodStats"));
+        return this;
+      }
+
       /**
        * Builds an instance.
        */
@@ -472,11 +523,177 @@ public final class InternalChannelz {
             callsFailed,
             lastCallStartedNanos,
             subchannels,
-            sockets);
+            sockets,
+            methodStats);
       }
     }
   }
 
+  /**
+   * The state of a server's adaptive concurrency limiter.
+   */
+  @Immutable
+  public static final class ConcurrencyLimitStats {
+    /** The number of calls currently allowed to run at once. */
+    public final int limit;
+    /** The number of limited calls currently running. */
+    public final int callsInFlight;
+    /** The number of calls rejected because the limit was reached. */
+    public final long callsRejected;
+    /** The smallest recently observed latency of a successful limited call, of any method. */
+    public final long minLatencyNanos;
+
+    /**
+     * Creates an instance.
+     */
+    public ConcurrencyLimitStats(
+        int limit, int callsInFlight, long callsRejected, long minLatencyNanos) {
+      this.limit = limit;
+      this.callsInFlight = callsInFlight;
+      this.callsRejected = callsRejected;
+      this.minLatencyNanos = minLatencyNanos;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("limit", limit)
+          .add("callsInFlight", callsInFlight)
+          .add("callsRejected", callsRejected)
+          .add("minLatencyNanos", minLatencyNanos)
+          .toString();
+    }
+  }
+
+  /**
+   * Per-method distributions of call latency, message sizes and time spent queued before the
+   * application saw the call.
+   */
+  @Immutable
+  public static final class MethodStats {
+    public final Histogram callLatencyNanos;
+    public final Histogram sentMessageSizeBytes;
+    public final Histogram receivedMessageSizeBytes;
+    public final Histogram queueTimeNanos;
+
+    /**
+     * Creates an instance.
+     */
+    public MethodStats(
+        Histogram callLatencyNanos,
+        Histogram sentMessageSizeBytes,
+        Histogram receivedMessageSizeBytes,
+        Histogram queueTimeNanos) {
+      this.callLatencyNanos = checkNotNull(callLatencyNanos, "callLatencyNanos");
+      this.sentMessageSizeBytes = checkNotNull(sentMessageSizeBytes, "sentMessageSizeBytes");
+      this.receivedMessageSizeBytes =
+          checkNotNull(receivedMessageSizeBytes, "receivedMessageSizeBytes");
+      this.queueTimeNanos = checkNotNull(queueTimeNanos, "queueTimeNanos");
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("callLatencyNanos", callLatencyNanos)
+          .add("sentMessageSizeBytes", sentMessageSizeBytes)
+          .add("receivedMessageSizeBytes", receivedMessageSizeBytes)
+          .add("queueTimeNanos", queueTimeNanos)
+          .toString();
+    }
+  }
+
+  /**
+   * A point-in-time snapshot of a distribution of non-negative values. Only non-empty buckets are
+   * kept; bucket {@code i} counts the values greater than the upper bound of bucket {@code i - 1}
+   * and at most {@link #getBucketUpperBound getBucketUpperBound(i)}.
+   */
+  @Immutable
+  public static final class Histogram {
+    public static final Histogram EMPTY = new Histogram(new long[0], new long[0], 0, 0);
+
+    private final long[] bucketUpperBounds;
+    private final long[] bucketCounts;
+    public final long count;
+    public final long sum;
+    public final long max;
+
+    /**
+     * Creates an instance. {@code bucketUpperBounds} must be strictly increasing and the same
+     * length as {@code bucketCounts}.
+     */
+    public Histogram(long[] bucketUpperBounds, long[] bucketCounts, long sum, long max) {
+      checkNotNull(bucketUpperBounds, "bucketUpperBounds");
+      checkNotNull(bucketCounts, "bucketCounts");
+      checkArgument(
+          bucketUpperBounds.length == bucketCounts.length,
+          "bucketUpperBounds and bucketCounts have different lengths");
+      long count = 0;
+      for (int i = 0; i < bucketCounts.length; i++) {
+        checkArgument(
+            i == 0 || bucketUpperBounds[i] > bucketUpperBounds[i - 1],
+            "bucketUpperBounds not increasing");
+        count += bucketCounts[i];
+      }
+      this.bucketUpperBounds = bucketUpperBounds.clone();
+      this.bucketCounts = bucketCounts.clone();
+      this.count = count;
+      this.sum = sum;
+      this.max = max;
+    }
+
+    public int getBucketCount() {
+      return bucketCounts.length;
+    }
+
+    public long getBucketUpperBound(int bucket) {
+      return bucketUpperBounds[bucket];
+    }
+
+    public long getBucketValueCount(int bucket) {
+      return bucketCounts[bucket];
+    }
+
+    /**
+     * Returns the mean of the recorded values, or {@code 0} if nothing was recorded.
+     */
+    public double getMean() {
+      return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Returns the upper bound of the bucket holding the value at the given quantile, never more
+     * than {@link #max}. Returns {@code 0} if nothing was recorded.
+     *
+     * @param quantile a value between {@code 0.0} and {@code 1.0}, inclusive
+     */
+    public long getValueAtQuantile(double quantile) {
+      checkArgument(quantile >= 0.0 && quantile <= 1.0, "quantile out of range: %s", quantile);
+      if (count == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(quantile * count));
+      long seen = 0;
+      for (int i = 0; i < bucketCounts.length; i++) {
+        seen += bucketCounts[i];
+        if (seen >= rank) {
+          return Math.min(bucketUpperBounds[i], max);
+        }
+      }
+      return max;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("count", count)
+          .add("mean", getMean())
+          .add("p50", getValueAtQuantile(0.5))
+          .add("p99", getValueAtQuantile(0.99))
+          .add("max", max)
+          .toString();
+    }
+  }
+
   @Immutable
   public static final class ChannelTrace {
     public final long numEventsLogged;
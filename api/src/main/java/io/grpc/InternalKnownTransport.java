@@ -25,6 +25,7 @@ package io.grpc;
 public enum InternalKnownTransport {
   NETTY,
   NETTY_SHADED,
+  OKHTTP,
   ;
 }
 
@@ -106,6 +106,26 @@ public abstract class ManagedChannelBuilder<T extends ManagedChannelBuilder<T>>
    */
   public abstract T executor(Executor executor);
 
+  /**
+   * Execute application code, such as the callbacks of asynchronous stubs, on JDK virtual threads.
+   * A call's callbacks are still delivered serially, but each batch of them runs on a fresh
+   * virtual thread, so they may block freely without exhausting a thread pool.
+   *
+   * <p>Calling this method is semantically equivalent to calling {@link #executor(Executor)} and
+   * passing in an executor that starts a new virtual thread per task. Virtual threads require Java
+   * 21 or later. Blocking stubs don't use this executor; when called from a virtual thread they
+   * already wait without occupying a platform thread.
+   *
+   * @return this
+   * @throws UnsupportedOperationException if the running JDK or this builder does not support
+   *     virtual threads
+   * @since 1.31.0
+   */
+  @ExperimentalApi("Virtual thread executors are experimental")
+  public T virtualThreadExecutor() {
+    throw new UnsupportedOperationException();
+  }
+
   /**
    * Provides a custom executor that will be used for operations that block or are expensive.
    *
@@ -389,6 +409,29 @@ public abstract class ManagedChannelBuilder<T extends ManagedChannelBuilder<T>>
     throw new UnsupportedOperationException();
   }
 
+  /**
+   * Allows each subchannel to use up to {@code maxConnections} connections to its address instead
+   * of one. An extra connection is opened when every ready connection of the subchannel already
+   * carries {@code maxStreamsPerConnection} active streams, and new streams go to the connection
+   * with the fewest active streams. Setting {@code maxStreamsPerConnection} at or slightly below
+   * the server's {@code MAX_CONCURRENT_STREAMS} keeps streams from queueing in the transport
+   * while other connections could take them. Defaults to one connection per subchannel.
+   *
+   * <p>Extra connections are closed along with the subchannel's first connection; they are not
+   * reported to load balancers or channelz separately.
+   *
+   * @param maxConnections the maximum number of connections per subchannel, at least 1
+   * @param maxStreamsPerConnection active streams per connection above which another connection
+   *     is opened, at least 1
+   * @return this
+   * @throws UnsupportedOperationException if unsupported
+   * @since 1.31.0
+   */
+  @ExperimentalApi("Multiple connections per subchannel are experimental")
+  public T maxConnectionsPerSubchannel(int maxConnections, int maxStreamsPerConnection) {
+    throw new UnsupportedOperationException();
+  }
+
   /**
    * Sets max number of retry attempts. The total number of retry attempts for each RPC will not
    * exceed this number even if service config may allow a higher number. Setting this number to
@@ -142,12 +142,32 @@ public final class Metadata {
         : "Odd number of key-value pairs " + namesAndValues.length;
     size = usedNames;
     this.namesAndValues = namesAndValues;
+    updateIndex();
   }
 
   private Object[] namesAndValues;
   // The unscaled number of headers present.
   private int size;
 
+  /**
+   * Minimum number of headers before lookups use a hash index instead of a linear scan. Below this,
+   * comparing the names directly is cheaper than building the index.
+   */
+  @VisibleForTesting
+  static final int INDEX_THRESHOLD = 16;
+
+  /**
+   * Open-addressing hash index from header name to positions, present exactly when there are at
+   * least {@link #INDEX_THRESHOLD} headers. Each slot uses two entries: the position of the first
+   * and of the last header with that name, plus one, so that {@code 0} marks an empty slot. It is
+   * only written by mutations, {@link #put} incrementally and the others by rebuilding it, so
+   * lookups never write and concurrent readers are as safe as for the headers themselves.
+   */
+  @Nullable
+  private int[] index;
+  // The number of distinct names in the index.
+  private int indexedNames;
+
   private byte[] name(int i) {
     return (byte[]) namesAndValues[i * 2];
   }
@@ -228,6 +248,9 @@ public final class Metadata {
    * prefer calling them directly and checking the return value against {@code null}.
    */
   public boolean containsKey(Key<?> key) {
+    if (size >= INDEX_THRESHOLD) {
+      return indexedPosition(key, false) != -1;
+    }
     for (int i = 0; i < size; i++) {
       if (bytesEqual(key.asciiName(), name(i))) {
         return true;
@@ -243,6 +266,10 @@ public final class Metadata {
    */
   @Nullable
   public <T> T get(Key<T> key) {
+    if (size >= INDEX_THRESHOLD) {
+      int i = indexedPosition(key, true);
+      return i == -1 ? null : valueAsT(i, key);
+    }
     for (int i = size - 1; i >= 0; i--) {
       if (bytesEqual(key.asciiName(), name(i))) {
         return valueAsT(i, key);
@@ -304,6 +331,10 @@ public final class Metadata {
    */
   @Nullable
   public <T> Iterable<T> getAll(final Key<T> key) {
+    if (size >= INDEX_THRESHOLD) {
+      int i = indexedPosition(key, false);
+      return i == -1 ? null : new IterableAt<>(key, i);
+    }
     for (int i = 0; i < size; i++) {
       if (bytesEqual(key.asciiName(), name(i))) {
         return new IterableAt<>(key, i);
@@ -346,7 +377,13 @@ public final class Metadata {
     } else {
       value(size, key.toBytes(value));
     }
+    if (index != null) {
+      addToIndex(key.asciiName(), key.asciiNameHash(), size);
+    }
     size++;
+    if (index == null && size >= INDEX_THRESHOLD) {
+      buildIndex();
+    }
   }
 
   private void maybeExpand() {
@@ -390,6 +427,7 @@ public final class Metadata {
       size -= 1;
       name(size, null);
       value(size, (byte[]) null);
+      updateIndex();
       return true;
     }
     return false;
@@ -417,6 +455,7 @@ public final class Metadata {
     // Multiply by two since namesAndValues is interleaved.
     Arrays.fill(namesAndValues, writeIdx * 2, len(), null);
     size = newSize;
+    updateIndex();
     return ret;
   }
 
@@ -443,6 +482,7 @@ public final class Metadata {
     // Multiply by two since namesAndValues is interleaved.
     Arrays.fill(namesAndValues, writeIdx * 2, len(), null);
     size = newSize;
+    updateIndex();
   }
 
   /**
@@ -511,6 +551,7 @@ public final class Metadata {
     }
     System.arraycopy(other.namesAndValues, 0, namesAndValues, len(), other.len());
     size += other.size;
+    updateIndex();
   }
 
   /**
@@ -527,6 +568,7 @@ public final class Metadata {
     for (Key<?> key : keys) {
       asciiKeys.put(ByteBuffer.wrap(key.asciiName()), key);
     }
+    int oldSize = size;
     for (int i = 0; i < other.size; i++) {
       ByteBuffer wrappedNamed = ByteBuffer.wrap(other.name(i));
       if (asciiKeys.containsKey(wrappedNamed)) {
@@ -536,6 +578,9 @@ public final class Metadata {
         size++;
       }
     }
+    if (size != oldSize) {
+      updateIndex();
+    }
   }
 
   @Override
@@ -557,6 +602,73 @@ public final class Metadata {
     return sb.append(')').toString();
   }
 
+  /**
+   * Returns the position of the first or last header named by {@code key}, or {@code -1} if there
+   * is none. Must only be called when there are at least {@link #INDEX_THRESHOLD} headers.
+   */
+  private int indexedPosition(Key<?> key, boolean last) {
+    int slot = findSlot(index, key.asciiName(), key.asciiNameHash());
+    return index[slot * 2 + (last ? 1 : 0)] - 1;
+  }
+
+  /** Rebuilds the index after a mutation other than {@link #put}. */
+  private void updateIndex() {
+    if (size >= INDEX_THRESHOLD) {
+      buildIndex();
+    } else {
+      index = null;
+    }
+  }
+
+  private void buildIndex() {
+    // Keep the load factor at most 1/2, leaving room for later puts.
+    int[] index = new int[Integer.highestOneBit(size) * 4 * 2];
+    int names = 0;
+    for (int i = 0; i < size; i++) {
+      byte[] name = name(i);
+      int slot = findSlot(index, name, Arrays.hashCode(name));
+      if (index[slot * 2] == 0) {
+        names++;
+        index[slot * 2] = i + 1;
+      }
+      index[slot * 2 + 1] = i + 1;
+    }
+    indexedNames = names;
+    this.index = index;
+  }
+
+  private void addToIndex(byte[] name, int nameHash, int position) {
+    int[] index = this.index;
+    int slot = findSlot(index, name, nameHash);
+    if (index[slot * 2] == 0) {
+      if ((indexedNames + 1) * 4 > index.length) {
+        // Too full; put() rebuilds it.
+        this.index = null;
+        return;
+      }
+      indexedNames++;
+      index[slot * 2] = position + 1;
+    }
+    index[slot * 2 + 1] = position + 1;
+  }
+
+  /**
+   * Returns the slot for {@code name}: either the one holding it, or the empty slot where it would
+   * be inserted.
+   */
+  private int findSlot(int[] index, byte[] name, int nameHash) {
+    int mask = index.length / 2 - 1;
+    int slot = (nameHash ^ (nameHash >>> 16)) & mask;
+    int position;
+    while ((position = index[slot * 2]) != 0) {
+      if (bytesEqual(name, name(position - 1))) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
   private boolean bytesEqual(byte[] left, byte[] right) {
     return Arrays.equals(left, right);
   }
@@ -713,6 +825,7 @@ public final class Metadata {
 
     private final String name;
     private final byte[] nameBytes;
+    private final int nameBytesHash;
     private final Object marshaller;
 
     private static BitSet generateValidTChars() {
@@ -749,6 +862,7 @@ public final class Metadata {
       this.originalName = checkNotNull(name, "name");
       this.name = validateName(this.originalName.toLowerCase(Locale.ROOT), pseudo);
       this.nameBytes = this.name.getBytes(US_ASCII);
+      this.nameBytesHash = Arrays.hashCode(nameBytes);
       this.marshaller = marshaller;
     }
 
@@ -779,6 +893,13 @@ public final class Metadata {
       return nameBytes;
     }
 
+    /**
+     * Returns {@code Arrays.hashCode(asciiName())}, computed once.
+     */
+    int asciiNameHash() {
+      return nameBytesHash;
+    }
+
     /**
      * Returns true if the two objects are both Keys, and their names match (case insensitive).
      */
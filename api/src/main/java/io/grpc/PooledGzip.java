@@ -0,0 +1,473 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+import javax.annotation.Nullable;
+
+/**
+ * Gzip streams used by {@link Codec.Gzip}. Unlike {@link java.util.zip.GZIPOutputStream} and
+ * {@link java.util.zip.GZIPInputStream}, they borrow their {@link Deflater} or {@link Inflater}
+ * (along with a staging buffer) from a pool shared by all threads rather than allocating fresh
+ * native zlib state for every message. The pool keeps at most {@link #MAX_POOLED_STATES} idle
+ * states of each kind, so threads that compress only occasionally don't each pin a zlib context.
+ *
+ * <p>The state is returned to the pool when the stream is closed, or for input streams once the
+ * end of the gzip data has been reached. States that don't fit in the pool are ended. A stream that
+ * is never closed simply leaves its state for the garbage collector.
+ */
+final class PooledGzip {
+  private static final int BUFFER_SIZE = 8192;
+  private static final int GZIP_MAGIC = 0x8b1f;
+  private static final int CM_DEFLATE = 8;
+  private static final int TRAILER_SIZE = 8;
+  private static final int FHCRC = 2;
+  private static final int FEXTRA = 4;
+  private static final int FNAME = 8;
+  private static final int FCOMMENT = 16;
+  private static final byte[] HEADER = {
+      (byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), CM_DEFLATE, 0, 0, 0, 0, 0, 0, 0};
+
+  // About the number of event loops of a default Netty event loop group.
+  @VisibleForTesting
+  static final int MAX_POOLED_STATES = 2 * Runtime.getRuntime().availableProcessors();
+
+  private static final StatePool<DeflateState> deflateStates = new StatePool<>();
+  private static final StatePool<InflateState> inflateStates = new StatePool<>();
+
+  private PooledGzip() {}
+
+  static OutputStream compress(OutputStream out) throws IOException {
+    return new PooledGzipOutputStream(out);
+  }
+
+  static InputStream decompress(InputStream in) throws IOException {
+    return new PooledGzipInputStream(in);
+  }
+
+  @VisibleForTesting
+  static int pooledDeflateStates() {
+    return deflateStates.size.get();
+  }
+
+  private static DeflateState acquireDeflateState() {
+    DeflateState state = deflateStates.poll();
+    return state != null ? state : new DeflateState();
+  }
+
+  private static void releaseDeflateState(DeflateState state) {
+    state.reset();
+    if (!deflateStates.offer(state)) {
+      state.deflater.end();
+    }
+  }
+
+  private static InflateState acquireInflateState() {
+    InflateState state = inflateStates.poll();
+    return state != null ? state : new InflateState();
+  }
+
+  private static void releaseInflateState(InflateState state) {
+    state.reset();
+    if (!inflateStates.offer(state)) {
+      state.inflater.end();
+    }
+  }
+
+  /** Idle states, bounded by {@link #MAX_POOLED_STATES}. */
+  private static final class StatePool<T> {
+    private final Queue<T> states = new ConcurrentLinkedQueue<>();
+    final AtomicInteger size = new AtomicInteger();
+
+    @Nullable
+    T poll() {
+      T state = states.poll();
+      if (state != null) {
+        size.decrementAndGet();
+      }
+      return state;
+    }
+
+    /** Returns {@code false} if the pool is full. */
+    boolean offer(T state) {
+      if (size.incrementAndGet() > MAX_POOLED_STATES) {
+        size.decrementAndGet();
+        return false;
+      }
+      states.offer(state);
+      return true;
+    }
+  }
+
+  private static final class DeflateState {
+    final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    final CRC32 crc = new CRC32();
+    final byte[] buf = new byte[BUFFER_SIZE];
+    final byte[] singleByte = new byte[1];
+
+    void reset() {
+      deflater.reset();
+      crc.reset();
+    }
+  }
+
+  private static final class InflateState {
+    final Inflater inflater = new Inflater(true);
+    final CRC32 crc = new CRC32();
+    final byte[] buf = new byte[BUFFER_SIZE];
+    final byte[] singleByte = new byte[1];
+
+    void reset() {
+      inflater.reset();
+      crc.reset();
+    }
+  }
+
+  private static final class PooledGzipOutputStream extends OutputStream {
+    private final OutputStream out;
+    // null once closed
+    private DeflateState state;
+
+    PooledGzipOutputStream(OutputStream out) throws IOException {
+      this.out = out;
+      out.write(HEADER);
+      this.state = acquireDeflateState();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      byte[] singleByte = checkOpen().singleByte;
+      singleByte[0] = (byte) b;
+      write(singleByte, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      DeflateState state = checkOpen();
+      if (off < 0 || len < 0 || off > b.length - len) {
+        throw new IndexOutOfBoundsException();
+      }
+      if (len == 0) {
+        return;
+      }
+      state.crc.update(b, off, len);
+      Deflater deflater = state.deflater;
+      deflater.setInput(b, off, len);
+      while (!deflater.needsInput()) {
+        int n = deflater.deflate(state.buf, 0, state.buf.length);
+        if (n > 0) {
+          out.write(state.buf, 0, n);
+        }
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      checkOpen();
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      DeflateState state = this.state;
+      if (state == null) {
+        return;
+      }
+      this.state = null;
+      try {
+        finish(state);
+        out.close();
+      } finally {
+        releaseDeflateState(state);
+      }
+    }
+
+    private void finish(DeflateState state) throws IOException {
+      Deflater deflater = state.deflater;
+      byte[] buf = state.buf;
+      deflater.finish();
+      while (true) {
+        int n = deflater.deflate(buf, 0, buf.length);
+        if (deflater.finished() && n <= buf.length - TRAILER_SIZE) {
+          writeTrailer(state, buf, n);
+          out.write(buf, 0, n + TRAILER_SIZE);
+          return;
+        }
+        if (n > 0) {
+          out.write(buf, 0, n);
+        }
+        if (deflater.finished()) {
+          writeTrailer(state, buf, 0);
+          out.write(buf, 0, TRAILER_SIZE);
+          return;
+        }
+      }
+    }
+
+    private static void writeTrailer(DeflateState state, byte[] buf, int offset) {
+      writeIntLe(buf, offset, state.crc.getValue());
+      writeIntLe(buf, offset + 4, state.deflater.getBytesRead());
+    }
+
+    private static void writeIntLe(byte[] buf, int offset, long value) {
+      buf[offset] = (byte) value;
+      buf[offset + 1] = (byte) (value >> 8);
+      buf[offset + 2] = (byte) (value >> 16);
+      buf[offset + 3] = (byte) (value >> 24);
+    }
+
+    private DeflateState checkOpen() throws IOException {
+      if (state == null) {
+        throw new IOException("Stream closed");
+      }
+      return state;
+    }
+  }
+
+  private static final class PooledGzipInputStream extends InputStream {
+    private final InputStream in;
+    // null once the end of the gzip data has been reached or the stream is closed
+    private InflateState state;
+    private boolean closed;
+    // Bytes of state.buf in [pos, limit) have been read from the underlying stream but not yet
+    // consumed. Bytes handed to the inflater count as consumed until it reports them remaining.
+    private int pos;
+    private int limit;
+
+    PooledGzipInputStream(InputStream in) throws IOException {
+      this.in = in;
+      this.state = acquireInflateState();
+      try {
+        readHeader();
+      } catch (IOException e) {
+        releaseState();
+        throw e;
+      } catch (RuntimeException e) {
+        releaseState();
+        throw e;
+      }
+    }
+
+    @Override
+    public int read() throws IOException {
+      checkOpen();
+      if (state == null) {
+        return -1;
+      }
+      byte[] singleByte = state.singleByte;
+      return read(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      checkOpen();
+      if (off < 0 || len < 0 || off > b.length - len) {
+        throw new IndexOutOfBoundsException();
+      }
+      if (state == null) {
+        return -1;
+      }
+      if (len == 0) {
+        return 0;
+      }
+      while (true) {
+        Inflater inflater = state.inflater;
+        int n;
+        try {
+          n = inflater.inflate(b, off, len);
+        } catch (DataFormatException e) {
+          String message = e.getMessage();
+          throw new ZipException(message != null ? message : "Invalid ZLIB data format");
+        }
+        if (n > 0) {
+          state.crc.update(b, off, n);
+          return n;
+        }
+        if (inflater.finished()) {
+          pos = limit - inflater.getRemaining();
+          readTrailer();
+          if (!nextMember()) {
+            releaseState();
+            return -1;
+          }
+        } else if (inflater.needsDictionary()) {
+          throw new ZipException("Unexpected preset dictionary");
+        } else if (inflater.needsInput()) {
+          if (pos == limit && !fill()) {
+            throw new EOFException("Unexpected end of ZLIB input stream");
+          }
+          inflater.setInput(state.buf, pos, limit - pos);
+          pos = limit;
+        }
+      }
+    }
+
+    @Override
+    public int available() throws IOException {
+      checkOpen();
+      return state == null ? 0 : 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      releaseState();
+      in.close();
+    }
+
+    private void releaseState() {
+      InflateState state = this.state;
+      if (state != null) {
+        this.state = null;
+        releaseInflateState(state);
+      }
+    }
+
+    private void checkOpen() throws IOException {
+      if (closed) {
+        throw new IOException("Stream closed");
+      }
+    }
+
+    /**
+     * Starts the next gzip member if there is more input that begins with the gzip magic. Anything
+     * else following a member is ignored, as {@link java.util.zip.GZIPInputStream} does.
+     */
+    private boolean nextMember() throws IOException {
+      // Only peek at bytes that were read. A trailing partial member is ignored like any other
+      // trailing garbage.
+      while (limit - pos < 2) {
+        if (!fill()) {
+          return false;
+        }
+      }
+      if (((state.buf[pos] & 0xff) | ((state.buf[pos + 1] & 0xff) << 8)) != GZIP_MAGIC) {
+        return false;
+      }
+      state.reset();
+      readHeader();
+      return true;
+    }
+
+    private void readHeader() throws IOException {
+      CRC32 crc = state.crc;
+      crc.reset();
+      if (readUShort(crc) != GZIP_MAGIC) {
+        throw new ZipException("Not in GZIP format");
+      }
+      if (readUByte(crc) != CM_DEFLATE) {
+        throw new ZipException("Unsupported compression method");
+      }
+      int flags = readUByte(crc);
+      // MTIME, XFL and OS
+      skipBytes(6, crc);
+      if ((flags & FEXTRA) != 0) {
+        skipBytes(readUShort(crc), crc);
+      }
+      if ((flags & FNAME) != 0) {
+        skipZeroTerminated(crc);
+      }
+      if ((flags & FCOMMENT) != 0) {
+        skipZeroTerminated(crc);
+      }
+      if ((flags & FHCRC) != 0) {
+        int expected = (int) crc.getValue() & 0xffff;
+        if (readUShort(null) != expected) {
+          throw new ZipException("Corrupt GZIP header");
+        }
+      }
+      crc.reset();
+    }
+
+    private void readTrailer() throws IOException {
+      long expectedCrc = readUInt();
+      long expectedSize = readUInt();
+      if (expectedCrc != state.crc.getValue()
+          || expectedSize != (state.inflater.getBytesWritten() & 0xffffffffL)) {
+        throw new ZipException("Corrupt GZIP trailer");
+      }
+    }
+
+    private long readUInt() throws IOException {
+      long low = readUShort(null);
+      return ((long) readUShort(null) << 16) | low;
+    }
+
+    private int readUShort(CRC32 crc) throws IOException {
+      int low = readUByte(crc);
+      return (readUByte(crc) << 8) | low;
+    }
+
+    private void skipBytes(int n, CRC32 crc) throws IOException {
+      for (int i = 0; i < n; i++) {
+        readUByte(crc);
+      }
+    }
+
+    private void skipZeroTerminated(CRC32 crc) throws IOException {
+      int b;
+      do {
+        b = readUByte(crc);
+      } while (b != 0);
+    }
+
+    private int readUByte(CRC32 crc) throws IOException {
+      if (pos == limit && !fill()) {
+        throw new EOFException("Unexpected end of GZIP input stream");
+      }
+      int b = state.buf[pos++] & 0xff;
+      if (crc != null) {
+        crc.update(b);
+      }
+      return b;
+    }
+
+    /**
+     * Reads more of the underlying stream into the buffer, compacting it first. Returns {@code
+     * false} if the underlying stream is exhausted.
+     */
+    private boolean fill() throws IOException {
+      byte[] buf = state.buf;
+      if (pos > 0) {
+        System.arraycopy(buf, pos, buf, 0, limit - pos);
+        limit -= pos;
+        pos = 0;
+      }
+      int n = in.read(buf, limit, buf.length - limit);
+      if (n <= 0) {
+        return false;
+      }
+      limit += n;
+      return true;
+    }
+  }
+}
@@ -71,6 +71,25 @@ public abstract class ServerBuilder<T extends ServerBuilder<T>> {
    */
   public abstract T executor(@Nullable Executor executor);
 
+  /**
+   * Execute application code on JDK virtual threads. A call's callbacks are still delivered
+   * serially, but each batch of them runs on a fresh virtual thread, so service implementations may
+   * block freely without exhausting a thread pool.
+   *
+   * <p>Calling this method is semantically equivalent to calling {@link #executor(Executor)} and
+   * passing in an executor that starts a new virtual thread per task. Virtual threads require Java
+   * 21 or later.
+   *
+   * @return this
+   * @throws UnsupportedOperationException if the running JDK or this builder does not support
+   *     virtual threads
+   * @since 1.31.0
+   */
+  @ExperimentalApi("Virtual thread executors are experimental")
+  public T virtualThreadExecutor() {
+    throw new UnsupportedOperationException();
+  }
+
   /**
    * Adds a service implementation to the handler registry.
    *
@@ -203,6 +222,31 @@ public abstract class ServerBuilder<T extends ServerBuilder<T>> {
     throw new UnsupportedOperationException();
   }
 
+  /**
+   * Limits the number of unary calls the server runs at once, adjusting the limit from the
+   * observed call latency. Calls over the limit fail immediately with {@link
+   * Status.Code#RESOURCE_EXHAUSTED}, before they are queued on the executor or any message is
+   * read. Streaming calls and calls to methods of the {@link #fallbackHandlerRegistry} are neither
+   * limited nor sampled. The limit is only enforced by the server; it is not advertised to
+   * clients, as the HTTP/2 maximum number of concurrent streams would cap streaming calls too.
+   *
+   * <p>The limit starts at {@code initialLimit}. It grows while each method's latency stays close
+   * to the smallest recently observed latency of that method, shrinks as calls start to queue and
+   * never exceeds {@code maxLimit}. By default, the number of concurrent calls is not limited.
+   *
+   * @param initialLimit the number of concurrent calls allowed before any latency is measured
+   * @param maxLimit the largest number of concurrent calls ever allowed
+   * @return this
+   * @throws IllegalArgumentException if {@code initialLimit} is not positive or {@code maxLimit}
+   *     is less than {@code initialLimit}
+   * @throws UnsupportedOperationException if unsupported
+   * @since 1.31.0
+   */
+  @ExperimentalApi("Adaptive concurrency limiting is experimental")
+  public T adaptiveConcurrencyLimit(int initialLimit, int maxLimit) {
+    throw new UnsupportedOperationException();
+  }
+
   /**
    * Sets the maximum message size allowed to be received on the server. If not called,
    * defaults to 4 MiB. The default provides protection to servers who haven't considered the
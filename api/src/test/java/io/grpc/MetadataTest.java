@@ -35,9 +35,17 @@ import io.grpc.internal.GrpcUtil;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -119,6 +127,129 @@ public class MetadataTest {
   private static final Metadata.Key<Fish> KEY_IMMUTABLE =
       Key.of("immutable-bin", IMMUTABLE_FISH_MARSHALLER);
 
+  @Test
+  public void indexedLookups() {
+    Metadata h = new Metadata();
+    for (int i = 0; i < Metadata.INDEX_THRESHOLD; i++) {
+      h.put(Key.of("key" + i, Metadata.ASCII_STRING_MARSHALLER), "value" + i);
+    }
+    Key<String> dup = Key.of("dup", Metadata.ASCII_STRING_MARSHALLER);
+    h.put(dup, "first");
+    h.put(dup, "second");
+
+    assertTrue(h.containsKey(Key.of("KEY3", Metadata.ASCII_STRING_MARSHALLER)));
+    assertEquals("value7", h.get(Key.of("key7", Metadata.ASCII_STRING_MARSHALLER)));
+    assertEquals("second", h.get(dup));
+    assertEquals(Arrays.asList("first", "second"), Lists.newArrayList(h.getAll(dup)));
+    assertNull(h.get(Key.of("missing", Metadata.ASCII_STRING_MARSHALLER)));
+    assertNull(h.getAll(Key.of("missing", Metadata.ASCII_STRING_MARSHALLER)));
+
+    // Puts after the index is built are visible.
+    h.put(dup, "third");
+    h.put(Key.of("new", Metadata.ASCII_STRING_MARSHALLER), "new value");
+    assertEquals("third", h.get(dup));
+    assertEquals(Arrays.asList("first", "second", "third"), Lists.newArrayList(h.getAll(dup)));
+    assertEquals("new value", h.get(Key.of("new", Metadata.ASCII_STRING_MARSHALLER)));
+  }
+
+  @Test
+  public void indexedLookups_afterRemovals() {
+    Metadata h = new Metadata();
+    for (int i = 0; i < 2 * Metadata.INDEX_THRESHOLD; i++) {
+      h.put(Key.of("key" + i, Metadata.ASCII_STRING_MARSHALLER), "value" + i);
+    }
+    Key<String> key0 = Key.of("key0", Metadata.ASCII_STRING_MARSHALLER);
+    Key<String> key5 = Key.of("key5", Metadata.ASCII_STRING_MARSHALLER);
+    assertEquals("value5", h.get(key5));
+
+    assertTrue(h.remove(key0, "value0"));
+    assertFalse(h.containsKey(key0));
+    assertEquals("value5", h.get(key5));
+
+    h.discardAll(key5);
+    assertNull(h.get(key5));
+    assertEquals("value6", h.get(Key.of("key6", Metadata.ASCII_STRING_MARSHALLER)));
+  }
+
+  @Test
+  public void indexedLookups_manyPutsAfterIndexBuilt() {
+    Metadata h = new Metadata();
+    for (int i = 0; i < Metadata.INDEX_THRESHOLD; i++) {
+      h.put(Key.of("key" + i, Metadata.ASCII_STRING_MARSHALLER), "value" + i);
+    }
+    assertTrue(h.containsKey(Key.of("key0", Metadata.ASCII_STRING_MARSHALLER)));
+    // Enough distinct names to outgrow the index.
+    for (int i = Metadata.INDEX_THRESHOLD; i < 10 * Metadata.INDEX_THRESHOLD; i++) {
+      h.put(Key.of("key" + i, Metadata.ASCII_STRING_MARSHALLER), "value" + i);
+      assertEquals("value" + i, h.get(Key.of("key" + i, Metadata.ASCII_STRING_MARSHALLER)));
+    }
+    for (int i = 0; i < 10 * Metadata.INDEX_THRESHOLD; i++) {
+      assertEquals("value" + i, h.get(Key.of("key" + i, Metadata.ASCII_STRING_MARSHALLER)));
+    }
+  }
+
+  @Test
+  public void indexedLookups_byteConstructed() {
+    byte[][] namesAndValues = new byte[2 * Metadata.INDEX_THRESHOLD][];
+    for (int i = 0; i < Metadata.INDEX_THRESHOLD; i++) {
+      namesAndValues[2 * i] = ("key" + i).getBytes(US_ASCII);
+      namesAndValues[2 * i + 1] = ("value" + i).getBytes(US_ASCII);
+    }
+    Metadata h = new Metadata(namesAndValues);
+    assertEquals("value9", h.get(Key.of("key9", Metadata.ASCII_STRING_MARSHALLER)));
+
+    Metadata other = new Metadata();
+    other.put(Key.of("key9", Metadata.ASCII_STRING_MARSHALLER), "merged");
+    h.merge(other);
+    assertEquals("merged", h.get(Key.of("key9", Metadata.ASCII_STRING_MARSHALLER)));
+  }
+
+  @Test
+  public void indexedLookups_mergeSelectedKeys() {
+    Metadata other = new Metadata();
+    Set<Key<?>> keys = new HashSet<>();
+    for (int i = 0; i < Metadata.INDEX_THRESHOLD; i++) {
+      Key<String> key = Key.of("key" + i, Metadata.ASCII_STRING_MARSHALLER);
+      other.put(key, "value" + i);
+      keys.add(key);
+    }
+    Metadata h = new Metadata();
+    h.merge(other, keys);
+    assertEquals("value9", h.get(Key.of("key9", Metadata.ASCII_STRING_MARSHALLER)));
+  }
+
+  @Test
+  public void indexedLookups_concurrentReaders() throws Exception {
+    final Metadata h = new Metadata();
+    for (int i = 0; i < 2 * Metadata.INDEX_THRESHOLD; i++) {
+      h.put(Key.of("key" + i, Metadata.ASCII_STRING_MARSHALLER), "value" + i);
+    }
+    // Lookups don't write, so readers need no synchronization between them.
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        results.add(executor.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() {
+            for (int i = 0; i < 2 * Metadata.INDEX_THRESHOLD; i++) {
+              if (!("value" + i).equals(
+                  h.get(Key.of("key" + i, Metadata.ASCII_STRING_MARSHALLER)))) {
+                return false;
+              }
+            }
+            return true;
+          }
+        }));
+      }
+      for (Future<Boolean> result : results) {
+        assertTrue(result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   @Test
   public void noPseudoHeaders() {
     thrown.expect(IllegalArgumentException.class);
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link PooledGzip}.
+ */
+@RunWith(JUnit4.class)
+public class PooledGzipTest {
+  private static final int[] SIZES = {0, 1, 100, 8191, 8192, 8193, 100000};
+
+  private final Codec gzip = new Codec.Gzip();
+  private final Random random = new Random(1);
+
+  @Test
+  public void compress_readableByJdk() throws Exception {
+    for (int size : SIZES) {
+      byte[] data = randomBytes(size);
+      assertArrayEquals(data, jdkGunzip(compress(data)));
+    }
+  }
+
+  @Test
+  public void decompress_jdkOutput() throws Exception {
+    for (int size : SIZES) {
+      byte[] data = randomBytes(size);
+      assertArrayEquals(data, decompress(jdkGzip(data)));
+    }
+  }
+
+  @Test
+  public void roundTrip_reusesStateAcrossMessages() throws Exception {
+    for (int i = 0; i < 100; i++) {
+      byte[] data = randomBytes(random.nextInt(20000));
+      assertArrayEquals(data, decompress(compress(data)));
+    }
+  }
+
+  @Test
+  public void pool_isBounded() throws Exception {
+    List<OutputStream> streams = new ArrayList<>();
+    for (int i = 0; i < PooledGzip.MAX_POOLED_STATES + 5; i++) {
+      streams.add(gzip.compress(new ByteArrayOutputStream()));
+    }
+    for (OutputStream stream : streams) {
+      stream.close();
+    }
+    assertEquals(PooledGzip.MAX_POOLED_STATES, PooledGzip.pooledDeflateStates());
+
+    byte[] data = randomBytes(1000);
+    assertArrayEquals(data, decompress(compress(data)));
+  }
+
+  @Test
+  public void compress_singleByteWrites() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    OutputStream compressing = gzip.compress(out);
+    compressing.write('h');
+    compressing.write('i');
+    compressing.close();
+
+    assertEquals("hi", new String(jdkGunzip(out.toByteArray()), "US-ASCII"));
+  }
+
+  @Test
+  public void compress_writeAfterCloseFails() throws Exception {
+    OutputStream compressing = gzip.compress(new ByteArrayOutputStream());
+    compressing.close();
+    compressing.close();
+
+    try {
+      compressing.write(new byte[1], 0, 1);
+      fail("Expected exception");
+    } catch (IOException expected) {
+    }
+  }
+
+  @Test
+  public void decompress_concatenatedMembers() throws Exception {
+    byte[] first = randomBytes(10000);
+    byte[] second = randomBytes(20);
+    ByteArrayOutputStream concatenated = new ByteArrayOutputStream();
+    concatenated.write(jdkGzip(first));
+    concatenated.write(compress(second));
+
+    byte[] expected = Arrays.copyOf(first, first.length + second.length);
+    System.arraycopy(second, 0, expected, first.length, second.length);
+    assertArrayEquals(expected, decompress(concatenated.toByteArray()));
+  }
+
+  @Test
+  public void decompress_ignoresTrailingGarbage() throws Exception {
+    byte[] data = randomBytes(100);
+    byte[] compressed = compress(data);
+    byte[] withGarbage = Arrays.copyOf(compressed, compressed.length + 3);
+
+    assertArrayEquals(data, decompress(withGarbage));
+  }
+
+  @Test
+  public void decompress_ignoresSingleTrailingByte() throws Exception {
+    byte[] data = randomBytes(100);
+    byte[] compressed = compress(data);
+    byte[] withGarbage = Arrays.copyOf(compressed, compressed.length + 1);
+    withGarbage[compressed.length] = (byte) 0x1f;
+
+    assertArrayEquals(data, decompress(withGarbage));
+  }
+
+  @Test
+  public void decompress_concatenatedMembersReadOneByteAtATime() throws Exception {
+    byte[] first = randomBytes(100);
+    byte[] second = randomBytes(20);
+    ByteArrayOutputStream concatenated = new ByteArrayOutputStream();
+    concatenated.write(compress(first));
+    concatenated.write(compress(second));
+    InputStream oneByteAtATime = new ByteArrayInputStream(concatenated.toByteArray()) {
+      @Override
+      public synchronized int read(byte[] b, int off, int len) {
+        return super.read(b, off, Math.min(len, 1));
+      }
+    };
+
+    InputStream decompressing = gzip.decompress(oneByteAtATime);
+    byte[] expected = Arrays.copyOf(first, first.length + second.length);
+    System.arraycopy(second, 0, expected, first.length, second.length);
+    assertArrayEquals(expected, ByteStreams.toByteArray(decompressing));
+    decompressing.close();
+  }
+
+  @Test
+  public void decompress_optionalHeaderFields() throws Exception {
+    byte[] member = jdkGzip("hello".getBytes("US-ASCII"));
+    ByteArrayOutputStream header = new ByteArrayOutputStream();
+    // FHCRC | FEXTRA | FNAME | FCOMMENT
+    header.write(new byte[] {0x1f, (byte) 0x8b, 8, 2 | 4 | 8 | 16, 0, 0, 0, 0, 0, 3});
+    header.write(new byte[] {2, 0, 'x', 'y'});
+    header.write("name\0comment\0".getBytes("US-ASCII"));
+    CRC32 crc = new CRC32();
+    crc.update(header.toByteArray());
+    header.write((int) crc.getValue());
+    header.write((int) crc.getValue() >> 8);
+    header.write(member, 10, member.length - 10);
+
+    assertEquals("hello", new String(decompress(header.toByteArray()), "US-ASCII"));
+  }
+
+  @Test
+  public void decompress_corruptTrailer() throws Exception {
+    byte[] compressed = compress(randomBytes(100));
+    compressed[compressed.length - 5] ^= 1;
+
+    try {
+      decompress(compressed);
+      fail("Expected exception");
+    } catch (ZipException expected) {
+    }
+  }
+
+  @Test
+  public void decompress_truncated() throws Exception {
+    byte[] compressed = compress(randomBytes(100));
+
+    try {
+      decompress(Arrays.copyOf(compressed, compressed.length - 3));
+      fail("Expected exception");
+    } catch (EOFException expected) {
+    }
+  }
+
+  @Test
+  public void decompress_notGzip() throws Exception {
+    try {
+      gzip.decompress(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10}));
+      fail("Expected exception");
+    } catch (ZipException expected) {
+    }
+  }
+
+  @Test
+  public void decompress_readAfterEndAndClose() throws Exception {
+    InputStream decompressing = gzip.decompress(new ByteArrayInputStream(compress(new byte[1])));
+    assertEquals(0, decompressing.read());
+    assertEquals(-1, decompressing.read());
+    assertEquals(0, decompressing.available());
+    decompressing.close();
+
+    try {
+      decompressing.read();
+      fail("Expected exception");
+    } catch (IOException expected) {
+    }
+  }
+
+  private byte[] randomBytes(int size) {
+    byte[] data = new byte[size];
+    // A small alphabet keeps the data compressible
+    for (int i = 0; i < size; i++) {
+      data[i] = (byte) random.nextInt(8);
+    }
+    return data;
+  }
+
+  private byte[] compress(byte[] data) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    OutputStream compressing = gzip.compress(out);
+    compressing.write(data);
+    compressing.close();
+    return out.toByteArray();
+  }
+
+  private byte[] decompress(byte[] data) throws IOException {
+    InputStream decompressing = gzip.decompress(new ByteArrayInputStream(data));
+    try {
+      return ByteStreams.toByteArray(decompressing);
+    } finally {
+      decompressing.close();
+    }
+  }
+
+  private static byte[] jdkGzip(byte[] data) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    GZIPOutputStream compressing = new GZIPOutputStream(out);
+    compressing.write(data);
+    compressing.close();
+    return out.toByteArray();
+  }
+
+  private static byte[] jdkGunzip(byte[] data) throws IOException {
+    return ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(data)));
+  }
+}
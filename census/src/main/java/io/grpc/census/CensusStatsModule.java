@@ -43,15 +43,19 @@ import io.opencensus.stats.MeasureMap;
 import io.opencensus.stats.Stats;
 import io.opencensus.stats.StatsRecorder;
 import io.opencensus.tags.TagContext;
+import io.opencensus.tags.TagKey;
 import io.opencensus.tags.TagValue;
 import io.opencensus.tags.Tagger;
 import io.opencensus.tags.Tags;
 import io.opencensus.tags.propagation.TagContextBinarySerializer;
 import io.opencensus.tags.propagation.TagContextSerializationException;
 import io.opencensus.tags.unsafe.ContextUtils;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -71,6 +75,21 @@ import javax.annotation.Nullable;
 final class CensusStatsModule {
   private static final Logger logger = Logger.getLogger(CensusStatsModule.class.getName());
   private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+  /**
+   * Upper bound on the number of methods whose tags are cached, per side. Calls to methods beyond
+   * it still work, they just build their tag contexts per call.
+   */
+  @VisibleForTesting
+  static final int MAX_CACHED_METHODS = 1000;
+  private static final TagValue[] STATUS_TAG_VALUES;
+
+  static {
+    Status.Code[] codes = Status.Code.values();
+    STATUS_TAG_VALUES = new TagValue[codes.length];
+    for (Status.Code code : codes) {
+      STATUS_TAG_VALUES[code.ordinal()] = TagValue.create(code.toString());
+    }
+  }
 
   private final Tagger tagger;
   private final StatsRecorder statsRecorder;
@@ -81,6 +100,10 @@ final class CensusStatsModule {
   private final boolean recordStartedRpcs;
   private final boolean recordFinishedRpcs;
   private final boolean recordRealTimeMetrics;
+  private final ConcurrentMap<String, MethodTags> clientMethodTags =
+      new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, MethodTags> serverMethodTags =
+      new ConcurrentHashMap<>();
 
   /**
    * Creates a {@link CensusStatsModule} with the default OpenCensus implementation.
@@ -161,6 +184,71 @@ final class CensusStatsModule {
     return new StatsClientInterceptor();
   }
 
+  private MethodTags getClientMethodTags(String fullMethodName) {
+    return getMethodTags(
+        clientMethodTags, fullMethodName,
+        RpcMeasureConstants.GRPC_CLIENT_METHOD, RpcMeasureConstants.GRPC_CLIENT_STATUS);
+  }
+
+  private MethodTags getServerMethodTags(String fullMethodName) {
+    return getMethodTags(
+        serverMethodTags, fullMethodName,
+        RpcMeasureConstants.GRPC_SERVER_METHOD, RpcMeasureConstants.GRPC_SERVER_STATUS);
+  }
+
+  private MethodTags getMethodTags(
+      ConcurrentMap<String, MethodTags> cache, String fullMethodName, TagKey methodKey,
+      TagKey statusKey) {
+    MethodTags methodTags = cache.get(fullMethodName);
+    if (methodTags == null) {
+      methodTags = new MethodTags(tagger, fullMethodName, methodKey, statusKey);
+      if (cache.size() < MAX_CACHED_METHODS) {
+        MethodTags existing = cache.putIfAbsent(fullMethodName, methodTags);
+        if (existing != null) {
+          methodTags = existing;
+        }
+      }
+    }
+    return methodTags;
+  }
+
+  /**
+   * The tags a method adds to its calls' stats. Most calls have no tags of their own, so the tag
+   * contexts for that case are built once here instead of once or twice per call. The end context
+   * for each status code is only built when a call first ends with that code, so a method that is
+   * not cached costs no more than the two contexts it would build per call anyway.
+   */
+  private static final class MethodTags {
+    final TagKey methodKey;
+    final TagKey statusKey;
+    final TagValue methodTag;
+    /** The start context of calls without parent tags. */
+    final TagContext startCtx;
+    private final Tagger tagger;
+    /** The end contexts of calls without parent tags, indexed by {@link Status.Code#ordinal}. */
+    private final AtomicReferenceArray<TagContext> endCtxs =
+        new AtomicReferenceArray<>(STATUS_TAG_VALUES.length);
+
+    MethodTags(Tagger tagger, String fullMethodName, TagKey methodKey, TagKey statusKey) {
+      this.tagger = tagger;
+      this.methodKey = methodKey;
+      this.statusKey = statusKey;
+      this.methodTag = TagValue.create(fullMethodName);
+      this.startCtx = tagger.emptyBuilder().putLocal(methodKey, methodTag).build();
+    }
+
+    TagContext endCtx(Status.Code code) {
+      int index = code.ordinal();
+      TagContext endCtx = endCtxs.get(index);
+      if (endCtx == null) {
+        // Racing calls may both build it; the contexts are equal, so either may be kept.
+        endCtx = tagger.toBuilder(startCtx).putLocal(statusKey, STATUS_TAG_VALUES[index]).build();
+        endCtxs.set(index, endCtx);
+      }
+      return endCtx;
+    }
+  }
+
   private void recordRealTimeMetric(TagContext ctx, MeasureDouble measure, double value) {
     if (recordRealTimeMetrics) {
       MeasureMap measureMap = statsRecorder.newMeasureMap().put(measure, value);
@@ -175,6 +263,21 @@ final class CensusStatsModule {
     }
   }
 
+  /**
+   * Returns the context to record a finished call with: the cached one if the call had no parent
+   * tags, otherwise {@code startCtx} plus the status tag.
+   */
+  private static TagContext endCtx(
+      CensusStatsModule module, MethodTags methodTags, boolean parentCtxEmpty,
+      TagContext startCtx, Status status) {
+    if (parentCtxEmpty) {
+      return methodTags.endCtx(status.getCode());
+    }
+    return module.tagger.toBuilder(startCtx)
+        .putLocal(methodTags.statusKey, STATUS_TAG_VALUES[status.getCode().ordinal()])
+        .build();
+  }
+
   private static final class ClientTracer extends ClientStreamTracer {
 
     @Nullable private static final AtomicLongFieldUpdater<ClientTracer> outboundMessageCountUpdater;
@@ -350,15 +453,23 @@ final class CensusStatsModule {
     private volatile ClientTracer streamTracer;
     private volatile int callEnded;
     private final TagContext parentCtx;
-    private final TagContext startCtx;
+    private final boolean parentCtxEmpty;
+    private final MethodTags methodTags;
+    @VisibleForTesting
+    final TagContext startCtx;
 
     ClientCallTracer(CensusStatsModule module, TagContext parentCtx, String fullMethodName) {
       this.module = checkNotNull(module);
       this.parentCtx = checkNotNull(parentCtx);
-      TagValue methodTag = TagValue.create(fullMethodName);
-      this.startCtx = module.tagger.toBuilder(parentCtx)
-          .putLocal(RpcMeasureConstants.GRPC_CLIENT_METHOD, methodTag)
-          .build();
+      this.parentCtxEmpty = module.tagger.empty().equals(parentCtx);
+      this.methodTags = module.getClientMethodTags(fullMethodName);
+      if (parentCtxEmpty) {
+        this.startCtx = methodTags.startCtx;
+      } else {
+        this.startCtx = module.tagger.toBuilder(parentCtx)
+            .putLocal(methodTags.methodKey, methodTags.methodTag)
+            .build();
+      }
       this.stopwatch = module.stopwatchSupplier.get().start();
       if (module.recordStartedRpcs) {
         module.statsRecorder.newMeasureMap()
@@ -385,7 +496,7 @@ final class CensusStatsModule {
       }
       if (module.propagateTags) {
         headers.discardAll(module.statsHeader);
-        if (!module.tagger.empty().equals(parentCtx)) {
+        if (!parentCtxEmpty) {
           headers.put(module.statsHeader, parentCtx);
         }
       }
@@ -415,8 +526,20 @@ final class CensusStatsModule {
       stopwatch.stop();
       long roundtripNanos = stopwatch.elapsed(TimeUnit.NANOSECONDS);
       ClientTracer tracer = streamTracer;
-      if (tracer == null) {
-        tracer = new ClientTracer(module, startCtx);
+      // A call that never created a stream has no messages or bytes to report.
+      long outboundMessageCount = 0;
+      long inboundMessageCount = 0;
+      long outboundWireSize = 0;
+      long inboundWireSize = 0;
+      long outboundUncompressedSize = 0;
+      long inboundUncompressedSize = 0;
+      if (tracer != null) {
+        outboundMessageCount = tracer.outboundMessageCount;
+        inboundMessageCount = tracer.inboundMessageCount;
+        outboundWireSize = tracer.outboundWireSize;
+        inboundWireSize = tracer.inboundWireSize;
+        outboundUncompressedSize = tracer.outboundUncompressedSize;
+        inboundUncompressedSize = tracer.inboundUncompressedSize;
       }
       MeasureMap measureMap = module.statsRecorder.newMeasureMap()
           // TODO(songya): remove the deprecated measure constants once they are completed removed.
@@ -425,26 +548,20 @@ final class CensusStatsModule {
           .put(
               DeprecatedCensusConstants.RPC_CLIENT_ROUNDTRIP_LATENCY,
               roundtripNanos / NANOS_PER_MILLI)
-          .put(DeprecatedCensusConstants.RPC_CLIENT_REQUEST_COUNT, tracer.outboundMessageCount)
-          .put(DeprecatedCensusConstants.RPC_CLIENT_RESPONSE_COUNT, tracer.inboundMessageCount)
-          .put(DeprecatedCensusConstants.RPC_CLIENT_REQUEST_BYTES, tracer.outboundWireSize)
-          .put(DeprecatedCensusConstants.RPC_CLIENT_RESPONSE_BYTES, tracer.inboundWireSize)
+          .put(DeprecatedCensusConstants.RPC_CLIENT_REQUEST_COUNT, outboundMessageCount)
+          .put(DeprecatedCensusConstants.RPC_CLIENT_RESPONSE_COUNT, inboundMessageCount)
+          .put(DeprecatedCensusConstants.RPC_CLIENT_REQUEST_BYTES, outboundWireSize)
+          .put(DeprecatedCensusConstants.RPC_CLIENT_RESPONSE_BYTES, inboundWireSize)
           .put(
               DeprecatedCensusConstants.RPC_CLIENT_UNCOMPRESSED_REQUEST_BYTES,
-              tracer.outboundUncompressedSize)
+              outboundUncompressedSize)
           .put(
               DeprecatedCensusConstants.RPC_CLIENT_UNCOMPRESSED_RESPONSE_BYTES,
-              tracer.inboundUncompressedSize);
+              inboundUncompressedSize);
       if (!status.isOk()) {
         measureMap.put(DeprecatedCensusConstants.RPC_CLIENT_ERROR_COUNT, 1);
       }
-      TagValue statusTag = TagValue.create(status.getCode().toString());
-      measureMap.record(
-          module
-              .tagger
-              .toBuilder(startCtx)
-              .putLocal(RpcMeasureConstants.GRPC_CLIENT_STATUS, statusTag)
-              .build());
+      measureMap.record(endCtx(module, methodTags, parentCtxEmpty, startCtx, status));
     }
   }
 
@@ -510,6 +627,8 @@ final class CensusStatsModule {
 
     private final CensusStatsModule module;
     private final TagContext parentCtx;
+    private final MethodTags methodTags;
+    private final boolean parentCtxCached;
     private volatile int streamClosed;
     private final Stopwatch stopwatch;
     private volatile long outboundMessageCount;
@@ -521,9 +640,13 @@ final class CensusStatsModule {
 
     ServerTracer(
         CensusStatsModule module,
-        TagContext parentCtx) {
+        TagContext parentCtx,
+        MethodTags methodTags,
+        boolean parentCtxCached) {
       this.module = checkNotNull(module, "module");
       this.parentCtx = checkNotNull(parentCtx, "parentCtx");
+      this.methodTags = checkNotNull(methodTags, "methodTags");
+      this.parentCtxCached = parentCtxCached;
       this.stopwatch = module.stopwatchSupplier.get().start();
       if (module.recordStartedRpcs) {
         module.statsRecorder.newMeasureMap()
@@ -643,13 +766,7 @@ final class CensusStatsModule {
       if (!status.isOk()) {
         measureMap.put(DeprecatedCensusConstants.RPC_SERVER_ERROR_COUNT, 1);
       }
-      TagValue statusTag = TagValue.create(status.getCode().toString());
-      measureMap.record(
-          module
-              .tagger
-              .toBuilder(parentCtx)
-              .putLocal(RpcMeasureConstants.GRPC_SERVER_STATUS, statusTag)
-              .build());
+      measureMap.record(endCtx(module, methodTags, parentCtxCached, parentCtx, status));
     }
 
     @Override
@@ -665,17 +782,17 @@ final class CensusStatsModule {
   final class ServerTracerFactory extends ServerStreamTracer.Factory {
     @Override
     public ServerStreamTracer newServerStreamTracer(String fullMethodName, Metadata headers) {
+      MethodTags methodTags = getServerMethodTags(fullMethodName);
       TagContext parentCtx = headers.get(statsHeader);
-      if (parentCtx == null) {
-        parentCtx = tagger.empty();
+      if (parentCtx == null || tagger.empty().equals(parentCtx)) {
+        return new ServerTracer(CensusStatsModule.this, methodTags.startCtx, methodTags, true);
       }
-      TagValue methodTag = TagValue.create(fullMethodName);
       parentCtx =
           tagger
               .toBuilder(parentCtx)
-              .putLocal(RpcMeasureConstants.GRPC_SERVER_METHOD, methodTag)
+              .putLocal(methodTags.methodKey, methodTags.methodTag)
               .build();
-      return new ServerTracer(CensusStatsModule.this, parentCtx);
+      return new ServerTracer(CensusStatsModule.this, parentCtx, methodTags, false);
     }
   }
 
@@ -573,6 +573,36 @@ public class CensusModulesTest {
             .build());
   }
 
+  @Test
+  public void methodTagContextsAreCachedWithoutParentTags() {
+    CensusStatsModule.ClientCallTracer callTracer1 =
+        censusStats.newClientCallTracer(tagger.empty(), method.getFullMethodName());
+    CensusStatsModule.ClientCallTracer callTracer2 =
+        censusStats.newClientCallTracer(tagger.empty(), method.getFullMethodName());
+    assertSame(callTracer1.startCtx, callTracer2.startCtx);
+
+    TagContext parentCtx = tagger.emptyBuilder()
+        .putLocal(StatsTestUtils.EXTRA_TAG, TagValue.create("extra value"))
+        .build();
+    CensusStatsModule.ClientCallTracer callTracer3 =
+        censusStats.newClientCallTracer(parentCtx, method.getFullMethodName());
+    assertNotSame(callTracer1.startCtx, callTracer3.startCtx);
+    callTracer3.callEnded(Status.OK);
+
+    statsRecorder.pollRecord();
+    statsRecorder.pollRecord();
+    statsRecorder.pollRecord();
+    StatsTestUtils.MetricsRecord record = statsRecorder.pollRecord();
+    assertNotNull(record);
+    assertEquals("extra value", record.tags.get(StatsTestUtils.EXTRA_TAG).asString());
+    assertEquals(
+        method.getFullMethodName(),
+        record.tags.get(RpcMeasureConstants.GRPC_CLIENT_METHOD).asString());
+    assertEquals(
+        Status.Code.OK.toString(),
+        record.tags.get(RpcMeasureConstants.GRPC_CLIENT_STATUS).asString());
+  }
+
   @Test
   public void clientStreamNeverCreatedStillRecordStats() {
     CensusStatsModule.ClientCallTracer callTracer =
@@ -649,6 +649,9 @@ final class InProcessTransport implements ServerTransport, ConnectionClientTrans
       public int streamId() {
         return -1;
       }
+
+      @Override
+      public void methodResolved(String fullMethodName) {}
     }
 
     private class InProcessClientStream implements ClientStream {
@@ -540,5 +540,8 @@ public abstract class AbstractClientStream extends AbstractStream
     // TODO(zsurocking): support this
     @Override
     public void setMaxOutboundMessageSize(int maxSize) {}
+
+    @Override
+    public void setMessageSizeEstimator(MessageSizeEstimator estimator) {}
   }
 }
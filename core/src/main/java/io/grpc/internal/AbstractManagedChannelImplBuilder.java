@@ -136,6 +136,8 @@ public abstract class AbstractManagedChannelImplBuilder
   long retryBufferSize = DEFAULT_RETRY_BUFFER_SIZE_IN_BYTES;
   long perRpcBufferLimit = DEFAULT_PER_RPC_BUFFER_LIMIT_IN_BYTES;
   boolean retryEnabled = false; // TODO(zdapeng): default to true
+  int maxConnectionsPerSubchannel = 1;
+  int maxStreamsPerConnection = Integer.MAX_VALUE;
   // Temporarily disable retry when stats or tracing is enabled to avoid breakage, until we know
   // what should be the desired behavior for retry + stats/tracing.
   // TODO(zdapeng): delete me
@@ -212,6 +214,11 @@ public abstract class AbstractManagedChannelImplBuilder
     return executor(MoreExecutors.directExecutor());
   }
 
+  @Override
+  public final T virtualThreadExecutor() {
+    return executor(VirtualThreadExecutors.sharedExecutor());
+  }
+
   @Override
   public final T executor(Executor executor) {
     if (executor != null) {
@@ -318,6 +325,15 @@ public abstract class AbstractManagedChannelImplBuilder
     return thisT();
   }
 
+  @Override
+  public final T maxConnectionsPerSubchannel(int maxConnections, int maxStreamsPerConnection) {
+    checkArgument(maxConnections >= 1, "maxConnections must be at least 1");
+    checkArgument(maxStreamsPerConnection >= 1, "maxStreamsPerConnection must be at least 1");
+    this.maxConnectionsPerSubchannel = maxConnections;
+    this.maxStreamsPerConnection = maxStreamsPerConnection;
+    return thisT();
+  }
+
   @Override
   public final T maxRetryAttempts(int maxRetryAttempts) {
     this.maxRetryAttempts = maxRetryAttempts;
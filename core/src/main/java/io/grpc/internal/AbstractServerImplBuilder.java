@@ -82,6 +82,10 @@ public abstract class AbstractServerImplBuilder<T extends AbstractServerImplBuil
   DecompressorRegistry decompressorRegistry = DEFAULT_DECOMPRESSOR_REGISTRY;
   CompressorRegistry compressorRegistry = DEFAULT_COMPRESSOR_REGISTRY;
   long handshakeTimeoutMillis = DEFAULT_HANDSHAKE_TIMEOUT_MILLIS;
+  private int initialConcurrencyLimit;
+  private int maxConcurrencyLimit;
+  /** Created for each server in {@link #build}; {@code null} if concurrency is not limited. */
+  @Nullable AdaptiveConcurrencyLimiter concurrencyLimiter;
   Deadline.Ticker ticker = Deadline.getSystemTicker();
   private boolean statsEnabled = true;
   private boolean recordStartedRpcs = true;
@@ -98,6 +102,11 @@ public abstract class AbstractServerImplBuilder<T extends AbstractServerImplBuil
     return executor(MoreExecutors.directExecutor());
   }
 
+  @Override
+  public final T virtualThreadExecutor() {
+    return executor(VirtualThreadExecutors.sharedExecutor());
+  }
+
   @Override
   public final T executor(@Nullable Executor executor) {
     this.executorPool = executor != null ? new FixedObjectPool<>(executor) : DEFAULT_EXECUTOR_POOL;
@@ -158,6 +167,16 @@ public abstract class AbstractServerImplBuilder<T extends AbstractServerImplBuil
     return thisT();
   }
 
+  @Override
+  public final T adaptiveConcurrencyLimit(int initialLimit, int maxLimit) {
+    checkArgument(initialLimit > 0, "initialLimit must be positive: %s", initialLimit);
+    checkArgument(maxLimit >= initialLimit,
+        "maxLimit must be at least initialLimit (%s): %s", initialLimit, maxLimit);
+    this.initialConcurrencyLimit = initialLimit;
+    this.maxConcurrencyLimit = maxLimit;
+    return thisT();
+  }
+
   @Override
   public final T setBinaryLog(@Nullable BinaryLog binaryLog) {
     this.binlog = binaryLog;
@@ -208,6 +227,14 @@ public abstract class AbstractServerImplBuilder<T extends AbstractServerImplBuil
     tracingEnabled = value;
   }
 
+  /**
+   * Sets the pool that provides the application executor, for transports that offer executors
+   * of their own. Like {@link #executor}, this replaces any previously configured executor.
+   */
+  protected final void setExecutorPool(ObjectPool<? extends Executor> executorPool) {
+    this.executorPool = checkNotNull(executorPool, "executorPool");
+  }
+
   /**
    * Sets a custom deadline ticker.  This should only be called from InProcessServerBuilder.
    */
@@ -217,6 +244,9 @@ public abstract class AbstractServerImplBuilder<T extends AbstractServerImplBuil
 
   @Override
   public final Server build() {
+    concurrencyLimiter = initialConcurrencyLimit == 0
+        ? null
+        : new AdaptiveConcurrencyLimiter(initialConcurrencyLimit, maxConcurrencyLimit, ticker);
     return new ServerImpl(this, buildTransportServers(getTracerFactories()), Context.ROOT);
   }
 
@@ -291,6 +321,14 @@ public abstract class AbstractServerImplBuilder<T extends AbstractServerImplBuil
     return transportTracerFactory;
   }
 
+  /**
+   * Returns the handshake timeout set by {@link #handshakeTimeout}, or {@code Long.MAX_VALUE} if
+   * there is none.
+   */
+  protected final long getHandshakeTimeoutMillis() {
+    return handshakeTimeoutMillis;
+  }
+
   /**
    * Children of AbstractServerBuilder should override this method to provide transport specific
    * information for the server.  This method is mean for Transport implementors and should not be
@@ -95,6 +95,9 @@ public abstract class AbstractServerStream extends AbstractStream
     return framer;
   }
 
+  @Override
+  public void methodResolved(String fullMethodName) {}
+
   @Override
   public final void writeHeaders(Metadata headers) {
     Preconditions.checkNotNull(headers, "headers");
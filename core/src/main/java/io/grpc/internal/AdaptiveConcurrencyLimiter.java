@@ -0,0 +1,211 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.grpc.Deadline;
+import io.grpc.InternalChannelz.ConcurrencyLimitStats;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * A server-wide limit on the number of unary calls running at once, adjusted from the latency of
+ * completed calls.
+ *
+ * <p>Like TCP Vegas, the limiter compares each successful call's latency with the smallest
+ * latency seen recently for the same method, so that slow methods are not mistaken for queueing
+ * behind fast ones. While latency stays within {@code RTT_TOLERANCE} of that minimum the limit
+ * grows by about its square root per update; once calls start queueing, the limit shrinks in
+ * proportion to how much latency has grown, by at most half. Calls that hit their deadline shrink
+ * the limit multiplicatively. Each method's minimum latency is re-measured every {@link
+ * #MIN_RTT_WINDOW_SAMPLES} of its samples so that it can follow changes in the workload.
+ *
+ * <p>Acquiring a permit is lock-free. The limit is only enforced when the server admits a call; it
+ * is not advertised to clients, as HTTP/2's {@code SETTINGS_MAX_CONCURRENT_STREAMS} would cap
+ * streaming calls too.
+ */
+public final class AdaptiveConcurrencyLimiter {
+  private static final double RTT_TOLERANCE = 2.0;
+  private static final double MIN_GRADIENT = 0.5;
+  private static final double SMOOTHING = 0.2;
+  private static final double BACKOFF_RATIO = 0.9;
+  @VisibleForTesting
+  static final int MIN_RTT_WINDOW_SAMPLES = 500;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final Deadline.Ticker ticker;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicLong rejected = new AtomicLong();
+  private volatile int limit;
+
+  private final Object lock = new Object();
+  @GuardedBy("lock")
+  private double estimatedLimit;
+  @GuardedBy("lock")
+  private final Map<String, MethodRtt> methodRtts = new HashMap<>();
+
+  /**
+   * Creates a limiter that starts at {@code initialLimit} and never goes above {@code maxLimit}.
+   */
+  public AdaptiveConcurrencyLimiter(int initialLimit, int maxLimit, Deadline.Ticker ticker) {
+    checkArgument(initialLimit > 0, "initialLimit must be positive: %s", initialLimit);
+    checkArgument(maxLimit >= initialLimit, "maxLimit must be at least initialLimit: %s", maxLimit);
+    this.minLimit = 1;
+    this.maxLimit = maxLimit;
+    this.ticker = checkNotNull(ticker, "ticker");
+    this.estimatedLimit = initialLimit;
+    this.limit = initialLimit;
+  }
+
+  /**
+   * Reserves a slot for a new call of {@code fullMethodName}, or returns {@code null} if the limit
+   * has been reached. The returned permit must be released exactly once. Only unary calls should
+   * be limited, as the latency of a streaming call depends on the peer as much as on the server.
+   */
+  @Nullable
+  public Permit tryAcquire(String fullMethodName) {
+    checkNotNull(fullMethodName, "fullMethodName");
+    while (true) {
+      int current = inFlight.get();
+      if (current >= limit) {
+        rejected.incrementAndGet();
+        return null;
+      }
+      if (inFlight.compareAndSet(current, current + 1)) {
+        return new Permit(fullMethodName, ticker.nanoTime(), current + 1);
+      }
+    }
+  }
+
+  /** Returns the number of calls currently allowed to run at once. */
+  public int getLimit() {
+    return limit;
+  }
+
+  /** Returns a snapshot of the limiter's state for channelz. */
+  public ConcurrencyLimitStats getStats() {
+    long minRtt = Long.MAX_VALUE;
+    synchronized (lock) {
+      for (MethodRtt methodRtt : methodRtts.values()) {
+        minRtt = Math.min(minRtt, methodRtt.minRttNanos);
+      }
+    }
+    return new ConcurrencyLimitStats(
+        limit, inFlight.get(), rejected.get(), minRtt == Long.MAX_VALUE ? 0 : minRtt);
+  }
+
+  @VisibleForTesting
+  void onSample(String fullMethodName, long rttNanos, int inFlightAtStart) {
+    synchronized (lock) {
+      // Only registered unary methods are limited, so the map can't grow without bound.
+      MethodRtt methodRtt = methodRtts.get(fullMethodName);
+      if (methodRtt == null) {
+        methodRtt = new MethodRtt();
+        methodRtts.put(fullMethodName, methodRtt);
+      }
+      long minRttNanos = methodRtt.addSample(rttNanos);
+      double gradient = RTT_TOLERANCE * minRttNanos / Math.max(rttNanos, 1);
+      gradient = Math.max(MIN_GRADIENT, Math.min(1.0, gradient));
+      double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+      newLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+      if (newLimit > estimatedLimit && inFlightAtStart * 2 < estimatedLimit) {
+        // The server was not using the limit, so low latency says nothing about a higher one.
+        return;
+      }
+      updateLimit(newLimit);
+    }
+  }
+
+  @VisibleForTesting
+  void onDropped() {
+    synchronized (lock) {
+      updateLimit(estimatedLimit * BACKOFF_RATIO);
+    }
+  }
+
+  @GuardedBy("lock")
+  private void updateLimit(double newLimit) {
+    estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    limit = (int) estimatedLimit;
+  }
+
+  /** The recent minimum latency of one method. */
+  private static final class MethodRtt {
+    long minRttNanos = Long.MAX_VALUE;
+    long windowMinRttNanos = Long.MAX_VALUE;
+    int windowSamples;
+
+    /** Records a sample and returns the minimum latency to compare it with. */
+    long addSample(long rttNanos) {
+      windowMinRttNanos = Math.min(windowMinRttNanos, rttNanos);
+      minRttNanos = Math.min(minRttNanos, rttNanos);
+      if (++windowSamples >= MIN_RTT_WINDOW_SAMPLES) {
+        // Forget older minimums, so the limiter adapts when the calls themselves get slower.
+        minRttNanos = windowMinRttNanos;
+        windowMinRttNanos = Long.MAX_VALUE;
+        windowSamples = 0;
+      }
+      return minRttNanos;
+    }
+  }
+
+  /** A slot held by one call. */
+  public final class Permit {
+    private final String fullMethodName;
+    private final long startNanos;
+    private final int inFlightAtStart;
+    private boolean released;
+
+    private Permit(String fullMethodName, long startNanos, int inFlightAtStart) {
+      this.fullMethodName = fullMethodName;
+      this.startNanos = startNanos;
+      this.inFlightAtStart = inFlightAtStart;
+    }
+
+    /** Releases the slot of a call that completed normally, using its latency as a sample. */
+    public void onSuccess() {
+      release();
+      onSample(fullMethodName, ticker.nanoTime() - startNanos, inFlightAtStart);
+    }
+
+    /** Releases the slot of a call that failed because the server was too slow. */
+    public void onDropped() {
+      release();
+      AdaptiveConcurrencyLimiter.this.onDropped();
+    }
+
+    /** Releases the slot of a call whose latency says nothing about the server's load. */
+    public void onIgnore() {
+      release();
+    }
+
+    private void release() {
+      checkState(!released, "Already released");
+      released = true;
+      inFlight.decrementAndGet();
+    }
+  }
+}
@@ -18,18 +18,39 @@ package io.grpc.internal;
 
 import static io.grpc.internal.TimeProvider.SYSTEM_TIME_PROVIDER;
 
+import com.google.common.annotations.VisibleForTesting;
 import io.grpc.InternalChannelz.ChannelStats;
+import io.grpc.InternalChannelz.MethodStats;
 import io.grpc.InternalChannelz.ServerStats;
+import io.grpc.KnownLength;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * A collection of call stats for channelz.
  */
 final class CallTracer {
+  /**
+   * Maximum number of methods with their own histograms. Calls to further methods share the
+   * {@link #OTHER_METHODS} entry so that a misbehaving peer can't grow the stats without bound.
+   */
+  @VisibleForTesting
+  static final int MAX_TRACED_METHODS = 128;
+  @VisibleForTesting
+  static final String OTHER_METHODS = "<other>";
+
   private final TimeProvider timeProvider;
   private final LongCounter callsStarted = LongCounterFactory.create();
   private final LongCounter callsSucceeded = LongCounterFactory.create();
   private final LongCounter callsFailed = LongCounterFactory.create();
   private volatile long lastCallStartedNanos;
+  private final ConcurrentMap<String, MethodTracer> methodTracers =
+      new ConcurrentHashMap<>();
 
   CallTracer(TimeProvider timeProvider) {
     this.timeProvider = timeProvider;
@@ -48,12 +69,48 @@ final class CallTracer {
     }
   }
 
+  /**
+   * Returns the tracer collecting histograms for the given method. Callers should look it up once
+   * per call; recording into it does not allocate.
+   *
+   * <p>Each method's histograms take about 10KB, so only channels and servers trace methods.
+   * Subchannels, of which there may be thousands, only count calls.
+   */
+  MethodTracer getMethodTracer(String fullMethodName) {
+    MethodTracer tracer = methodTracers.get(fullMethodName);
+    if (tracer != null) {
+      return tracer;
+    }
+    if (methodTracers.size() >= MAX_TRACED_METHODS) {
+      fullMethodName = OTHER_METHODS;
+      tracer = methodTracers.get(fullMethodName);
+      if (tracer != null) {
+        return tracer;
+      }
+    }
+    MethodTracer newTracer = new MethodTracer();
+    tracer = methodTracers.putIfAbsent(fullMethodName, newTracer);
+    return tracer != null ? tracer : newTracer;
+  }
+
+  private Map<String, MethodStats> getMethodStats() {
+    if (methodTracers.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    Map<String, MethodStats> methodStats = new HashMap<>();
+    for (Map.Entry<String, MethodTracer> entry : methodTracers.entrySet()) {
+      methodStats.put(entry.getKey(), entry.getValue().getStats());
+    }
+    return methodStats;
+  }
+
   void updateBuilder(ChannelStats.Builder builder) {
     builder
         .setCallsStarted(callsStarted.value())
         .setCallsSucceeded(callsSucceeded.value())
         .setCallsFailed(callsFailed.value())
-        .setLastCallStartedNanos(lastCallStartedNanos);
+        .setLastCallStartedNanos(lastCallStartedNanos)
+        .setMethodStats(getMethodStats());
   }
 
   void updateBuilder(ServerStats.Builder builder) {
@@ -61,7 +118,67 @@ final class CallTracer {
         .setCallsStarted(callsStarted.value())
         .setCallsSucceeded(callsSucceeded.value())
         .setCallsFailed(callsFailed.value())
-        .setLastCallStartedNanos(lastCallStartedNanos);
+        .setLastCallStartedNanos(lastCallStartedNanos)
+        .setMethodStats(getMethodStats());
+  }
+
+  /**
+   * Histograms for the calls of a single method.
+   */
+  static final class MethodTracer {
+    private final ConcurrentHistogram callLatencyNanos = new ConcurrentHistogram();
+    private final ConcurrentHistogram sentMessageSizeBytes = new ConcurrentHistogram();
+    private final ConcurrentHistogram receivedMessageSizeBytes = new ConcurrentHistogram();
+    private final ConcurrentHistogram queueTimeNanos = new ConcurrentHistogram();
+
+    void reportCallLatency(long nanos) {
+      callLatencyNanos.record(nanos);
+    }
+
+    /**
+     * Records the size of an outbound message, if it is cheaply known. Must be called before the
+     * message is read.
+     */
+    void reportMessageSent(InputStream message) {
+      long size = knownLength(message);
+      if (size >= 0) {
+        sentMessageSizeBytes.record(size);
+      }
+    }
+
+    /**
+     * Records the size of an inbound message, if it is cheaply known. Must be called before the
+     * message is read.
+     */
+    void reportMessageReceived(InputStream message) {
+      long size = knownLength(message);
+      if (size >= 0) {
+        receivedMessageSizeBytes.record(size);
+      }
+    }
+
+    private static long knownLength(InputStream message) {
+      if (!(message instanceof KnownLength)) {
+        return -1;
+      }
+      try {
+        return message.available();
+      } catch (IOException e) {
+        return -1;
+      }
+    }
+
+    void reportQueueTime(long nanos) {
+      queueTimeNanos.record(nanos);
+    }
+
+    MethodStats getStats() {
+      return new MethodStats(
+          callLatencyNanos.snapshot(),
+          sentMessageSizeBytes.snapshot(),
+          receivedMessageSizeBytes.snapshot(),
+          queueTimeNanos.snapshot());
+    }
   }
 
   public interface Factory {
@@ -81,6 +81,8 @@ final class ClientCallImpl<ReqT, RespT> extends ClientCall<ReqT, RespT> {
   private final Executor callExecutor;
   private final boolean callExecutorIsDirect;
   private final CallTracer channelCallsTracer;
+  private final CallTracer.MethodTracer methodTracer;
+  private long callStartNanos;
   private final Context context;
   private final boolean unaryRequest;
   private final CallOptions callOptions;
@@ -119,6 +121,7 @@ final class ClientCallImpl<ReqT, RespT> extends ClientCall<ReqT, RespT> {
       callExecutorIsDirect = false;
     }
     this.channelCallsTracer = channelCallsTracer;
+    this.methodTracer = channelCallsTracer.getMethodTracer(method.getFullMethodName());
     // Propagate the context from the thread which initiated the call to all callbacks.
     this.context = Context.current();
     this.unaryRequest = method.getType() == MethodType.UNARY
@@ -290,7 +293,11 @@ final class ClientCallImpl<ReqT, RespT> extends ClientCall<ReqT, RespT> {
       stream.setFullStreamDecompression(fullStreamDecompression);
     }
     stream.setDecompressorRegistry(decompressorRegistry);
+    if (stream instanceof RetriableStream) {
+      ((RetriableStream<?>) stream).setMethodTracer(methodTracer);
+    }
     channelCallsTracer.reportCallStarted();
+    callStartNanos = System.nanoTime();
     cancellationListener = new ContextCancellationListener(observer);
     stream.start(new ClientStreamListenerImpl(observer));
 
@@ -541,7 +548,9 @@ final class ClientCallImpl<ReqT, RespT> extends ClientCall<ReqT, RespT> {
         RetriableStream<ReqT> retriableStream = (RetriableStream<ReqT>) stream;
         retriableStream.sendMessage(message);
       } else {
-        stream.writeMessage(method.streamRequest(message));
+        InputStream serialized = method.streamRequest(message);
+        methodTracer.reportMessageSent(serialized);
+        stream.writeMessage(serialized);
       }
     } catch (RuntimeException e) {
       stream.cancel(Status.CANCELLED.withCause(e).withDescription("Failed to stream message"));
@@ -672,6 +681,7 @@ final class ClientCallImpl<ReqT, RespT> extends ClientCall<ReqT, RespT> {
           try {
             InputStream message;
             while ((message = producer.next()) != null) {
+              methodTracer.reportMessageReceived(message);
               try {
                 observer.onMessage(method.parseResponse(message));
               } catch (Throwable t) {
@@ -764,6 +774,7 @@ final class ClientCallImpl<ReqT, RespT> extends ClientCall<ReqT, RespT> {
           } finally {
             removeContextListenerAndCancelDeadlineFuture();
             channelCallsTracer.reportCallEnded(status.isOk());
+            methodTracer.reportCallLatency(System.nanoTime() - callStartNanos);
           }
         }
       }
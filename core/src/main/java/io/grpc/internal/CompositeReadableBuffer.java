@@ -20,8 +20,10 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.nio.InvalidMarkException;
 import java.util.ArrayDeque;
-import java.util.Queue;
+import java.util.Deque;
+import javax.annotation.Nullable;
 
 /**
  * A {@link ReadableBuffer} that is composed of 0 or more {@link ReadableBuffer}s. This provides a
@@ -29,12 +31,20 @@ import java.util.Queue;
  *
  * <p>When a buffer is added to a composite, its life cycle is controlled by the composite. Once
  * the composite has read past the end of a given buffer, that buffer is automatically closed and
- * removed from the composite.
+ * removed from the composite, unless a {@link #mark} is set, in which case it is retained until the
+ * composite is closed or marked again.
  */
 public class CompositeReadableBuffer extends AbstractReadableBuffer {
 
   private int readableBytes;
-  private final Queue<ReadableBuffer> buffers = new ArrayDeque<>();
+  private final Deque<ReadableBuffer> buffers = new ArrayDeque<>();
+  /**
+   * Buffers that were read past while marked. Retained so that {@link #reset} can rewind them and
+   * so that {@link ByteBuffer}s obtained from them remain valid.
+   */
+  @Nullable
+  private Deque<ReadableBuffer> rewindableBuffers;
+  private boolean marked;
 
   /**
    * Adds a new {@link ReadableBuffer} at the end of the buffer list. After a buffer is added, it is
@@ -44,6 +54,9 @@ public class CompositeReadableBuffer extends AbstractReadableBuffer {
    */
   public void addBuffer(ReadableBuffer buffer) {
     if (!(buffer instanceof CompositeReadableBuffer)) {
+      if (marked && buffers.isEmpty()) {
+        buffer.mark();
+      }
       buffers.add(buffer);
       readableBytes += buffer.readableBytes();
       return;
@@ -52,6 +65,9 @@ public class CompositeReadableBuffer extends AbstractReadableBuffer {
     CompositeReadableBuffer compositeBuffer = (CompositeReadableBuffer) buffer;
     while (!compositeBuffer.buffers.isEmpty()) {
       ReadableBuffer subBuffer = compositeBuffer.buffers.remove();
+      if (marked && buffers.isEmpty()) {
+        subBuffer.mark();
+      }
       buffers.add(subBuffer);
     }
     readableBytes += compositeBuffer.readableBytes;
@@ -144,22 +160,98 @@ public class CompositeReadableBuffer extends AbstractReadableBuffer {
     CompositeReadableBuffer newBuffer = new CompositeReadableBuffer();
     while (length > 0) {
       ReadableBuffer buffer = buffers.peek();
-      if (buffer.readableBytes() > length) {
+      int readable = buffer.readableBytes();
+      if (readable > length) {
         newBuffer.addBuffer(buffer.readBytes(length));
         length = 0;
       } else {
-        newBuffer.addBuffer(buffers.poll());
-        length -= buffer.readableBytes();
+        if (marked) {
+          // Keep the original around so that it can be rewound.
+          newBuffer.addBuffer(buffer.readBytes(readable));
+          advanceBuffer();
+        } else {
+          newBuffer.addBuffer(buffers.poll());
+        }
+        length -= readable;
       }
     }
     return newBuffer;
   }
 
+  @Override
+  public boolean markSupported() {
+    for (ReadableBuffer buffer : buffers) {
+      if (!buffer.markSupported()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void mark() {
+    if (rewindableBuffers == null) {
+      rewindableBuffers = new ArrayDeque<>(Math.min(buffers.size(), 16));
+    }
+    while (!rewindableBuffers.isEmpty()) {
+      rewindableBuffers.remove().close();
+    }
+    marked = true;
+    ReadableBuffer buffer = buffers.peek();
+    if (buffer != null) {
+      buffer.mark();
+    }
+  }
+
+  @Override
+  public void reset() {
+    if (!marked) {
+      throw new InvalidMarkException();
+    }
+    ReadableBuffer buffer = buffers.peek();
+    if (buffer != null) {
+      int currentRemaining = buffer.readableBytes();
+      buffer.reset();
+      readableBytes += buffer.readableBytes() - currentRemaining;
+    }
+    while ((buffer = rewindableBuffers.pollLast()) != null) {
+      buffer.reset();
+      buffers.addFirst(buffer);
+      readableBytes += buffer.readableBytes();
+    }
+  }
+
+  @Override
+  public boolean byteBufferSupported() {
+    for (ReadableBuffer buffer : buffers) {
+      if (!buffer.byteBufferSupported()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Nullable
+  @Override
+  public ByteBuffer getByteBuffer() {
+    // Skip over exhausted buffers so the returned ByteBuffer always has remaining bytes.
+    while (!buffers.isEmpty() && buffers.peek().readableBytes() == 0) {
+      advanceBuffer();
+    }
+    ReadableBuffer buffer = buffers.peek();
+    return buffer == null ? null : buffer.getByteBuffer();
+  }
+
   @Override
   public void close() {
     while (!buffers.isEmpty()) {
       buffers.remove().close();
     }
+    if (rewindableBuffers != null) {
+      while (!rewindableBuffers.isEmpty()) {
+        rewindableBuffers.remove().close();
+      }
+    }
   }
 
   /**
@@ -194,11 +286,24 @@ public class CompositeReadableBuffer extends AbstractReadableBuffer {
   }
 
   /**
-   * If the current buffer is exhausted, removes and closes it.
+   * If the current buffer is exhausted, removes it and either closes it or, when marked, retains it
+   * for rewinding.
    */
   private void advanceBufferIfNecessary() {
     ReadableBuffer buffer = buffers.peek();
     if (buffer.readableBytes() == 0) {
+      advanceBuffer();
+    }
+  }
+
+  private void advanceBuffer() {
+    if (marked) {
+      rewindableBuffers.add(buffers.remove());
+      ReadableBuffer next = buffers.peek();
+      if (next != null) {
+        next.mark();
+      }
+    } else {
       buffers.remove().close();
     }
   }
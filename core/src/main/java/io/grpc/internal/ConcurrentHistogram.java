@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.grpc.internal;
+
+import io.grpc.InternalChannelz.Histogram;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size, lock-free histogram of non-negative longs. Values are bucketed log-linearly: each
+ * power-of-two range is split into {@value #SUB_BUCKETS} equal sub-buckets, so a bucket's upper
+ * bound is within 12.5% of any value in it. Values below {@value #SUB_BUCKETS} get exact buckets
+ * and values above {@link #MAX_TRACKABLE_VALUE} are counted in the last bucket. {@link #record}
+ * never allocates.
+ */
+final class ConcurrentHistogram {
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 40;
+  // About 18 minutes in nanoseconds, or 2 TiB in bytes.
+  static final long MAX_TRACKABLE_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+  static final int BUCKETS = bucketIndex(MAX_TRACKABLE_VALUE) + 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongCounter sum = LongCounterFactory.create();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records a value. Negative values are recorded as {@code 0}.
+   */
+  void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    counts.incrementAndGet(bucketIndex(Math.min(value, MAX_TRACKABLE_VALUE)));
+    sum.add(value);
+    long currentMax;
+    while (value > (currentMax = max.get())) {
+      if (max.compareAndSet(currentMax, value)) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Returns a snapshot of the non-empty buckets. Values recorded concurrently may or may not be
+   * included.
+   */
+  Histogram snapshot() {
+    long[] snapshotCounts = new long[BUCKETS];
+    int nonEmpty = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshotCounts[i] = counts.get(i);
+      if (snapshotCounts[i] != 0) {
+        nonEmpty++;
+      }
+    }
+    if (nonEmpty == 0) {
+      return Histogram.EMPTY;
+    }
+    long[] bucketUpperBounds = new long[nonEmpty];
+    long[] bucketCounts = new long[nonEmpty];
+    int j = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      if (snapshotCounts[i] != 0) {
+        bucketUpperBounds[j] = bucketUpperBound(i);
+        bucketCounts[j] = snapshotCounts[i];
+        j++;
+      }
+    }
+    return new Histogram(bucketUpperBounds, bucketCounts, sum.value(), max.get());
+  }
+
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + subBucket;
+  }
+
+  static long bucketUpperBound(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int exponent = (index >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+    long subBucket = index & (SUB_BUCKETS - 1);
+    int shift = exponent - SUB_BUCKET_BITS;
+    return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+  }
+}
@@ -48,4 +48,10 @@ public interface Framer {
 
   /** Set a size limit for each outbound message. */ 
   void setMaxOutboundMessageSize(int maxSize);
+
+  /**
+   * Set the estimator used to size buffers for messages whose framed length is not known up front.
+   * The framer also records the sizes of such messages to it.
+   */
+  void setMessageSizeEstimator(MessageSizeEstimator estimator);
 }
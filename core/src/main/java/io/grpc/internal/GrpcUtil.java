@@ -538,6 +538,15 @@ public final class GrpcUtil {
         }
       };
 
+  /**
+   * Whether {@link #TIMER_SERVICE} should be a {@link HashedWheelTimerService} instead of a
+   * {@link java.util.concurrent.ScheduledThreadPoolExecutor}. The wheel avoids contention when
+   * many RPCs schedule and cancel deadlines concurrently, at the cost of 10ms timer precision.
+   */
+  private static final boolean USE_TIMER_WHEEL =
+      Boolean.parseBoolean(
+          System.getProperty("io.grpc.internal.GrpcUtil.useHashedWheelTimer", "false"));
+
   /**
    * Shared single-threaded executor for managing channel timers.
    */
@@ -545,6 +554,10 @@ public final class GrpcUtil {
       new Resource<ScheduledExecutorService>() {
         @Override
         public ScheduledExecutorService create() {
+          if (USE_TIMER_WHEEL) {
+            return new HashedWheelTimerService(
+                getThreadFactory("grpc-timer-%d", true), 10, TimeUnit.MILLISECONDS, 512);
+          }
           // We don't use newSingleThreadScheduledExecutor because it doesn't return a
           // ScheduledThreadPoolExecutor.
           ScheduledExecutorService service = Executors.newScheduledThreadPool(
@@ -0,0 +1,410 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link ScheduledExecutorService} backed by a hashed timing wheel. Scheduling and cancelling
+ * only append to lock-free queues, so both are O(1) and don't contend on a shared heap the way
+ * {@link java.util.concurrent.ScheduledThreadPoolExecutor} does. A single timer thread moves new
+ * tasks onto the wheel, unlinks cancelled ones and runs every task that expired, once per tick.
+ *
+ * <p>Tasks therefore run up to one tick late, and may run in any order within a tick. This suits
+ * large numbers of coarse timeouts that are mostly cancelled before they fire, like RPC deadlines
+ * and keepalives; it does not suit timers that need sub-tick precision. Like the timer thread of a
+ * {@code ScheduledThreadPoolExecutor}, tasks run on the timer thread itself and so must be short.
+ *
+ * <p>After {@link #shutdown}, delayed tasks that were already scheduled still run but periodic
+ * tasks stop. {@link #shutdownNow} returns the tasks that had not reached the wheel yet and cancels
+ * the rest.
+ */
+public final class HashedWheelTimerService extends AbstractExecutorService
+    implements ScheduledExecutorService {
+  private static final int RUNNING = 0;
+  private static final int SHUTDOWN = 1;
+  private static final int STOP = 2;
+
+  private final long tickNanos;
+  private final Bucket[] wheel;
+  private final int mask;
+  private final long startNanos;
+  private final Thread workerThread;
+  private final Queue<WheelTask<?>> pendingTasks = new ConcurrentLinkedQueue<>();
+  private final Queue<WheelTask<?>> cancelledTasks = new ConcurrentLinkedQueue<>();
+  private final CountDownLatch terminated = new CountDownLatch(1);
+
+  private volatile int state = RUNNING;
+
+  // Only accessed by the worker thread
+  private long tick;
+  private int tasksOnWheel;
+
+  /**
+   * Creates a timer and starts its thread.
+   *
+   * @param threadFactory creates the timer thread
+   * @param tickDuration how often expired tasks are run; the precision of the timer
+   * @param ticksPerWheel number of buckets in the wheel, rounded up to a power of two. Timeouts
+   *     longer than {@code tickDuration * ticksPerWheel} take multiple turns of the wheel
+   */
+  public HashedWheelTimerService(
+      ThreadFactory threadFactory, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+    checkNotNull(threadFactory, "threadFactory");
+    checkArgument(tickDuration > 0, "tickDuration must be positive");
+    checkArgument(
+        ticksPerWheel > 0 && ticksPerWheel <= 1 << 30, "ticksPerWheel out of range: %s",
+        ticksPerWheel);
+    this.tickNanos = unit.toNanos(tickDuration);
+    int size = Integer.highestOneBit(ticksPerWheel);
+    if (size < ticksPerWheel) {
+      size <<= 1;
+    }
+    this.wheel = new Bucket[size];
+    for (int i = 0; i < size; i++) {
+      wheel[i] = new Bucket();
+    }
+    this.mask = size - 1;
+    this.startNanos = System.nanoTime();
+    this.workerThread = threadFactory.newThread(new Worker());
+    workerThread.start();
+  }
+
+  @Override
+  public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+    checkNotNull(command, "command");
+    return enqueue(new WheelTask<Void>(command, null, deadline(delay, unit), 0));
+  }
+
+  @Override
+  public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+    checkNotNull(callable, "callable");
+    return enqueue(new WheelTask<V>(callable, deadline(delay, unit), 0));
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleAtFixedRate(
+      Runnable command, long initialDelay, long period, TimeUnit unit) {
+    checkNotNull(command, "command");
+    checkArgument(period > 0, "period must be positive");
+    return enqueue(
+        new WheelTask<Void>(command, null, deadline(initialDelay, unit), unit.toNanos(period)));
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleWithFixedDelay(
+      Runnable command, long initialDelay, long delay, TimeUnit unit) {
+    checkNotNull(command, "command");
+    checkArgument(delay > 0, "delay must be positive");
+    return enqueue(
+        new WheelTask<Void>(command, null, deadline(initialDelay, unit), -unit.toNanos(delay)));
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    schedule(command, 0, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void shutdown() {
+    if (state == RUNNING) {
+      state = SHUTDOWN;
+    }
+    LockSupport.unpark(workerThread);
+  }
+
+  @Override
+  public List<Runnable> shutdownNow() {
+    state = STOP;
+    List<Runnable> notStarted = new ArrayList<>();
+    WheelTask<?> task;
+    while ((task = pendingTasks.poll()) != null) {
+      if (!task.isCancelled()) {
+        notStarted.add(task);
+      }
+    }
+    LockSupport.unpark(workerThread);
+    return notStarted;
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return state != RUNNING;
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return terminated.getCount() == 0;
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return terminated.await(timeout, unit);
+  }
+
+  private long now() {
+    return System.nanoTime() - startNanos;
+  }
+
+  private long deadline(long delay, TimeUnit unit) {
+    long delayNanos = unit.toNanos(Math.max(0, delay));
+    long now = now();
+    long deadline = now + delayNanos;
+    // Guard against overflow for very long delays
+    return deadline < now ? Long.MAX_VALUE : deadline;
+  }
+
+  private <V> WheelTask<V> enqueue(WheelTask<V> task) {
+    if (state != RUNNING) {
+      throw new RejectedExecutionException("Timer has been shut down");
+    }
+    pendingTasks.add(task);
+    // Lost a race with shutdown; the worker may already be gone
+    if (state != RUNNING && pendingTasks.remove(task)) {
+      throw new RejectedExecutionException("Timer has been shut down");
+    }
+    return task;
+  }
+
+  private final class Worker implements Runnable {
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          waitForNextTick();
+          int state = HashedWheelTimerService.this.state;
+          if (state == STOP) {
+            break;
+          }
+          transferPendingTasks();
+          removeCancelledTasks();
+          expireBucket(wheel[(int) (tick & mask)]);
+          tick++;
+          if (state == SHUTDOWN && tasksOnWheel == 0 && pendingTasks.isEmpty()) {
+            break;
+          }
+        }
+        for (Bucket bucket : wheel) {
+          bucket.cancelAll();
+        }
+        WheelTask<?> task;
+        while ((task = pendingTasks.poll()) != null) {
+          task.cancel(false);
+        }
+      } finally {
+        terminated.countDown();
+      }
+    }
+
+    private void waitForNextTick() {
+      long deadline = tickNanos * (tick + 1);
+      while (state != STOP) {
+        long sleepNanos = deadline - now();
+        if (sleepNanos <= 0) {
+          return;
+        }
+        LockSupport.parkNanos(this, sleepNanos);
+        if (state != RUNNING && tasksOnWheel == 0 && pendingTasks.isEmpty()) {
+          return;
+        }
+      }
+    }
+
+    private void transferPendingTasks() {
+      WheelTask<?> task;
+      while ((task = pendingTasks.poll()) != null) {
+        if (!task.isCancelled()) {
+          if (state != RUNNING && task.isPeriodic()) {
+            task.cancel(false);
+          } else {
+            place(task);
+          }
+        }
+      }
+    }
+
+    private void removeCancelledTasks() {
+      WheelTask<?> task;
+      while ((task = cancelledTasks.poll()) != null) {
+        if (task.bucket != null) {
+          task.bucket.remove(task);
+          tasksOnWheel--;
+        }
+      }
+    }
+
+    private void place(WheelTask<?> task) {
+      long expirationTick = task.deadlineNanos / tickNanos;
+      task.remainingRounds = (expirationTick - tick) / wheel.length;
+      // Tasks whose deadline already passed go in the current bucket and run this tick
+      long placementTick = Math.max(expirationTick, tick);
+      wheel[(int) (placementTick & mask)].add(task);
+      tasksOnWheel++;
+    }
+
+    private void expireBucket(Bucket bucket) {
+      WheelTask<?> task = bucket.head;
+      while (task != null) {
+        WheelTask<?> next = task.next;
+        if (task.remainingRounds <= 0) {
+          bucket.remove(task);
+          tasksOnWheel--;
+          runTask(task);
+        } else {
+          task.remainingRounds--;
+        }
+        task = next;
+      }
+    }
+
+    private void runTask(WheelTask<?> task) {
+      if (!task.isPeriodic()) {
+        task.run();
+        return;
+      }
+      if (state != RUNNING) {
+        task.cancel(false);
+        return;
+      }
+      if (task.runAndReset()) {
+        task.deadlineNanos = task.period > 0
+            ? task.deadlineNanos + task.period : deadline(-task.period, TimeUnit.NANOSECONDS);
+        place(task);
+      }
+    }
+  }
+
+  private final class WheelTask<V> extends FutureTask<V> implements ScheduledFuture<V> {
+    /**
+     * Zero for one-shot tasks, positive for fixed-rate tasks and negative for fixed-delay tasks.
+     */
+    final long period;
+    volatile long deadlineNanos;
+
+    // Only accessed by the worker thread
+    long remainingRounds;
+    @Nullable Bucket bucket;
+    @Nullable WheelTask<?> prev;
+    @Nullable WheelTask<?> next;
+
+    WheelTask(Runnable runnable, V result, long deadlineNanos, long period) {
+      super(runnable, result);
+      this.deadlineNanos = deadlineNanos;
+      this.period = period;
+    }
+
+    WheelTask(Callable<V> callable, long deadlineNanos, long period) {
+      super(callable);
+      this.deadlineNanos = deadlineNanos;
+      this.period = period;
+    }
+
+    boolean isPeriodic() {
+      return period != 0;
+    }
+
+    @Override
+    public boolean runAndReset() {
+      return super.runAndReset();
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(deadlineNanos - now(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      if (other == this) {
+        return 0;
+      }
+      long diff = getDelay(TimeUnit.NANOSECONDS) - other.getDelay(TimeUnit.NANOSECONDS);
+      return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      boolean cancelled = super.cancel(mayInterruptIfRunning);
+      if (cancelled) {
+        cancelledTasks.add(this);
+      }
+      return cancelled;
+    }
+  }
+
+  /** Doubly-linked list of the tasks in one slot of the wheel. Only used by the worker thread. */
+  private static final class Bucket {
+    @Nullable WheelTask<?> head;
+    @Nullable WheelTask<?> tail;
+
+    void add(WheelTask<?> task) {
+      task.bucket = this;
+      task.prev = tail;
+      task.next = null;
+      if (tail == null) {
+        head = task;
+      } else {
+        tail.next = task;
+      }
+      tail = task;
+    }
+
+    void remove(WheelTask<?> task) {
+      if (task.prev == null) {
+        head = task.next;
+      } else {
+        task.prev.next = task.next;
+      }
+      if (task.next == null) {
+        tail = task.prev;
+      } else {
+        task.next.prev = task.prev;
+      }
+      task.bucket = null;
+      task.prev = null;
+      task.next = null;
+    }
+
+    void cancelAll() {
+      WheelTask<?> task = head;
+      while (task != null) {
+        WheelTask<?> next = task.next;
+        remove(task);
+        task.cancel(false);
+        task = next;
+      }
+    }
+  }
+}
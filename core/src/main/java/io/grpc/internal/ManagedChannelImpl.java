@@ -561,6 +561,12 @@ final class ManagedChannelImpl extends ManagedChannel implements
     this.timeProvider = checkNotNull(timeProvider, "timeProvider");
     this.executorPool = checkNotNull(builder.executorPool, "executorPool");
     this.executor = checkNotNull(executorPool.getObject(), "executor");
+    if (builder.maxConnectionsPerSubchannel > 1) {
+      clientTransportFactory = new MultiConnectionTransportFactory(
+          clientTransportFactory,
+          builder.maxConnectionsPerSubchannel,
+          builder.maxStreamsPerConnection);
+    }
     this.transportFactory =
         new CallCredentialsApplyingTransportFactory(clientTransportFactory, this.executor);
     this.scheduledExecutor =
@@ -79,6 +79,8 @@ public class MessageFramer implements Framer {
   private final byte[] headerScratch = new byte[HEADER_LENGTH];
   private final WritableBufferAllocator bufferAllocator;
   private final StatsTraceContext statsTraceCtx;
+  @Nullable
+  private MessageSizeEstimator sizeEstimator;
   // transportTracer is nullable until it is integrated with client transports
   private boolean closed;
 
@@ -118,6 +120,11 @@ public class MessageFramer implements Framer {
     maxOutboundMessageSize = maxSize;
   }
 
+  @Override
+  public void setMessageSizeEstimator(MessageSizeEstimator estimator) {
+    sizeEstimator = checkNotNull(estimator, "estimator");
+  }
+
   /**
    * Writes out a payload message.
    *
@@ -167,7 +174,7 @@ public class MessageFramer implements Framer {
       currentMessageWireSize = messageLength;
       return writeKnownLengthUncompressed(message, messageLength);
     }
-    BufferChainOutputStream bufferChain = new BufferChainOutputStream();
+    BufferChainOutputStream bufferChain = newBufferChain();
     int written = writeToOutputStream(message, bufferChain);
     if (maxOutboundMessageSize >= 0 && written > maxOutboundMessageSize) {
       throw Status.RESOURCE_EXHAUSTED
@@ -180,7 +187,7 @@ public class MessageFramer implements Framer {
   }
 
   private int writeCompressed(InputStream message, int unusedMessageLength) throws IOException {
-    BufferChainOutputStream bufferChain = new BufferChainOutputStream();
+    BufferChainOutputStream bufferChain = newBufferChain();
 
     OutputStream compressingStream = compressor.compress(bufferChain);
     int written;
@@ -200,6 +207,10 @@ public class MessageFramer implements Framer {
     return written;
   }
 
+  private BufferChainOutputStream newBufferChain() {
+    return new BufferChainOutputStream(sizeEstimator == null ? 0 : sizeEstimator.estimate());
+  }
+
   private int getKnownLength(InputStream inputStream) throws IOException {
     if (inputStream instanceof KnownLength || inputStream instanceof ByteArrayInputStream) {
       return inputStream.available();
@@ -238,6 +249,9 @@ public class MessageFramer implements Framer {
     header.put(compressed ? COMPRESSED : UNCOMPRESSED);
     int messageLength = bufferChain.readableBytes();
     header.putInt(messageLength);
+    if (sizeEstimator != null) {
+      sizeEstimator.record(messageLength);
+    }
     WritableBuffer writeableHeader = bufferAllocator.allocate(HEADER_LENGTH);
     writeableHeader.write(headerScratch, 0, header.position());
     if (messageLength == 0) {
@@ -378,14 +392,36 @@ public class MessageFramer implements Framer {
     }
   }
 
+  /**
+   * Rounds a size guess up to a power of two. Pooled allocators hand out power-of-two chunks, so
+   * this lets a chain of guessed buffers use the whole chunk instead of leaving slack behind.
+   * Buffers for messages of known length are requested at their exact size instead.
+   */
+  private static int roundUpToPowerOfTwo(int value) {
+    int highestOneBit = Integer.highestOneBit(value);
+    if (value == highestOneBit || highestOneBit == 1 << 30) {
+      return value;
+    }
+    return highestOneBit << 1;
+  }
+
   /**
    * Produce a collection of {@link WritableBuffer} instances from the data written to an
    * {@link OutputStream}.
    */
   private final class BufferChainOutputStream extends OutputStream {
     private final List<WritableBuffer> bufferList = new ArrayList<>();
+    private final int initialCapacityHint;
     private WritableBuffer current;
 
+    /**
+     * Creates a chain whose first buffer is requested with at least {@code initialCapacityHint}
+     * bytes, so that a message of about the expected size fits in a single buffer.
+     */
+    BufferChainOutputStream(int initialCapacityHint) {
+      this.initialCapacityHint = initialCapacityHint;
+    }
+
     /**
      * This is slow, don't call it.  If you care about write overhead, use a BufferedOutputStream.
      * Better yet, you can use your own single byte buffer and call
@@ -404,8 +440,9 @@ public class MessageFramer implements Framer {
     @Override
     public void write(byte[] b, int off, int len) {
       if (current == null) {
-        // Request len bytes initially from the allocator, it may give us more.
-        current = bufferAllocator.allocate(len);
+        // Request len bytes initially from the allocator, or the expected message size if larger.
+        // It may give us more.
+        current = bufferAllocator.allocate(roundUpToPowerOfTwo(Math.max(len, initialCapacityHint)));
         bufferList.add(current);
       }
       while (len > 0) {
@@ -414,7 +451,7 @@ public class MessageFramer implements Framer {
           // Assume message is twice as large as previous assumption if were still not done,
           // the allocator may allocate more or less than this amount.
           int needed = Math.max(len, current.readableBytes() * 2);
-          current = bufferAllocator.allocate(needed);
+          current = bufferAllocator.allocate(roundUpToPowerOfTwo(needed));
           bufferList.add(current);
         } else {
           current.write(b, off, canWrite);
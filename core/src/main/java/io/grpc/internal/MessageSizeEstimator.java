@@ -0,0 +1,168 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Learns the typical serialized size of the messages written for a method, so that {@link
+ * MessageFramer} can size the first buffer of a message whose length is not known in advance (or
+ * that is compressed) large enough to avoid building a chain of buffers.
+ *
+ * <p>Sizes are kept in a running histogram of power-of-two size classes. The histogram decays as
+ * new samples arrive, so the estimate follows changes in the traffic.
+ */
+@ThreadSafe
+public final class MessageSizeEstimator {
+  /** Size classes cover {@code (2^(k-1), 2^k]}, with class 0 holding sizes 0 and 1. */
+  private static final int NUM_SIZE_CLASSES = 32;
+  /** The estimate is recomputed on each of the first samples, so it is useful early on. */
+  @VisibleForTesting
+  static final int WARMUP_SAMPLES = 8;
+  /** After warmup, the estimate is recomputed and the histogram halved this often. */
+  @VisibleForTesting
+  static final int RECOMPUTE_INTERVAL = 64;
+  /** The fraction of recent messages that should fit in the estimated size. */
+  private static final double PERCENTILE = 0.9;
+
+  private final AtomicIntegerArray counts = new AtomicIntegerArray(NUM_SIZE_CLASSES);
+  private final AtomicInteger samples = new AtomicInteger();
+  private final int maxEstimate;
+  private volatile int estimate;
+
+  /**
+   * Creates an estimator.
+   *
+   * @param maxEstimate upper bound on {@link #estimate}, typically the largest buffer the transport
+   *     is willing to allocate at once.
+   */
+  public MessageSizeEstimator(int maxEstimate) {
+    checkArgument(maxEstimate > 0, "maxEstimate must be positive");
+    this.maxEstimate = maxEstimate;
+  }
+
+  /**
+   * Records the serialized size of a message that was written.
+   */
+  public void record(int size) {
+    counts.incrementAndGet(sizeClass(size));
+    int n = samples.incrementAndGet();
+    if (n <= WARMUP_SAMPLES) {
+      recompute(false);
+    } else if (n % RECOMPUTE_INTERVAL == 0) {
+      recompute(true);
+    }
+  }
+
+  /**
+   * Returns a size large enough for most recently recorded messages, rounded up to a power of two,
+   * or {@code 0} if nothing has been recorded yet.
+   */
+  public int estimate() {
+    return estimate;
+  }
+
+  /**
+   * Computes the estimate from the current histogram. Concurrent updates may be partially missed,
+   * which only makes the estimate slightly stale.
+   */
+  private void recompute(boolean decay) {
+    int[] snapshot = new int[NUM_SIZE_CLASSES];
+    long total = 0;
+    for (int i = 0; i < NUM_SIZE_CLASSES; i++) {
+      snapshot[i] = counts.get(i);
+      total += snapshot[i];
+    }
+    if (total == 0) {
+      return;
+    }
+    long threshold = (long) Math.ceil(total * PERCENTILE);
+    long seen = 0;
+    int sizeClass = 0;
+    for (; sizeClass < NUM_SIZE_CLASSES - 1; sizeClass++) {
+      seen += snapshot[sizeClass];
+      if (seen >= threshold) {
+        break;
+      }
+    }
+    estimate = (int) Math.min(maxEstimate, 1L << sizeClass);
+    if (decay) {
+      for (int i = 0; i < NUM_SIZE_CLASSES; i++) {
+        if (snapshot[i] != 0) {
+          counts.addAndGet(i, -(snapshot[i] - snapshot[i] / 2));
+        }
+      }
+    }
+  }
+
+  @VisibleForTesting
+  static int sizeClass(int size) {
+    if (size <= 1) {
+      return 0;
+    }
+    return Math.min(NUM_SIZE_CLASSES - 1, 32 - Integer.numberOfLeadingZeros(size - 1));
+  }
+
+  /**
+   * A bounded collection of estimators keyed by full method name. Once full, unknown methods get no
+   * estimator rather than evicting learned ones.
+   */
+  @ThreadSafe
+  public static final class Registry {
+    private final ConcurrentMap<String, MessageSizeEstimator> estimators =
+        new ConcurrentHashMap<>();
+    private final int maxMethods;
+    private final int maxEstimate;
+
+    /**
+     * Creates a registry.
+     *
+     * @param maxMethods the maximum number of methods to keep estimators for
+     * @param maxEstimate passed to each {@link MessageSizeEstimator}
+     */
+    public Registry(int maxMethods, int maxEstimate) {
+      checkArgument(maxMethods > 0, "maxMethods must be positive");
+      this.maxMethods = maxMethods;
+      this.maxEstimate = maxEstimate;
+    }
+
+    /**
+     * Returns the estimator for the method, creating it if needed, or {@code null} if the registry
+     * is full.
+     */
+    @Nullable
+    public MessageSizeEstimator get(String fullMethodName) {
+      checkNotNull(fullMethodName, "fullMethodName");
+      MessageSizeEstimator estimator = estimators.get(fullMethodName);
+      if (estimator != null || estimators.size() >= maxMethods) {
+        return estimator;
+      }
+      estimator = new MessageSizeEstimator(maxEstimate);
+      MessageSizeEstimator existing = estimators.putIfAbsent(fullMethodName, estimator);
+      return existing != null ? existing : estimator;
+    }
+  }
+}
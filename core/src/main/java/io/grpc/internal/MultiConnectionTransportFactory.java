@@ -0,0 +1,372 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.grpc.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.ChannelLogger;
+import io.grpc.ChannelLogger.ChannelLogLevel;
+import io.grpc.InternalChannelz.SocketStats;
+import io.grpc.InternalLogId;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * A {@link ClientTransportFactory} whose transports are backed by up to {@code maxConnections}
+ * connections to the same address, so a subchannel isn't limited by the peer's
+ * {@code MAX_CONCURRENT_STREAMS} on a single connection.
+ *
+ * <p>The first connection is the transport's identity: its readiness, shutdown, attributes, stats
+ * and pings are those of the transport. Extra connections are opened one at a time, when every
+ * ready connection has at least {@code maxStreamsPerConnection} active streams, and are shut
+ * down along with the first connection. A failed extra connection is dropped without affecting
+ * the transport.
+ */
+final class MultiConnectionTransportFactory implements ClientTransportFactory {
+  private final ClientTransportFactory delegate;
+  private final int maxConnections;
+  private final int maxStreamsPerConnection;
+
+  MultiConnectionTransportFactory(
+      ClientTransportFactory delegate, int maxConnections, int maxStreamsPerConnection) {
+    this.delegate = checkNotNull(delegate, "delegate");
+    checkArgument(maxConnections >= 1, "maxConnections must be at least 1");
+    checkArgument(maxStreamsPerConnection >= 1, "maxStreamsPerConnection must be at least 1");
+    this.maxConnections = maxConnections;
+    this.maxStreamsPerConnection = maxStreamsPerConnection;
+  }
+
+  @Override
+  public ConnectionClientTransport newClientTransport(
+      SocketAddress serverAddress, ClientTransportOptions options, ChannelLogger channelLogger) {
+    return new MultiConnectionTransport(serverAddress, options, channelLogger);
+  }
+
+  @Override
+  public ScheduledExecutorService getScheduledExecutorService() {
+    return delegate.getScheduledExecutorService();
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+  }
+
+  /** One of the connections of a {@link MultiConnectionTransport}. */
+  private static final class Connection {
+    final ConnectionClientTransport transport;
+    boolean ready;
+    boolean shutdown;
+    boolean shutdownCalled;
+    boolean inUse;
+    int activeStreams;
+
+    Connection(ConnectionClientTransport transport) {
+      this.transport = transport;
+    }
+  }
+
+  @VisibleForTesting
+  final class MultiConnectionTransport implements ConnectionClientTransport {
+    private final SocketAddress serverAddress;
+    private final ClientTransportOptions options;
+    private final ChannelLogger channelLogger;
+    private final Connection primary;
+    private final Object lock = new Object();
+    private Listener listener;
+    @GuardedBy("lock")
+    private final List<Connection> connections = new ArrayList<>();
+    @GuardedBy("lock")
+    private boolean shutdown;
+    @GuardedBy("lock")
+    private boolean connecting;
+    @GuardedBy("lock")
+    private int connectionsInUse;
+
+    MultiConnectionTransport(
+        SocketAddress serverAddress, ClientTransportOptions options, ChannelLogger channelLogger) {
+      this.serverAddress = serverAddress;
+      this.options = options;
+      this.channelLogger = channelLogger;
+      this.primary =
+          new Connection(delegate.newClientTransport(serverAddress, options, channelLogger));
+      connections.add(primary);
+    }
+
+    @Override
+    public Runnable start(Listener listener) {
+      this.listener = checkNotNull(listener, "listener");
+      return primary.transport.start(new ConnectionListener(primary));
+    }
+
+    @Override
+    public ClientStream newStream(
+        MethodDescriptor<?, ?> method, Metadata headers, CallOptions callOptions) {
+      Connection chosen = null;
+      Runnable extraStartRunnable = null;
+      int connectionCount = 0;
+      synchronized (lock) {
+        for (Connection connection : connections) {
+          if (connection.ready && !connection.shutdown
+              && (chosen == null || connection.activeStreams < chosen.activeStreams)) {
+            chosen = connection;
+          }
+        }
+        if (chosen == null) {
+          // Let the first connection decide what to do with streams it can't take
+          chosen = primary;
+        } else if (chosen.activeStreams >= maxStreamsPerConnection
+            && !shutdown && !connecting && connections.size() < maxConnections) {
+          connecting = true;
+          Connection extra = new Connection(
+              delegate.newClientTransport(serverAddress, options, channelLogger));
+          connections.add(extra);
+          connectionCount = connections.size();
+          // Started under the lock so that a concurrent shutdown() can't reach it first
+          extraStartRunnable = extra.transport.start(new ConnectionListener(extra));
+        }
+        chosen.activeStreams++;
+      }
+      if (connectionCount != 0) {
+        channelLogger.log(
+            ChannelLogLevel.DEBUG, "Opened connection {0} of {1}", connectionCount, maxConnections);
+      }
+      if (extraStartRunnable != null) {
+        extraStartRunnable.run();
+      }
+      ClientStream stream;
+      try {
+        stream = chosen.transport.newStream(method, headers, callOptions);
+      } catch (RuntimeException e) {
+        releaseStream(chosen);
+        throw e;
+      }
+      return new CountingStream(stream, chosen);
+    }
+
+    private void releaseStream(Connection connection) {
+      synchronized (lock) {
+        connection.activeStreams--;
+      }
+    }
+
+    @Override
+    public void ping(PingCallback callback, Executor executor) {
+      primary.transport.ping(callback, executor);
+    }
+
+    @Override
+    public void shutdown(Status reason) {
+      List<Connection> toShutdown;
+      synchronized (lock) {
+        shutdown = true;
+        toShutdown = markShutdownCalled();
+      }
+      for (Connection connection : toShutdown) {
+        connection.transport.shutdown(reason);
+      }
+    }
+
+    @Override
+    public void shutdownNow(Status reason) {
+      List<Connection> toShutdown;
+      synchronized (lock) {
+        shutdown = true;
+        markShutdownCalled();
+        toShutdown = new ArrayList<>(connections);
+      }
+      for (Connection connection : toShutdown) {
+        connection.transport.shutdownNow(reason);
+      }
+    }
+
+    @GuardedBy("lock")
+    private List<Connection> markShutdownCalled() {
+      List<Connection> toShutdown = new ArrayList<>(connections.size());
+      for (Connection connection : connections) {
+        if (!connection.shutdownCalled) {
+          connection.shutdownCalled = true;
+          toShutdown.add(connection);
+        }
+      }
+      return toShutdown;
+    }
+
+    @Override
+    public Attributes getAttributes() {
+      return primary.transport.getAttributes();
+    }
+
+    @Override
+    public InternalLogId getLogId() {
+      return primary.transport.getLogId();
+    }
+
+    @Override
+    public ListenableFuture<SocketStats> getStats() {
+      return primary.transport.getStats();
+    }
+
+    @VisibleForTesting
+    int getConnectionCount() {
+      synchronized (lock) {
+        return connections.size();
+      }
+    }
+
+    @Override
+    public String toString() {
+      return super.toString() + "(" + primary.transport + ")";
+    }
+
+    private final class ConnectionListener implements Listener {
+      private final Connection connection;
+
+      ConnectionListener(Connection connection) {
+        this.connection = connection;
+      }
+
+      @Override
+      public void transportReady() {
+        synchronized (lock) {
+          connection.ready = true;
+          if (connection != primary) {
+            connecting = false;
+          }
+        }
+        if (connection == primary) {
+          listener.transportReady();
+        }
+      }
+
+      @Override
+      public void transportShutdown(Status s) {
+        synchronized (lock) {
+          connection.shutdown = true;
+          if (connection != primary) {
+            if (!connection.ready) {
+              connecting = false;
+            }
+            return;
+          }
+        }
+        listener.transportShutdown(s);
+        // The extra connections go away with the first one
+        shutdown(s);
+      }
+
+      @Override
+      public void transportTerminated() {
+        boolean terminated;
+        synchronized (lock) {
+          checkState(connections.remove(connection), "connection already terminated");
+          if (connection.inUse) {
+            connection.inUse = false;
+            updateInUse(-1);
+          }
+          terminated = connections.isEmpty();
+        }
+        if (terminated) {
+          listener.transportTerminated();
+        }
+      }
+
+      @Override
+      public void transportInUse(boolean inUse) {
+        synchronized (lock) {
+          if (connection.inUse != inUse) {
+            connection.inUse = inUse;
+            updateInUse(inUse ? 1 : -1);
+          }
+        }
+      }
+
+      // Reports inside the lock so that in-use changes from different connections stay ordered
+      @GuardedBy("lock")
+      private void updateInUse(int delta) {
+        int previous = connectionsInUse;
+        connectionsInUse += delta;
+        if (previous == 0 && connectionsInUse > 0) {
+          listener.transportInUse(true);
+        } else if (previous > 0 && connectionsInUse == 0) {
+          listener.transportInUse(false);
+        }
+      }
+    }
+
+    private final class CountingStream extends ForwardingClientStream {
+      private final ClientStream delegate;
+      private final Connection connection;
+      private boolean released;
+
+      CountingStream(ClientStream delegate, Connection connection) {
+        this.delegate = delegate;
+        this.connection = connection;
+      }
+
+      @Override
+      protected ClientStream delegate() {
+        return delegate;
+      }
+
+      @Override
+      public void start(final ClientStreamListener listener) {
+        super.start(new ForwardingClientStreamListener() {
+          @Override
+          protected ClientStreamListener delegate() {
+            return listener;
+          }
+
+          @Override
+          public void closed(Status status, Metadata trailers) {
+            release();
+            super.closed(status, trailers);
+          }
+
+          @Override
+          public void closed(Status status, RpcProgress rpcProgress, Metadata trailers) {
+            release();
+            super.closed(status, rpcProgress, trailers);
+          }
+        });
+      }
+
+      private void release() {
+        // closed() is only called once, but be defensive since counts are shared
+        synchronized (lock) {
+          if (released) {
+            return;
+          }
+          released = true;
+        }
+        releaseStream(connection);
+      }
+    }
+  }
+}
@@ -20,6 +20,7 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
 
 /**
  * Interface for an abstract byte buffer. Buffers are intended to be a read-only, except for the
@@ -123,6 +124,49 @@ public interface ReadableBuffer extends Closeable {
    */
   int arrayOffset();
 
+  /**
+   * Indicates whether or not {@link #mark} operation is supported for this buffer.
+   */
+  boolean markSupported();
+
+  /**
+   * Marks the current position in this buffer. A subsequent call to the {@link #reset} method
+   * repositions this buffer at the last marked position so that subsequent reads re-read the same
+   * bytes. While a mark is set, implementations that release consumed data (e.g. composite
+   * buffers) must retain it instead. This is an optional method, so callers should first check
+   * {@link #markSupported}.
+   *
+   * @throws UnsupportedOperationException the buffer does not support this method
+   */
+  void mark();
+
+  /**
+   * Repositions this buffer to the position at the time {@link #mark} was last called on this
+   * buffer.
+   *
+   * @throws UnsupportedOperationException the buffer does not support this method
+   * @throws java.nio.InvalidMarkException if {@link #mark} has not been called
+   */
+  void reset();
+
+  /**
+   * Indicates whether or not {@link #getByteBuffer} operation is supported for this buffer.
+   */
+  boolean byteBufferSupported();
+
+  /**
+   * Gets a {@link ByteBuffer} that contains some bytes of the content next to be read on this
+   * buffer, or {@code null} if there are no readable bytes. This is an optional method, so callers
+   * should first check {@link #byteBufferSupported}. The returned buffer's content should not be
+   * modified, but its position, limit, and mark may be changed without affecting this buffer.
+   * Buffers returned should not be used after this buffer has been closed, or after this buffer
+   * has been read past them while no mark is set.
+   *
+   * @throws UnsupportedOperationException the buffer does not support this method
+   */
+  @Nullable
+  ByteBuffer getByteBuffer();
+
   /**
    * Closes this buffer and releases any resources.
    */
@@ -21,14 +21,18 @@ import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
+import com.google.common.io.ByteStreams;
 import io.grpc.Attributes;
 import io.grpc.ClientStreamTracer;
 import io.grpc.Compressor;
 import io.grpc.Deadline;
 import io.grpc.DecompressorRegistry;
+import io.grpc.Drainable;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
 import io.grpc.Status;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -70,6 +74,8 @@ abstract class RetriableStream<ReqT> implements ClientStream {
   private RetryPolicy retryPolicy;
   private HedgingPolicy hedgingPolicy;
   private boolean isHedging;
+  @Nullable
+  private CallTracer.MethodTracer methodTracer;
 
   /** Must be held when updating state, accessing state.buffer, or certain substream attributes. */
   private final Object lock = new Object();
@@ -477,21 +483,113 @@ abstract class RetriableStream<ReqT> implements ClientStream {
     throw new IllegalStateException("RetriableStream.writeMessage() should not be called directly");
   }
 
+  /**
+   * Sets the tracer that records the size of each message sent on the call. Each message is
+   * recorded once, however many attempts it is written to. Must be called before {@link #start}.
+   */
+  final void setMethodTracer(CallTracer.MethodTracer methodTracer) {
+    this.methodTracer = checkNotNull(methodTracer, "methodTracer");
+  }
+
   final void sendMessage(final ReqT message) {
     State savedState = state;
     if (savedState.passThrough) {
-      savedState.winningSubstream.stream.writeMessage(method.streamRequest(message));
+      savedState.winningSubstream.stream.writeMessage(streamRequest(message));
       return;
     }
 
-    class SendMessageEntry implements BufferEntry {
-      @Override
-      public void runWith(Substream substream) {
-        substream.stream.writeMessage(method.streamRequest(message));
+    if (isHedging) {
+      // Hedges replay the message right away, so serialize it once for all of them.
+      delayOrExecute(new SendMessageEntry(serialize(streamRequest(message))));
+    } else {
+      delayOrExecute(new SendMessageEntry(message));
+    }
+  }
+
+  /**
+   * Writes a buffered message to each attempt. The first attempt gets the marshaller's own stream,
+   * so calls that are never retried pay nothing for buffering. The first replay serializes the
+   * message into an array that all later attempts share.
+   */
+  private final class SendMessageEntry implements BufferEntry {
+    @GuardedBy("this")
+    @Nullable
+    private ReqT message;
+    @GuardedBy("this")
+    @Nullable
+    private SerializedMessage serialized;
+    @GuardedBy("this")
+    private boolean written;
+
+    SendMessageEntry(ReqT message) {
+      this.message = message;
+    }
+
+    SendMessageEntry(SerializedMessage serialized) {
+      this.serialized = serialized;
+    }
+
+    @Override
+    public void runWith(Substream substream) {
+      substream.stream.writeMessage(nextStream());
+    }
+
+    private synchronized InputStream nextStream() {
+      if (serialized != null) {
+        return serialized.newStream();
       }
+      if (!written) {
+        written = true;
+        return streamRequest(message);
+      }
+      serialized = serialize(method.streamRequest(message));
+      message = null;
+      return serialized.newStream();
+    }
+  }
+
+  /** Returns the stream for the first write of a message, recording its size. */
+  private InputStream streamRequest(ReqT message) {
+    InputStream stream = method.streamRequest(message);
+    if (methodTracer != null) {
+      methodTracer.reportMessageSent(stream);
     }
+    return stream;
+  }
 
-    delayOrExecute(new SendMessageEntry());
+  private static SerializedMessage serialize(InputStream message) {
+    try {
+      try {
+        SerializedMessage serialized = new SerializedMessage(message.available());
+        if (message instanceof Drainable) {
+          ((Drainable) message).drainTo(serialized);
+        } else {
+          ByteStreams.copy(message, serialized);
+        }
+        return serialized;
+      } finally {
+        message.close();
+      }
+    } catch (IOException e) {
+      throw Status.INTERNAL
+          .withDescription("Failed to serialize message")
+          .withCause(e)
+          .asRuntimeException();
+    }
+  }
+
+  /**
+   * A message serialized for buffering. Every attempt reads the same array through its own
+   * {@link ReadableBuffer}, so replaying the message neither serializes nor copies it again.
+   */
+  private static final class SerializedMessage extends ByteArrayOutputStream {
+    SerializedMessage(int sizeHint) {
+      super(Math.max(sizeHint, 32));
+    }
+
+    InputStream newStream() {
+      return ReadableBuffers.openStream(ReadableBuffers.wrap(buf, 0, count), true);
+    }
   }
 
   @Override
@@ -60,6 +60,8 @@ final class ServerCallImpl<ReqT, RespT> extends ServerCall<ReqT, RespT> {
   private final DecompressorRegistry decompressorRegistry;
   private final CompressorRegistry compressorRegistry;
   private CallTracer serverCallTracer;
+  private final CallTracer.MethodTracer methodTracer;
+  private final long callStartNanos;
 
   // state
   private volatile boolean cancelled;
@@ -67,6 +69,7 @@ final class ServerCallImpl<ReqT, RespT> extends ServerCall<ReqT, RespT> {
   private boolean closeCalled;
   private Compressor compressor;
   private boolean messageSent;
+  private boolean callLatencyReported;
 
   ServerCallImpl(ServerStream stream, MethodDescriptor<ReqT, RespT> method,
       Metadata inboundHeaders, Context.CancellableContext context,
@@ -80,6 +83,8 @@ final class ServerCallImpl<ReqT, RespT> extends ServerCall<ReqT, RespT> {
     this.compressorRegistry = compressorRegistry;
     this.serverCallTracer = serverCallTracer;
     this.serverCallTracer.reportCallStarted();
+    this.methodTracer = serverCallTracer.getMethodTracer(method.getFullMethodName());
+    this.callStartNanos = System.nanoTime();
     this.tag = tag;
   }
 
@@ -164,6 +169,7 @@ final class ServerCallImpl<ReqT, RespT> extends ServerCall<ReqT, RespT> {
     messageSent = true;
     try {
       InputStream resp = method.streamResponse(message);
+      methodTracer.reportMessageSent(resp);
       stream.writeMessage(resp);
       stream.flush();
     } catch (RuntimeException e) {
@@ -218,6 +224,14 @@ final class ServerCallImpl<ReqT, RespT> extends ServerCall<ReqT, RespT> {
       stream.close(status, trailers);
     } finally {
       serverCallTracer.reportCallEnded(status.isOk());
+      reportCallLatency();
+    }
+  }
+
+  private void reportCallLatency() {
+    if (!callLatencyReported) {
+      callLatencyReported = true;
+      methodTracer.reportCallLatency(System.nanoTime() - callStartNanos);
     }
   }
 
@@ -254,6 +268,7 @@ final class ServerCallImpl<ReqT, RespT> extends ServerCall<ReqT, RespT> {
     log.log(Level.WARNING, "Cancelling the stream with status {0}", new Object[] {internalError});
     stream.cancel(internalError);
     serverCallTracer.reportCallEnded(internalError.isOk()); // error so always false
+    reportCallLatency();
   }
 
   /**
@@ -305,6 +320,7 @@ final class ServerCallImpl<ReqT, RespT> extends ServerCall<ReqT, RespT> {
       InputStream message;
       try {
         while ((message = producer.next()) != null) {
+          call.methodTracer.reportMessageReceived(message);
           try {
             listener.onMessage(call.method.parseRequest(message));
           } catch (Throwable t) {
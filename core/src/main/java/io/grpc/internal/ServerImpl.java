@@ -45,6 +45,7 @@ import io.grpc.InternalInstrumented;
 import io.grpc.InternalLogId;
 import io.grpc.InternalServerInterceptors;
 import io.grpc.Metadata;
+import io.grpc.MethodDescriptor.MethodType;
 import io.grpc.ServerCall;
 import io.grpc.ServerCallHandler;
 import io.grpc.ServerInterceptor;
@@ -71,6 +72,7 @@ import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
 /**
@@ -126,6 +128,7 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
   private final InternalChannelz channelz;
   private final CallTracer serverCallTracer;
   private final Deadline.Ticker ticker;
+  @Nullable private final AdaptiveConcurrencyLimiter concurrencyLimiter;
 
   /**
    * Construct a server.
@@ -161,6 +164,7 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
     this.channelz = builder.channelz;
     this.serverCallTracer = builder.callTracerFactory.create();
     this.ticker = checkNotNull(builder.ticker, "ticker");
+    this.concurrencyLimiter = builder.concurrencyLimiter;
     channelz.addServer(this);
   }
 
@@ -504,17 +508,37 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
         stream.setDecompressor(decompressor);
       }
 
+      // The fallback registry may be slow, so it is only consulted on the executor. Its methods,
+      // like streaming methods, are not limited.
+      final ServerMethodDefinition<?, ?> registeredMethod = registry.lookupMethod(methodName);
+      AdaptiveConcurrencyLimiter.Permit permit = null;
+      if (concurrencyLimiter != null
+          && registeredMethod != null
+          && registeredMethod.getMethodDescriptor().getType() == MethodType.UNARY) {
+        permit = concurrencyLimiter.tryAcquire(methodName);
+        if (permit == null) {
+          // Shed the call here, before it is queued on the executor or any message is parsed.
+          stream.setListener(NOOP_LISTENER);
+          stream.close(
+              Status.RESOURCE_EXHAUSTED.withDescription("Server is at its concurrency limit"),
+              new Metadata());
+          return;
+        }
+      }
+
       final StatsTraceContext statsTraceCtx = Preconditions.checkNotNull(
           stream.statsTraceContext(), "statsTraceCtx not present from stream");
 
       final Context.CancellableContext context = createContext(headers, statsTraceCtx);
 
       final Link link = PerfMark.linkOut();
+      final long streamCreatedNanos = System.nanoTime();
 
       final JumpToApplicationThreadServerStreamListener jumpListener
           = new JumpToApplicationThreadServerStreamListener(
           wrappedExecutor, executor, stream, context, tag);
-      stream.setListener(jumpListener);
+      stream.setListener(
+          permit == null ? jumpListener : new ConcurrencyLimitedListener(jumpListener, permit));
       // Run in wrappedExecutor so jumpListener.setListener() is called before any callbacks
       // are delivered, including any errors. Callbacks can still be triggered, but they will be
       // queued.
@@ -538,7 +562,7 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
         private void runInternal() {
           ServerStreamListener listener = NOOP_LISTENER;
           try {
-            ServerMethodDefinition<?, ?> method = registry.lookupMethod(methodName);
+            ServerMethodDefinition<?, ?> method = registeredMethod;
             if (method == null) {
               method = fallbackRegistry.lookupMethod(methodName, stream.getAuthority());
             }
@@ -554,6 +578,10 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
               context.cancel(null);
               return;
             }
+            stream.methodResolved(method.getMethodDescriptor().getFullMethodName());
+            // Only recorded for known methods, so unimplemented method names can't add entries.
+            serverCallTracer.getMethodTracer(methodName)
+                .reportQueueTime(System.nanoTime() - streamCreatedNanos);
             listener = startCall(stream, methodName, method, headers, context, statsTraceCtx, tag);
           } catch (Throwable t) {
             stream.close(Status.fromThrowable(t), new Metadata());
@@ -670,6 +698,9 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
       }
     }
     serverCallTracer.updateBuilder(builder);
+    if (concurrencyLimiter != null) {
+      builder.setConcurrencyLimit(concurrencyLimiter.getStats());
+    }
     SettableFuture<ServerStats> ret = SettableFuture.create();
     ret.set(builder.build());
     return ret;
@@ -715,6 +746,55 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
     public void onReady() {}
   }
 
+  /**
+   * Releases a call's concurrency limiter permit when the stream closes. Callbacks are delivered on
+   * the transport thread.
+   */
+  private static final class ConcurrencyLimitedListener implements ServerStreamListener {
+    private final ServerStreamListener delegate;
+    private final AdaptiveConcurrencyLimiter.Permit permit;
+
+    ConcurrencyLimitedListener(
+        ServerStreamListener delegate, AdaptiveConcurrencyLimiter.Permit permit) {
+      this.delegate = delegate;
+      this.permit = permit;
+    }
+
+    @Override
+    public void messagesAvailable(MessageProducer producer) {
+      delegate.messagesAvailable(producer);
+    }
+
+    @Override
+    public void halfClosed() {
+      delegate.halfClosed();
+    }
+
+    @Override
+    public void closed(Status status) {
+      try {
+        delegate.closed(status);
+      } finally {
+        switch (status.getCode()) {
+          case OK:
+            permit.onSuccess();
+            break;
+          case DEADLINE_EXCEEDED:
+            permit.onDropped();
+            break;
+          default:
+            // Cancellations and application errors say little about how loaded the server is.
+            permit.onIgnore();
+        }
+      }
+    }
+
+    @Override
+    public void onReady() {
+      delegate.onReady();
+    }
+  }
+
   /**
    * Dispatches callbacks onto an application-provided executor and correctly propagates
    * exceptions.
@@ -87,6 +87,15 @@ public interface ServerStream extends Stream {
    */
   void setListener(ServerStreamListener serverStreamListener);
 
+  /**
+   * Reports the method the stream was resolved to, once the server has found it in one of its
+   * registries. It is never called for unknown methods, so transports may keep per-method state
+   * keyed by the name without a client being able to grow it.
+   *
+   * @param fullMethodName the full name of the resolved method
+   */
+  void methodResolved(String fullMethodName);
+
   /**
    * The context for recording stats and traces for this stream.
    */
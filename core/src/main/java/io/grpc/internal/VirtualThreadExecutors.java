@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+
+/**
+ * Creates executors that run each task on a new JDK virtual thread. Virtual threads are only
+ * available on Java 21 and later, so the JDK APIs are looked up reflectively.
+ *
+ * <p>Blocking on a virtual thread unmounts it from its carrier thread instead of tying up a
+ * platform thread, so application code run by these executors may block freely. Blocking stubs
+ * called from virtual threads wait with {@link java.util.concurrent.locks.LockSupport#park}, which
+ * also unmounts.
+ */
+public final class VirtualThreadExecutors {
+  private static final Logger log = Logger.getLogger(VirtualThreadExecutors.class.getName());
+
+  @Nullable
+  private static final Method OF_VIRTUAL;
+  @Nullable
+  private static final Method BUILDER_NAME;
+  @Nullable
+  private static final Method BUILDER_FACTORY;
+  @Nullable
+  private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+  static {
+    Method ofVirtual = null;
+    Method builderName = null;
+    Method builderFactory = null;
+    Method newThreadPerTaskExecutor = null;
+    try {
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      ofVirtual = Thread.class.getMethod("ofVirtual");
+      builderName = builderClass.getMethod("name", String.class, long.class);
+      builderFactory = builderClass.getMethod("factory");
+      newThreadPerTaskExecutor =
+          Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+    } catch (ClassNotFoundException e) {
+      // Virtual threads are not available before Java 21
+    } catch (NoSuchMethodException e) {
+      log.log(Level.FINE, "Virtual threads are not available", e);
+    }
+    if (newThreadPerTaskExecutor == null) {
+      ofVirtual = null;
+    }
+    OF_VIRTUAL = ofVirtual;
+    BUILDER_NAME = builderName;
+    BUILDER_FACTORY = builderFactory;
+    NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+  }
+
+  private VirtualThreadExecutors() {}
+
+  /** Returns {@code true} if the running JDK supports virtual threads. */
+  public static boolean isSupported() {
+    return OF_VIRTUAL != null;
+  }
+
+  /**
+   * Returns an executor that starts a new virtual thread for every task. Threads are named
+   * {@code namePrefix} followed by a counter. The executor holds no threads between tasks, so it
+   * does not need to be shut down.
+   *
+   * @throws UnsupportedOperationException if the running JDK does not support virtual threads
+   */
+  public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+    if (!isSupported()) {
+      throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+    }
+    try {
+      Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix, 0L);
+      ThreadFactory factory = (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+      return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+    } catch (IllegalAccessException e) {
+      throw new UnsupportedOperationException("Virtual threads are not accessible", e);
+    } catch (InvocationTargetException e) {
+      throw new UnsupportedOperationException(
+          "Failed to create virtual thread executor", e.getCause());
+    }
+  }
+
+  /**
+   * Returns the executor shared by builders configured with {@code virtualThreadExecutor()}.
+   *
+   * @throws UnsupportedOperationException if the running JDK does not support virtual threads
+   */
+  static Executor sharedExecutor() {
+    if (!isSupported()) {
+      throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+    }
+    return SharedExecutorHolder.INSTANCE;
+  }
+
+  private static final class SharedExecutorHolder {
+    static final Executor INSTANCE = newThreadPerTaskExecutor("grpc-virtual-");
+  }
+}
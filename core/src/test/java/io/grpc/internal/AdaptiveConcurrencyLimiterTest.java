@@ -0,0 +1,163 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import io.grpc.InternalChannelz.ConcurrencyLimitStats;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link AdaptiveConcurrencyLimiter}. */
+@RunWith(JUnit4.class)
+public class AdaptiveConcurrencyLimiterTest {
+  private static final String METHOD = "service/method";
+  private static final long MIN_RTT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final FakeClock fakeClock = new FakeClock();
+
+  private AdaptiveConcurrencyLimiter newLimiter(int initialLimit, int maxLimit) {
+    return new AdaptiveConcurrencyLimiter(initialLimit, maxLimit, fakeClock.getDeadlineTicker());
+  }
+
+  @Test
+  public void tryAcquire_rejectsOverLimit() {
+    AdaptiveConcurrencyLimiter limiter = newLimiter(2, 10);
+    AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire(METHOD);
+    assertThat(permit).isNotNull();
+    assertThat(limiter.tryAcquire(METHOD)).isNotNull();
+    assertThat(limiter.tryAcquire(METHOD)).isNull();
+
+    ConcurrencyLimitStats stats = limiter.getStats();
+    assertThat(stats.limit).isEqualTo(2);
+    assertThat(stats.callsInFlight).isEqualTo(2);
+    assertThat(stats.callsRejected).isEqualTo(1L);
+
+    permit.onIgnore();
+    assertThat(limiter.tryAcquire(METHOD)).isNotNull();
+  }
+
+  @Test
+  public void permit_releasedTwice() {
+    AdaptiveConcurrencyLimiter.Permit permit = newLimiter(2, 10).tryAcquire(METHOD);
+    permit.onIgnore();
+    try {
+      permit.onSuccess();
+      fail("Expected IllegalStateException");
+    } catch (IllegalStateException expected) {
+      assertThat(expected).hasMessageThat().isEqualTo("Already released");
+    }
+  }
+
+  @Test
+  public void permit_onSuccessSamplesLatency() {
+    AdaptiveConcurrencyLimiter limiter = newLimiter(2, 10);
+    AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire(METHOD);
+    fakeClock.forwardNanos(MIN_RTT_NANOS);
+    permit.onSuccess();
+
+    ConcurrencyLimitStats stats = limiter.getStats();
+    assertThat(stats.minLatencyNanos).isEqualTo(MIN_RTT_NANOS);
+    assertThat(stats.callsInFlight).isEqualTo(0);
+  }
+
+  @Test
+  public void steadyLatency_growsLimitUpToMax() {
+    AdaptiveConcurrencyLimiter limiter = newLimiter(20, 100);
+    for (int i = 0; i < 200; i++) {
+      limiter.onSample(METHOD, MIN_RTT_NANOS, limiter.getLimit());
+    }
+    assertThat(limiter.getLimit()).isEqualTo(100);
+  }
+
+  @Test
+  public void steadyLatency_unusedLimitDoesNotGrow() {
+    AdaptiveConcurrencyLimiter limiter = newLimiter(20, 100);
+    for (int i = 0; i < 200; i++) {
+      limiter.onSample(METHOD, MIN_RTT_NANOS, 5);
+    }
+    assertThat(limiter.getLimit()).isEqualTo(20);
+  }
+
+  @Test
+  public void increasedLatency_shrinksLimit() {
+    AdaptiveConcurrencyLimiter limiter = newLimiter(100, 100);
+    limiter.onSample(METHOD, MIN_RTT_NANOS, 100);
+    assertThat(limiter.getLimit()).isEqualTo(100);
+
+    for (int i = 0; i < 20; i++) {
+      limiter.onSample(METHOD, 10 * MIN_RTT_NANOS, limiter.getLimit());
+    }
+    assertThat(limiter.getLimit()).isLessThan(50);
+    assertThat(limiter.getLimit()).isAtLeast(1);
+  }
+
+  @Test
+  public void latencyWithinTolerance_doesNotShrinkLimit() {
+    AdaptiveConcurrencyLimiter limiter = newLimiter(100, 100);
+    limiter.onSample(METHOD, MIN_RTT_NANOS, 100);
+    for (int i = 0; i < 20; i++) {
+      limiter.onSample(METHOD, 2 * MIN_RTT_NANOS, 100);
+    }
+    assertThat(limiter.getLimit()).isEqualTo(100);
+  }
+
+  @Test
+  public void slowerMethod_doesNotShrinkLimit() {
+    AdaptiveConcurrencyLimiter limiter = newLimiter(100, 100);
+    limiter.onSample(METHOD, MIN_RTT_NANOS, 100);
+    for (int i = 0; i < 20; i++) {
+      limiter.onSample("service/slowMethod", 10 * MIN_RTT_NANOS, 100);
+    }
+    assertThat(limiter.getLimit()).isEqualTo(100);
+    assertThat(limiter.getStats().minLatencyNanos).isEqualTo(MIN_RTT_NANOS);
+
+    limiter.onSample("service/slowMethod", 30 * MIN_RTT_NANOS, 100);
+    assertThat(limiter.getLimit()).isLessThan(100);
+  }
+
+  @Test
+  public void minLatency_forgottenAfterWindow() {
+    AdaptiveConcurrencyLimiter limiter = newLimiter(10, 10);
+    limiter.onSample(METHOD, MIN_RTT_NANOS, 10);
+    for (int i = 1; i < AdaptiveConcurrencyLimiter.MIN_RTT_WINDOW_SAMPLES; i++) {
+      limiter.onSample(METHOD, 3 * MIN_RTT_NANOS, 10);
+    }
+    // The first window still remembers the fast sample.
+    assertThat(limiter.getStats().minLatencyNanos).isEqualTo(MIN_RTT_NANOS);
+
+    for (int i = 0; i < AdaptiveConcurrencyLimiter.MIN_RTT_WINDOW_SAMPLES; i++) {
+      limiter.onSample(METHOD, 3 * MIN_RTT_NANOS, 10);
+    }
+    assertThat(limiter.getStats().minLatencyNanos).isEqualTo(3 * MIN_RTT_NANOS);
+  }
+
+  @Test
+  public void onDropped_backsOff() {
+    AdaptiveConcurrencyLimiter limiter = newLimiter(100, 100);
+    limiter.onDropped();
+    assertThat(limiter.getLimit()).isEqualTo(90);
+
+    for (int i = 0; i < 100; i++) {
+      limiter.onDropped();
+    }
+    assertThat(limiter.getLimit()).isEqualTo(1);
+  }
+}
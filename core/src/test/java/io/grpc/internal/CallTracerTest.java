@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.grpc.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import io.grpc.InternalChannelz.ChannelStats;
+import io.grpc.InternalChannelz.MethodStats;
+import java.io.ByteArrayInputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link CallTracer}. */
+@RunWith(JUnit4.class)
+public class CallTracerTest {
+  private final CallTracer callTracer = CallTracer.getDefaultFactory().create();
+
+  @Test
+  public void methodStats() {
+    CallTracer.MethodTracer methodTracer = callTracer.getMethodTracer("service/method");
+    assertSame(methodTracer, callTracer.getMethodTracer("service/method"));
+
+    methodTracer.reportCallLatency(1000);
+    methodTracer.reportQueueTime(10);
+    methodTracer.reportMessageSent(
+        ReadableBuffers.openStream(ReadableBuffers.wrap(new byte[5]), true));
+    methodTracer.reportMessageReceived(
+        ReadableBuffers.openStream(ReadableBuffers.wrap(new byte[7]), true));
+    // Not KnownLength, so its size is not recorded
+    methodTracer.reportMessageReceived(new ByteArrayInputStream(new byte[9]));
+
+    ChannelStats.Builder builder = new ChannelStats.Builder();
+    callTracer.updateBuilder(builder);
+    MethodStats methodStats = builder.build().methodStats.get("service/method");
+    assertEquals(1, methodStats.callLatencyNanos.count);
+    assertEquals(1000, methodStats.callLatencyNanos.max);
+    assertEquals(10, methodStats.queueTimeNanos.sum);
+    assertEquals(5, methodStats.sentMessageSizeBytes.sum);
+    assertEquals(1, methodStats.receivedMessageSizeBytes.count);
+    assertEquals(7, methodStats.receivedMessageSizeBytes.sum);
+  }
+
+  @Test
+  public void methodCountIsBounded() {
+    for (int i = 0; i < CallTracer.MAX_TRACED_METHODS; i++) {
+      callTracer.getMethodTracer("service/method" + i).reportCallLatency(1);
+    }
+    CallTracer.MethodTracer overflow = callTracer.getMethodTracer("service/overflow1");
+    assertSame(overflow, callTracer.getMethodTracer("service/overflow2"));
+    assertNotSame(overflow, callTracer.getMethodTracer("service/method0"));
+    overflow.reportCallLatency(1);
+
+    ChannelStats.Builder builder = new ChannelStats.Builder();
+    callTracer.updateBuilder(builder);
+    ChannelStats stats = builder.build();
+    assertEquals(CallTracer.MAX_TRACED_METHODS + 1, stats.methodStats.size());
+    assertEquals(1, stats.methodStats.get(CallTracer.OTHER_METHODS).callLatencyNanos.count);
+  }
+}
@@ -18,6 +18,9 @@ package io.grpc.internal;
 
 import static com.google.common.base.Charsets.UTF_8;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
@@ -166,6 +169,73 @@ public class CompositeReadableBufferTest {
     verify(mock2).close();
   }
 
+  @Test
+  public void markAndResetShouldRewindAcrossBuffers() {
+    assertTrue(composite.markSupported());
+    composite.readUnsignedByte();
+    composite.mark();
+    byte[] first = new byte[EXPECTED_VALUE.length() - 1];
+    composite.readBytes(first, 0, first.length);
+    assertEquals(0, composite.readableBytes());
+
+    composite.reset();
+    assertEquals(EXPECTED_VALUE.length() - 1, composite.readableBytes());
+    assertEquals(EXPECTED_VALUE.substring(1), ReadableBuffers.readAsStringUtf8(composite));
+  }
+
+  @Test
+  public void markShouldRetainConsumedBuffersUntilClose() {
+    composite = new CompositeReadableBuffer();
+    CloseTrackingBuffer buffer1 = new CloseTrackingBuffer(new byte[] {1});
+    CloseTrackingBuffer buffer2 = new CloseTrackingBuffer(new byte[] {2});
+    composite.addBuffer(buffer1);
+    composite.addBuffer(buffer2);
+
+    composite.mark();
+    composite.skipBytes(1);
+    assertEquals(2, composite.getByteBuffer().get());
+    assertFalse(buffer1.closed);
+
+    composite.close();
+    assertTrue(buffer1.closed);
+    assertTrue(buffer2.closed);
+  }
+
+  @Test
+  public void readBytesWhileMarkedShouldBeRewindable() {
+    composite.mark();
+    ReadableBuffer read = composite.readBytes(EXPECTED_VALUE.length());
+    assertEquals(EXPECTED_VALUE, ReadableBuffers.readAsStringUtf8(read));
+    assertEquals(0, composite.readableBytes());
+
+    composite.reset();
+    assertEquals(EXPECTED_VALUE, ReadableBuffers.readAsStringUtf8(composite));
+  }
+
+  @Test
+  public void markSupportedRequiresAllBuffers() {
+    ReadableBuffer noMark = mock(ReadableBuffer.class);
+    composite.addBuffer(noMark);
+    assertFalse(composite.markSupported());
+  }
+
+  @Test
+  public void getByteBufferShouldReturnNextComponent() {
+    assertTrue(composite.byteBufferSupported());
+    StringBuilder sb = new StringBuilder();
+    ByteBuffer buffer;
+    composite.mark();
+    while ((buffer = composite.getByteBuffer()) != null) {
+      int length = buffer.remaining();
+      byte[] bytes = new byte[length];
+      buffer.get(bytes);
+      sb.append(new String(bytes, UTF_8));
+      composite.skipBytes(length);
+    }
+    assertEquals(EXPECTED_VALUE, sb.toString());
+    assertNull(composite.getByteBuffer());
+  }
+
   private void splitAndAdd(String value) {
     int partLength = Math.max(1, value.length() / 4);
     for (int startIndex = 0, endIndex = 0; startIndex < value.length(); startIndex = endIndex) {
@@ -176,4 +246,18 @@ public class CompositeReadableBufferTest {
 
     assertEquals(value.length(), composite.readableBytes());
   }
+
+  private static final class CloseTrackingBuffer extends ForwardingReadableBuffer {
+    boolean closed;
+
+    CloseTrackingBuffer(byte[] bytes) {
+      super(ReadableBuffers.wrap(bytes));
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+      super.close();
+    }
+  }
 }
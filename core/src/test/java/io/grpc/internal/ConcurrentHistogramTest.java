@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.grpc.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import io.grpc.InternalChannelz.Histogram;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ConcurrentHistogram}. */
+@RunWith(JUnit4.class)
+public class ConcurrentHistogramTest {
+  private final ConcurrentHistogram histogram = new ConcurrentHistogram();
+
+  @Test
+  public void emptySnapshot() {
+    Histogram snapshot = histogram.snapshot();
+
+    assertSame(Histogram.EMPTY, snapshot);
+    assertEquals(0, snapshot.count);
+    assertEquals(0, snapshot.getValueAtQuantile(0.99));
+  }
+
+  @Test
+  public void bucketBoundsCoverEveryValue() {
+    long previousUpperBound = -1;
+    for (int i = 0; i < ConcurrentHistogram.BUCKETS; i++) {
+      long upperBound = ConcurrentHistogram.bucketUpperBound(i);
+      assertEquals(i, ConcurrentHistogram.bucketIndex(previousUpperBound + 1));
+      assertEquals(i, ConcurrentHistogram.bucketIndex(upperBound));
+      previousUpperBound = upperBound;
+    }
+    assertEquals(ConcurrentHistogram.MAX_TRACKABLE_VALUE, previousUpperBound);
+  }
+
+  @Test
+  public void bucketUpperBoundWithinRelativeError() {
+    for (long value = 1; value < ConcurrentHistogram.MAX_TRACKABLE_VALUE; value = value * 3 + 1) {
+      long upperBound =
+          ConcurrentHistogram.bucketUpperBound(ConcurrentHistogram.bucketIndex(value));
+      assertThat(upperBound).isAtLeast(value);
+      assertThat((double) (upperBound - value) / value).isAtMost(0.125);
+    }
+  }
+
+  @Test
+  public void smallValuesAreExact() {
+    for (long value = 0; value < 8; value++) {
+      histogram.record(value);
+    }
+    Histogram snapshot = histogram.snapshot();
+
+    assertEquals(8, snapshot.getBucketCount());
+    for (int i = 0; i < 8; i++) {
+      assertEquals(i, snapshot.getBucketUpperBound(i));
+      assertEquals(1, snapshot.getBucketValueCount(i));
+    }
+    assertEquals(28, snapshot.sum);
+    assertEquals(7, snapshot.max);
+  }
+
+  @Test
+  public void quantiles() {
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i * 1000L);
+    }
+    Histogram snapshot = histogram.snapshot();
+
+    assertEquals(100, snapshot.count);
+    assertEquals(5050 * 1000L, snapshot.sum);
+    assertEquals(100000, snapshot.max);
+    assertEquals(50500.0, snapshot.getMean(), 0.0);
+    assertThat(snapshot.getValueAtQuantile(0.5)).isAtLeast(50000L);
+    assertThat(snapshot.getValueAtQuantile(0.5)).isAtMost(56250L);
+    assertThat(snapshot.getValueAtQuantile(0.99)).isAtLeast(99000L);
+    assertEquals(100000, snapshot.getValueAtQuantile(1.0));
+    assertThat(snapshot.getValueAtQuantile(0.0)).isAtLeast(1000L);
+    assertThat(snapshot.getValueAtQuantile(0.0)).isAtMost(1125L);
+  }
+
+  @Test
+  public void outOfRangeValuesAreClamped() {
+    histogram.record(-5);
+    histogram.record(Long.MAX_VALUE / 2);
+    Histogram snapshot = histogram.snapshot();
+
+    assertEquals(2, snapshot.getBucketCount());
+    assertEquals(0, snapshot.getBucketUpperBound(0));
+    assertEquals(ConcurrentHistogram.MAX_TRACKABLE_VALUE, snapshot.getBucketUpperBound(1));
+    assertEquals(Long.MAX_VALUE / 2, snapshot.max);
+    assertEquals(ConcurrentHistogram.MAX_TRACKABLE_VALUE, snapshot.getValueAtQuantile(1.0));
+  }
+
+  @Test
+  public void concurrentRecording() throws Exception {
+    final int threads = 4;
+    final int valuesPerThread = 10000;
+    final CountDownLatch start = new CountDownLatch(1);
+    Thread[] recorders = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      recorders[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+          for (int i = 0; i < valuesPerThread; i++) {
+            histogram.record(i);
+          }
+        }
+      });
+      recorders[t].start();
+    }
+    start.countDown();
+    for (Thread recorder : recorders) {
+      recorder.join();
+    }
+    Histogram snapshot = histogram.snapshot();
+
+    assertEquals(threads * valuesPerThread, snapshot.count);
+    assertEquals(valuesPerThread - 1, snapshot.max);
+  }
+}
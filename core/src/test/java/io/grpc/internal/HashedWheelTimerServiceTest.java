@@ -0,0 +1,222 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Unit tests for {@link HashedWheelTimerService}.
+ */
+@RunWith(JUnit4.class)
+public class HashedWheelTimerServiceTest {
+  // A small wheel so that tests exercise multiple rounds
+  private final HashedWheelTimerService timer = new HashedWheelTimerService(
+      GrpcUtil.getThreadFactory("test-timer-%d", true), 1, TimeUnit.MILLISECONDS, 8);
+
+  @After
+  public void tearDown() {
+    timer.shutdownNow();
+  }
+
+  @Test
+  public void schedule_runsNoEarlierThanDelay() throws Exception {
+    for (long delayMillis : new long[] {0, 3, 20, 50}) {
+      final CountDownLatch latch = new CountDownLatch(1);
+      long start = System.nanoTime();
+      timer.schedule(new CountDown(latch), delayMillis, TimeUnit.MILLISECONDS);
+
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+      assertThat(System.nanoTime() - start).isAtLeast(TimeUnit.MILLISECONDS.toNanos(delayMillis));
+    }
+  }
+
+  @Test
+  public void schedule_callable() throws Exception {
+    ScheduledFuture<String> future = timer.schedule(new Callable<String>() {
+      @Override
+      public String call() {
+        return "result";
+      }
+    }, 5, TimeUnit.MILLISECONDS);
+
+    assertEquals("result", future.get(5, TimeUnit.SECONDS));
+    assertTrue(future.isDone());
+  }
+
+  @Test
+  public void schedule_getDelay() {
+    ScheduledFuture<?> future = timer.schedule(new NoopRunnable(), 1, TimeUnit.HOURS);
+
+    assertThat(future.getDelay(TimeUnit.MINUTES)).isAtLeast(59L);
+    assertThat(future.getDelay(TimeUnit.MINUTES)).isAtMost(60L);
+    ScheduledFuture<?> sooner = timer.schedule(new NoopRunnable(), 1, TimeUnit.MINUTES);
+    assertThat(sooner.compareTo(future)).isLessThan(0);
+    assertThat(future.compareTo(sooner)).isGreaterThan(0);
+  }
+
+  @Test
+  public void cancel_preventsExecution() throws Exception {
+    final AtomicInteger runs = new AtomicInteger();
+    Runnable task = new Runnable() {
+      @Override
+      public void run() {
+        runs.incrementAndGet();
+      }
+    };
+    List<ScheduledFuture<?>> futures = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      futures.add(timer.schedule(task, 30 + i % 20, TimeUnit.MILLISECONDS));
+    }
+    for (ScheduledFuture<?> future : futures) {
+      assertTrue(future.cancel(false));
+    }
+    CountDownLatch latch = new CountDownLatch(1);
+    timer.schedule(new CountDown(latch), 60, TimeUnit.MILLISECONDS);
+
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertEquals(0, runs.get());
+    for (ScheduledFuture<?> future : futures) {
+      assertTrue(future.isCancelled());
+    }
+  }
+
+  @Test
+  public void scheduleAtFixedRate_runsRepeatedlyUntilCancelled() throws Exception {
+    final CountDownLatch latch = new CountDownLatch(5);
+    ScheduledFuture<?> future =
+        timer.scheduleAtFixedRate(new CountDown(latch), 0, 2, TimeUnit.MILLISECONDS);
+
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertTrue(future.cancel(false));
+    assertTrue(future.isCancelled());
+  }
+
+  @Test
+  public void scheduleWithFixedDelay_runsRepeatedly() throws Exception {
+    final CountDownLatch latch = new CountDownLatch(5);
+    timer.scheduleWithFixedDelay(new CountDown(latch), 0, 2, TimeUnit.MILLISECONDS);
+
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void shutdown_runsDelayedTasksAndRejectsNewOnes() throws Exception {
+    CountDownLatch latch = new CountDownLatch(1);
+    timer.schedule(new CountDown(latch), 20, TimeUnit.MILLISECONDS);
+    ScheduledFuture<?> periodic =
+        timer.scheduleAtFixedRate(new NoopRunnable(), 0, 1, TimeUnit.MILLISECONDS);
+
+    timer.shutdown();
+    assertTrue(timer.isShutdown());
+    try {
+      timer.schedule(new NoopRunnable(), 0, TimeUnit.MILLISECONDS);
+      fail("Should have thrown");
+    } catch (RejectedExecutionException expected) {
+    }
+
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertTrue(timer.awaitTermination(5, TimeUnit.SECONDS));
+    assertTrue(timer.isTerminated());
+    assertTrue(periodic.isCancelled());
+  }
+
+  @Test
+  public void shutdownNow_cancelsScheduledTasks() throws Exception {
+    ScheduledFuture<?> future = timer.schedule(new NoopRunnable(), 1, TimeUnit.HOURS);
+    // Let the task reach the wheel
+    CountDownLatch latch = new CountDownLatch(1);
+    timer.schedule(new CountDown(latch), 0, TimeUnit.MILLISECONDS);
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+    timer.shutdownNow();
+
+    assertTrue(timer.awaitTermination(5, TimeUnit.SECONDS));
+    assertTrue(future.isCancelled());
+  }
+
+  @Test
+  public void concurrentScheduleAndCancel() throws Exception {
+    final int threadCount = 4;
+    final int tasksPerThread = 10000;
+    final AtomicInteger runs = new AtomicInteger();
+    final CountDownLatch done = new CountDownLatch(threadCount * tasksPerThread / 2);
+    final Runnable task = new Runnable() {
+      @Override
+      public void run() {
+        runs.incrementAndGet();
+        done.countDown();
+      }
+    };
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < threadCount; t++) {
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = 0; i < tasksPerThread; i++) {
+            ScheduledFuture<?> future = timer.schedule(task, i % 10, TimeUnit.MILLISECONDS);
+            if (i % 2 == 0) {
+              future.cancel(false);
+            }
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    // Cancellation may lose the race with execution for short delays
+    assertThat(runs.get()).isAtLeast(threadCount * tasksPerThread / 2);
+  }
+
+  private static final class CountDown implements Runnable {
+    private final CountDownLatch latch;
+
+    CountDown(CountDownLatch latch) {
+      this.latch = latch;
+    }
+
+    @Override
+    public void run() {
+      latch.countDown();
+    }
+  }
+
+  private static final class NoopRunnable implements Runnable {
+    @Override
+    public void run() {}
+  }
+}
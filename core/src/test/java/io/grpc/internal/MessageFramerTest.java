@@ -31,9 +31,13 @@ import io.grpc.StreamTracer;
 import io.grpc.internal.testing.TestStreamTracer.TestBaseStreamTracer;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -244,6 +248,41 @@ public class MessageFramerTest {
     checkStats(1000, 1000);
   }
 
+  @Test
+  public void unknownLengthUsesSizeEstimate() {
+    allocator = new BytesWritableBufferAllocator(1, Integer.MAX_VALUE);
+    framer = new MessageFramer(sink, allocator, statsTraceCtx);
+    MessageSizeEstimator estimator = new MessageSizeEstimator(Integer.MAX_VALUE);
+    framer.setMessageSizeEstimator(estimator);
+
+    // Without an estimate the chain grows by doubling: 128, 256, 512, 1024.
+    writeUnknownLengthInChunks(framer, new byte[1000], 100);
+    framer.flush();
+    assertEquals(1 + 4, allocator.allocCount);
+    assertEquals(1024, estimator.estimate());
+
+    // The second message fits in a single buffer sized from the estimate.
+    allocator.allocCount = 0;
+    writeUnknownLengthInChunks(framer, new byte[1000], 100);
+    framer.flush();
+    assertEquals(1 + 1, allocator.allocCount);
+  }
+
+  @Test
+  public void unknownLengthRoundsUpToPowerOfTwo() {
+    RecordingWritableBufferAllocator recordingAllocator = new RecordingWritableBufferAllocator();
+    framer = new MessageFramer(sink, recordingAllocator, statsTraceCtx);
+
+    writeUnknownLengthInChunks(framer, new byte[1000], 100);
+    framer.flush();
+    writeKnownLength(framer, new byte[1000]);
+    framer.flush();
+
+    // The unknown-length chain is rounded up, then its header and the known-length message are
+    // requested at their exact sizes.
+    assertEquals(Arrays.asList(128, 256, 512, 1024, 5, 1005), recordingAllocator.capacityHints);
+  }
+
   @Test
   public void compressed() {
     allocator = new BytesWritableBufferAllocator(100, Integer.MAX_VALUE);
@@ -366,6 +405,16 @@ public class MessageFramerTest {
     framer.writePayload(new BufferedInputStream(new ByteArrayInputStream(bytes)));
   }
 
+  private static void writeUnknownLengthInChunks(
+      MessageFramer framer, byte[] bytes, final int chunkSize) {
+    framer.writePayload(new FilterInputStream(new ByteArrayInputStream(bytes)) {
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        return super.read(b, off, Math.min(len, chunkSize));
+      }
+    });
+  }
+
   private static void writeKnownLength(MessageFramer framer, byte[] bytes) {
     framer.writePayload(new ByteArrayInputStream(bytes));
     // TODO(carl-mastrangelo): add framer.flush() here.
@@ -450,6 +499,20 @@ public class MessageFramerTest {
     }
   }
 
+  private static final class RecordingWritableBufferAllocator extends BytesWritableBufferAllocator {
+    final List<Integer> capacityHints = new ArrayList<>();
+
+    RecordingWritableBufferAllocator() {
+      super(1, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public WritableBuffer allocate(int capacityHint) {
+      capacityHints.add(capacityHint);
+      return super.allocate(capacityHint);
+    }
+  }
+
   static class BytesWritableBufferAllocator implements WritableBufferAllocator {
     public int minSize;
     public int maxSize;
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link MessageSizeEstimator}.
+ */
+@RunWith(JUnit4.class)
+public class MessageSizeEstimatorTest {
+
+  @Test
+  public void noSamples_estimateIsZero() {
+    assertEquals(0, new MessageSizeEstimator(1024).estimate());
+  }
+
+  @Test
+  public void sizeClass() {
+    assertEquals(0, MessageSizeEstimator.sizeClass(0));
+    assertEquals(0, MessageSizeEstimator.sizeClass(1));
+    assertEquals(1, MessageSizeEstimator.sizeClass(2));
+    assertEquals(2, MessageSizeEstimator.sizeClass(3));
+    assertEquals(10, MessageSizeEstimator.sizeClass(1024));
+    assertEquals(11, MessageSizeEstimator.sizeClass(1025));
+    assertEquals(31, MessageSizeEstimator.sizeClass(Integer.MAX_VALUE));
+  }
+
+  @Test
+  public void estimateRoundsUpToPowerOfTwo() {
+    MessageSizeEstimator estimator = new MessageSizeEstimator(Integer.MAX_VALUE);
+    estimator.record(3000);
+    assertEquals(4096, estimator.estimate());
+  }
+
+  @Test
+  public void estimateCoversMostMessages() {
+    MessageSizeEstimator estimator = new MessageSizeEstimator(Integer.MAX_VALUE);
+    for (int i = 0; i < MessageSizeEstimator.RECOMPUTE_INTERVAL; i++) {
+      // One in sixteen messages is an outlier.
+      estimator.record(i % 16 == 0 ? 1000000 : 500);
+    }
+    assertEquals(512, estimator.estimate());
+  }
+
+  @Test
+  public void estimateFollowsChangingSizes() {
+    MessageSizeEstimator estimator = new MessageSizeEstimator(Integer.MAX_VALUE);
+    for (int i = 0; i < MessageSizeEstimator.RECOMPUTE_INTERVAL; i++) {
+      estimator.record(100);
+    }
+    assertEquals(128, estimator.estimate());
+    for (int i = 0; i < 4 * MessageSizeEstimator.RECOMPUTE_INTERVAL; i++) {
+      estimator.record(10000);
+    }
+    assertEquals(16384, estimator.estimate());
+  }
+
+  @Test
+  public void estimateIsCapped() {
+    MessageSizeEstimator estimator = new MessageSizeEstimator(1024);
+    estimator.record(1000000);
+    assertEquals(1024, estimator.estimate());
+  }
+
+  @Test
+  public void registry_returnsSameEstimatorForMethod() {
+    MessageSizeEstimator.Registry registry = new MessageSizeEstimator.Registry(10, 1024);
+    MessageSizeEstimator estimator = registry.get("service/method");
+    assertNotNull(estimator);
+    assertSame(estimator, registry.get("service/method"));
+  }
+
+  @Test
+  public void registry_full() {
+    MessageSizeEstimator.Registry registry = new MessageSizeEstimator.Registry(1, 1024);
+    MessageSizeEstimator estimator = registry.get("service/method1");
+    assertNull(registry.get("service/method2"));
+    assertSame(estimator, registry.get("service/method1"));
+  }
+}
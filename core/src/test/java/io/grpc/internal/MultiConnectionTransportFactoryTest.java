@@ -0,0 +1,328 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.grpc.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.ChannelLogger;
+import io.grpc.InternalChannelz.SocketStats;
+import io.grpc.InternalLogId;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.internal.ClientTransportFactory.ClientTransportOptions;
+import io.grpc.internal.ManagedClientTransport.Listener;
+import io.grpc.internal.MultiConnectionTransportFactory.MultiConnectionTransport;
+import io.grpc.testing.TestMethodDescriptors;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link MultiConnectionTransportFactory}. */
+@RunWith(JUnit4.class)
+public class MultiConnectionTransportFactoryTest {
+  private static final MethodDescriptor<Void, Void> METHOD = TestMethodDescriptors.voidMethod();
+
+  private final List<FakeTransport> transports = new ArrayList<>();
+  private final RecordingListener listener = new RecordingListener();
+  private FakeStream lastStream;
+  private MultiConnectionTransport transport;
+
+  @Before
+  public void setUp() {
+    MultiConnectionTransportFactory factory =
+        new MultiConnectionTransportFactory(new FakeTransportFactory(), 3, 2);
+    transport = (MultiConnectionTransport) factory.newClientTransport(
+        new InetSocketAddress("localhost", 443), new ClientTransportOptions(),
+        new NoopChannelLogger());
+    assertNull(transport.start(listener));
+    assertEquals(1, transports.size());
+    transports.get(0).listener.transportReady();
+    assertTrue(listener.ready);
+  }
+
+  @Test
+  public void opensExtraConnectionWhenStreamsReachLimit() {
+    newStream();
+    newStream();
+    assertEquals(1, transport.getConnectionCount());
+
+    // Still goes to the first connection, as the new one isn't ready yet
+    newStream();
+    assertEquals(2, transport.getConnectionCount());
+    assertEquals(3, transports.get(0).streams.size());
+    // Only one connection is opened at a time
+    newStream();
+    assertEquals(2, transport.getConnectionCount());
+
+    transports.get(1).listener.transportReady();
+    newStream();
+    newStream();
+    assertEquals(2, transports.get(1).streams.size());
+  }
+
+  @Test
+  public void connectionCountIsCapped() {
+    for (int i = 0; i < 20; i++) {
+      newStream();
+      FakeTransport last = transports.get(transports.size() - 1);
+      if (!last.ready) {
+        last.ready = true;
+        last.listener.transportReady();
+      }
+    }
+    assertEquals(3, transport.getConnectionCount());
+    assertEquals(3, transports.size());
+  }
+
+  @Test
+  public void closedStreamsAreReleased() {
+    newStream().closed(Status.OK, new Metadata());
+    newStream().closed(Status.OK, new Metadata());
+    newStream();
+    newStream();
+    assertEquals(1, transport.getConnectionCount());
+  }
+
+  @Test
+  public void failedExtraConnectionIsDropped() {
+    newStream();
+    newStream();
+    newStream();
+    FakeTransport extra = transports.get(1);
+    extra.listener.transportShutdown(Status.UNAVAILABLE);
+    extra.listener.transportTerminated();
+    assertNull(listener.shutdownStatus);
+    assertEquals(1, transport.getConnectionCount());
+
+    // A new one can be opened
+    newStream();
+    assertEquals(2, transport.getConnectionCount());
+  }
+
+  @Test
+  public void shutdownOfFirstConnectionShutsDownAll() {
+    newStream();
+    newStream();
+    newStream();
+    transports.get(1).listener.transportReady();
+
+    FakeTransport primary = transports.get(0);
+    primary.listener.transportShutdown(Status.UNAVAILABLE);
+    assertSame(Status.UNAVAILABLE, listener.shutdownStatus);
+    assertSame(Status.UNAVAILABLE, transports.get(1).shutdownStatus);
+
+    primary.listener.transportTerminated();
+    assertFalse(listener.terminated);
+    transports.get(1).listener.transportTerminated();
+    assertTrue(listener.terminated);
+  }
+
+  @Test
+  public void shutdownIsCalledOncePerConnection() {
+    newStream();
+    newStream();
+    newStream();
+    transport.shutdown(Status.UNAVAILABLE);
+    transports.get(0).listener.transportShutdown(Status.UNAVAILABLE);
+    assertEquals(1, transports.get(0).shutdownCalls);
+    assertEquals(1, transports.get(1).shutdownCalls);
+    assertEquals(1, listener.shutdownCalls);
+
+    // No new connections after shutdown
+    newStream();
+    newStream();
+    assertEquals(2, transports.size());
+  }
+
+  @Test
+  public void inUseIsAggregated() {
+    newStream();
+    newStream();
+    newStream();
+    FakeTransport primary = transports.get(0);
+    FakeTransport extra = transports.get(1);
+    primary.listener.transportInUse(true);
+    extra.listener.transportInUse(true);
+    assertEquals(1, listener.inUseChanges);
+    primary.listener.transportInUse(false);
+    assertTrue(listener.inUse);
+    extra.listener.transportInUse(false);
+    assertFalse(listener.inUse);
+    assertEquals(2, listener.inUseChanges);
+  }
+
+  /** Starts a new stream and returns the listener the underlying stream was started with. */
+  private ClientStreamListener newStream() {
+    ClientStream stream = transport.newStream(METHOD, new Metadata(), CallOptions.DEFAULT);
+    stream.start(new NoopClientStreamListener());
+    return lastStream.listener;
+  }
+
+  private static class NoopClientStreamListener implements ClientStreamListener {
+    @Override
+    public void messagesAvailable(MessageProducer producer) {}
+
+    @Override
+    public void onReady() {}
+
+    @Override
+    public void headersRead(Metadata headers) {}
+
+    @Override
+    public void closed(Status status, Metadata trailers) {}
+
+    @Override
+    public void closed(Status status, RpcProgress rpcProgress, Metadata trailers) {
+      closed(status, trailers);
+    }
+  }
+
+  private static final class RecordingListener implements Listener {
+    boolean ready;
+    Status shutdownStatus;
+    int shutdownCalls;
+    boolean terminated;
+    boolean inUse;
+    int inUseChanges;
+
+    @Override
+    public void transportShutdown(Status s) {
+      shutdownStatus = s;
+      shutdownCalls++;
+    }
+
+    @Override
+    public void transportTerminated() {
+      assertFalse(terminated);
+      terminated = true;
+    }
+
+    @Override
+    public void transportReady() {
+      ready = true;
+    }
+
+    @Override
+    public void transportInUse(boolean inUse) {
+      assertTrue(this.inUse != inUse);
+      this.inUse = inUse;
+      inUseChanges++;
+    }
+  }
+
+  private final class FakeTransportFactory implements ClientTransportFactory {
+    @Override
+    public ConnectionClientTransport newClientTransport(
+        SocketAddress serverAddress, ClientTransportOptions options, ChannelLogger channelLogger) {
+      FakeTransport transport = new FakeTransport();
+      transports.add(transport);
+      return transport;
+    }
+
+    @Override
+    public ScheduledExecutorService getScheduledExecutorService() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  private static final class FakeStream extends NoopClientStream {
+    ClientStreamListener listener;
+
+    @Override
+    public void start(ClientStreamListener listener) {
+      this.listener = listener;
+    }
+  }
+
+  private final class FakeTransport implements ConnectionClientTransport {
+    final InternalLogId logId = InternalLogId.allocate("fake", null);
+    final List<FakeStream> streams = new ArrayList<>();
+    Listener listener;
+    boolean ready;
+    Status shutdownStatus;
+    int shutdownCalls;
+
+    @Override
+    public Runnable start(Listener listener) {
+      this.listener = listener;
+      return null;
+    }
+
+    @Override
+    public ClientStream newStream(
+        MethodDescriptor<?, ?> method, Metadata headers, CallOptions callOptions) {
+      FakeStream stream = new FakeStream();
+      streams.add(stream);
+      lastStream = stream;
+      return stream;
+    }
+
+    @Override
+    public void ping(PingCallback callback, Executor executor) {}
+
+    @Override
+    public void shutdown(Status reason) {
+      shutdownStatus = reason;
+      shutdownCalls++;
+    }
+
+    @Override
+    public void shutdownNow(Status reason) {
+      shutdownStatus = reason;
+    }
+
+    @Override
+    public Attributes getAttributes() {
+      return Attributes.EMPTY;
+    }
+
+    @Override
+    public InternalLogId getLogId() {
+      return logId;
+    }
+
+    @Override
+    public ListenableFuture<SocketStats> getStats() {
+      return null;
+    }
+  }
+
+  private static final class NoopChannelLogger extends ChannelLogger {
+    @Override
+    public void log(ChannelLogLevel level, String message) {}
+
+    @Override
+    public void log(ChannelLogLevel level, String messageFormat, Object... args) {}
+  }
+}
@@ -19,6 +19,7 @@ package io.grpc.internal;
 import static com.google.common.base.Charsets.UTF_8;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
 
 import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
@@ -116,6 +117,40 @@ public abstract class ReadableBufferTestBase {
     assertArrayEquals(new byte[] {'h', 'e'}, Arrays.copyOfRange(array, 0, 2));     
   }
 
+  @Test
+  public void markAndResetWithReadToArrayShouldSucceed() {
+    ReadableBuffer buffer = buffer();
+    assumeTrue(buffer.markSupported());
+    byte[] array = new byte[msg.length()];
+    buffer.readBytes(array, 0, 2);
+    buffer.mark();
+    buffer.readBytes(array, 2, 3);
+    assertEquals(msg.length() - 5, buffer.readableBytes());
+    buffer.reset();
+    assertEquals(msg.length() - 2, buffer.readableBytes());
+    buffer.readBytes(array, 2, msg.length() - 2);
+    assertArrayEquals(msg.getBytes(UTF_8), array);
+  }
+
+  @Test
+  public void getByteBufferDoesNotAffectBufferPosition() {
+    ReadableBuffer buffer = buffer();
+    assumeTrue(buffer.byteBufferSupported());
+    ByteBuffer byteBuffer = buffer.getByteBuffer();
+    assertEquals(msg.length(), buffer.readableBytes());
+    byteBuffer.get(new byte[byteBuffer.remaining()]);
+    assertEquals(msg.length(), buffer.readableBytes());
+  }
+
+  @Test
+  public void getByteBufferShouldReturnNextReadableBytes() {
+    ReadableBuffer buffer = buffer();
+    assumeTrue(buffer.byteBufferSupported());
+    buffer.skipBytes(1);
+    ByteBuffer byteBuffer = buffer.getByteBuffer();
+    assertEquals(msg.charAt(1), byteBuffer.get());
+  }
+
   protected abstract ReadableBuffer buffer();
 
   private static String repeatUntilLength(String toRepeat, int length) {
@@ -19,12 +19,15 @@ package io.grpc.internal;
 import static com.google.common.base.Charsets.UTF_8;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import io.grpc.HasByteBuffer;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -128,4 +131,27 @@ public class ReadableBuffersTest {
     inputStream.close();
     verify(buffer, times(1)).close();
   }
+
+  @Test
+  public void bufferInputStream_getByteBuffer_doesNotAdvance() throws Exception {
+    ReadableBuffer buffer = ReadableBuffers.wrap(MSG_BYTES);
+    InputStream inputStream = ReadableBuffers.openStream(buffer, true);
+    assertTrue(((HasByteBuffer) inputStream).byteBufferSupported());
+    ByteBuffer byteBuffer = ((HasByteBuffer) inputStream).getByteBuffer();
+    assertEquals(5, byteBuffer.remaining());
+    assertEquals('h', byteBuffer.get());
+    assertEquals(5, inputStream.available());
+  }
+
+  @Test
+  public void bufferInputStream_markAndReset() throws Exception {
+    ReadableBuffer buffer = ReadableBuffers.wrap(MSG_BYTES);
+    InputStream inputStream = ReadableBuffers.openStream(buffer, true);
+    assertTrue(inputStream.markSupported());
+    assertEquals(1, inputStream.skip(1));
+    inputStream.mark(4);
+    assertEquals(4, inputStream.skip(10));
+    inputStream.reset();
+    assertEquals((int) 'e', inputStream.read());
+  }
 }
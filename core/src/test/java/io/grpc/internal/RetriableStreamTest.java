@@ -16,6 +16,7 @@
 
 package io.grpc.internal;
 
+import static com.google.common.base.Charsets.UTF_8;
 import static com.google.common.truth.Truth.assertThat;
 import static io.grpc.internal.ClientStreamListener.RpcProgress.DROPPED;
 import static io.grpc.internal.ClientStreamListener.RpcProgress.PROCESSED;
@@ -41,6 +42,7 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
 import com.google.common.util.concurrent.MoreExecutors;
 import io.grpc.ClientStreamTracer;
 import io.grpc.Codec;
@@ -57,11 +59,13 @@ import io.grpc.internal.RetriableStream.Throttle;
 import io.grpc.internal.StreamListener.MessageProducer;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import javax.annotation.Nullable;
 import org.junit.After;
@@ -1834,6 +1838,135 @@ public class RetriableStreamTest {
         "[closed=[UNAVAILABLE, INTERNAL], committed=[remote_addr=2.2.2.2:81]]");
   }
 
+  @Test
+  public void retry_messageSerializedOnFirstReplayOnly() throws Exception {
+    final List<InputStream> serializations = new ArrayList<>();
+    MethodDescriptor<String, String> countingMethod = method.toBuilder()
+        .setRequestMarshaller(new StringMarshaller() {
+          @Override
+          public InputStream stream(String value) {
+            InputStream stream = super.stream(value);
+            serializations.add(stream);
+            return stream;
+          }
+        })
+        .build();
+    RetriableStream<String> countingStream = new RecordedRetriableStream(
+        countingMethod, new Metadata(), channelBufferUsed, PER_RPC_BUFFER_LIMIT,
+        CHANNEL_BUFFER_LIMIT, MoreExecutors.directExecutor(),
+        fakeClock.getScheduledExecutorService(), RETRY_POLICY, HedgingPolicy.DEFAULT, null);
+    ClientStream mockStream1 = mock(ClientStream.class);
+    ClientStream mockStream2 = mock(ClientStream.class);
+    ClientStream mockStream3 = mock(ClientStream.class);
+    doReturn(mockStream1).when(retriableStreamRecorder).newSubstream(0);
+    doReturn(mockStream2).when(retriableStreamRecorder).newSubstream(1);
+    doReturn(mockStream3).when(retriableStreamRecorder).newSubstream(2);
+
+    countingStream.start(masterListener);
+    countingStream.sendMessage("msg");
+    // The first attempt gets the marshaller's stream, not a buffered copy.
+    assertEquals(1, serializations.size());
+    verify(mockStream1).writeMessage(serializations.get(0));
+
+    // retry1 replays the message from a serialized copy
+    ArgumentCaptor<ClientStreamListener> sublistenerCaptor1 =
+        ArgumentCaptor.forClass(ClientStreamListener.class);
+    verify(mockStream1).start(sublistenerCaptor1.capture());
+    sublistenerCaptor1.getValue().closed(Status.fromCode(RETRIABLE_STATUS_CODE_1), new Metadata());
+    fakeClock.forwardTime((long) (INITIAL_BACKOFF_IN_SECONDS * FAKE_RANDOM), TimeUnit.SECONDS);
+    assertEquals(2, serializations.size());
+
+    // retry2 reuses that copy
+    ArgumentCaptor<ClientStreamListener> sublistenerCaptor2 =
+        ArgumentCaptor.forClass(ClientStreamListener.class);
+    verify(mockStream2).start(sublistenerCaptor2.capture());
+    sublistenerCaptor2.getValue().closed(Status.fromCode(RETRIABLE_STATUS_CODE_1), new Metadata());
+    fakeClock.forwardTime(
+        (long) (INITIAL_BACKOFF_IN_SECONDS * BACKOFF_MULTIPLIER * FAKE_RANDOM), TimeUnit.SECONDS);
+    assertEquals(2, serializations.size());
+
+    for (ClientStream stream : Arrays.asList(mockStream2, mockStream3)) {
+      ArgumentCaptor<InputStream> message = ArgumentCaptor.forClass(InputStream.class);
+      verify(stream).writeMessage(message.capture());
+      assertEquals("msg", new String(ByteStreams.toByteArray(message.getValue()), UTF_8));
+    }
+
+    countingStream.cancel(Status.CANCELLED);
+  }
+
+  @Test
+  public void hedging_messageSerializedOnceForAllAttempts() throws Exception {
+    final AtomicInteger serializations = new AtomicInteger();
+    MethodDescriptor<String, String> countingMethod = method.toBuilder()
+        .setRequestMarshaller(new StringMarshaller() {
+          @Override
+          public InputStream stream(String value) {
+            serializations.incrementAndGet();
+            return super.stream(value);
+          }
+        })
+        .build();
+    RetriableStream<String> countingStream = new RecordedRetriableStream(
+        countingMethod, new Metadata(), channelBufferUsed, PER_RPC_BUFFER_LIMIT,
+        CHANNEL_BUFFER_LIMIT, MoreExecutors.directExecutor(),
+        fakeClock.getScheduledExecutorService(), RetryPolicy.DEFAULT, HEDGING_POLICY, null);
+    ClientStream mockStream1 = mock(ClientStream.class);
+    ClientStream mockStream2 = mock(ClientStream.class);
+    doReturn(mockStream1).when(retriableStreamRecorder).newSubstream(0);
+    doReturn(mockStream2).when(retriableStreamRecorder).newSubstream(1);
+
+    countingStream.start(masterListener);
+    countingStream.sendMessage("msg1");
+    // hedge2 starts and replays msg1
+    fakeClock.forwardTime(HEDGING_DELAY_IN_SECONDS, TimeUnit.SECONDS);
+    countingStream.sendMessage("msg2");
+
+    assertEquals(2, serializations.get());
+    ArgumentCaptor<InputStream> messages1 = ArgumentCaptor.forClass(InputStream.class);
+    verify(mockStream1, times(2)).writeMessage(messages1.capture());
+    ArgumentCaptor<InputStream> messages2 = ArgumentCaptor.forClass(InputStream.class);
+    verify(mockStream2, times(2)).writeMessage(messages2.capture());
+    for (List<InputStream> messages
+        : Arrays.asList(messages1.getAllValues(), messages2.getAllValues())) {
+      assertEquals("msg1", new String(ByteStreams.toByteArray(messages.get(0)), UTF_8));
+      assertEquals("msg2", new String(ByteStreams.toByteArray(messages.get(1)), UTF_8));
+    }
+
+    countingStream.cancel(Status.CANCELLED);
+  }
+
+  @Test
+  public void hedging_messageSizeReportedOnce() {
+    MethodDescriptor<String, String> knownLengthMethod = method.toBuilder()
+        .setRequestMarshaller(new StringMarshaller() {
+          @Override
+          public InputStream stream(String value) {
+            return ReadableBuffers.openStream(
+                ReadableBuffers.wrap(value.getBytes(UTF_8)), true);
+          }
+        })
+        .build();
+    RetriableStream<String> tracedStream = new RecordedRetriableStream(
+        knownLengthMethod, new Metadata(), channelBufferUsed, PER_RPC_BUFFER_LIMIT,
+        CHANNEL_BUFFER_LIMIT, MoreExecutors.directExecutor(),
+        fakeClock.getScheduledExecutorService(), RetryPolicy.DEFAULT, HEDGING_POLICY, null);
+    CallTracer.MethodTracer methodTracer = new CallTracer.MethodTracer();
+    tracedStream.setMethodTracer(methodTracer);
+    doReturn(mock(ClientStream.class)).when(retriableStreamRecorder).newSubstream(0);
+    doReturn(mock(ClientStream.class)).when(retriableStreamRecorder).newSubstream(1);
+
+    tracedStream.start(masterListener);
+    tracedStream.sendMessage("msg");
+    // hedge2 starts and replays the message
+    fakeClock.forwardTime(HEDGING_DELAY_IN_SECONDS, TimeUnit.SECONDS);
+    verify(retriableStreamRecorder).newSubstream(1);
+
+    assertEquals(1, methodTracer.getStats().sentMessageSizeBytes.count);
+    assertEquals(3, methodTracer.getStats().sentMessageSizeBytes.sum);
+
+    tracedStream.cancel(Status.CANCELLED);
+  }
+
   @Test
   public void hedging_maxAttempts() {
     ClientStream mockStream1 = mock(ClientStream.class);
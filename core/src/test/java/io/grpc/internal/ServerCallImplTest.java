@@ -34,6 +34,7 @@ import com.google.common.io.CharStreams;
 import io.grpc.CompressorRegistry;
 import io.grpc.Context;
 import io.grpc.DecompressorRegistry;
+import io.grpc.InternalChannelz.MethodStats;
 import io.grpc.InternalChannelz.ServerStats;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
@@ -131,6 +132,8 @@ public class ServerCallImplTest {
     } else {
       assertEquals(1, after.callsFailed);
     }
+    MethodStats methodStats = after.methodStats.get(UNARY_METHOD.getFullMethodName());
+    assertEquals(1, methodStats.callLatencyNanos.count);
   }
 
   @Test
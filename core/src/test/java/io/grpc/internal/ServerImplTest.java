@@ -465,6 +465,7 @@ public class ServerImplTest {
     Status status = statusCaptor.getValue();
     assertEquals(Status.Code.UNIMPLEMENTED, status.getCode());
     assertEquals("Method not found: Waiter/nonexist", status.getDescription());
+    verify(stream, never()).methodResolved(anyString());
 
     verify(streamTracerFactory).newServerStreamTracer(eq("Waiter/nonexist"), same(requestHeaders));
     assertNull(streamTracer.getServerCallInfo());
@@ -547,8 +548,10 @@ public class ServerImplTest {
     assertNotNull(streamListener);
     verify(stream, atLeast(1)).statsTraceContext();
     verify(fallbackRegistry, never()).lookupMethod(any(String.class), any(String.class));
+    verify(stream, never()).methodResolved(anyString());
 
     assertEquals(1, executor.runDueTasks());
+    verify(stream).methodResolved("Waiter/serve");
     ServerCall<String, Integer> call = callReference.get();
     assertNotNull(call);
     assertEquals(
@@ -1185,6 +1188,80 @@ public class ServerImplTest {
     verifyNoMoreInteractions(fallbackRegistry);
   }
 
+  @Test
+  public void concurrencyLimit_rejectsUnaryCallsUntilPermitReleased() throws Exception {
+    ServerTransportListener transportListener =
+        startServerWithConcurrencyLimit(MethodDescriptor.MethodType.UNARY);
+    Metadata requestHeaders = new Metadata();
+    StatsTraceContext statsTraceCtx =
+        StatsTraceContext.newServerContext(streamTracerFactories, "Waiter/serve", requestHeaders);
+    when(stream.statsTraceContext()).thenReturn(statsTraceCtx);
+
+    transportListener.streamCreated(stream, "Waiter/serve", requestHeaders);
+    verify(stream).setListener(streamListenerCaptor.capture());
+    ServerStreamListener streamListener = streamListenerCaptor.getValue();
+    assertEquals(1, executor.runDueTasks());
+
+    // The second call is rejected on the transport thread, without reaching the executor.
+    ServerStream rejectedStream = mock(ServerStream.class);
+    transportListener.streamCreated(rejectedStream, "Waiter/serve", new Metadata());
+    verify(rejectedStream).close(statusCaptor.capture(), any(Metadata.class));
+    assertEquals(Status.Code.RESOURCE_EXHAUSTED, statusCaptor.getValue().getCode());
+    assertEquals(0, executor.numPendingTasks());
+    InternalChannelz.ConcurrencyLimitStats stats = server.getStats().get().concurrencyLimit;
+    assertEquals(1, stats.callsInFlight);
+    assertEquals(1L, stats.callsRejected);
+
+    streamListener.closed(Status.OK);
+    assertEquals(1, executor.runDueTasks());
+    verify(callListener).onComplete();
+    assertEquals(0, server.getStats().get().concurrencyLimit.callsInFlight);
+
+    ServerStream nextStream = mock(ServerStream.class);
+    when(nextStream.statsTraceContext()).thenReturn(
+        StatsTraceContext.newServerContext(streamTracerFactories, "Waiter/serve", requestHeaders));
+    transportListener.streamCreated(nextStream, "Waiter/serve", requestHeaders);
+    verify(nextStream, never()).close(any(Status.class), any(Metadata.class));
+    assertEquals(1, executor.runDueTasks());
+    assertEquals(1, server.getStats().get().concurrencyLimit.callsInFlight);
+  }
+
+  @Test
+  public void concurrencyLimit_streamingCallsNotLimited() throws Exception {
+    ServerTransportListener transportListener =
+        startServerWithConcurrencyLimit(MethodDescriptor.MethodType.BIDI_STREAMING);
+    for (int i = 0; i < 2; i++) {
+      ServerStream callStream = mock(ServerStream.class);
+      Metadata requestHeaders = new Metadata();
+      when(callStream.statsTraceContext()).thenReturn(
+          StatsTraceContext.newServerContext(
+              streamTracerFactories, "Waiter/serve", requestHeaders));
+      transportListener.streamCreated(callStream, "Waiter/serve", requestHeaders);
+      verify(callStream, never()).close(any(Status.class), any(Metadata.class));
+      assertEquals(1, executor.runDueTasks());
+    }
+    InternalChannelz.ConcurrencyLimitStats stats = server.getStats().get().concurrencyLimit;
+    assertEquals(0, stats.callsInFlight);
+    assertEquals(0L, stats.callsRejected);
+  }
+
+  private ServerTransportListener startServerWithConcurrencyLimit(
+      MethodDescriptor.MethodType methodType) throws IOException {
+    MethodDescriptor<String, Integer> method = METHOD.toBuilder().setType(methodType).build();
+    builder.addService(
+        ServerServiceDefinition.builder(new ServiceDescriptor("Waiter", method))
+            .addMethod(method, callHandler).build());
+    when(callHandler.startCall(
+            ArgumentMatchers.<ServerCall<String, Integer>>any(), ArgumentMatchers.<Metadata>any()))
+        .thenReturn(callListener);
+    builder.concurrencyLimiter = new AdaptiveConcurrencyLimiter(1, 1, timer.getDeadlineTicker());
+    createAndStartServer();
+    ServerTransportListener transportListener
+        = transportServer.registerNewServerTransport(new SimpleServerTransport());
+    transportListener.transportReady(Attributes.EMPTY);
+    return transportListener;
+  }
+
   @Test
   public void messageRead_errorCancelsCall() throws Exception {
     JumpToApplicationThreadServerStreamListener listener
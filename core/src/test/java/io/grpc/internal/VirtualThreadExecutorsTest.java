@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Unit tests for {@link VirtualThreadExecutors}.
+ */
+@RunWith(JUnit4.class)
+public class VirtualThreadExecutorsTest {
+
+  @Test
+  public void newThreadPerTaskExecutor_runsTasksOnVirtualThreads() throws Exception {
+    assumeTrue(VirtualThreadExecutors.isSupported());
+    ExecutorService executor = VirtualThreadExecutors.newThreadPerTaskExecutor("test-");
+    final AtomicReference<Thread> thread = new AtomicReference<>();
+    final CountDownLatch latch = new CountDownLatch(1);
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        thread.set(Thread.currentThread());
+        latch.countDown();
+      }
+    });
+
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertEquals(true, Thread.class.getMethod("isVirtual").invoke(thread.get()));
+    assertThat(thread.get().getName()).startsWith("test-");
+    executor.shutdown();
+  }
+
+  @Test
+  public void newThreadPerTaskExecutor_unsupported() {
+    assumeFalse(VirtualThreadExecutors.isSupported());
+    try {
+      VirtualThreadExecutors.newThreadPerTaskExecutor("test-");
+      fail("Should have thrown");
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
+  @Test
+  public void sharedExecutor_matchesSupport() {
+    try {
+      assertThat(VirtualThreadExecutors.sharedExecutor()).isNotNull();
+      assertTrue(VirtualThreadExecutors.isSupported());
+    } catch (UnsupportedOperationException e) {
+      assertThat(VirtualThreadExecutors.isSupported()).isFalse();
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.netty;
+
+import io.grpc.Context;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.lang.reflect.Constructor;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares {@link FastThreadLocalContextStorage} with the default {@code ThreadLocal} storage for
+ * the attach, read, detach sequence measured by {@code AttachDetachBenchmark} in grpc-context.
+ *
+ * <p>JMH runs benchmarks on its own threads, which are never {@code FastThreadLocalThread}s, so
+ * each invocation hands a batch of operations to a single worker thread of the chosen kind. The
+ * handoff is the same for every configuration and is amortized over the batch.
+ */
+@State(Scope.Benchmark)
+public class ContextStorageBenchmark {
+  private static final int OPS_PER_INVOCATION = 10000;
+
+  public enum StorageType {
+    THREAD_LOCAL, FAST_THREAD_LOCAL
+  }
+
+  @Param
+  public StorageType storageType;
+
+  @Param({"true", "false"})
+  public boolean fastThreadLocalThread;
+
+  private final Context.Key<Integer> key = Context.keyWithDefault("key", 9999);
+  private final Context context = Context.ROOT.withValue(key, 8888);
+  private Context.Storage storage;
+  private ExecutorService worker;
+  private Callable<Integer> batch;
+
+  /**
+   * Creates the storage under test and its worker thread.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    storage = storageType == StorageType.FAST_THREAD_LOCAL
+        ? new FastThreadLocalContextStorage() : newDefaultStorage();
+    ThreadFactory threadFactory = fastThreadLocalThread
+        ? new DefaultThreadFactory("benchmark-worker", true) : Executors.defaultThreadFactory();
+    worker = Executors.newSingleThreadExecutor(threadFactory);
+    batch = new Callable<Integer>() {
+      @Override
+      public Integer call() {
+        int sum = 0;
+        for (int i = 0; i < OPS_PER_INVOCATION; i++) {
+          Context previous = storage.doAttach(context);
+          try {
+            sum += key.get(storage.current());
+          } finally {
+            storage.detach(context, previous);
+          }
+        }
+        return sum;
+      }
+    };
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    worker.shutdown();
+  }
+
+  /**
+   * Attaches a context, reads a key from the current context and detaches it again.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @OperationsPerInvocation(OPS_PER_INVOCATION)
+  public int attachDetach() throws Exception {
+    return worker.submit(batch).get();
+  }
+
+  private static Context.Storage newDefaultStorage() throws Exception {
+    // ThreadLocalContextStorage is package-private
+    Constructor<? extends Context.Storage> constructor =
+        Class.forName("io.grpc.ThreadLocalContextStorage")
+            .asSubclass(Context.Storage.class)
+            .getDeclaredConstructor();
+    constructor.setAccessible(true);
+    return constructor.newInstance();
+  }
+}
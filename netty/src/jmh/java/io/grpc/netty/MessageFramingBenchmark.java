@@ -0,0 +1,338 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.netty;
+
+import io.grpc.Codec;
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.internal.MessageDeframer;
+import io.grpc.internal.MessageFramer;
+import io.grpc.internal.ReadableBuffer;
+import io.grpc.internal.ReadableBuffers;
+import io.grpc.internal.StatsTraceContext;
+import io.grpc.internal.StreamListener;
+import io.grpc.internal.TransportTracer;
+import io.grpc.internal.WritableBuffer;
+import io.grpc.internal.WritableBufferAllocator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for {@link MessageFramer#writePayload} and {@link MessageDeframer#deframe}, isolated
+ * from the rest of the transport.
+ *
+ * <p>Run with the GC profiler to get allocation rates per operation:
+ * <pre>
+ *   ./gradlew -PjmhIncludeSingleClass=MessageFramingBenchmark -PjmhProfilers=gc :grpc-netty:jmh
+ * </pre>
+ */
+public class MessageFramingBenchmark {
+
+  /** The kind of buffers the transport provides. */
+  public enum BufferType {
+    /** Pooled direct Netty buffers, as used by the Netty transport. */
+    NETTY,
+    /** Plain heap arrays. */
+    HEAP
+  }
+
+  /** The kind of {@link InputStream} a marshaller returns. */
+  public enum StreamType {
+    /** A {@link KnownLength} stream that is copied into the framer. */
+    KNOWN_LENGTH,
+    /** A {@link KnownLength} stream that drains itself into the framer. */
+    DRAINABLE,
+    /** A stream whose length is only known after reading it. */
+    UNKNOWN_LENGTH
+  }
+
+  @State(Scope.Thread)
+  public static class FramerState {
+    @Param({"64", "4096", "65536", "1048576"})
+    public int payloadSize;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    @Param
+    public BufferType bufferType;
+
+    @Param
+    public StreamType streamType;
+
+    byte[] payload;
+    MessageFramer framer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      payload = newPayload(payloadSize);
+      framer = newFramer(bufferType, gzip, new MessageFramer.Sink() {
+        @Override
+        public void deliverFrame(
+            @Nullable WritableBuffer frame, boolean endOfStream, boolean flush, int numMessages) {
+          if (frame != null) {
+            frame.release();
+          }
+        }
+      });
+    }
+
+    InputStream newStream() {
+      switch (streamType) {
+        case KNOWN_LENGTH:
+          return new ByteArrayInputStream(payload);
+        case DRAINABLE:
+          return new DrainableByteArrayInputStream(payload);
+        case UNKNOWN_LENGTH:
+          return new FilterInputStream(new ByteArrayInputStream(payload)) {};
+        default:
+          throw new AssertionError();
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class DeframerState {
+    @Param({"64", "4096", "65536", "1048576"})
+    public int payloadSize;
+
+    /** The size of the buffers the message arrives in, as read from the socket. */
+    @Param({"1024", "16384", "2097152"})
+    public int fragmentSize;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    @Param
+    public BufferType bufferType;
+
+    byte[] framedMessage;
+    ByteBuf framedMessageBuf;
+    MessageDeframer deframer;
+    Blackhole blackhole;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) throws IOException {
+      this.blackhole = blackhole;
+      final ByteArrayOutputStream framed = new ByteArrayOutputStream();
+      MessageFramer framer = newFramer(BufferType.HEAP, gzip, new MessageFramer.Sink() {
+        @Override
+        public void deliverFrame(
+            @Nullable WritableBuffer frame, boolean endOfStream, boolean flush, int numMessages) {
+          if (frame != null) {
+            HeapWritableBuffer heapFrame = (HeapWritableBuffer) frame;
+            framed.write(heapFrame.data, 0, heapFrame.readableBytes());
+          }
+        }
+      });
+      framer.writePayload(new ByteArrayInputStream(newPayload(payloadSize)));
+      framer.flush();
+      framedMessage = framed.toByteArray();
+      framedMessageBuf = Unpooled.directBuffer(framedMessage.length).writeBytes(framedMessage);
+
+      deframer = new MessageDeframer(
+          new MessageDeframer.Listener() {
+            @Override
+            public void bytesRead(int numBytes) {}
+
+            @Override
+            public void messagesAvailable(StreamListener.MessageProducer producer) {
+              InputStream message;
+              while ((message = producer.next()) != null) {
+                consume(message);
+              }
+            }
+
+            @Override
+            public void deframerClosed(boolean hasPartialMessage) {}
+
+            @Override
+            public void deframeFailed(Throwable cause) {
+              throw new AssertionError(cause);
+            }
+          },
+          gzip ? new Codec.Gzip() : Codec.Identity.NONE,
+          Integer.MAX_VALUE,
+          StatsTraceContext.NOOP,
+          new TransportTracer());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      deframer.close();
+      framedMessageBuf.release();
+    }
+
+    private final byte[] readBuffer = new byte[8192];
+
+    private void consume(InputStream message) {
+      try {
+        try {
+          int read;
+          while ((read = message.read(readBuffer)) != -1) {
+            blackhole.consume(read);
+          }
+        } finally {
+          message.close();
+        }
+      } catch (IOException e) {
+        throw new AssertionError(e);
+      }
+    }
+
+    ReadableBuffer fragment(int offset, int length) {
+      switch (bufferType) {
+        case NETTY:
+          // Like a socket read, the fragment is a separately reference counted direct buffer.
+          return new NettyReadableBuffer(framedMessageBuf.retainedSlice(offset, length));
+        case HEAP:
+          return ReadableBuffers.wrap(framedMessage, offset, length);
+        default:
+          throw new AssertionError();
+      }
+    }
+  }
+
+  /**
+   * Frames one message and flushes it.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public void writePayload(FramerState state) {
+    state.framer.writePayload(state.newStream());
+    state.framer.flush();
+  }
+
+  /**
+   * Deframes one message that arrives in {@code fragmentSize} buffers and reads it.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public void deframe(DeframerState state) {
+    state.deframer.request(1);
+    int length = state.framedMessage.length;
+    for (int offset = 0; offset < length; offset += state.fragmentSize) {
+      state.deframer.deframe(state.fragment(offset, Math.min(state.fragmentSize, length - offset)));
+    }
+  }
+
+  private static byte[] newPayload(int size) {
+    // Somewhat compressible, like typical protobuf payloads.
+    Random random = new Random(size);
+    byte[] payload = new byte[size];
+    for (int i = 0; i < size; i++) {
+      payload[i] = (byte) ('a' + random.nextInt(16));
+    }
+    return payload;
+  }
+
+  private static MessageFramer newFramer(
+      BufferType bufferType, boolean gzip, MessageFramer.Sink sink) {
+    WritableBufferAllocator allocator;
+    switch (bufferType) {
+      case NETTY:
+        allocator = new NettyWritableBufferAllocator(PooledByteBufAllocator.DEFAULT);
+        break;
+      case HEAP:
+        allocator = new WritableBufferAllocator() {
+          @Override
+          public WritableBuffer allocate(int capacityHint) {
+            return new HeapWritableBuffer(Math.max(4096, Math.min(capacityHint, 1024 * 1024)));
+          }
+        };
+        break;
+      default:
+        throw new AssertionError();
+    }
+    MessageFramer framer = new MessageFramer(sink, allocator, StatsTraceContext.NOOP);
+    if (gzip) {
+      framer.setCompressor(new Codec.Gzip());
+    }
+    return framer;
+  }
+
+  private static final class HeapWritableBuffer implements WritableBuffer {
+    final byte[] data;
+    int writerIndex;
+
+    HeapWritableBuffer(int capacity) {
+      data = new byte[capacity];
+    }
+
+    @Override
+    public void write(byte[] src, int srcIndex, int length) {
+      System.arraycopy(src, srcIndex, data, writerIndex, length);
+      writerIndex += length;
+    }
+
+    @Override
+    public void write(byte b) {
+      data[writerIndex++] = b;
+    }
+
+    @Override
+    public int writableBytes() {
+      return data.length - writerIndex;
+    }
+
+    @Override
+    public int readableBytes() {
+      return writerIndex;
+    }
+
+    @Override
+    public void release() {}
+  }
+
+  private static final class DrainableByteArrayInputStream extends ByteArrayInputStream
+      implements Drainable, KnownLength {
+    DrainableByteArrayInputStream(byte[] buf) {
+      super(buf);
+    }
+
+    @Override
+    public int drainTo(OutputStream target) throws IOException {
+      int length = count - pos;
+      target.write(buf, pos, length);
+      pos = count;
+      return length;
+    }
+  }
+}
@@ -60,6 +60,8 @@ public class OutboundHeadersBenchmark {
   private final AsciiString defaultPath = new AsciiString("/Service.MethodMethodMethod");
   private final AsciiString authority = new AsciiString("authority.googleapis.bogus");
   private final AsciiString userAgent = new AsciiString("grpc-java-netty");
+  private final GrpcHttp2OutboundHeaders.ClientRequestTemplate template =
+      new GrpcHttp2OutboundHeaders.ClientRequestTemplate(defaultPath);
   private final Http2HeadersEncoder headersEncoder = new DefaultHttp2HeadersEncoder();
   private final ByteBuf scratchBuffer = UnpooledByteBufAllocator.DEFAULT.buffer(4096);
 
@@ -78,6 +80,13 @@ public class OutboundHeadersBenchmark {
         userAgent);
   }
 
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Http2Headers convertClientHeadersFromTemplate() {
+    return Utils.convertClientHeaders(metadata, template, scheme, authority, userAgent);
+  }
+
   @Benchmark
   @BenchmarkMode(Mode.SampleTime)
   @OutputTimeUnit(TimeUnit.NANOSECONDS)
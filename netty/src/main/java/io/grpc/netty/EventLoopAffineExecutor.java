@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.netty;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.netty.util.concurrent.DefaultEventExecutor;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.internal.ThreadExecutorMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * An {@link Executor} that pairs each Netty event loop with a dedicated worker thread. Tasks
+ * submitted from an event loop run on that loop's worker, and tasks submitted from a worker stay
+ * on it, so the work for a connection keeps moving between the same two threads and their caches
+ * stay warm. Tasks submitted from any other thread are spread over the workers round-robin.
+ *
+ * <p>At most {@code maxWorkers} workers are created; further event loops share existing workers.
+ * An event loop's assignment is dropped when the loop terminates.
+ * Since each worker is a single thread, a task that blocks delays every other call from the same
+ * event loop. This suits small, non-blocking handlers.
+ */
+final class EventLoopAffineExecutor implements Executor {
+  private final ThreadFactory threadFactory;
+  private final int maxWorkers;
+  // Keyed by event loop. Workers map to themselves.
+  private final ConcurrentMap<EventExecutor, EventExecutor> workerByExecutor =
+      new ConcurrentHashMap<>();
+  private final Object lock = new Object();
+  @GuardedBy("lock")
+  private final List<EventExecutor> workers = new ArrayList<>();
+  @GuardedBy("lock")
+  private int nextWorker;
+  @GuardedBy("lock")
+  private boolean shutdown;
+
+  EventLoopAffineExecutor(ThreadFactory threadFactory, int maxWorkers) {
+    this.threadFactory = checkNotNull(threadFactory, "threadFactory");
+    checkArgument(maxWorkers > 0, "maxWorkers must be positive");
+    this.maxWorkers = maxWorkers;
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    workerForCurrentThread().execute(command);
+  }
+
+  @VisibleForTesting
+  EventExecutor workerForCurrentThread() {
+    EventExecutor current = ThreadExecutorMap.currentExecutor();
+    if (current != null) {
+      EventExecutor worker = workerByExecutor.get(current);
+      if (worker != null) {
+        return worker;
+      }
+    }
+    synchronized (lock) {
+      if (shutdown) {
+        throw new RejectedExecutionException("Executor has been shut down");
+      }
+      if (current == null) {
+        return nextWorker();
+      }
+      EventExecutor worker = workerByExecutor.get(current);
+      if (worker == null) {
+        worker = workers.size() < maxWorkers ? newWorker() : nextWorker();
+        workerByExecutor.put(current, worker);
+        forgetOnTermination(current);
+      }
+      return worker;
+    }
+  }
+
+  /** Drops the worker assigned to the event loop once the loop terminates. */
+  private void forgetOnTermination(final EventExecutor eventLoop) {
+    eventLoop.terminationFuture().addListener(new FutureListener<Object>() {
+      @Override
+      public void operationComplete(Future<Object> future) {
+        workerByExecutor.remove(eventLoop);
+      }
+    });
+  }
+
+  @VisibleForTesting
+  boolean hasWorkerFor(EventExecutor eventLoop) {
+    return workerByExecutor.containsKey(eventLoop);
+  }
+
+  @GuardedBy("lock")
+  private EventExecutor nextWorker() {
+    if (workers.isEmpty()) {
+      return newWorker();
+    }
+    EventExecutor worker = workers.get(nextWorker);
+    nextWorker = (nextWorker + 1) % workers.size();
+    return worker;
+  }
+
+  @GuardedBy("lock")
+  private EventExecutor newWorker() {
+    EventExecutor worker = new DefaultEventExecutor(threadFactory);
+    workers.add(worker);
+    workerByExecutor.put(worker, worker);
+    return worker;
+  }
+
+  void shutdown() {
+    List<EventExecutor> toShutdown;
+    synchronized (lock) {
+      shutdown = true;
+      toShutdown = new ArrayList<>(workers);
+      workers.clear();
+    }
+    workerByExecutor.clear();
+    for (EventExecutor worker : toShutdown) {
+      worker.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+    }
+  }
+}
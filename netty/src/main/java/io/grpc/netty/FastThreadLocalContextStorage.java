@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.netty;
+
+import io.grpc.Context;
+import io.grpc.ExperimentalApi;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.concurrent.FastThreadLocalThread;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link Context.Storage} that keeps the current context in a {@link FastThreadLocal} on
+ * Netty's {@link FastThreadLocalThread}s, such as event loops and the threads of Netty's
+ * {@code DefaultThreadFactory}. Lookups there are an array index instead of a hash probe of the
+ * thread's {@code ThreadLocal} map. On any other thread it behaves like the default storage, using
+ * a plain {@link ThreadLocal}.
+ *
+ * <p>To use it, add a class named {@code io.grpc.override.ContextStorageOverride} that extends this
+ * class to the classpath. See {@link Context.Storage}.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/2462")
+public class FastThreadLocalContextStorage extends Context.Storage {
+  private static final Logger log = Logger.getLogger(FastThreadLocalContextStorage.class.getName());
+
+  private static final FastThreadLocal<Context> fastLocalContext = new FastThreadLocal<>();
+  private static final ThreadLocal<Context> localContext = new ThreadLocal<>();
+
+  @Override
+  public Context doAttach(Context toAttach) {
+    if (Thread.currentThread() instanceof FastThreadLocalThread) {
+      Context current = fastLocalContext.get();
+      fastLocalContext.set(toAttach);
+      return current != null ? current : Context.ROOT;
+    }
+    Context current = localContext.get();
+    localContext.set(toAttach);
+    return current != null ? current : Context.ROOT;
+  }
+
+  @Override
+  public void detach(Context toDetach, Context toRestore) {
+    // As in the default storage, don't keep ROOT referenced from the thread so that threads reused
+    // across ClassLoaders don't leak them.
+    Context restored = toRestore != Context.ROOT ? toRestore : null;
+    Context current;
+    if (Thread.currentThread() instanceof FastThreadLocalThread) {
+      current = fastLocalContext.get();
+      fastLocalContext.set(restored);
+    } else {
+      current = localContext.get();
+      localContext.set(restored);
+    }
+    if ((current != null ? current : Context.ROOT) != toDetach) {
+      // Log a severe message instead of throwing an exception, as the default storage does. The
+      // unbalanced state is a coding mistake in a lower layer that cannot be recovered from here.
+      log.log(Level.SEVERE, "Context was not attached when detaching",
+          new Throwable().fillInStackTrace());
+    }
+  }
+
+  @Override
+  public Context current() {
+    Context current = Thread.currentThread() instanceof FastThreadLocalThread
+        ? fastLocalContext.get() : localContext.get();
+    return current != null ? current : Context.ROOT;
+  }
+}
@@ -21,6 +21,8 @@ import io.netty.util.AsciiString;
 import java.util.Iterator;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * A custom implementation of Http2Headers that only includes methods used by gRPC.
@@ -31,10 +33,21 @@ final class GrpcHttp2OutboundHeaders extends AbstractHttp2Headers {
   private final AsciiString[] preHeaders;
   private static final AsciiString[] EMPTY = new AsciiString[]{};
 
+  // Indexes of the values in the client request preHeaders that vary between channels of the same
+  // authority.
+  private static final int SCHEME_INDEX = 7;
+  private static final int USER_AGENT_INDEX = 13;
+
   static GrpcHttp2OutboundHeaders clientRequestHeaders(byte[][] serializedMetadata,
       AsciiString authority, AsciiString path, AsciiString method, AsciiString scheme,
       AsciiString userAgent) {
-    AsciiString[] preHeaders = new AsciiString[] {
+    return new GrpcHttp2OutboundHeaders(
+        clientRequestPreHeaders(authority, path, method, scheme, userAgent), serializedMetadata);
+  }
+
+  private static AsciiString[] clientRequestPreHeaders(AsciiString authority, AsciiString path,
+      AsciiString method, AsciiString scheme, AsciiString userAgent) {
+    return new AsciiString[] {
         Http2Headers.PseudoHeaderName.AUTHORITY.value(), authority,
         Http2Headers.PseudoHeaderName.PATH.value(), path,
         Http2Headers.PseudoHeaderName.METHOD.value(), method,
@@ -43,7 +56,6 @@ final class GrpcHttp2OutboundHeaders extends AbstractHttp2Headers {
         Utils.TE_HEADER, Utils.TE_TRAILERS,
         Utils.USER_AGENT, userAgent,
     };
-    return new GrpcHttp2OutboundHeaders(preHeaders, serializedMetadata);
   }
 
   static GrpcHttp2OutboundHeaders serverResponseHeaders(byte[][] serializedMetadata) {
@@ -66,6 +78,47 @@ final class GrpcHttp2OutboundHeaders extends AbstractHttp2Headers {
     this.preHeaders = preHeaders;
   }
 
+  /**
+   * The reserved headers of POST requests for one method. They are created once per authority and
+   * shared by all calls of the method to that authority, so a call only converts its own metadata.
+   * Sharing the same {@link AsciiString}s also lets Netty's HPACK encoder reuse their hash codes
+   * when it looks them up in its dynamic table.
+   */
+  static final class ClientRequestTemplate {
+    // Bounds the headers kept per method. Calls to further authorities build their own headers.
+    private static final int MAX_AUTHORITIES = 8;
+
+    private final AsciiString path;
+    private final ConcurrentMap<AsciiString, AsciiString[]> preHeadersByAuthority =
+        new ConcurrentHashMap<>();
+
+    ClientRequestTemplate(AsciiString path) {
+      this.path = path;
+    }
+
+    AsciiString path() {
+      return path;
+    }
+
+    GrpcHttp2OutboundHeaders newHeaders(byte[][] serializedMetadata, AsciiString authority,
+        AsciiString scheme, AsciiString userAgent) {
+      AsciiString[] preHeaders = preHeadersByAuthority.get(authority);
+      if (preHeaders == null
+          || !preHeaders[SCHEME_INDEX].equals(scheme)
+          || !preHeaders[USER_AGENT_INDEX].equals(userAgent)) {
+        // Channels to the same authority with a different scheme or user agent replace each
+        // other's headers. Either way the result is correct, it is only recreated more often.
+        preHeaders =
+            clientRequestPreHeaders(authority, path, Utils.HTTP_METHOD, scheme, userAgent);
+        if (preHeadersByAuthority.size() < MAX_AUTHORITIES
+            || preHeadersByAuthority.containsKey(authority)) {
+          preHeadersByAuthority.put(authority, preHeaders);
+        }
+      }
+      return new GrpcHttp2OutboundHeaders(preHeaders, serializedMetadata);
+    }
+  }
+
   @Override
   @SuppressWarnings("ReferenceEquality") // STATUS.value() never changes.
   public CharSequence status() {
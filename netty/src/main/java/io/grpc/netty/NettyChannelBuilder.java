@@ -154,8 +154,9 @@ public final class NettyChannelBuilder
   }
 
   /**
-   * Specifies the channel type to use, by default we use {@code EpollSocketChannel} if available,
-   * otherwise using {@link NioSocketChannel}.
+   * Specifies the channel type to use, by default we use {@code IOUringSocketChannel} if the netty
+   * io_uring transport is on the classpath and supported by the kernel, otherwise {@code
+   * EpollSocketChannel} if available, otherwise using {@link NioSocketChannel}.
    *
    * <p>You either use this or {@link #channelFactory(io.netty.channel.ChannelFactory)} if your
    * {@link Channel} implementation has no no-args constructor.
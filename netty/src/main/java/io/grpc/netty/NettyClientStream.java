@@ -32,9 +32,11 @@ import io.grpc.MethodDescriptor;
 import io.grpc.Status;
 import io.grpc.internal.AbstractClientStream;
 import io.grpc.internal.Http2ClientStreamTransportState;
+import io.grpc.internal.MessageSizeEstimator;
 import io.grpc.internal.StatsTraceContext;
 import io.grpc.internal.TransportTracer;
 import io.grpc.internal.WritableBuffer;
+import io.grpc.netty.GrpcHttp2OutboundHeaders.ClientRequestTemplate;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
@@ -87,6 +89,11 @@ class NettyClientStream extends AbstractClientStream {
     this.state = checkNotNull(state, "transportState");
     this.writeQueue = state.handler.getWriteQueue();
     this.method = checkNotNull(method, "method");
+    MessageSizeEstimator sizeEstimator =
+        NettyWritableBufferAllocator.requestSizeEstimators.get(method.getFullMethodName());
+    if (sizeEstimator != null) {
+      framer().setMessageSizeEstimator(sizeEstimator);
+    }
     this.authority = checkNotNull(authority, "authority");
     this.scheme = checkNotNull(scheme, "scheme");
     this.userAgent = userAgent;
@@ -126,24 +133,25 @@ class NettyClientStream extends AbstractClientStream {
 
     private void writeHeadersInternal(Metadata headers, byte[] requestPayload) {
       // Convert the headers into Netty HTTP/2 headers.
-      AsciiString defaultPath = (AsciiString) methodDescriptorAccessor.geRawMethodName(method);
-      if (defaultPath == null) {
-        defaultPath = new AsciiString("/" + method.getFullMethodName());
-        methodDescriptorAccessor.setRawMethodName(method, defaultPath);
+      ClientRequestTemplate template =
+          (ClientRequestTemplate) methodDescriptorAccessor.geRawMethodName(method);
+      if (template == null) {
+        template = new ClientRequestTemplate(new AsciiString("/" + method.getFullMethodName()));
+        methodDescriptorAccessor.setRawMethodName(method, template);
       }
       boolean get = (requestPayload != null);
-      AsciiString httpMethod;
+      Http2Headers http2Headers;
       if (get) {
         // Forge the query string
         // TODO(ericgribkoff) Add the key back to the query string
-        defaultPath =
-            new AsciiString(defaultPath + "?" + BaseEncoding.base64().encode(requestPayload));
-        httpMethod = Utils.HTTP_GET_METHOD;
+        AsciiString path = new AsciiString(
+            template.path() + "?" + BaseEncoding.base64().encode(requestPayload));
+        http2Headers = Utils.convertClientHeaders(headers, scheme, path, authority,
+            Utils.HTTP_GET_METHOD, userAgent);
       } else {
-        httpMethod = Utils.HTTP_METHOD;
+        http2Headers =
+            Utils.convertClientHeaders(headers, template, scheme, authority, userAgent);
       }
-      Http2Headers http2Headers = Utils.convertClientHeaders(headers, scheme, defaultPath,
-          authority, httpMethod, userAgent);
 
       ChannelFutureListener failureListener = new ChannelFutureListener() {
         @Override
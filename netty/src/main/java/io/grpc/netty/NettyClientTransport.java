@@ -245,15 +245,15 @@ class NettyClientTransport implements ConnectionClientTransport {
     b.option(ALLOCATOR, Utils.getByteBufAllocator(false));
     b.attr(LOGGER_KEY, channelLogger);
     b.group(eventLoop);
-    b.channelFactory(channelFactory);
     // For non-socket based channel, the option will be ignored.
     b.option(SO_KEEPALIVE, true);
-    // For non-epoll based channel, the option will be ignored.
     if (keepAliveTimeNanos != KEEPALIVE_TIME_NANOS_DISABLED) {
-      ChannelOption<Integer> tcpUserTimeout = Utils.maybeGetTcpUserTimeoutOption();
-      if (tcpUserTimeout != null) {
-        b.option(tcpUserTimeout, (int) TimeUnit.NANOSECONDS.toMillis(keepAliveTimeoutNanos));
-      }
+      // The TCP_USER_TIMEOUT option depends on the native transport of the channel, which is only
+      // known once the factory created it. Channel options set below may still override it.
+      b.channelFactory(new TcpUserTimeoutChannelFactory(
+          channelFactory, (int) TimeUnit.NANOSECONDS.toMillis(keepAliveTimeoutNanos)));
+    } else {
+      b.channelFactory(channelFactory);
     }
     for (Map.Entry<ChannelOption<?>, ?> entry : channelOptions.entrySet()) {
       // Every entry in the map is obtained from
@@ -408,7 +408,7 @@ class NettyClientTransport implements ConnectionClientTransport {
         transportTracer.getStats(),
         channel.localAddress(),
         channel.remoteAddress(),
-        Utils.getSocketOptions(ch),
+        Utils.getSocketOptions(ch, handler == null ? null : handler.getWriteQueue()),
         handler == null ? null : handler.getSecurityInfo());
   }
 
@@ -445,4 +445,35 @@ class NettyClientTransport implements ConnectionClientTransport {
     }
     return Utils.statusFromThrowable(t);
   }
+
+  /**
+   * Sets TCP_USER_TIMEOUT on each created channel if its native transport supports it. For other
+   * channels the option is not set.
+   */
+  private static final class TcpUserTimeoutChannelFactory implements ChannelFactory<Channel> {
+    private final ChannelFactory<? extends Channel> delegate;
+    private final int tcpUserTimeoutMillis;
+
+    TcpUserTimeoutChannelFactory(
+        ChannelFactory<? extends Channel> delegate, int tcpUserTimeoutMillis) {
+      this.delegate = delegate;
+      this.tcpUserTimeoutMillis = tcpUserTimeoutMillis;
+    }
+
+    @Override
+    public Channel newChannel() {
+      Channel channel = delegate.newChannel();
+      ChannelOption<Integer> tcpUserTimeout =
+          Utils.maybeGetTcpUserTimeoutOption(channel.getClass());
+      if (tcpUserTimeout != null) {
+        channel.config().setOption(tcpUserTimeout, tcpUserTimeoutMillis);
+      }
+      return channel;
+    }
+
+    @Override
+    public String toString() {
+      return delegate.toString();
+    }
+  }
 }
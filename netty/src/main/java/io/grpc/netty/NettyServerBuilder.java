@@ -149,8 +149,9 @@ public final class NettyServerBuilder extends AbstractServerImplBuilder<NettySer
   }
 
   /**
-   * Specifies the channel type to use, by default we use {@code EpollServerSocketChannel} if
-   * available, otherwise using {@link NioServerSocketChannel}.
+   * Specifies the channel type to use, by default we use {@code IOUringServerSocketChannel} if the
+   * netty io_uring transport is on the classpath and supported by the kernel, otherwise {@code
+   * EpollServerSocketChannel} if available, otherwise using {@link NioServerSocketChannel}.
    *
    * <p>You either use this or {@link #channelFactory(io.netty.channel.ChannelFactory)} if your
    * {@link ServerChannel} implementation has no no-args constructor.
@@ -282,6 +283,23 @@ public final class NettyServerBuilder extends AbstractServerImplBuilder<NettySer
     return this;
   }
 
+  /**
+   * Runs application code on worker threads that are each paired with one of the server's event
+   * loops. Callbacks for a call run on the worker of the event loop that serves its connection, so
+   * a request stays on the same two threads from the socket to the application and back, instead
+   * of being handed to an arbitrary thread of a shared pool.
+   *
+   * <p>There is one worker per available processor, so event loops beyond that share workers; with
+   * the default worker event loop group each worker serves two event loops. Each worker is a single
+   * thread, so application code must not block; a blocked call delays the other calls of its event
+   * loops. The workers are shared by all servers using this option.
+   * Like {@link #executor}, this replaces any previously configured executor.
+   */
+  public NettyServerBuilder eventLoopAffineExecutor() {
+    setExecutorPool(SharedResourcePool.forResource(Utils.EVENT_LOOP_AFFINE_EXECUTOR));
+    return this;
+  }
+
   /**
    * Force using heap buffer when custom allocator is enabled.
    */
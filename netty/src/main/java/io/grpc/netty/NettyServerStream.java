@@ -23,6 +23,7 @@ import io.grpc.Attributes;
 import io.grpc.Metadata;
 import io.grpc.Status;
 import io.grpc.internal.AbstractServerStream;
+import io.grpc.internal.MessageSizeEstimator;
 import io.grpc.internal.StatsTraceContext;
 import io.grpc.internal.TransportTracer;
 import io.grpc.internal.WritableBuffer;
@@ -71,6 +72,19 @@ class NettyServerStream extends AbstractServerStream {
     this.streamId = transportState().id();
   }
 
+  /**
+   * Sizes the buffers for responses of unknown length based on the responses previously sent for
+   * the method.
+   */
+  @Override
+  public void methodResolved(String fullMethodName) {
+    MessageSizeEstimator sizeEstimator =
+        NettyWritableBufferAllocator.responseSizeEstimators.get(fullMethodName);
+    if (sizeEstimator != null) {
+      framer().setMessageSizeEstimator(sizeEstimator);
+    }
+  }
+
   @Override
   protected TransportState transportState() {
     return state;
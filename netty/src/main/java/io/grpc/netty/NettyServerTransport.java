@@ -238,7 +238,7 @@ class NettyServerTransport implements ServerTransport {
         transportTracer.getStats(),
         channel.localAddress(),
         channel.remoteAddress(),
-        Utils.getSocketOptions(ch),
+        Utils.getSocketOptions(ch, grpcHandler == null ? null : grpcHandler.getWriteQueue()),
         grpcHandler == null ? null : grpcHandler.getSecurityInfo());
 
   }
@@ -16,6 +16,7 @@
 
 package io.grpc.netty;
 
+import io.grpc.internal.MessageSizeEstimator;
 import io.grpc.internal.WritableBuffer;
 import io.grpc.internal.WritableBufferAllocator;
 import io.netty.buffer.ByteBufAllocator;
@@ -37,7 +38,21 @@ class NettyWritableBufferAllocator implements WritableBufferAllocator {
   private static final int MIN_BUFFER = 4 * 1024;
 
   // Set the maximum buffer size to 1MB.
-  private static final int MAX_BUFFER = 1024 * 1024;
+  static final int MAX_BUFFER = 1024 * 1024;
+
+  // Bound the number of methods whose message sizes are learned.
+  private static final int MAX_ESTIMATED_METHODS = 1024;
+
+  /**
+   * Learns request sizes per method for client streams. Shared by all channels, since the sizes
+   * depend on the method rather than the connection.
+   */
+  static final MessageSizeEstimator.Registry requestSizeEstimators =
+      new MessageSizeEstimator.Registry(MAX_ESTIMATED_METHODS, MAX_BUFFER);
+
+  /** Learns response sizes per method for server streams. */
+  static final MessageSizeEstimator.Registry responseSizeEstimators =
+      new MessageSizeEstimator.Registry(MAX_ESTIMATED_METHODS, MAX_BUFFER);
 
   private final ByteBufAllocator allocator;
 
@@ -55,8 +55,10 @@ import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.UnresolvedAddressException;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
@@ -69,6 +71,7 @@ import javax.annotation.Nullable;
  */
 class Utils {
   private static final Logger logger = Logger.getLogger(Utils.class.getName());
+  private static final String IO_URING_PACKAGE = "io.netty.incubator.channel.uring";
 
   public static final AsciiString STATUS_OK = AsciiString.of("200");
   public static final AsciiString HTTP_METHOD = AsciiString.of(GrpcUtil.HTTP_METHOD);
@@ -86,6 +89,29 @@ class Utils {
       = new DefaultEventLoopGroupResource(0, "grpc-nio-worker-ELG", EventLoopGroupType.NIO);
   public static final Resource<EventLoopGroup> DEFAULT_BOSS_EVENT_LOOP_GROUP;
   public static final Resource<EventLoopGroup> DEFAULT_WORKER_EVENT_LOOP_GROUP;
+  public static final Resource<Executor> EVENT_LOOP_AFFINE_EXECUTOR =
+      new Resource<Executor>() {
+        private static final String NAME = "grpc-affine-worker";
+
+        @Override
+        public Executor create() {
+          // One worker per core. The default worker group has two event loops per core, so with
+          // it each worker is shared by two event loops.
+          return new EventLoopAffineExecutor(
+              new DefaultThreadFactory(NAME, /* daemon= */ true),
+              NettyRuntime.availableProcessors());
+        }
+
+        @Override
+        public void close(Executor instance) {
+          ((EventLoopAffineExecutor) instance).shutdown();
+        }
+
+        @Override
+        public String toString() {
+          return NAME;
+        }
+      };
 
   // This class is initialized on first use, thus provides delayed allocator creation.
   private static final class ByteBufAllocatorPreferDirectHolder {
@@ -102,13 +128,28 @@ class Utils {
 
   @Nullable
   private static final Constructor<? extends EventLoopGroup> EPOLL_EVENT_LOOP_GROUP_CONSTRUCTOR;
+  @Nullable
+  private static final Constructor<? extends EventLoopGroup> IO_URING_EVENT_LOOP_GROUP_CONSTRUCTOR;
 
   static {
-    // Decide default channel types and EventLoopGroup based on Epoll availability
-    if (isEpollAvailable()) {
+    // Decide default channel types and EventLoopGroup based on io_uring and Epoll availability.
+    // io_uring is only picked when its (incubator) runtime dependency is present and the kernel
+    // supports it, so it is opt-in.
+    if (isIoUringAvailable()) {
+      DEFAULT_CLIENT_CHANNEL_TYPE = ioUringChannelType();
+      DEFAULT_SERVER_CHANNEL_FACTORY = new ReflectiveChannelFactory<>(ioUringServerChannelType());
+      IO_URING_EVENT_LOOP_GROUP_CONSTRUCTOR = ioUringEventLoopGroupConstructor();
+      EPOLL_EVENT_LOOP_GROUP_CONSTRUCTOR =
+          isEpollAvailable() ? epollEventLoopGroupConstructor() : null;
+      DEFAULT_BOSS_EVENT_LOOP_GROUP = new DefaultEventLoopGroupResource(
+          1, "grpc-default-boss-ELG", EventLoopGroupType.IO_URING);
+      DEFAULT_WORKER_EVENT_LOOP_GROUP = new DefaultEventLoopGroupResource(
+          0, "grpc-default-worker-ELG", EventLoopGroupType.IO_URING);
+    } else if (isEpollAvailable()) {
       DEFAULT_CLIENT_CHANNEL_TYPE = epollChannelType();
       DEFAULT_SERVER_CHANNEL_FACTORY = new ReflectiveChannelFactory<>(epollServerChannelType());
       EPOLL_EVENT_LOOP_GROUP_CONSTRUCTOR = epollEventLoopGroupConstructor();
+      IO_URING_EVENT_LOOP_GROUP_CONSTRUCTOR = null;
       DEFAULT_BOSS_EVENT_LOOP_GROUP
         = new DefaultEventLoopGroupResource(1, "grpc-default-boss-ELG", EventLoopGroupType.EPOLL);
       DEFAULT_WORKER_EVENT_LOOP_GROUP
@@ -120,6 +161,7 @@ class Utils {
       DEFAULT_BOSS_EVENT_LOOP_GROUP = NIO_BOSS_EVENT_LOOP_GROUP;
       DEFAULT_WORKER_EVENT_LOOP_GROUP = NIO_WORKER_EVENT_LOOP_GROUP;
       EPOLL_EVENT_LOOP_GROUP_CONSTRUCTOR = null;
+      IO_URING_EVENT_LOOP_GROUP_CONSTRUCTOR = null;
     }
   }
 
@@ -227,6 +269,25 @@ class Utils {
         userAgent);
   }
 
+  /**
+   * Converts the headers of a POST request, reusing the reserved headers kept by {@code template}
+   * for earlier calls of the same method.
+   */
+  static Http2Headers convertClientHeaders(Metadata headers,
+      GrpcHttp2OutboundHeaders.ClientRequestTemplate template,
+      AsciiString scheme,
+      AsciiString authority,
+      AsciiString userAgent) {
+    Preconditions.checkNotNull(authority, "authority");
+
+    // Discard any application supplied duplicates of the reserved headers
+    headers.discardAll(CONTENT_TYPE_KEY);
+    headers.discardAll(GrpcUtil.TE_HEADER);
+    headers.discardAll(GrpcUtil.USER_AGENT_KEY);
+
+    return template.newHeaders(toHttp2Headers(headers), authority, scheme, userAgent);
+  }
+
   public static Http2Headers convertServerHeaders(Metadata headers) {
     // Discard any application supplied duplicates of the reserved headers
     headers.discardAll(CONTENT_TYPE_KEY);
@@ -358,6 +419,69 @@ class Utils {
     }
   }
 
+  @VisibleForTesting
+  static boolean isIoUringAvailable() {
+    try {
+      return (boolean) (Boolean)
+          Class
+              .forName(IO_URING_PACKAGE + ".IOUring")
+              .getDeclaredMethod("isAvailable")
+              .invoke(null);
+    } catch (ClassNotFoundException e) {
+      // this is normal if the netty io_uring runtime dependency doesn't exist.
+      return false;
+    } catch (Exception e) {
+      throw new RuntimeException("Exception while checking io_uring availability", e);
+    }
+  }
+
+  // Must call when io_uring is available
+  private static Class<? extends Channel> ioUringChannelType() {
+    try {
+      return Class
+          .forName(IO_URING_PACKAGE + ".IOUringSocketChannel").asSubclass(Channel.class);
+    } catch (ClassNotFoundException e) {
+      throw new RuntimeException("Cannot load IOUringSocketChannel", e);
+    }
+  }
+
+  // Must call when io_uring is available
+  private static Constructor<? extends EventLoopGroup> ioUringEventLoopGroupConstructor() {
+    try {
+      return Class
+          .forName(IO_URING_PACKAGE + ".IOUringEventLoopGroup").asSubclass(EventLoopGroup.class)
+          .getConstructor(Integer.TYPE, ThreadFactory.class);
+    } catch (ClassNotFoundException e) {
+      throw new RuntimeException("Cannot load IOUringEventLoopGroup", e);
+    } catch (NoSuchMethodException e) {
+      throw new RuntimeException("IOUringEventLoopGroup constructor not found", e);
+    }
+  }
+
+  // Must call when io_uring is available
+  private static Class<? extends ServerChannel> ioUringServerChannelType() {
+    try {
+      return Class
+          .forName(IO_URING_PACKAGE + ".IOUringServerSocketChannel")
+          .asSubclass(ServerChannel.class);
+    } catch (ClassNotFoundException e) {
+      throw new RuntimeException("Cannot load IOUringServerSocketChannel", e);
+    }
+  }
+
+  private static EventLoopGroup createIoUringEventLoopGroup(
+      int parallelism,
+      ThreadFactory threadFactory) {
+    checkState(IO_URING_EVENT_LOOP_GROUP_CONSTRUCTOR != null, "io_uring is not available");
+
+    try {
+      return IO_URING_EVENT_LOOP_GROUP_CONSTRUCTOR
+          .newInstance(parallelism, threadFactory);
+    } catch (Exception e) {
+      throw new RuntimeException("Cannot create io_uring EventLoopGroup", e);
+    }
+  }
+
   private static ChannelFactory<ServerChannel> nioServerChannelFactory() {
     return new ChannelFactory<ServerChannel>() {
       @Override
@@ -368,12 +492,42 @@ class Utils {
   }
 
   /**
-   * Returns TCP_USER_TIMEOUT channel option for Epoll channel if Epoll is available, otherwise
-   * null.
+   * Returns TCP_USER_TIMEOUT channel option of the native transport, io_uring or Epoll, that the
+   * given channel type belongs to, otherwise null.
    */
   @Nullable
-  static ChannelOption<Integer> maybeGetTcpUserTimeoutOption() {
-    return getEpollChannelOption("TCP_USER_TIMEOUT");
+  static ChannelOption<Integer> maybeGetTcpUserTimeoutOption(
+      Class<? extends Channel> channelType) {
+    if (IO_URING_EVENT_LOOP_GROUP_CONSTRUCTOR != null
+        && isInPackage(channelType, IO_URING_PACKAGE)) {
+      return getIoUringChannelOption("TCP_USER_TIMEOUT");
+    }
+    if (isInPackage(channelType, "io.netty.channel.epoll")) {
+      return getEpollChannelOption("TCP_USER_TIMEOUT");
+    }
+    return null;
+  }
+
+  private static boolean isInPackage(Class<?> type, String packageName) {
+    for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+      if (c.getName().startsWith(packageName + ".")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Nullable
+  @SuppressWarnings("unchecked")
+  private static <T> ChannelOption<T> getIoUringChannelOption(String optionName) {
+    try {
+      return
+          (ChannelOption<T>) Class.forName(IO_URING_PACKAGE + ".IOUringChannelOption")
+              .getField(optionName)
+              .get(null);
+    } catch (Exception e) {
+      throw new RuntimeException("ChannelOption(" + optionName + ") is not available", e);
+    }
   }
 
   @Nullable
@@ -422,6 +576,8 @@ class Utils {
           return new NioEventLoopGroup(numEventLoops, threadFactory);
         case EPOLL:
           return createEpollEventLoopGroup(numEventLoops, threadFactory);
+        case IO_URING:
+          return createIoUringEventLoopGroup(numEventLoops, threadFactory);
         default:
           throw new AssertionError("Unknown/Unsupported EventLoopGroupType: " + eventLoopGroupType);
       }
@@ -439,6 +595,15 @@ class Utils {
   }
 
   static InternalChannelz.SocketOptions getSocketOptions(Channel channel) {
+    return getSocketOptions(channel, null);
+  }
+
+  /**
+   * Returns the socket options of the channel, along with the flush statistics of the connection's
+   * write queue if there is one. Must be called from the channel's event loop.
+   */
+  static InternalChannelz.SocketOptions getSocketOptions(
+      Channel channel, @Nullable WriteQueue writeQueue) {
     ChannelConfig config = channel.config();
     InternalChannelz.SocketOptions.Builder b = new InternalChannelz.SocketOptions.Builder();
 
@@ -474,12 +639,23 @@ class Utils {
         b.addOption(entry.getKey(), entry.getValue());
       }
     }
+    if (writeQueue != null) {
+      b.addOption("grpc.write_queue.flushes", String.valueOf(writeQueue.getFlushCount()));
+      b.addOption(
+          "grpc.write_queue.commands_per_flush",
+          String.format(Locale.US, "%.2f", writeQueue.getCommandsPerFlush()));
+      b.addOption(
+          "grpc.write_queue.average_flush_nanos",
+          String.valueOf(writeQueue.getAverageFlushNanos()));
+      b.addOption("grpc.write_queue.flush_batch_size", writeQueue.getFlushBatchSize());
+    }
     return b.build();
   }
 
   private enum EventLoopGroupType {
     NIO,
-    EPOLL
+    EPOLL,
+    IO_URING
   }
 
   private Utils() {
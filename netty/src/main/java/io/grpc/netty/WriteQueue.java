@@ -22,21 +22,41 @@ import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelPromise;
+import io.netty.util.internal.PlatformDependent;
 import io.perfmark.Link;
 import io.perfmark.PerfMark;
 import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A queue of pending writes to a {@link Channel} that is flushed as a single unit.
+ *
+ * <p>Commands from all streams of the connection are drained together by a single task on the
+ * event loop, so their writes share flushes. The number of commands written between two flushes
+ * within a drain adapts to the write rate: it follows a moving average of the number of commands
+ * per drain, between {@link #DEQUE_CHUNK_SIZE} and {@link #MAX_FLUSH_BATCH_SIZE}. A busy connection
+ * thus pays for fewer flushes, while a quiet one still flushes at the end of each drain. The
+ * channel is also flushed once {@link #MAX_FLUSH_BATCH_BYTES} have been written since the last
+ * flush, and when the channel's outbound buffer goes above its high water mark, so that buffers
+ * are released even if producers keep the queue non-empty.
  */
 class WriteQueue {
 
-  // Dequeue in chunks, so we don't have to acquire the queue's log too often.
+  // Initial and minimum number of commands written between two flushes while draining.
   @VisibleForTesting
   static final int DEQUE_CHUNK_SIZE = 128;
 
+  // Maximum number of commands written between two flushes while draining.
+  @VisibleForTesting
+  static final int MAX_FLUSH_BATCH_SIZE = 1024;
+
+  // Flush once this many bytes were written since the last flush, whatever the number of commands.
+  @VisibleForTesting
+  static final long MAX_FLUSH_BATCH_BYTES = 32 * 1024;
+
+  // Weight of the latest drain in the moving average of commands per drain is 1 / 2^SHIFT.
+  private static final int DRAIN_SIZE_AVERAGE_SHIFT = 3;
+
   /**
    * {@link Runnable} used to schedule work onto the tail of the event loop.
    */
@@ -51,9 +71,19 @@ class WriteQueue {
   private final Queue<QueuedCommand> queue;
   private final AtomicBoolean scheduled = new AtomicBoolean();
 
+  // The fields below are only accessed from the event loop.
+  // Moving average of the number of commands per drain, scaled by 2^DRAIN_SIZE_AVERAGE_SHIFT.
+  private long scaledAverageDrainSize;
+  private int flushBatchSize = DEQUE_CHUNK_SIZE;
+  private long flushes;
+  private long commandsWritten;
+  private long flushNanos;
+
   public WriteQueue(Channel channel) {
     this.channel = Preconditions.checkNotNull(channel, "channel");
-    queue = new ConcurrentLinkedQueue<>();
+    // Multi-producer single-consumer queue backed by linked arrays, so that enqueueing does not
+    // allocate a node per command like ConcurrentLinkedQueue does.
+    queue = PlatformDependent.newMpscQueue();
   }
 
   /**
@@ -114,42 +144,100 @@ class WriteQueue {
     flush();
   }
 
+  /**
+   * Returns the number of commands currently written between two flushes while draining. Must be
+   * called from the event loop, like the other statistics accessors.
+   */
+  int getFlushBatchSize() {
+    return flushBatchSize;
+  }
+
+  /**
+   * Returns the number of times the channel has been flushed by this queue.
+   */
+  long getFlushCount() {
+    return flushes;
+  }
+
+  /**
+   * Returns the number of commands that have been run by this queue.
+   */
+  long getCommandsWritten() {
+    return commandsWritten;
+  }
+
+  /**
+   * Returns the total time spent flushing the channel, in nanoseconds.
+   */
+  long getFlushNanos() {
+    return flushNanos;
+  }
+
+  /**
+   * Returns the average number of commands written per flush, or {@code 0} if there has not been
+   * any flush yet.
+   */
+  double getCommandsPerFlush() {
+    return flushes == 0 ? 0 : (double) commandsWritten / flushes;
+  }
+
+  /**
+   * Returns the average time spent in a flush in nanoseconds, or {@code 0} if there has not been
+   * any flush yet.
+   */
+  long getAverageFlushNanos() {
+    return flushes == 0 ? 0 : flushNanos / flushes;
+  }
+
   /**
    * Process the queue of commands and dispatch them to the stream. This method is only
    * called in the event loop
    */
   private void flush() {
     PerfMark.startTask("WriteQueue.periodicFlush");
+    int drained = 0;
     try {
       QueuedCommand cmd;
       int i = 0;
       boolean flushedOnce = false;
+      boolean writable = true;
+      long bytesBeforeUnwritableAtFlush = channel.bytesBeforeUnwritable();
       while ((cmd = queue.poll()) != null) {
         cmd.run(channel);
-        if (++i == DEQUE_CHUNK_SIZE) {
+        drained++;
+        // Flush each batch so we are releasing buffers periodically. In theory this loop
+        // might never end as new events are continuously added to the queue, if we never
+        // flushed in that case we would be guaranteed to OOM. Also flush when the outbound buffer
+        // fills up, but only once: while the socket can't take more, flushing again is useless.
+        boolean wasWritable = writable;
+        writable = channel.isWritable();
+        if (++i >= flushBatchSize
+            || (wasWritable && !writable)
+            || (writable && bytesBeforeUnwritableAtFlush - channel.bytesBeforeUnwritable()
+                >= MAX_FLUSH_BATCH_BYTES)) {
           i = 0;
-          // Flush each chunk so we are releasing buffers periodically. In theory this loop
-          // might never end as new events are continuously added to the queue, if we never
-          // flushed in that case we would be guaranteed to OOM.
           PerfMark.startTask("WriteQueue.flush0");
           try {
-            channel.flush();
+            flushChannel();
           } finally {
             PerfMark.stopTask("WriteQueue.flush0");
           }
           flushedOnce = true;
+          bytesBeforeUnwritableAtFlush = channel.bytesBeforeUnwritable();
         }
       }
       // Must flush at least once, even if there were no writes.
       if (i != 0 || !flushedOnce) {
         PerfMark.startTask("WriteQueue.flush1");
         try {
-          channel.flush();
+          flushChannel();
         } finally {
           PerfMark.stopTask("WriteQueue.flush1");
         }
       }
     } finally {
+      commandsWritten += drained;
+      updateFlushBatchSize(drained);
       PerfMark.stopTask("WriteQueue.periodicFlush");
       // Mark the write as done, if the queue is non-empty after marking trigger a new write.
       scheduled.set(false);
@@ -159,6 +247,24 @@ class WriteQueue {
     }
   }
 
+  private void flushChannel() {
+    long start = System.nanoTime();
+    channel.flush();
+    flushNanos += System.nanoTime() - start;
+    flushes++;
+  }
+
+  /**
+   * Lets the flush batch follow the moving average of commands per drain. When producers enqueue
+   * many commands between two runs of the event loop, most of them are written by a single flush.
+   */
+  private void updateFlushBatchSize(int drained) {
+    scaledAverageDrainSize += drained - (scaledAverageDrainSize >> DRAIN_SIZE_AVERAGE_SHIFT);
+    long averageDrainSize = scaledAverageDrainSize >> DRAIN_SIZE_AVERAGE_SHIFT;
+    flushBatchSize =
+        (int) Math.max(DEQUE_CHUNK_SIZE, Math.min(MAX_FLUSH_BATCH_SIZE, averageDrainSize));
+  }
+
   private static class RunnableCommand implements QueuedCommand {
     private final Runnable runnable;
     private final Link link;
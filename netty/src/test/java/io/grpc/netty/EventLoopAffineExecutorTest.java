@@ -0,0 +1,155 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.netty;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.netty.channel.DefaultEventLoop;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link EventLoopAffineExecutor}. */
+@RunWith(JUnit4.class)
+public class EventLoopAffineExecutorTest {
+  private final DefaultEventLoop loop1 = new DefaultEventLoop();
+  private final DefaultEventLoop loop2 = new DefaultEventLoop();
+  private final DefaultEventLoop loop3 = new DefaultEventLoop();
+  private final EventLoopAffineExecutor executor =
+      new EventLoopAffineExecutor(new DefaultThreadFactory("test-worker", true), 2);
+
+  @After
+  public void tearDown() {
+    executor.shutdown();
+    loop1.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+    loop2.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+    loop3.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void sameEventLoop_sameWorker() throws Exception {
+    EventExecutor worker = workerFor(loop1);
+
+    assertSame(worker, workerFor(loop1));
+    assertNotSame(loop1, worker);
+  }
+
+  @Test
+  public void differentEventLoops_differentWorkers() throws Exception {
+    assertNotSame(workerFor(loop1), workerFor(loop2));
+  }
+
+  @Test
+  public void eventLoopsShareWorkersBeyondMax() throws Exception {
+    EventExecutor worker1 = workerFor(loop1);
+    EventExecutor worker2 = workerFor(loop2);
+    EventExecutor worker3 = workerFor(loop3);
+
+    assertTrue(worker3 == worker1 || worker3 == worker2);
+    assertSame(worker3, workerFor(loop3));
+  }
+
+  @Test
+  public void tasksFromWorkerStayOnWorker() throws Exception {
+    final EventExecutor worker = workerFor(loop1);
+
+    assertSame(worker, worker.submit(new Callable<EventExecutor>() {
+      @Override
+      public EventExecutor call() {
+        return executor.workerForCurrentThread();
+      }
+    }).get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void execute_runsOnWorker() throws Exception {
+    final EventExecutor worker = workerFor(loop1);
+    final AtomicReference<Boolean> ranOnWorker = new AtomicReference<>();
+    final CountDownLatch latch = new CountDownLatch(1);
+    loop1.execute(new Runnable() {
+      @Override
+      public void run() {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            ranOnWorker.set(worker.inEventLoop());
+            latch.countDown();
+          }
+        });
+      }
+    });
+
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertTrue(ranOnWorker.get());
+  }
+
+  @Test
+  public void otherThreads_useExistingWorkers() throws Exception {
+    EventExecutor worker1 = workerFor(loop1);
+    EventExecutor worker2 = workerFor(loop2);
+
+    EventExecutor fromMain = executor.workerForCurrentThread();
+    assertTrue(fromMain == worker1 || fromMain == worker2);
+  }
+
+  @Test
+  public void terminatedEventLoop_isForgotten() throws Exception {
+    workerFor(loop1);
+    assertTrue(executor.hasWorkerFor(loop1));
+
+    loop1.shutdownGracefully(0, 0, TimeUnit.SECONDS).await(5, TimeUnit.SECONDS);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (executor.hasWorkerFor(loop1) && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertFalse(executor.hasWorkerFor(loop1));
+  }
+
+  @Test
+  public void shutdown_rejectsNewEventLoops() throws Exception {
+    executor.shutdown();
+
+    try {
+      workerFor(loop1);
+      fail("Should have thrown");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+  }
+
+  private EventExecutor workerFor(EventExecutor loop) throws Exception {
+    return loop.submit(new Callable<EventExecutor>() {
+      @Override
+      public EventExecutor call() {
+        return executor.workerForCurrentThread();
+      }
+    }).get(5, TimeUnit.SECONDS);
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.netty;
+
+import static org.junit.Assert.assertSame;
+
+import io.grpc.Context;
+import io.netty.util.concurrent.FastThreadLocalThread;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link FastThreadLocalContextStorage}. */
+@RunWith(JUnit4.class)
+public class FastThreadLocalContextStorageTest {
+  private static final Context.Key<String> KEY = Context.key("key");
+
+  private final FastThreadLocalContextStorage storage = new FastThreadLocalContextStorage();
+  private final Context context1 = Context.ROOT.withValue(KEY, "1");
+  private final Context context2 = Context.ROOT.withValue(KEY, "2");
+
+  @Test
+  public void attachDetach_plainThread() {
+    assertAttachDetach();
+  }
+
+  @Test
+  public void attachDetach_fastThreadLocalThread() throws Exception {
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    Thread thread = new FastThreadLocalThread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          assertAttachDetach();
+        } catch (Throwable t) {
+          failure.set(t);
+        }
+      }
+    });
+    thread.start();
+    thread.join();
+
+    if (failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+  }
+
+  @Test
+  public void threadsAreIsolated() throws Exception {
+    Context previous = storage.doAttach(context1);
+    try {
+      final AtomicReference<Context> seenByFastThread = new AtomicReference<>();
+      Thread thread = new FastThreadLocalThread(new Runnable() {
+        @Override
+        public void run() {
+          seenByFastThread.set(storage.current());
+        }
+      });
+      thread.start();
+      thread.join();
+
+      assertSame(Context.ROOT, seenByFastThread.get());
+      assertSame(context1, storage.current());
+    } finally {
+      storage.detach(context1, previous);
+    }
+  }
+
+  private void assertAttachDetach() {
+    assertSame(Context.ROOT, storage.current());
+
+    Context previous1 = storage.doAttach(context1);
+    assertSame(Context.ROOT, previous1);
+    assertSame(context1, storage.current());
+
+    Context previous2 = storage.doAttach(context2);
+    assertSame(context1, previous2);
+    assertSame(context2, storage.current());
+
+    storage.detach(context2, previous2);
+    assertSame(context1, storage.current());
+    storage.detach(context1, previous1);
+    assertSame(Context.ROOT, storage.current());
+  }
+}
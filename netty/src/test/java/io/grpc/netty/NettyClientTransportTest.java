@@ -637,7 +637,8 @@ public class NettyClientTransportTest {
 
       callMeMaybe(transport.start(clientTransportListener));
 
-      ChannelOption<Integer> tcpUserTimeoutOption = Utils.maybeGetTcpUserTimeoutOption();
+      ChannelOption<Integer> tcpUserTimeoutOption =
+          Utils.maybeGetTcpUserTimeoutOption(transport.channel().getClass());
       assertThat(tcpUserTimeoutOption).isNotNull();
       // on some linux based system, the integer value may have error (usually +-1)
       assertThat((double) transport.channel().config().getOption(tcpUserTimeoutOption))
@@ -663,7 +664,8 @@ public class NettyClientTransportTest {
 
       callMeMaybe(transport.start(clientTransportListener));
 
-      ChannelOption<Integer> tcpUserTimeoutOption = Utils.maybeGetTcpUserTimeoutOption();
+      ChannelOption<Integer> tcpUserTimeoutOption =
+          Utils.maybeGetTcpUserTimeoutOption(transport.channel().getClass());
       assertThat(tcpUserTimeoutOption).isNotNull();
       // default TCP_USER_TIMEOUT=0 (use the system default)
       assertThat(transport.channel().config().getOption(tcpUserTimeoutOption)).isEqualTo(0);
@@ -112,6 +112,60 @@ public class UtilsTest {
     assertEquals(userValue, headers.get(userKey.name()).toString());
   }
 
+  @Test
+  public void convertClientHeaders_templateReusedForSameChannel() {
+    Metadata metaData = new Metadata();
+    metaData.put(GrpcUtil.TE_HEADER, "to-be-removed");
+    metaData.put(userKey, userValue);
+    GrpcHttp2OutboundHeaders.ClientRequestTemplate template =
+        new GrpcHttp2OutboundHeaders.ClientRequestTemplate(new AsciiString("/testService/test"));
+    AsciiString scheme = new AsciiString("https");
+    AsciiString userAgent = new AsciiString("user-agent");
+
+    Http2Headers first = Utils.convertClientHeaders(
+        metaData, template, scheme, new AsciiString("authority"), userAgent);
+    Http2Headers second = Utils.convertClientHeaders(
+        new Metadata(), template, scheme, new AsciiString("authority"), userAgent);
+    Http2Headers other = Utils.convertClientHeaders(
+        new Metadata(), template, scheme, new AsciiString("other"), userAgent);
+
+    DefaultHttp2Headers headers = new DefaultHttp2Headers();
+    for (Map.Entry<CharSequence, CharSequence> entry : first) {
+      headers.add(entry.getKey(), entry.getValue());
+    }
+    // 7 reserved headers, 1 user header
+    assertEquals(7 + 1, headers.size());
+    assertEquals("/testService/test", headers.path().toString());
+    assertEquals("POST", headers.method().toString());
+    assertEquals("authority", headers.authority().toString());
+    assertEquals(GrpcUtil.TE_TRAILERS, headers.get(GrpcUtil.TE_HEADER.name()).toString());
+    assertEquals(userValue, headers.get(userKey.name()).toString());
+
+    // The authority is the first header. Equal settings share the reserved headers.
+    assertSame(first.iterator().next().getValue(), second.iterator().next().getValue());
+    assertEquals(7, second.size());
+    assertEquals("other", other.iterator().next().getValue().toString());
+  }
+
+  @Test
+  public void convertClientHeaders_templateKeepsHeadersPerAuthority() {
+    GrpcHttp2OutboundHeaders.ClientRequestTemplate template =
+        new GrpcHttp2OutboundHeaders.ClientRequestTemplate(new AsciiString("/testService/test"));
+    AsciiString scheme = new AsciiString("https");
+    AsciiString userAgent = new AsciiString("user-agent");
+
+    Http2Headers first = Utils.convertClientHeaders(
+        new Metadata(), template, scheme, new AsciiString("authority"), userAgent);
+    Http2Headers other = Utils.convertClientHeaders(
+        new Metadata(), template, scheme, new AsciiString("other"), userAgent);
+    Http2Headers second = Utils.convertClientHeaders(
+        new Metadata(), template, scheme, new AsciiString("authority"), userAgent);
+
+    // Alternating between authorities doesn't evict either one's reserved headers.
+    assertSame(first.iterator().next().getValue(), second.iterator().next().getValue());
+    assertEquals("other", other.iterator().next().getValue().toString());
+  }
+
   @Test
   @SuppressWarnings("UndefinedEquals") // AsciiString.equals
   public void convertServerHeaders_sanitizes() {
@@ -142,6 +196,21 @@ public class UtilsTest {
     assertNull(socketOptions.lingerSeconds);
   }
 
+  @Test
+  public void channelOptionsTest_writeQueueStats() {
+    EmbeddedChannel channel = new EmbeddedChannel();
+    WriteQueue writeQueue = new WriteQueue(channel);
+    writeQueue.scheduleFlush();
+    channel.runPendingTasks();
+
+    InternalChannelz.SocketOptions socketOptions = Utils.getSocketOptions(channel, writeQueue);
+    assertEquals("1", socketOptions.others.get("grpc.write_queue.flushes"));
+    assertEquals("0.00", socketOptions.others.get("grpc.write_queue.commands_per_flush"));
+    assertEquals(
+        String.valueOf(WriteQueue.DEQUE_CHUNK_SIZE),
+        socketOptions.others.get("grpc.write_queue.flush_batch_size"));
+  }
+
   @Test
   @SuppressWarnings("deprecation")
   public void channelOptionsTest_oio() {
@@ -185,6 +254,7 @@ public class UtilsTest {
   @Test
   public void defaultEventLoopGroup_whenEpollIsAvailable() {
     assume().that(Utils.isEpollAvailable()).isTrue();
+    assume().that(Utils.isIoUringAvailable()).isFalse();
 
     EventLoopGroup defaultBossGroup = Utils.DEFAULT_BOSS_EVENT_LOOP_GROUP.create();
     EventLoopGroup defaultWorkerGroup = Utils.DEFAULT_WORKER_EVENT_LOOP_GROUP.create();
@@ -201,6 +271,7 @@ public class UtilsTest {
   @Test
   public void defaultClientChannelType_whenEpollIsAvailable() {
     assume().that(Utils.isEpollAvailable()).isTrue();
+    assume().that(Utils.isIoUringAvailable()).isFalse();
 
     Class<? extends Channel> clientChannelType = Utils.DEFAULT_CLIENT_CHANNEL_TYPE;
 
@@ -211,6 +282,7 @@ public class UtilsTest {
   @Test
   public void defaultServerChannelFactory_whenEpollIsAvailable() {
     assume().that(Utils.isEpollAvailable()).isTrue();
+    assume().that(Utils.isIoUringAvailable()).isFalse();
 
     ChannelFactory<? extends ServerChannel> channelFactory = Utils.DEFAULT_SERVER_CHANNEL_FACTORY;
 
@@ -221,7 +293,53 @@ public class UtilsTest {
   @Test
   public void maybeGetTcpUserTimeoutOption() {
     assume().that(Utils.isEpollAvailable()).isTrue();
+    assume().that(Utils.isIoUringAvailable()).isFalse();
+
+    assertThat(Utils.maybeGetTcpUserTimeoutOption(Utils.DEFAULT_CLIENT_CHANNEL_TYPE)).isNotNull();
+  }
+
+  @Test
+  public void maybeGetTcpUserTimeoutOption_nioChannel() {
+    assertThat(Utils.maybeGetTcpUserTimeoutOption(NioSocketChannel.class)).isNull();
+  }
+
+  @Test
+  public void defaultEventLoopGroup_whenIoUringIsAvailable() {
+    assume().that(Utils.isIoUringAvailable()).isTrue();
+
+    EventLoopGroup defaultBossGroup = Utils.DEFAULT_BOSS_EVENT_LOOP_GROUP.create();
+    EventLoopGroup defaultWorkerGroup = Utils.DEFAULT_WORKER_EVENT_LOOP_GROUP.create();
+
+    assertThat(defaultBossGroup.getClass().getName())
+        .isEqualTo("io.netty.incubator.channel.uring.IOUringEventLoopGroup");
+    assertThat(defaultWorkerGroup.getClass().getName())
+        .isEqualTo("io.netty.incubator.channel.uring.IOUringEventLoopGroup");
+
+    defaultBossGroup.shutdownGracefully();
+    defaultWorkerGroup.shutdownGracefully();
+  }
+
+  @Test
+  public void defaultChannelTypes_whenIoUringIsAvailable() {
+    assume().that(Utils.isIoUringAvailable()).isTrue();
+
+    assertThat(Utils.DEFAULT_CLIENT_CHANNEL_TYPE.getName())
+        .isEqualTo("io.netty.incubator.channel.uring.IOUringSocketChannel");
+    assertThat(Utils.DEFAULT_SERVER_CHANNEL_FACTORY.toString())
+        .isEqualTo("ReflectiveChannelFactory(IOUringServerSocketChannel.class)");
+    assertThat(Utils.maybeGetTcpUserTimeoutOption(Utils.DEFAULT_CLIENT_CHANNEL_TYPE)).isNotNull();
+  }
+
+  @Test
+  public void maybeGetTcpUserTimeoutOption_epollChannelWhenIoUringIsAvailable() throws Exception {
+    assume().that(Utils.isIoUringAvailable()).isTrue();
+    assume().that(Utils.isEpollAvailable()).isTrue();
 
-    assertThat(Utils.maybeGetTcpUserTimeoutOption()).isNotNull();
+    Class<? extends Channel> epollChannelType =
+        Class.forName("io.netty.channel.epoll.EpollSocketChannel").asSubclass(Channel.class);
+    ChannelOption<Integer> option = Utils.maybeGetTcpUserTimeoutOption(epollChannelType);
+    assertThat(option).isNotNull();
+    assertThat(option).isNotSameInstanceAs(
+        Utils.maybeGetTcpUserTimeoutOption(Utils.DEFAULT_CLIENT_CHANNEL_TYPE));
   }
 }
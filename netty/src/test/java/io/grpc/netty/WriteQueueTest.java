@@ -16,6 +16,8 @@
 
 package io.grpc.netty;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -80,6 +82,7 @@ public class WriteQueueTest {
     }).when(eventLoop).execute(any(Runnable.class));
     when(eventLoop.inEventLoop()).thenReturn(true);
     when(channel.eventLoop()).thenReturn(eventLoop);
+    when(channel.isWritable()).thenReturn(true);
 
     when(channel.flush()).thenAnswer(new Answer<Channel>() {
       @Override
@@ -143,6 +146,90 @@ public class WriteQueueTest {
     verify(channel, times(2)).flush();
   }
 
+  @Test
+  public void unwritableChannelShouldFlushEarly() {
+    WriteQueue queue = new WriteQueue(channel);
+    when(channel.isWritable()).thenReturn(true, false, true);
+    for (int i = 0; i < 5; i++) {
+      queue.enqueue(new CuteCommand(), false);
+    }
+    queue.scheduleFlush();
+
+    verify(channel, times(5)).write(isA(QueuedCommand.class), eq(promise));
+    // Once when the channel became unwritable after the second write, once at the end.
+    verify(channel, times(2)).flush();
+  }
+
+  @Test
+  public void stillUnwritableChannelShouldNotFlushAgain() {
+    WriteQueue queue = new WriteQueue(channel);
+    when(channel.isWritable()).thenReturn(false);
+    for (int i = 0; i < 5; i++) {
+      queue.enqueue(new CuteCommand(), false);
+    }
+    queue.scheduleFlush();
+
+    verify(channel, times(5)).write(isA(QueuedCommand.class), eq(promise));
+    // Once when the channel was first seen unwritable, once at the end.
+    verify(channel, times(2)).flush();
+  }
+
+  @Test
+  public void flushBatchGrowsWithWriteRate() {
+    WriteQueue queue = new WriteQueue(channel);
+    int writes = 1000;
+    for (int drain = 0; drain < 30; drain++) {
+      enqueueAndDrain(queue, writes);
+    }
+    assertTrue(queue.getFlushBatchSize() >= 900);
+    assertTrue(queue.getFlushBatchSize() <= WriteQueue.MAX_FLUSH_BATCH_SIZE);
+
+    long flushes = queue.getFlushCount();
+    enqueueAndDrain(queue, writes);
+    // Once when the batch is full, once at the end. A fixed batch of DEQUE_CHUNK_SIZE commands
+    // would have needed 8 flushes.
+    assertEquals(2, queue.getFlushCount() - flushes);
+  }
+
+  @Test
+  public void flushBatchShrinksWhenWriteRateDrops() {
+    WriteQueue queue = new WriteQueue(channel);
+    for (int drain = 0; drain < 30; drain++) {
+      enqueueAndDrain(queue, 1000);
+    }
+    for (int drain = 0; drain < 30; drain++) {
+      enqueueAndDrain(queue, 5);
+    }
+
+    assertEquals(WriteQueue.DEQUE_CHUNK_SIZE, queue.getFlushBatchSize());
+  }
+
+  @Test
+  public void maxBatchBytesShouldFlushEarly() {
+    WriteQueue queue = new WriteQueue(channel);
+    // Read when the drain starts, after each write and after each flush.
+    when(channel.bytesBeforeUnwritable()).thenReturn(100000L, 90000L, 60000L, 60000L, 55000L);
+
+    enqueueAndDrain(queue, 3);
+
+    verify(channel, times(3)).write(isA(QueuedCommand.class), eq(promise));
+    // Once when 40000 bytes were written by the second command, once at the end.
+    verify(channel, times(2)).flush();
+  }
+
+  @Test
+  public void statsShouldCountCommandsAndFlushes() {
+    WriteQueue queue = new WriteQueue(channel);
+    enqueueAndDrain(queue, 5);
+    enqueueAndDrain(queue, 3);
+
+    assertEquals(2, queue.getFlushCount());
+    assertEquals(8, queue.getCommandsWritten());
+    assertEquals(4.0, queue.getCommandsPerFlush(), 0.0);
+    assertTrue(queue.getFlushNanos() >= 0);
+    assertEquals(queue.getFlushNanos() / 2, queue.getAverageFlushNanos());
+  }
+
   @Test
   public void concurrentWriteAndFlush() throws Throwable {
     final WriteQueue queue = new WriteQueue(channel);
@@ -201,6 +288,13 @@ public class WriteQueueTest {
     verify(channel, times(writes)).write(isA(CuteCommand.class), eq(promise));
   }
 
+  private static void enqueueAndDrain(WriteQueue queue, int writes) {
+    for (int i = 0; i < writes; i++) {
+      queue.enqueue(new CuteCommand(), false);
+    }
+    queue.scheduleFlush();
+  }
+
   static class CuteCommand extends WriteQueue.AbstractQueuedCommand {
 
   }
@@ -41,6 +41,7 @@ class Headers {
   public static final Header CONTENT_TYPE_HEADER =
       new Header(CONTENT_TYPE_KEY.name(), GrpcUtil.CONTENT_TYPE_GRPC);
   public static final Header TE_HEADER = new Header("te", GrpcUtil.TE_TRAILERS);
+  public static final Header STATUS_OK_HEADER = new Header(Header.RESPONSE_STATUS, "200");
 
   /**
    * Serializes the given headers and creates a list of OkHttp {@link Header}s to be used when
@@ -49,13 +50,13 @@ class Headers {
    */
   public static List<Header> createRequestHeaders(
       Metadata headers,
-      String defaultPath,
+      Header path,
       String authority,
       String userAgent,
       boolean useGet,
       boolean usePlaintext) {
     Preconditions.checkNotNull(headers, "headers");
-    Preconditions.checkNotNull(defaultPath, "defaultPath");
+    Preconditions.checkNotNull(path, "path");
     Preconditions.checkNotNull(authority, "authority");
 
     // Discard any application supplied duplicates of the reserved headers
@@ -79,8 +80,7 @@ class Headers {
     }
 
     okhttpHeaders.add(new Header(Header.TARGET_AUTHORITY, authority));
-    String path = defaultPath;
-    okhttpHeaders.add(new Header(Header.TARGET_PATH, path));
+    okhttpHeaders.add(path);
 
     okhttpHeaders.add(new Header(GrpcUtil.USER_AGENT_KEY.name(), userAgent));
 
@@ -89,7 +89,61 @@ class Headers {
     okhttpHeaders.add(TE_HEADER);
 
     // Now add any application-provided headers.
-    byte[][] serializedHeaders = TransportFrameUtil.toHttp2Headers(headers);
+    addMetadata(okhttpHeaders, headers);
+
+    return okhttpHeaders;
+  }
+
+  /**
+   * Serializes the given headers and creates a list of OkHttp {@link Header}s to be used when
+   * responding to a request. Since this serializes the headers, this method should be called in
+   * the application thread context.
+   */
+  public static List<Header> createResponseHeaders(Metadata headers) {
+    Preconditions.checkNotNull(headers, "headers");
+
+    // Discard any application supplied duplicates of the reserved headers
+    headers.discardAll(GrpcUtil.CONTENT_TYPE_KEY);
+    headers.discardAll(GrpcUtil.TE_HEADER);
+    headers.discardAll(GrpcUtil.USER_AGENT_KEY);
+
+    // 2 is the number of explicit add calls below.
+    List<Header> okhttpHeaders = new ArrayList<>(2 + InternalMetadata.headerCount(headers));
+    okhttpHeaders.add(STATUS_OK_HEADER);
+    okhttpHeaders.add(CONTENT_TYPE_HEADER);
+    addMetadata(okhttpHeaders, headers);
+    return okhttpHeaders;
+  }
+
+  /**
+   * Serializes the given trailers and creates a list of OkHttp {@link Header}s. If no headers have
+   * been sent on the stream, the trailers also carry the response headers (a "trailers-only"
+   * response).
+   */
+  public static List<Header> createResponseTrailers(Metadata trailers, boolean headersSent) {
+    if (!headersSent) {
+      return createResponseHeaders(trailers);
+    }
+    List<Header> okhttpTrailers = new ArrayList<>(InternalMetadata.headerCount(trailers));
+    addMetadata(okhttpTrailers, trailers);
+    return okhttpTrailers;
+  }
+
+  /**
+   * Creates the headers for a response that is rejected before reaching gRPC, such as a request
+   * with an unsupported content type.
+   */
+  public static List<Header> createHttpResponseHeaders(
+      int httpCode, String contentType, Metadata headers) {
+    List<Header> okhttpHeaders = new ArrayList<>(2 + InternalMetadata.headerCount(headers));
+    okhttpHeaders.add(new Header(Header.RESPONSE_STATUS, Integer.toString(httpCode)));
+    okhttpHeaders.add(new Header(CONTENT_TYPE_KEY.name(), contentType));
+    addMetadata(okhttpHeaders, headers);
+    return okhttpHeaders;
+  }
+
+  private static void addMetadata(List<Header> okhttpHeaders, Metadata metadata) {
+    byte[][] serializedHeaders = TransportFrameUtil.toHttp2Headers(metadata);
     for (int i = 0; i < serializedHeaders.length; i += 2) {
       ByteString key = ByteString.of(serializedHeaders[i]);
       String keyString = key.utf8();
@@ -98,8 +152,6 @@ class Headers {
         okhttpHeaders.add(new Header(key, value));
       }
     }
-
-    return okhttpHeaders;
   }
 
   /**
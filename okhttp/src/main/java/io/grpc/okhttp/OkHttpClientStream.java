@@ -23,11 +23,14 @@ import static io.grpc.internal.ClientStreamListener.RpcProgress.PROCESSED;
 import com.google.common.io.BaseEncoding;
 import io.grpc.Attributes;
 import io.grpc.CallOptions;
+import io.grpc.InternalKnownTransport;
+import io.grpc.InternalMethodDescriptor;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
 import io.grpc.Status;
 import io.grpc.internal.AbstractClientStream;
 import io.grpc.internal.Http2ClientStreamTransportState;
+import io.grpc.internal.MessageSizeEstimator;
 import io.grpc.internal.StatsTraceContext;
 import io.grpc.internal.TransportTracer;
 import io.grpc.internal.WritableBuffer;
@@ -42,7 +45,11 @@ import okio.Buffer;
 /**
  * Client stream for the okhttp transport.
  */
-class OkHttpClientStream extends AbstractClientStream {
+class OkHttpClientStream extends AbstractClientStream
+    implements OutboundFlowController.Stream {
+
+  private static final InternalMethodDescriptor methodDescriptorAccessor =
+      new InternalMethodDescriptor(InternalKnownTransport.OKHTTP);
 
   private static final Buffer EMPTY_BUFFER = new Buffer();
 
@@ -85,6 +92,11 @@ class OkHttpClientStream extends AbstractClientStream {
         useGetForSafeMethods && method.isSafe());
     this.statsTraceCtx = checkNotNull(statsTraceCtx, "statsTraceCtx");
     this.method = method;
+    MessageSizeEstimator sizeEstimator =
+        OkHttpWritableBufferAllocator.requestSizeEstimators.get(method.getFullMethodName());
+    if (sizeEstimator != null) {
+      framer().setMessageSizeEstimator(sizeEstimator);
+    }
     this.authority = authority;
     this.userAgent = userAgent;
     // OkHttpClientStream is only created after the transport has finished connecting,
@@ -120,6 +132,7 @@ class OkHttpClientStream extends AbstractClientStream {
     return method.getType();
   }
 
+  @Override
   public int id() {
     return id;
   }
@@ -146,14 +159,23 @@ class OkHttpClientStream extends AbstractClientStream {
     @Override
     public void writeHeaders(Metadata metadata, byte[] payload) {
       PerfMark.startTask("OkHttpClientStream$Sink.writeHeaders");
-      String defaultPath = "/" + method.getFullMethodName();
+      // The path header is kept on the method, so that it is the same instance for every call and
+      // its encoded form is found in the HPACK dynamic table without creating new strings.
+      Header path = (Header) methodDescriptorAccessor.geRawMethodName(method);
+      if (path == null) {
+        path = Header.indexedPseudoHeader(Header.TARGET_PATH, "/" + method.getFullMethodName());
+        methodDescriptorAccessor.setRawMethodName(method, path);
+      }
       if (payload != null) {
         useGet = true;
-        defaultPath += "?" + BaseEncoding.base64().encode(payload);
+        // Not indexed, as the payload makes nearly every GET path unique.
+        path = new Header(
+            Header.TARGET_PATH,
+            "/" + method.getFullMethodName() + "?" + BaseEncoding.base64().encode(payload));
       }
       try {
         synchronized (state.lock) {
-          state.streamReady(metadata, defaultPath);
+          state.streamReady(metadata, path);
         }
       } finally {
         PerfMark.stopTask("OkHttpClientStream$Sink.writeHeaders");
@@ -402,7 +424,7 @@ class OkHttpClientStream extends AbstractClientStream {
 
     @SuppressWarnings("GuardedBy")
     @GuardedBy("lock")
-    private void streamReady(Metadata metadata, String path) {
+    private void streamReady(Metadata metadata, Header path) {
       requestHeaders =
           Headers.createRequestHeaders(
               metadata,
@@ -421,11 +443,18 @@ class OkHttpClientStream extends AbstractClientStream {
     }
   }
 
-  void setOutboundFlowState(Object outboundFlowState) {
+  @Override
+  public void setOutboundFlowState(Object outboundFlowState) {
     this.outboundFlowState = outboundFlowState;
   }
 
-  Object getOutboundFlowState() {
+  @Override
+  public Object getOutboundFlowState() {
     return outboundFlowState;
   }
+
+  @Override
+  public void onSentBytes(int numBytes) {
+    state.onSentBytes(numBytes);
+  }
 }
@@ -105,7 +105,8 @@ import okio.Timeout;
 /**
  * A okhttp-based {@link ConnectionClientTransport} implementation.
  */
-class OkHttpClientTransport implements ConnectionClientTransport, TransportExceptionHandler {
+class OkHttpClientTransport implements ConnectionClientTransport, TransportExceptionHandler,
+    OutboundFlowController.Transport {
   private static final Map<ErrorCode, Status> ERROR_CODE_TO_STATUS = buildErrorCodeToStatusMap();
   private static final Logger log = Logger.getLogger(OkHttpClientTransport.class.getName());
   private static final OkHttpClientStream[] EMPTY_STREAM_ARRAY = new OkHttpClientStream[0];
@@ -825,7 +826,8 @@ class OkHttpClientTransport implements ConnectionClientTransport, TransportExcep
   /**
    * Gets all active streams as an array.
    */
-  OkHttpClientStream[] getActiveStreams() {
+  @Override
+  public OkHttpClientStream[] getActiveStreams() {
     synchronized (lock) {
       return streams.values().toArray(EMPTY_STREAM_ARRAY);
     }
@@ -1032,7 +1034,8 @@ class OkHttpClientTransport implements ConnectionClientTransport, TransportExcep
     }
   }
 
-  OkHttpClientStream getStream(int streamId) {
+  @Override
+  public OkHttpClientStream getStream(int streamId) {
     synchronized (lock) {
       return streams.get(streamId);
     }
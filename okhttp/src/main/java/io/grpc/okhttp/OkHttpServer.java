@@ -0,0 +1,175 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.okhttp;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.grpc.InternalChannelz.SocketStats;
+import io.grpc.InternalInstrumented;
+import io.grpc.internal.InternalServer;
+import io.grpc.internal.ObjectPool;
+import io.grpc.internal.ServerListener;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.concurrent.GuardedBy;
+import javax.net.ServerSocketFactory;
+
+/**
+ * OkHttp-based server. Accepts connections with a blocking {@link ServerSocket} on a thread from
+ * the transport executor, and creates an {@link OkHttpServerTransport} for each of them.
+ */
+final class OkHttpServer implements InternalServer {
+  private static final Logger log = Logger.getLogger(OkHttpServer.class.getName());
+
+  private final SocketAddress listenAddress;
+  private final ServerSocketFactory socketFactory;
+  private final ObjectPool<Executor> transportExecutorPool;
+  private final OkHttpServerTransport.Config transportConfig;
+  private final Object lock = new Object();
+  @GuardedBy("lock")
+  private ServerSocket serverSocket;
+  @GuardedBy("lock")
+  private SocketAddress actualListenAddress;
+  @GuardedBy("lock")
+  private boolean shutdown;
+  private Executor transportExecutor;
+  private ServerListener listener;
+
+  OkHttpServer(
+      SocketAddress listenAddress,
+      ServerSocketFactory socketFactory,
+      OkHttpServerTransport.Config transportConfig) {
+    this.listenAddress = checkNotNull(listenAddress, "listenAddress");
+    this.socketFactory = checkNotNull(socketFactory, "socketFactory");
+    this.transportConfig = checkNotNull(transportConfig, "transportConfig");
+    this.transportExecutorPool = transportConfig.transportExecutorPool;
+  }
+
+  @Override
+  public void start(ServerListener listener) throws IOException {
+    this.listener = checkNotNull(listener, "listener");
+    ServerSocket socket = socketFactory.createServerSocket();
+    try {
+      socket.bind(listenAddress);
+    } catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+    synchronized (lock) {
+      serverSocket = socket;
+      actualListenAddress = socket.getLocalSocketAddress();
+    }
+    transportExecutor = transportExecutorPool.getObject();
+    final ServerSocket acceptSocket = socket;
+    transportExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        acceptConnections(acceptSocket);
+      }
+    });
+  }
+
+  private void acceptConnections(ServerSocket acceptSocket) {
+    String threadName = Thread.currentThread().getName();
+    Thread.currentThread().setName("OkHttpServer " + acceptSocket.getLocalSocketAddress());
+    try {
+      while (true) {
+        Socket socket;
+        try {
+          socket = acceptSocket.accept();
+        } catch (IOException e) {
+          synchronized (lock) {
+            if (shutdown) {
+              return;
+            }
+          }
+          throw e;
+        }
+        try {
+          OkHttpServerTransport transport = new OkHttpServerTransport(transportConfig, socket);
+          transport.start(listener.transportCreated(transport));
+        } catch (RuntimeException e) {
+          // Only this connection is lost; keep serving the others.
+          log.log(Level.WARNING, "Failed to start transport for accepted connection", e);
+          closeQuietly(socket);
+        }
+      }
+    } catch (Throwable t) {
+      log.log(Level.SEVERE, "Accept loop failed", t);
+    } finally {
+      try {
+        acceptSocket.close();
+      } catch (IOException e) {
+        log.log(Level.WARNING, "Failed closing server socket", e);
+      }
+      transportExecutor = transportExecutorPool.returnObject(transportExecutor);
+      listener.serverShutdown();
+      Thread.currentThread().setName(threadName);
+    }
+  }
+
+  private static void closeQuietly(Socket socket) {
+    try {
+      socket.close();
+    } catch (IOException e) {
+      log.log(Level.FINE, "Failed closing socket", e);
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    ServerSocket socket;
+    synchronized (lock) {
+      if (shutdown) {
+        return;
+      }
+      shutdown = true;
+      socket = serverSocket;
+    }
+    if (socket == null) {
+      return;
+    }
+    try {
+      // Unblocks the accept loop, which then notifies the listener.
+      socket.close();
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Failed closing server socket", e);
+    }
+  }
+
+  @Override
+  public SocketAddress getListenSocketAddress() {
+    synchronized (lock) {
+      return actualListenAddress != null ? actualListenAddress : listenAddress;
+    }
+  }
+
+  @Override
+  public InternalInstrumented<SocketStats> getListenSocketStats() {
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return "OkHttpServer(" + getListenSocketAddress() + ")";
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.okhttp;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.grpc.ExperimentalApi;
+import io.grpc.ServerStreamTracer;
+import io.grpc.internal.AbstractServerImplBuilder;
+import io.grpc.internal.FixedObjectPool;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.ObjectPool;
+import io.grpc.internal.SharedResourcePool;
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import javax.annotation.Nullable;
+import javax.net.ServerSocketFactory;
+
+/**
+ * Builds a lightweight gRPC server on top of the OkHttp HTTP/2 framing code. Connections are
+ * served with blocking sockets, using one reader thread per connection from the transport
+ * executor. Only plaintext is supported, which makes it a fit for sidecars and embedded servers
+ * that are reached over a trusted local network.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1785")
+public final class OkHttpServerBuilder extends AbstractServerImplBuilder<OkHttpServerBuilder> {
+  public static final int DEFAULT_FLOW_CONTROL_WINDOW = 65535;
+
+  private static final ObjectPool<Executor> DEFAULT_TRANSPORT_EXECUTOR_POOL =
+      SharedResourcePool.forResource(OkHttpChannelBuilder.SHARED_EXECUTOR);
+
+  /**
+   * Creates a server builder that will bind to the given port.
+   *
+   * @param port the port on which the server is to be bound.
+   * @return the server builder.
+   */
+  public static OkHttpServerBuilder forPort(int port) {
+    return new OkHttpServerBuilder(new InetSocketAddress(port));
+  }
+
+  /**
+   * Creates a server builder configured with the given {@link SocketAddress}.
+   *
+   * @param address the socket address on which the server is to be bound.
+   * @return the server builder
+   */
+  public static OkHttpServerBuilder forAddress(SocketAddress address) {
+    return new OkHttpServerBuilder(address);
+  }
+
+  private final SocketAddress listenAddress;
+  private ServerSocketFactory socketFactory = ServerSocketFactory.getDefault();
+  ObjectPool<Executor> transportExecutorPool = DEFAULT_TRANSPORT_EXECUTOR_POOL;
+  ObjectPool<ScheduledExecutorService> scheduledExecutorServicePool =
+      SharedResourcePool.forResource(GrpcUtil.TIMER_SERVICE);
+  int flowControlWindow = DEFAULT_FLOW_CONTROL_WINDOW;
+  int maxInboundMessageSize = GrpcUtil.DEFAULT_MAX_MESSAGE_SIZE;
+  int maxInboundMetadataSize = GrpcUtil.DEFAULT_MAX_HEADER_LIST_SIZE;
+  int maxConcurrentCallsPerConnection = Integer.MAX_VALUE;
+
+  private OkHttpServerBuilder(SocketAddress address) {
+    this.listenAddress = checkNotNull(address, "address");
+  }
+
+  /**
+   * Override the default executor used for accepting connections and reading frames. Each
+   * connection occupies one of its threads for as long as it is open.
+   *
+   * <p>The server does not take ownership of the given executor. It is the caller's responsibility
+   * to shutdown the executor when appropriate.
+   */
+  public OkHttpServerBuilder transportExecutor(@Nullable Executor transportExecutor) {
+    if (transportExecutor == null) {
+      this.transportExecutorPool = DEFAULT_TRANSPORT_EXECUTOR_POOL;
+    } else {
+      this.transportExecutorPool = new FixedObjectPool<>(transportExecutor);
+    }
+    return this;
+  }
+
+  /**
+   * Provides a custom scheduled executor service.
+   *
+   * <p>It's an optional parameter. If the user has not provided a scheduled executor service when
+   * the server is built, the builder will use a static cached thread pool.
+   */
+  public OkHttpServerBuilder scheduledExecutorService(
+      ScheduledExecutorService scheduledExecutorService) {
+    this.scheduledExecutorServicePool = new FixedObjectPool<>(
+        checkNotNull(scheduledExecutorService, "scheduledExecutorService"));
+    return this;
+  }
+
+  /**
+   * Override the default {@link ServerSocketFactory} used to listen. If the socket factory is not
+   * set or set to null, a default one will be used.
+   */
+  public OkHttpServerBuilder socketFactory(@Nullable ServerSocketFactory socketFactory) {
+    if (socketFactory == null) {
+      this.socketFactory = ServerSocketFactory.getDefault();
+    } else {
+      this.socketFactory = socketFactory;
+    }
+    return this;
+  }
+
+  /**
+   * Sets the flow control window in bytes. If not called, the default value is {@link
+   * #DEFAULT_FLOW_CONTROL_WINDOW}).
+   */
+  public OkHttpServerBuilder flowControlWindow(int flowControlWindow) {
+    checkArgument(flowControlWindow > 0, "flowControlWindow must be positive: %s",
+        flowControlWindow);
+    this.flowControlWindow = flowControlWindow;
+    return this;
+  }
+
+  /**
+   * The maximum number of concurrent calls permitted for each incoming connection. Defaults to no
+   * limit.
+   */
+  public OkHttpServerBuilder maxConcurrentCallsPerConnection(int maxCalls) {
+    checkArgument(maxCalls > 0, "max must be positive: %s", maxCalls);
+    this.maxConcurrentCallsPerConnection = maxCalls;
+    return this;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public OkHttpServerBuilder maxInboundMessageSize(int bytes) {
+    checkArgument(bytes >= 0, "bytes must be non-negative: %s", bytes);
+    this.maxInboundMessageSize = bytes;
+    return this;
+  }
+
+  /**
+   * Sets the maximum size of metadata allowed to be received. This is cumulative size of the
+   * entries with some overhead, as defined for
+   * <a href="http://httpwg.org/specs/rfc7540.html#rfc.section.6.5.2">
+   * HTTP/2's SETTINGS_MAX_HEADER_LIST_SIZE</a>. The default is 8 KiB. The limit is advertised to
+   * clients and checked while the headers are decoded, so an oversized request is rejected without
+   * buffering all of its metadata.
+   *
+   * @param bytes the maximum size of received metadata
+   * @return this
+   * @throws IllegalArgumentException if bytes is non-positive
+   */
+  @Override
+  public OkHttpServerBuilder maxInboundMetadataSize(int bytes) {
+    checkArgument(bytes > 0, "maxInboundMetadataSize must be > 0");
+    this.maxInboundMetadataSize = bytes;
+    return this;
+  }
+
+  @Override
+  protected List<OkHttpServer> buildTransportServers(
+      List<? extends ServerStreamTracer.Factory> streamTracerFactories) {
+    OkHttpServerTransport.Config transportConfig = new OkHttpServerTransport.Config(
+        this, streamTracerFactories, getTransportTracerFactory(), getHandshakeTimeoutMillis());
+    return Collections.singletonList(
+        new OkHttpServer(listenAddress, socketFactory, transportConfig));
+  }
+
+  @Override
+  public OkHttpServerBuilder useTransportSecurity(File certChain, File privateKey) {
+    throw new UnsupportedOperationException("TLS not supported in OkHttpServer");
+  }
+}
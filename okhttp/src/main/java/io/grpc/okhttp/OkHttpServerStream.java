@@ -0,0 +1,351 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.okhttp;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.grpc.Attributes;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.internal.AbstractServerStream;
+import io.grpc.internal.StatsTraceContext;
+import io.grpc.internal.TransportTracer;
+import io.grpc.internal.WritableBuffer;
+import io.grpc.okhttp.internal.framed.ErrorCode;
+import io.grpc.okhttp.internal.framed.Header;
+import io.perfmark.PerfMark;
+import java.util.List;
+import javax.annotation.concurrent.GuardedBy;
+import okio.Buffer;
+
+/**
+ * Server stream for the okhttp transport.
+ */
+class OkHttpServerStream extends AbstractServerStream
+    implements OutboundFlowController.Stream {
+
+  private final int id;
+  private final String authority;
+  private final Attributes attributes;
+  private final TransportTracer transportTracer;
+  private final TransportState state;
+  private final Sink sink = new Sink();
+  private Object outboundFlowState;
+
+  OkHttpServerStream(
+      int id,
+      String authority,
+      Attributes attributes,
+      OkHttpServerTransport transport,
+      ExceptionHandlingFrameWriter frameWriter,
+      OutboundFlowController outboundFlow,
+      Object lock,
+      int maxMessageSize,
+      int initialWindowSize,
+      StatsTraceContext statsTraceCtx,
+      TransportTracer transportTracer) {
+    super(new OkHttpWritableBufferAllocator(), statsTraceCtx);
+    this.id = id;
+    this.authority = authority;
+    this.attributes = checkNotNull(attributes, "attributes");
+    this.transportTracer = checkNotNull(transportTracer, "transportTracer");
+    this.state = new TransportState(
+        maxMessageSize,
+        statsTraceCtx,
+        lock,
+        frameWriter,
+        outboundFlow,
+        transport,
+        initialWindowSize);
+  }
+
+  @Override
+  protected TransportState transportState() {
+    return state;
+  }
+
+  @Override
+  protected Sink abstractServerStreamSink() {
+    return sink;
+  }
+
+  @Override
+  public int id() {
+    return id;
+  }
+
+  @Override
+  public int streamId() {
+    return id;
+  }
+
+  @Override
+  public Attributes getAttributes() {
+    return attributes;
+  }
+
+  @Override
+  public String getAuthority() {
+    return authority;
+  }
+
+  @Override
+  public void setOutboundFlowState(Object outboundFlowState) {
+    this.outboundFlowState = outboundFlowState;
+  }
+
+  @Override
+  public Object getOutboundFlowState() {
+    return outboundFlowState;
+  }
+
+  @Override
+  public void onSentBytes(int numBytes) {
+    state.onSentBytes(numBytes);
+  }
+
+  class Sink implements AbstractServerStream.Sink {
+    @Override
+    public void writeHeaders(Metadata metadata) {
+      PerfMark.startTask("OkHttpServerStream$Sink.writeHeaders");
+      try {
+        List<Header> responseHeaders = Headers.createResponseHeaders(metadata);
+        synchronized (state.lock) {
+          state.sendHeaders(responseHeaders);
+        }
+      } finally {
+        PerfMark.stopTask("OkHttpServerStream$Sink.writeHeaders");
+      }
+    }
+
+    @Override
+    public void writeFrame(WritableBuffer frame, boolean flush, int numMessages) {
+      PerfMark.startTask("OkHttpServerStream$Sink.writeFrame");
+      try {
+        if (frame == null) {
+          // Only a flush was requested; the end of stream is sent with the trailers.
+          synchronized (state.lock) {
+            state.flush();
+          }
+          return;
+        }
+        Buffer buffer = ((OkHttpWritableBuffer) frame).buffer();
+        int size = (int) buffer.size();
+        if (size > 0) {
+          onSendingBytes(size);
+        }
+        synchronized (state.lock) {
+          state.sendBuffer(buffer, flush);
+          transportTracer.reportMessageSent(numMessages);
+        }
+      } finally {
+        PerfMark.stopTask("OkHttpServerStream$Sink.writeFrame");
+      }
+    }
+
+    @Override
+    public void writeTrailers(Metadata trailers, boolean headersSent, Status status) {
+      PerfMark.startTask("OkHttpServerStream$Sink.writeTrailers");
+      try {
+        List<Header> responseTrailers = Headers.createResponseTrailers(trailers, headersSent);
+        synchronized (state.lock) {
+          state.sendTrailers(responseTrailers);
+        }
+      } finally {
+        PerfMark.stopTask("OkHttpServerStream$Sink.writeTrailers");
+      }
+    }
+
+    @Override
+    public void cancel(Status reason) {
+      PerfMark.startTask("OkHttpServerStream$Sink.cancel");
+      try {
+        synchronized (state.lock) {
+          state.cancel(reason);
+        }
+      } finally {
+        PerfMark.stopTask("OkHttpServerStream$Sink.cancel");
+      }
+    }
+  }
+
+  class TransportState extends AbstractServerStream.TransportState {
+    private final int initialWindowSize;
+    private final Object lock;
+    @GuardedBy("lock")
+    private boolean closed = false;
+    @GuardedBy("lock")
+    private boolean receivedEndOfStream = false;
+    @GuardedBy("lock")
+    private int window;
+    @GuardedBy("lock")
+    private int processedWindow;
+    @GuardedBy("lock")
+    private final ExceptionHandlingFrameWriter frameWriter;
+    @GuardedBy("lock")
+    private final OutboundFlowController outboundFlow;
+    @GuardedBy("lock")
+    private final OkHttpServerTransport transport;
+
+    TransportState(
+        int maxMessageSize,
+        StatsTraceContext statsTraceCtx,
+        Object lock,
+        ExceptionHandlingFrameWriter frameWriter,
+        OutboundFlowController outboundFlow,
+        OkHttpServerTransport transport,
+        int initialWindowSize) {
+      super(maxMessageSize, statsTraceCtx, transportTracer);
+      this.lock = checkNotNull(lock, "lock");
+      this.frameWriter = frameWriter;
+      this.outboundFlow = outboundFlow;
+      this.transport = transport;
+      this.window = initialWindowSize;
+      this.processedWindow = initialWindowSize;
+      this.initialWindowSize = initialWindowSize;
+    }
+
+    @Override
+    @GuardedBy("lock")
+    public void deframeFailed(Throwable cause) {
+      cancel(Status.fromThrowable(cause));
+    }
+
+    @Override
+    @GuardedBy("lock")
+    public void bytesRead(int processedBytes) {
+      processedWindow -= processedBytes;
+      if (processedWindow <= initialWindowSize * Utils.DEFAULT_WINDOW_UPDATE_RATIO) {
+        int delta = initialWindowSize - processedWindow;
+        window += delta;
+        processedWindow += delta;
+        frameWriter.windowUpdate(id, delta);
+        frameWriter.flush();
+      }
+    }
+
+    @Override
+    @GuardedBy("lock")
+    public void runOnTransportThread(final Runnable r) {
+      synchronized (lock) {
+        r.run();
+      }
+    }
+
+    /**
+     * Must be called with holding the transport lock.
+     */
+    @GuardedBy("lock")
+    public void inboundDataReceived(Buffer frame, boolean endOfStream) {
+      if (receivedEndOfStream) {
+        abort(ErrorCode.STREAM_CLOSED,
+            Status.INTERNAL.withDescription("Received data after end of stream"));
+        return;
+      }
+      receivedEndOfStream = endOfStream;
+      // The frame size is bounded by the okhttp deframer, so the data has already been read.
+      int length = (int) frame.size();
+      window -= length;
+      if (window < 0) {
+        abort(ErrorCode.FLOW_CONTROL_ERROR,
+            Status.INTERNAL.withDescription(
+                "Received data size exceeded our receiving window size"));
+        return;
+      }
+      inboundDataReceived(new OkHttpReadableBuffer(frame), endOfStream);
+    }
+
+    /**
+     * Called by the transport when the peer resets the stream or the connection goes away. Must be
+     * called with holding the transport lock.
+     */
+    @GuardedBy("lock")
+    public void transportClosed(Status status) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      transportReportStatus(status);
+    }
+
+    @GuardedBy("lock")
+    private void sendHeaders(List<Header> responseHeaders) {
+      if (closed) {
+        return;
+      }
+      frameWriter.synReply(false, id, responseHeaders);
+      frameWriter.flush();
+    }
+
+    @GuardedBy("lock")
+    private void sendBuffer(Buffer buffer, boolean flush) {
+      if (closed) {
+        return;
+      }
+      // If buffer > frameWriter.maxDataLength() the flow-controller will ensure that it is
+      // properly chunked.
+      outboundFlow.data(false, id, buffer, flush);
+    }
+
+    @GuardedBy("lock")
+    private void flush() {
+      if (closed) {
+        return;
+      }
+      outboundFlow.flush();
+    }
+
+    @GuardedBy("lock")
+    private void sendTrailers(final List<Header> responseTrailers) {
+      if (closed) {
+        return;
+      }
+      // Trailers must not overtake any data still waiting for flow control window.
+      outboundFlow.notifyWhenNoPendingData(OkHttpServerStream.this, new Runnable() {
+        @Override
+        public void run() {
+          if (closed) {
+            return;
+          }
+          closed = true;
+          frameWriter.synReply(true, id, responseTrailers);
+          frameWriter.flush();
+          transport.streamClosed(id);
+          complete();
+        }
+      });
+    }
+
+    @GuardedBy("lock")
+    private void cancel(Status reason) {
+      abort(ErrorCode.CANCEL, reason);
+    }
+
+    /** Resets the stream with the given error code and reports the status to the listener. */
+    @GuardedBy("lock")
+    void abort(ErrorCode errorCode, Status reason) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      frameWriter.rstStream(id, errorCode);
+      frameWriter.flush();
+      transport.streamClosed(id);
+      transportReportStatus(reason);
+    }
+  }
+}
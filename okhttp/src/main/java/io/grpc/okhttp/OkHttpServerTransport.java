@@ -0,0 +1,777 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.okhttp;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.grpc.okhttp.Utils.DEFAULT_WINDOW_SIZE;
+import static io.grpc.okhttp.Utils.DEFAULT_WINDOW_UPDATE_RATIO;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.grpc.Attributes;
+import io.grpc.Grpc;
+import io.grpc.InternalChannelz.SocketStats;
+import io.grpc.InternalLogId;
+import io.grpc.InternalStatus;
+import io.grpc.Metadata;
+import io.grpc.SecurityLevel;
+import io.grpc.ServerStreamTracer;
+import io.grpc.Status;
+import io.grpc.internal.GrpcAttributes;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.ObjectPool;
+import io.grpc.internal.SerializingExecutor;
+import io.grpc.internal.ServerTransport;
+import io.grpc.internal.ServerTransportListener;
+import io.grpc.internal.StatsTraceContext;
+import io.grpc.internal.TransportTracer;
+import io.grpc.okhttp.ExceptionHandlingFrameWriter.TransportExceptionHandler;
+import io.grpc.okhttp.internal.framed.ErrorCode;
+import io.grpc.okhttp.internal.framed.FrameReader;
+import io.grpc.okhttp.internal.framed.Header;
+import io.grpc.okhttp.internal.framed.HeadersMode;
+import io.grpc.okhttp.internal.framed.Http2;
+import io.grpc.okhttp.internal.framed.Settings;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+
+/**
+ * OkHttp-based server transport. Each transport reads frames on a dedicated thread from the
+ * transport executor and writes through an {@link AsyncSink}.
+ */
+final class OkHttpServerTransport implements ServerTransport, TransportExceptionHandler,
+    OutboundFlowController.Transport {
+  private static final Logger log = Logger.getLogger(OkHttpServerTransport.class.getName());
+  private static final OkHttpServerStream[] EMPTY_STREAM_ARRAY = new OkHttpServerStream[0];
+  private static final ByteString HTTP_METHOD = ByteString.encodeUtf8(GrpcUtil.HTTP_METHOD);
+  private static final ByteString CONTENT_TYPE = ByteString.encodeUtf8("content-type");
+  private static final ByteString TE = ByteString.encodeUtf8("te");
+  private static final ByteString TE_TRAILERS = ByteString.encodeUtf8(GrpcUtil.TE_TRAILERS);
+
+  private final Config config;
+  private final Socket socket;
+  private final InternalLogId logId;
+  private final TransportTracer transportTracer;
+  private final Executor transportExecutor;
+  private final ScheduledExecutorService scheduler;
+  private final OkHttpFrameLogger frameLogger =
+      new OkHttpFrameLogger(Level.FINE, OkHttpServerTransport.class);
+  private final Object lock = new Object();
+  @GuardedBy("lock")
+  private final ExceptionHandlingFrameWriter frameWriter;
+  @GuardedBy("lock")
+  private final OutboundFlowController outboundFlow;
+  @GuardedBy("lock")
+  private final Map<Integer, OkHttpServerStream> streams = new TreeMap<>();
+  @GuardedBy("lock")
+  private int lastStreamId;
+  @GuardedBy("lock")
+  private boolean gracefulShutdown;
+  @GuardedBy("lock")
+  private boolean closed;
+  @GuardedBy("lock")
+  private boolean streamCreationPending;
+  @GuardedBy("lock")
+  private Attributes attributes = Attributes.EMPTY;
+  private ServerTransportListener listener;
+  private boolean teWarningLogged;
+  private int connectionUnacknowledgedBytesRead;
+
+  OkHttpServerTransport(Config config, Socket socket) {
+    this.config = checkNotNull(config, "config");
+    this.socket = checkNotNull(socket, "socket");
+    this.logId = InternalLogId.allocate(getClass(), socket.getRemoteSocketAddress().toString());
+    this.transportTracer = config.transportTracerFactory.create();
+    this.transportExecutor = config.transportExecutorPool.getObject();
+    this.scheduler = config.scheduledExecutorServicePool.getObject();
+
+    SerializingExecutor serializingExecutor = new SerializingExecutor(transportExecutor);
+    final AsyncSink asyncSink = AsyncSink.sink(serializingExecutor, this);
+    // The socket is already connected; this runs before any write queued by the frame writer.
+    serializingExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          asyncSink.becomeConnected(Okio.sink(OkHttpServerTransport.this.socket),
+              OkHttpServerTransport.this.socket);
+        } catch (IOException e) {
+          onException(e);
+        }
+      }
+    });
+    synchronized (lock) {
+      frameWriter = new ExceptionHandlingFrameWriter(
+          this, new Http2().newWriter(Okio.buffer(asyncSink), false), frameLogger);
+      outboundFlow = new OutboundFlowController(this, frameWriter);
+    }
+  }
+
+  /**
+   * Sends the initial settings and starts reading frames. Must be called once, after the transport
+   * has been announced with {@link io.grpc.internal.ServerListener#transportCreated}.
+   */
+  public void start(ServerTransportListener listener) {
+    this.listener = checkNotNull(listener, "listener");
+    synchronized (lock) {
+      Settings settings = new Settings();
+      OkHttpSettingsUtil.set(
+          settings, OkHttpSettingsUtil.INITIAL_WINDOW_SIZE, config.flowControlWindow);
+      if (config.maxInboundMetadataSize != Integer.MAX_VALUE) {
+        OkHttpSettingsUtil.set(
+            settings, OkHttpSettingsUtil.MAX_HEADER_LIST_SIZE, config.maxInboundMetadataSize);
+      }
+      if (config.maxConcurrentCallsPerConnection != Integer.MAX_VALUE) {
+        OkHttpSettingsUtil.set(
+            settings,
+            OkHttpSettingsUtil.MAX_CONCURRENT_STREAMS,
+            config.maxConcurrentCallsPerConnection);
+      }
+      frameWriter.settings(settings);
+      if (config.flowControlWindow > DEFAULT_WINDOW_SIZE) {
+        frameWriter.windowUpdate(
+            Utils.CONNECTION_STREAM_ID, config.flowControlWindow - DEFAULT_WINDOW_SIZE);
+      }
+      frameWriter.flush();
+    }
+    transportExecutor.execute(new FrameHandler());
+  }
+
+  @Override
+  public void shutdown() {
+    synchronized (lock) {
+      if (gracefulShutdown || closed) {
+        return;
+      }
+      gracefulShutdown = true;
+      // Streams created after lastStreamId are refused, so the client can safely retry them on
+      // another connection.
+      frameWriter.goAway(lastStreamId, ErrorCode.NO_ERROR, new byte[0]);
+      frameWriter.flush();
+      stopIfNecessary();
+    }
+  }
+
+  @Override
+  public void shutdownNow(Status reason) {
+    abruptShutdown(ErrorCode.NO_ERROR, reason);
+  }
+
+  @Override
+  public ScheduledExecutorService getScheduledExecutorService() {
+    return scheduler;
+  }
+
+  @Override
+  public InternalLogId getLogId() {
+    return logId;
+  }
+
+  @Override
+  public ListenableFuture<SocketStats> getStats() {
+    SettableFuture<SocketStats> ret = SettableFuture.create();
+    ret.set(new SocketStats(
+        transportTracer.getStats(),
+        socket.getLocalSocketAddress(),
+        socket.getRemoteSocketAddress(),
+        Utils.getSocketOptions(socket),
+        /*security=*/ null));
+    return ret;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("logId", logId.getId())
+        .add("socket", socket)
+        .toString();
+  }
+
+  /**
+   * Gets all active streams as an array.
+   */
+  @Override
+  public OkHttpServerStream[] getActiveStreams() {
+    synchronized (lock) {
+      return streams.values().toArray(EMPTY_STREAM_ARRAY);
+    }
+  }
+
+  @Override
+  public OkHttpServerStream getStream(int streamId) {
+    synchronized (lock) {
+      return streams.get(streamId);
+    }
+  }
+
+  /**
+   * Finish all active streams due to an IOException, then close the transport.
+   */
+  @Override
+  public void onException(Throwable failureCause) {
+    checkNotNull(failureCause, "failureCause");
+    abruptShutdown(null, Status.UNAVAILABLE.withCause(failureCause));
+  }
+
+  /**
+   * Called by a stream once it has been fully closed or reset, so it is no longer tracked by the
+   * transport.
+   */
+  void streamClosed(int streamId) {
+    synchronized (lock) {
+      streams.remove(streamId);
+      stopIfNecessary();
+    }
+  }
+
+  @GuardedBy("lock")
+  private void stopIfNecessary() {
+    if (!gracefulShutdown || !streams.isEmpty() || streamCreationPending || closed) {
+      return;
+    }
+    closed = true;
+    // Closing the writer closes the socket, which stops the reader thread and terminates the
+    // transport.
+    frameWriter.flush();
+    frameWriter.close();
+  }
+
+  /**
+   * Sends GOAWAY if {@code errorCode} is non-null, fails all active streams, and closes the
+   * connection.
+   */
+  private void abruptShutdown(@Nullable ErrorCode errorCode, Status reason) {
+    synchronized (lock) {
+      if (!closed) {
+        closed = true;
+        if (errorCode != null) {
+          frameWriter.goAway(lastStreamId, errorCode, new byte[0]);
+        }
+        frameWriter.flush();
+        frameWriter.close();
+      }
+      Iterator<Map.Entry<Integer, OkHttpServerStream>> it = streams.entrySet().iterator();
+      while (it.hasNext()) {
+        OkHttpServerStream stream = it.next().getValue();
+        it.remove();
+        stream.transportState().transportClosed(reason);
+      }
+    }
+  }
+
+  private void closeSocket() {
+    try {
+      socket.close();
+    } catch (IOException e) {
+      log.log(Level.FINE, "Exception closing socket", e);
+    }
+  }
+
+  private void terminated() {
+    abruptShutdown(null, Status.UNAVAILABLE.withDescription("Transport closed"));
+    config.transportExecutorPool.returnObject(transportExecutor);
+    config.scheduledExecutorServicePool.returnObject(scheduler);
+    listener.transportTerminated();
+  }
+
+  /**
+   * Responds to a request that could not be dispatched to gRPC with the given HTTP status. The
+   * response has no body; the details are carried in the grpc-status and grpc-message headers.
+   */
+  @GuardedBy("lock")
+  private void respondWithHttpError(
+      int streamId, boolean inFinished, int httpCode, Status.Code statusCode, String msg) {
+    Metadata metadata = new Metadata();
+    metadata.put(InternalStatus.CODE_KEY, statusCode.toStatus());
+    metadata.put(InternalStatus.MESSAGE_KEY, msg);
+    List<Header> headers =
+        Headers.createHttpResponseHeaders(httpCode, "text/plain; encoding=utf-8", metadata);
+    frameWriter.synReply(true, streamId, headers);
+    if (!inFinished) {
+      // Tell the client to stop sending the request body.
+      frameWriter.rstStream(streamId, ErrorCode.NO_ERROR);
+    }
+    frameWriter.flush();
+  }
+
+  private void connectionError(ErrorCode errorCode, String moreDetail) {
+    abruptShutdown(errorCode, Status.INTERNAL.withDescription(moreDetail));
+  }
+
+  static final class Config {
+    final List<? extends ServerStreamTracer.Factory> streamTracerFactories;
+    final ObjectPool<Executor> transportExecutorPool;
+    final ObjectPool<ScheduledExecutorService> scheduledExecutorServicePool;
+    final TransportTracer.Factory transportTracerFactory;
+    final int flowControlWindow;
+    final int maxInboundMessageSize;
+    final int maxInboundMetadataSize;
+    final int maxConcurrentCallsPerConnection;
+    final long handshakeTimeoutMillis;
+
+    Config(
+        OkHttpServerBuilder builder,
+        List<? extends ServerStreamTracer.Factory> streamTracerFactories,
+        TransportTracer.Factory transportTracerFactory,
+        long handshakeTimeoutMillis) {
+      this.streamTracerFactories =
+          checkNotNull(streamTracerFactories, "streamTracerFactories");
+      this.transportTracerFactory =
+          checkNotNull(transportTracerFactory, "transportTracerFactory");
+      transportExecutorPool =
+          checkNotNull(builder.transportExecutorPool, "transportExecutorPool");
+      scheduledExecutorServicePool =
+          checkNotNull(builder.scheduledExecutorServicePool, "scheduledExecutorServicePool");
+      flowControlWindow = builder.flowControlWindow;
+      maxInboundMessageSize = builder.maxInboundMessageSize;
+      maxInboundMetadataSize = builder.maxInboundMetadataSize;
+      maxConcurrentCallsPerConnection = builder.maxConcurrentCallsPerConnection;
+      this.handshakeTimeoutMillis = handshakeTimeoutMillis;
+    }
+  }
+
+  /**
+   * Runnable which reads frames and dispatches them to the server streams.
+   */
+  class FrameHandler implements FrameReader.Handler, Runnable {
+    @Override
+    public void run() {
+      String threadName = Thread.currentThread().getName();
+      Thread.currentThread().setName("OkHttpServerTransport");
+      FrameReader frameReader = null;
+      try {
+        socket.setTcpNoDelay(true);
+        BufferedSource source = Okio.buffer(Okio.source(socket));
+        frameReader = new Http2().newReader(source, false, config.maxInboundMetadataSize);
+        ScheduledFuture<?> handshakeTimeout = null;
+        if (config.handshakeTimeoutMillis != Long.MAX_VALUE) {
+          // Closing the socket unblocks the read below, which then fails the transport.
+          handshakeTimeout = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+              log.log(Level.FINE, "Handshake timeout exceeded, closing {0}", socket);
+              closeSocket();
+            }
+          }, config.handshakeTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        try {
+          frameReader.readConnectionPreface();
+        } finally {
+          if (handshakeTimeout != null) {
+            handshakeTimeout.cancel(false);
+          }
+        }
+        Attributes transportAttrs = Attributes.newBuilder()
+            .set(Grpc.TRANSPORT_ATTR_REMOTE_ADDR, socket.getRemoteSocketAddress())
+            .set(Grpc.TRANSPORT_ATTR_LOCAL_ADDR, socket.getLocalSocketAddress())
+            .set(GrpcAttributes.ATTR_SECURITY_LEVEL, SecurityLevel.NONE)
+            .build();
+        transportAttrs = listener.transportReady(transportAttrs);
+        synchronized (lock) {
+          attributes = transportAttrs;
+        }
+        // Read until the underlying socket closes.
+        while (frameReader.nextFrame(this)) {
+        }
+      } catch (Throwable t) {
+        log.log(Level.FINE, "Error reading frames", t);
+        abruptShutdown(
+            ErrorCode.PROTOCOL_ERROR,
+            Status.UNAVAILABLE.withDescription("Error in frame handler").withCause(t));
+      } finally {
+        if (frameReader != null) {
+          try {
+            frameReader.close();
+          } catch (IOException ex) {
+            log.log(Level.INFO, "Exception closing frame reader", ex);
+          }
+        }
+        terminated();
+        Thread.currentThread().setName(threadName);
+      }
+    }
+
+    /**
+     * Handle an HTTP2 DATA frame.
+     */
+    @Override
+    public void data(boolean inFinished, int streamId, BufferedSource in, int length)
+        throws IOException {
+      frameLogger.logData(
+          OkHttpFrameLogger.Direction.INBOUND, streamId, in.buffer(), length, inFinished);
+      if (streamId == Utils.CONNECTION_STREAM_ID) {
+        connectionError(ErrorCode.PROTOCOL_ERROR, "Received DATA on the connection stream");
+        return;
+      }
+      // Wait until the frame is complete.
+      in.require(length);
+      Buffer buf = new Buffer();
+      buf.write(in.buffer(), length);
+
+      synchronized (lock) {
+        OkHttpServerStream stream = streams.get(streamId);
+        if (stream != null) {
+          stream.transportState().inboundDataReceived(buf, inFinished);
+        } else if (streamId > lastStreamId) {
+          connectionError(ErrorCode.PROTOCOL_ERROR, "Received DATA for idle stream: " + streamId);
+          return;
+        } else {
+          frameWriter.rstStream(streamId, ErrorCode.STREAM_CLOSED);
+          frameWriter.flush();
+        }
+      }
+
+      // connection window update
+      connectionUnacknowledgedBytesRead += length;
+      if (connectionUnacknowledgedBytesRead
+          >= config.flowControlWindow * DEFAULT_WINDOW_UPDATE_RATIO) {
+        synchronized (lock) {
+          frameWriter.windowUpdate(Utils.CONNECTION_STREAM_ID, connectionUnacknowledgedBytesRead);
+          frameWriter.flush();
+        }
+        connectionUnacknowledgedBytesRead = 0;
+      }
+    }
+
+    /**
+     * Handle HTTP2 HEADER and CONTINUATION frames.
+     */
+    @Override
+    public void headers(boolean outFinished,
+        boolean inFinished,
+        int streamId,
+        int associatedStreamId,
+        List<Header> headerBlock,
+        HeadersMode headersMode) {
+      frameLogger.logHeaders(
+          OkHttpFrameLogger.Direction.INBOUND, streamId, headerBlock, inFinished);
+      if ((streamId & 1) == 0) {
+        connectionError(ErrorCode.PROTOCOL_ERROR,
+            "Clients cannot open even numbered streams. RFC7540 section 5.1.1");
+        return;
+      }
+
+      synchronized (lock) {
+        OkHttpServerStream existing = streams.get(streamId);
+        if (existing != null) {
+          // Request trailers. They carry no information for gRPC, but end the request.
+          if (!inFinished) {
+            existing.transportState().abort(ErrorCode.PROTOCOL_ERROR,
+                Status.INTERNAL.withDescription("Headers received mid-stream"));
+            return;
+          }
+          existing.transportState().inboundDataReceived(new Buffer(), true);
+          return;
+        }
+        if (streamId <= lastStreamId) {
+          frameWriter.rstStream(streamId, ErrorCode.STREAM_CLOSED);
+          frameWriter.flush();
+          return;
+        }
+        lastStreamId = streamId;
+        if (gracefulShutdown || closed
+            || streams.size() >= config.maxConcurrentCallsPerConnection) {
+          frameWriter.rstStream(streamId, ErrorCode.REFUSED_STREAM);
+          frameWriter.flush();
+          return;
+        }
+      }
+
+      // The frame reader stops decoding headers into the block once it passes the limit, but keeps
+      // the header that crossed it, so an oversized block is still detected here.
+      if (config.maxInboundMetadataSize != Integer.MAX_VALUE) {
+        int metadataSize = headerBlockSize(headerBlock);
+        if (metadataSize > config.maxInboundMetadataSize) {
+          synchronized (lock) {
+            respondWithHttpError(streamId, inFinished, 431, Status.Code.RESOURCE_EXHAUSTED,
+                String.format(
+                    "Request metadata larger than %d: %d",
+                    config.maxInboundMetadataSize,
+                    metadataSize));
+          }
+          return;
+        }
+      }
+
+      ByteString path = null;
+      ByteString method = null;
+      ByteString contentType = null;
+      ByteString te = null;
+      String authority = null;
+      List<Header> metadataHeaders = new ArrayList<>(headerBlock.size());
+      for (Header header : headerBlock) {
+        if (header.name.equals(Header.TARGET_PATH)) {
+          path = header.value;
+        } else if (header.name.equals(Header.TARGET_METHOD)) {
+          method = header.value;
+        } else if (header.name.equals(Header.TARGET_AUTHORITY)) {
+          authority = header.value.utf8();
+        } else if (header.name.size() > 0 && header.name.getByte(0) == ':') {
+          // Other pseudo headers are not exposed to the application.
+          continue;
+        } else {
+          if (header.name.equals(CONTENT_TYPE)) {
+            contentType = header.value;
+          } else if (header.name.equals(TE)) {
+            te = header.value;
+          }
+          metadataHeaders.add(header);
+        }
+      }
+
+      final OkHttpServerStream stream;
+      final String fullMethodName;
+      final Metadata metadata;
+      synchronized (lock) {
+        if (path == null) {
+          respondWithHttpError(streamId, inFinished, 404, Status.Code.UNIMPLEMENTED,
+              "Expected path but is missing");
+          return;
+        }
+        String pathString = path.utf8();
+        if (!pathString.startsWith("/")) {
+          respondWithHttpError(streamId, inFinished, 404, Status.Code.UNIMPLEMENTED,
+              String.format("Expected path to start with /: %s", pathString));
+          return;
+        }
+        fullMethodName = pathString.substring(1);
+
+        // Verify that the Content-Type is correct in the request.
+        if (contentType == null) {
+          respondWithHttpError(streamId, inFinished, 415, Status.Code.INTERNAL,
+              "Content-Type is missing from the request");
+          return;
+        }
+        String contentTypeString = contentType.utf8();
+        if (!GrpcUtil.isGrpcContentType(contentTypeString)) {
+          respondWithHttpError(streamId, inFinished, 415, Status.Code.INTERNAL,
+              String.format("Content-Type '%s' is not supported", contentTypeString));
+          return;
+        }
+
+        if (!HTTP_METHOD.equals(method)) {
+          respondWithHttpError(streamId, inFinished, 405, Status.Code.INTERNAL,
+              String.format(
+                  "Method '%s' is not supported", method == null ? null : method.utf8()));
+          return;
+        }
+
+        if (!teWarningLogged && !TE_TRAILERS.equals(te)) {
+          log.warning(String.format("Expected header TE: %s, but %s is received. This means "
+                  + "some intermediate proxy may not support trailers",
+              GrpcUtil.TE_TRAILERS, te == null ? null : te.utf8()));
+          teWarningLogged = true;
+        }
+
+        metadata = Utils.convertHeaders(metadataHeaders);
+        StatsTraceContext statsTraceCtx = StatsTraceContext.newServerContext(
+            config.streamTracerFactories, fullMethodName, metadata);
+        stream = new OkHttpServerStream(
+            streamId,
+            authority,
+            attributes,
+            OkHttpServerTransport.this,
+            frameWriter,
+            outboundFlow,
+            lock,
+            config.maxInboundMessageSize,
+            config.flowControlWindow,
+            statsTraceCtx,
+            transportTracer);
+        // Keeps a graceful shutdown from completing before the stream is registered.
+        streamCreationPending = true;
+      }
+
+      // The listener may run application code, so it must not be called with the lock held. Only
+      // this thread reads frames, so no frame for the stream can arrive in the meantime.
+      listener.streamCreated(stream, fullMethodName, metadata);
+
+      synchronized (lock) {
+        streamCreationPending = false;
+        if (closed) {
+          stream.transportState().transportClosed(
+              Status.UNAVAILABLE.withDescription("Transport closed"));
+          return;
+        }
+        streams.put(streamId, stream);
+        stream.transportState().onStreamAllocated();
+        if (inFinished) {
+          stream.transportState().inboundDataReceived(new Buffer(), true);
+        }
+      }
+    }
+
+    private int headerBlockSize(List<Header> headerBlock) {
+      // Calculate as defined for SETTINGS_MAX_HEADER_LIST_SIZE in RFC 7540 §6.5.2.
+      long size = 0;
+      for (int i = 0; i < headerBlock.size(); i++) {
+        Header header = headerBlock.get(i);
+        size += 32 + header.name.size() + header.value.size();
+      }
+      size = Math.min(size, Integer.MAX_VALUE);
+      return (int) size;
+    }
+
+    @Override
+    public void rstStream(int streamId, ErrorCode errorCode) {
+      frameLogger.logRstStream(OkHttpFrameLogger.Direction.INBOUND, streamId, errorCode);
+      Status status = GrpcUtil.Http2Error.statusForCode(errorCode.httpCode)
+          .augmentDescription("Rst Stream");
+      if (status.isOk()) {
+        status = Status.CANCELLED.withDescription("Rst Stream");
+      }
+      synchronized (lock) {
+        OkHttpServerStream stream = streams.remove(streamId);
+        if (stream != null) {
+          stream.transportState().transportClosed(status);
+          stopIfNecessary();
+        }
+      }
+    }
+
+    @Override
+    public void settings(boolean clearPrevious, Settings settings) {
+      frameLogger.logSettings(OkHttpFrameLogger.Direction.INBOUND, settings);
+      synchronized (lock) {
+        boolean outboundWindowSizeIncreased = false;
+        if (OkHttpSettingsUtil.isSet(settings, OkHttpSettingsUtil.INITIAL_WINDOW_SIZE)) {
+          int initialWindowSize = OkHttpSettingsUtil.get(
+              settings, OkHttpSettingsUtil.INITIAL_WINDOW_SIZE);
+          outboundWindowSizeIncreased = outboundFlow.initialOutboundWindowSize(initialWindowSize);
+        }
+
+        // The changed settings are not finalized until SETTINGS acknowledgment frame is sent. Any
+        // writes due to update in settings must be sent after SETTINGS acknowledgment frame,
+        // otherwise it will cause a stream error (RST_STREAM).
+        frameWriter.ackSettings(settings);
+        frameWriter.flush();
+
+        // send any pending bytes
+        if (outboundWindowSizeIncreased) {
+          outboundFlow.writeStreams();
+        }
+      }
+    }
+
+    @Override
+    public void ping(boolean ack, int payload1, int payload2) {
+      long payload = (((long) payload1) << 32) | (payload2 & 0xffffffffL);
+      if (ack) {
+        frameLogger.logPingAck(OkHttpFrameLogger.Direction.INBOUND, payload);
+        // The server does not send pings, so there is nothing to match the ack against.
+        return;
+      }
+      frameLogger.logPing(OkHttpFrameLogger.Direction.INBOUND, payload);
+      synchronized (lock) {
+        frameWriter.ping(true, payload1, payload2);
+        frameWriter.flush();
+      }
+    }
+
+    @Override
+    public void ackSettings() {
+      // Do nothing currently.
+    }
+
+    @Override
+    public void goAway(int lastGoodStreamId, ErrorCode errorCode, ByteString debugData) {
+      frameLogger.logGoAway(
+          OkHttpFrameLogger.Direction.INBOUND, lastGoodStreamId, errorCode, debugData);
+      if (errorCode != ErrorCode.NO_ERROR) {
+        Status status = GrpcUtil.Http2Error.statusForCode(errorCode.httpCode)
+            .augmentDescription("Received Goaway");
+        if (debugData.size() > 0) {
+          status = status.augmentDescription(debugData.utf8());
+        }
+        abruptShutdown(null, status);
+      }
+      // A graceful GOAWAY only means the client will not create new streams; the existing ones
+      // run to completion.
+    }
+
+    @Override
+    public void pushPromise(int streamId, int promisedStreamId, List<Header> requestHeaders)
+        throws IOException {
+      frameLogger.logPushPromise(OkHttpFrameLogger.Direction.INBOUND,
+          streamId, promisedStreamId, requestHeaders);
+      connectionError(ErrorCode.PROTOCOL_ERROR, "PUSH_PROMISE only allowed on clients");
+    }
+
+    @Override
+    public void windowUpdate(int streamId, long delta) {
+      frameLogger.logWindowsUpdate(OkHttpFrameLogger.Direction.INBOUND, streamId, delta);
+      if (delta == 0) {
+        String errorMsg = "Received 0 flow control window increment.";
+        if (streamId == Utils.CONNECTION_STREAM_ID) {
+          connectionError(ErrorCode.PROTOCOL_ERROR, errorMsg);
+        } else {
+          synchronized (lock) {
+            OkHttpServerStream stream = streams.get(streamId);
+            if (stream != null) {
+              stream.transportState().abort(
+                  ErrorCode.PROTOCOL_ERROR, Status.INTERNAL.withDescription(errorMsg));
+            }
+          }
+        }
+        return;
+      }
+
+      synchronized (lock) {
+        if (streamId == Utils.CONNECTION_STREAM_ID) {
+          outboundFlow.windowUpdate(null, (int) delta);
+          return;
+        }
+
+        OkHttpServerStream stream = streams.get(streamId);
+        if (stream != null) {
+          outboundFlow.windowUpdate(stream, (int) delta);
+        } else if (streamId > lastStreamId) {
+          connectionError(ErrorCode.PROTOCOL_ERROR,
+              "Received window_update for idle stream: " + streamId);
+        }
+      }
+    }
+
+    @Override
+    public void priority(int streamId, int streamDependency, int weight, boolean exclusive) {
+      // Ignore priority change.
+    }
+
+    @Override
+    public void alternateService(int streamId, String origin, ByteString protocol, String host,
+        int port, long maxAge) {
+      // Only sent by servers.
+    }
+  }
+}
@@ -24,6 +24,7 @@ import io.grpc.okhttp.internal.framed.Settings;
 class OkHttpSettingsUtil {
   public static final int MAX_CONCURRENT_STREAMS = Settings.MAX_CONCURRENT_STREAMS;
   public static final int INITIAL_WINDOW_SIZE = Settings.INITIAL_WINDOW_SIZE;
+  public static final int MAX_HEADER_LIST_SIZE = Settings.MAX_HEADER_LIST_SIZE;
 
   public static boolean isSet(Settings settings, int id) {
     return settings.isSet(id);
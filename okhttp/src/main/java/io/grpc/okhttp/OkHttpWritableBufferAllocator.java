@@ -16,6 +16,7 @@
 
 package io.grpc.okhttp;
 
+import io.grpc.internal.MessageSizeEstimator;
 import io.grpc.internal.WritableBuffer;
 import io.grpc.internal.WritableBufferAllocator;
 import okio.Buffer;
@@ -24,6 +25,9 @@ import okio.Buffer;
  * The default allocator for {@link OkHttpWritableBuffer}s used by the OkHttp transport. OkHttp
  * cannot receive buffers larger than the max DATA frame size - 1 so we must set an upper bound on
  * the allocated buffer size here.
+ *
+ * <p>There is no separate pool: {@link Buffer} already recycles its segments through okio's shared
+ * segment pool.
  */
 class OkHttpWritableBufferAllocator implements WritableBufferAllocator {
 
@@ -33,6 +37,13 @@ class OkHttpWritableBufferAllocator implements WritableBufferAllocator {
   // Set the maximum buffer size to 1MB
   private static final int MAX_BUFFER = 1024 * 1024;
 
+  // Bound the number of methods whose message sizes are learned.
+  private static final int MAX_ESTIMATED_METHODS = 1024;
+
+  /** Learns request sizes per method, shared by all channels. */
+  static final MessageSizeEstimator.Registry requestSizeEstimators =
+      new MessageSizeEstimator.Registry(MAX_ESTIMATED_METHODS, MAX_BUFFER);
+
   /**
    * Construct a new instance.
    */
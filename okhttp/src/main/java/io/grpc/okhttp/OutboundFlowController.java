@@ -33,13 +33,13 @@ import okio.Buffer;
  * streams.
  */
 class OutboundFlowController {
-  private final OkHttpClientTransport transport;
+  private final Transport transport;
   private final FrameWriter frameWriter;
   private int initialWindowSize;
   private final OutboundFlowState connectionState;
 
   OutboundFlowController(
-      OkHttpClientTransport transport, FrameWriter frameWriter) {
+      Transport transport, FrameWriter frameWriter) {
     this.transport = Preconditions.checkNotNull(transport, "transport");
     this.frameWriter = Preconditions.checkNotNull(frameWriter, "frameWriter");
     this.initialWindowSize = DEFAULT_WINDOW_SIZE;
@@ -62,7 +62,7 @@ class OutboundFlowController {
 
     int delta = newWindowSize - initialWindowSize;
     initialWindowSize = newWindowSize;
-    for (OkHttpClientStream stream : transport.getActiveStreams()) {
+    for (Stream stream : transport.getActiveStreams()) {
       OutboundFlowState state = (OutboundFlowState) stream.getOutboundFlowState();
       if (state == null) {
         // Create the OutboundFlowState with the new window size.
@@ -82,7 +82,7 @@ class OutboundFlowController {
    *
    * <p>Must be called with holding transport lock.
    */
-  int windowUpdate(@Nullable OkHttpClientStream stream, int delta) {
+  int windowUpdate(@Nullable Stream stream, int delta) {
     final int updatedWindow;
     if (stream == null) {
       // Update the connection window and write any pending frames for all streams.
@@ -108,10 +108,10 @@ class OutboundFlowController {
   void data(boolean outFinished, int streamId, Buffer source, boolean flush) {
     Preconditions.checkNotNull(source, "source");
 
-    OkHttpClientStream stream = transport.getStream(streamId);
+    Stream stream = transport.getStream(streamId);
     if (stream == null) {
-      // This is possible for a stream that has received end-of-stream from server (but hasn't sent
-      // end-of-stream), and was removed from the transport stream map.
+      // This is possible for a stream that has received end-of-stream from the peer (but hasn't
+      // sent end-of-stream), and was removed from the transport stream map.
       // In such case, we just throw away the data.
       return;
     }
@@ -138,6 +138,23 @@ class OutboundFlowController {
     }
   }
 
+  /**
+   * Runs {@code noPendingDataRunnable} once all of the data queued for the stream has been written,
+   * or immediately if nothing is queued. Used to keep trailers from overtaking data that is still
+   * waiting for flow control window.
+   *
+   * <p>Must be called with holding transport lock.
+   */
+  void notifyWhenNoPendingData(Stream stream, Runnable noPendingDataRunnable) {
+    Preconditions.checkNotNull(noPendingDataRunnable, "noPendingDataRunnable");
+    OutboundFlowState state = state(stream);
+    if (state.hasPendingData()) {
+      state.noPendingDataRunnable = noPendingDataRunnable;
+    } else {
+      noPendingDataRunnable.run();
+    }
+  }
+
   void flush() {
     try {
       frameWriter.flush();
@@ -146,7 +163,7 @@ class OutboundFlowController {
     }
   }
 
-  private OutboundFlowState state(OkHttpClientStream stream) {
+  private OutboundFlowState state(Stream stream) {
     OutboundFlowState state = (OutboundFlowState) stream.getOutboundFlowState();
     if (state == null) {
       state = new OutboundFlowState(stream, initialWindowSize);
@@ -161,13 +178,13 @@ class OutboundFlowController {
    * <p>Must be called with holding transport lock.
    */
   void writeStreams() {
-    OkHttpClientStream[] streams = transport.getActiveStreams();
+    Stream[] streams = transport.getActiveStreams();
     int connectionWindow = connectionState.window();
     for (int numStreams = streams.length; numStreams > 0 && connectionWindow > 0;) {
       int nextNumStreams = 0;
       int windowSlice = (int) ceil(connectionWindow / (float) numStreams);
       for (int index = 0; index < numStreams && connectionWindow > 0; ++index) {
-        OkHttpClientStream stream = streams[index];
+        Stream stream = streams[index];
         OutboundFlowState state = state(stream);
 
         int bytesForStream = min(connectionWindow, min(state.unallocatedBytes(), windowSlice));
@@ -187,7 +204,7 @@ class OutboundFlowController {
 
     // Now take one last pass through all of the streams and write any allocated bytes.
     WriteStatus writeStatus = new WriteStatus();
-    for (OkHttpClientStream stream : transport.getActiveStreams()) {
+    for (Stream stream : transport.getActiveStreams()) {
       OutboundFlowState state = state(stream);
       state.writeBytes(state.allocatedBytes(), writeStatus);
       state.clearAllocatedBytes();
@@ -221,8 +238,10 @@ class OutboundFlowController {
     final int streamId;
     int window;
     int allocatedBytes;
-    OkHttpClientStream stream;
+    Stream stream;
     boolean pendingBufferHasEndOfStream = false;
+    @Nullable
+    Runnable noPendingDataRunnable;
 
     OutboundFlowState(int streamId, int initialWindowSize) {
       this.streamId = streamId;
@@ -230,7 +249,7 @@ class OutboundFlowController {
       pendingWriteBuffer = new Buffer();
     }
 
-    OutboundFlowState(OkHttpClientStream stream, int initialWindowSize) {
+    OutboundFlowState(Stream stream, int initialWindowSize) {
       this(stream.id(), initialWindowSize);
       this.stream = stream;
     }
@@ -305,6 +324,11 @@ class OutboundFlowController {
         // Update the threshold.
         maxBytes = min(bytes - bytesAttempted, writableWindow());
       }
+      if (!hasPendingData() && noPendingDataRunnable != null) {
+        Runnable runnable = noPendingDataRunnable;
+        noPendingDataRunnable = null;
+        runnable.run();
+      }
       return bytesAttempted;
     }
 
@@ -328,7 +352,7 @@ class OutboundFlowController {
         } catch (IOException e) {
           throw new RuntimeException(e);
         }
-        stream.transportState().onSentBytes(frameBytes);
+        stream.onSentBytes(frameBytes);
         bytesToWrite -= frameBytes;
       } while (bytesToWrite > 0);
     }
@@ -338,4 +362,27 @@ class OutboundFlowController {
       this.pendingBufferHasEndOfStream |= endOfStream;
     }
   }
-}
\ No newline at end of file
+
+  /** The transport whose streams are flow controlled. */
+  interface Transport {
+    /** Returns the streams that may have data to write. */
+    Stream[] getActiveStreams();
+
+    /** Returns the stream with the given id, or {@code null} if it is no longer active. */
+    @Nullable
+    Stream getStream(int streamId);
+  }
+
+  /** A stream as seen by the flow controller. */
+  interface Stream {
+    int id();
+
+    @Nullable
+    Object getOutboundFlowState();
+
+    void setOutboundFlowState(Object outboundFlowState);
+
+    /** Called after {@code numBytes} of the stream's data have been handed to the frame writer. */
+    void onSentBytes(int numBytes);
+  }
+}
@@ -44,7 +44,7 @@ public class HeadersTest {
     String userValue = "user-value";
     metaData.put(userKey, userValue);
 
-    String path = "//testServerice/test";
+    Header path = new Header(Header.TARGET_PATH, "//testServerice/test");
     String authority = "localhost";
     String userAgent = "useragent";
 
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.okhttp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import io.grpc.Attributes;
+import io.grpc.Metadata;
+import io.grpc.ServerStreamTracer;
+import io.grpc.Status;
+import io.grpc.internal.ServerListener;
+import io.grpc.internal.ServerStream;
+import io.grpc.internal.ServerTransport;
+import io.grpc.internal.ServerTransportListener;
+import io.grpc.internal.TransportTracer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.net.ServerSocketFactory;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link OkHttpServer}. */
+@RunWith(JUnit4.class)
+public class OkHttpServerTest {
+  private static final int TIME_OUT_MS = 2000;
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+  private final BlockingQueue<ServerTransport> transports = new LinkedBlockingQueue<>();
+  private final CountDownLatch serverShutdown = new CountDownLatch(1);
+  private OkHttpServer server;
+
+  @After
+  public void tearDown() throws Exception {
+    if (server != null) {
+      server.shutdown();
+      assertTrue(serverShutdown.await(TIME_OUT_MS, TimeUnit.MILLISECONDS));
+    }
+    for (ServerTransport transport : transports) {
+      transport.shutdownNow(Status.UNAVAILABLE);
+    }
+    executor.shutdownNow();
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void failedConnection_doesNotStopAcceptingOthers() throws Exception {
+    final AtomicBoolean failNext = new AtomicBoolean(true);
+    startServer(new ServerListener() {
+      @Override
+      public ServerTransportListener transportCreated(ServerTransport transport) {
+        if (failNext.getAndSet(false)) {
+          throw new RuntimeException("Induced failure");
+        }
+        transports.add(transport);
+        return new NoopTransportListener();
+      }
+
+      @Override
+      public void serverShutdown() {
+        serverShutdown.countDown();
+      }
+    });
+    InetSocketAddress address = (InetSocketAddress) server.getListenSocketAddress();
+
+    try (Socket failed = new Socket(address.getAddress(), address.getPort())) {
+      failed.setSoTimeout(TIME_OUT_MS);
+      // The server closes the connection it failed to set up.
+      assertEquals(-1, failed.getInputStream().read());
+    }
+
+    try (Socket accepted = new Socket(address.getAddress(), address.getPort())) {
+      assertNotNull(transports.poll(TIME_OUT_MS, TimeUnit.MILLISECONDS));
+    }
+    assertEquals(1, serverShutdown.getCount());
+  }
+
+  private void startServer(ServerListener listener) throws Exception {
+    OkHttpServerBuilder builder = OkHttpServerBuilder.forPort(0)
+        .transportExecutor(executor)
+        .scheduledExecutorService(scheduler);
+    server = new OkHttpServer(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+        ServerSocketFactory.getDefault(),
+        new OkHttpServerTransport.Config(
+            builder,
+            Collections.<ServerStreamTracer.Factory>emptyList(),
+            TransportTracer.getDefaultFactory(),
+            Long.MAX_VALUE));
+    server.start(listener);
+  }
+
+  private static final class NoopTransportListener implements ServerTransportListener {
+    @Override
+    public void streamCreated(ServerStream stream, String method, Metadata headers) {}
+
+    @Override
+    public Attributes transportReady(Attributes attributes) {
+      return attributes;
+    }
+
+    @Override
+    public void transportTerminated() {}
+  }
+}
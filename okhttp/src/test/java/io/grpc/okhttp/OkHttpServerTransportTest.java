@@ -0,0 +1,491 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.okhttp;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import io.grpc.Attributes;
+import io.grpc.Metadata;
+import io.grpc.ServerStreamTracer;
+import io.grpc.Status;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.ServerStream;
+import io.grpc.internal.ServerStreamListener;
+import io.grpc.internal.ServerTransportListener;
+import io.grpc.internal.TransportTracer;
+import io.grpc.okhttp.internal.framed.ErrorCode;
+import io.grpc.okhttp.internal.framed.FrameReader;
+import io.grpc.okhttp.internal.framed.FrameWriter;
+import io.grpc.okhttp.internal.framed.Header;
+import io.grpc.okhttp.internal.framed.HeadersMode;
+import io.grpc.okhttp.internal.framed.Http2;
+import io.grpc.okhttp.internal.framed.Settings;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link OkHttpServerTransport}. The client side of the connection is driven frame by
+ * frame with the okhttp HTTP/2 framing code over a loopback socket.
+ */
+@RunWith(JUnit4.class)
+public class OkHttpServerTransportTest {
+  private static final int TIME_OUT_MS = 2000;
+  private static final String METHOD = "com.example/SimpleService.doit";
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+  private final FakeTransportListener transportListener = new FakeTransportListener();
+  private final FrameCollector frames = new FrameCollector();
+  private Socket clientSocket;
+  private OkHttpServerTransport serverTransport;
+  private FrameWriter clientFrameWriter;
+  private FrameReader clientFrameReader;
+
+  @Before
+  public void setUp() throws Exception {
+    InetAddress loopback = InetAddress.getLoopbackAddress();
+    Socket acceptedSocket;
+    try (ServerSocket listenSocket = new ServerSocket(0, 1, loopback)) {
+      clientSocket = new Socket(loopback, listenSocket.getLocalPort());
+      acceptedSocket = listenSocket.accept();
+    }
+    clientSocket.setSoTimeout(TIME_OUT_MS);
+
+    OkHttpServerBuilder builder = OkHttpServerBuilder.forPort(0)
+        .transportExecutor(executor)
+        .scheduledExecutorService(scheduler);
+    serverTransport = new OkHttpServerTransport(
+        new OkHttpServerTransport.Config(
+            builder,
+            Collections.<ServerStreamTracer.Factory>emptyList(),
+            TransportTracer.getDefaultFactory(),
+            Long.MAX_VALUE),
+        acceptedSocket);
+    serverTransport.start(transportListener);
+
+    clientFrameWriter = new Http2().newWriter(Okio.buffer(Okio.sink(clientSocket)), true);
+    clientFrameReader = new Http2().newReader(Okio.buffer(Okio.source(clientSocket)), true);
+    clientFrameWriter.connectionPreface();
+    clientFrameWriter.settings(new Settings());
+    clientFrameWriter.flush();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    clientSocket.close();
+    assertTrue(transportListener.terminated.await(TIME_OUT_MS, TimeUnit.MILLISECONDS));
+    executor.shutdownNow();
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void transportReadyAfterConnectionPreface() throws Exception {
+    assertTrue(transportListener.ready.await(TIME_OUT_MS, TimeUnit.MILLISECONDS));
+    frames.readUntil(FrameType.SETTINGS);
+    frames.readUntil(FrameType.SETTINGS_ACK);
+  }
+
+  @Test
+  public void shutdown_sendsGoAwayAndTerminates() throws Exception {
+    frames.readUntil(FrameType.SETTINGS);
+    serverTransport.shutdown();
+
+    Frame goAway = frames.readUntil(FrameType.GOAWAY);
+    assertThat(goAway.errorCode).isEqualTo(ErrorCode.NO_ERROR);
+    assertTrue(transportListener.terminated.await(TIME_OUT_MS, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void basicRpc() throws Exception {
+    clientFrameWriter.synStream(false, false, 1, 0, requestHeaders("application/grpc"));
+    Buffer requestMessage = grpcMessage("Hello");
+    clientFrameWriter.data(true, 1, requestMessage, (int) requestMessage.size());
+    clientFrameWriter.flush();
+
+    StreamCreation creation =
+        transportListener.streams.poll(TIME_OUT_MS, TimeUnit.MILLISECONDS);
+    assertNotNull(creation);
+    assertThat(creation.method).isEqualTo(METHOD);
+    assertThat(creation.headers.get(
+        Metadata.Key.of("some-metadata", Metadata.ASCII_STRING_MARSHALLER))).isEqualTo("value");
+    assertThat(creation.stream.getAuthority()).isEqualTo("example.com:80");
+
+    FakeStreamListener streamListener = creation.listener;
+    ServerStream stream = creation.stream;
+    stream.request(1);
+    assertThat(streamListener.messages.poll(TIME_OUT_MS, TimeUnit.MILLISECONDS))
+        .isEqualTo("Hello");
+    assertTrue(streamListener.halfClosed.await(TIME_OUT_MS, TimeUnit.MILLISECONDS));
+
+    stream.writeHeaders(new Metadata());
+    stream.writeMessage(new ByteArrayInputStream("Hi".getBytes("UTF-8")));
+    stream.close(Status.OK, new Metadata());
+
+    Frame headers = frames.readUntil(FrameType.HEADERS);
+    assertThat(headers.streamId).isEqualTo(1);
+    assertThat(headers.inFinished).isFalse();
+    assertThat(headers.headers).contains(new Header(":status", "200"));
+    Frame data = frames.readUntil(FrameType.DATA);
+    assertThat(data.length).isEqualTo(5 + 2);
+    Frame trailers = frames.readUntil(FrameType.HEADERS);
+    assertThat(trailers.inFinished).isTrue();
+    assertThat(trailers.headers).contains(new Header("grpc-status", "0"));
+
+    assertThat(streamListener.status.poll(TIME_OUT_MS, TimeUnit.MILLISECONDS).isOk()).isTrue();
+  }
+
+  @Test
+  public void unsupportedContentType_respondsWithHttpError() throws Exception {
+    clientFrameWriter.synStream(true, false, 1, 0, requestHeaders("text/plain"));
+    clientFrameWriter.flush();
+
+    Frame response = frames.readUntil(FrameType.HEADERS);
+    assertThat(response.inFinished).isTrue();
+    assertThat(response.headers).contains(new Header(":status", "415"));
+    assertThat(transportListener.streams).isEmpty();
+  }
+
+  @Test
+  public void evenStreamId_isConnectionError() throws Exception {
+    clientFrameWriter.synStream(true, false, 2, 0, requestHeaders("application/grpc"));
+    clientFrameWriter.flush();
+
+    Frame goAway = frames.readUntil(FrameType.GOAWAY);
+    assertThat(goAway.errorCode).isEqualTo(ErrorCode.PROTOCOL_ERROR);
+    assertTrue(transportListener.terminated.await(TIME_OUT_MS, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void clientRstStream_closesStream() throws Exception {
+    clientFrameWriter.synStream(false, false, 1, 0, requestHeaders("application/grpc"));
+    clientFrameWriter.flush();
+    StreamCreation creation =
+        transportListener.streams.poll(TIME_OUT_MS, TimeUnit.MILLISECONDS);
+    assertNotNull(creation);
+    FakeStreamListener streamListener = creation.listener;
+
+    clientFrameWriter.rstStream(1, ErrorCode.CANCEL);
+    clientFrameWriter.flush();
+
+    Status status = streamListener.status.poll(TIME_OUT_MS, TimeUnit.MILLISECONDS);
+    assertThat(status.getCode()).isEqualTo(Status.Code.CANCELLED);
+  }
+
+  @Test
+  public void streamCreated_calledWithoutTransportLock() throws Exception {
+    transportListener.onStreamCreated = new Runnable() {
+      @Override
+      public void run() {
+        // Would block on the transport lock if the listener were called with it held.
+        Future<OkHttpServerStream[]> activeStreams = executor.submit(
+            new Callable<OkHttpServerStream[]>() {
+              @Override
+              public OkHttpServerStream[] call() {
+                return serverTransport.getActiveStreams();
+              }
+            });
+        try {
+          activeStreams.get(TIME_OUT_MS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+          throw new AssertionError(e);
+        }
+      }
+    };
+    clientFrameWriter.synStream(false, false, 1, 0, requestHeaders("application/grpc"));
+    clientFrameWriter.flush();
+
+    StreamCreation creation =
+        transportListener.streams.poll(TIME_OUT_MS, TimeUnit.MILLISECONDS);
+    assertNotNull(creation);
+    assertThat(serverTransport.getStream(1)).isSameInstanceAs(creation.stream);
+  }
+
+  @Test
+  public void metadataTooLarge_respondsWithHttpErrorAndKeepsConnection() throws Exception {
+    List<Header> headers = new ArrayList<>(requestHeaders("application/grpc"));
+    char[] value = new char[GrpcUtil.DEFAULT_MAX_HEADER_LIST_SIZE];
+    Arrays.fill(value, 'a');
+    headers.add(new Header("large-metadata", new String(value)));
+    clientFrameWriter.synStream(true, false, 1, 0, headers);
+    clientFrameWriter.flush();
+
+    Frame response = frames.readUntil(FrameType.HEADERS);
+    assertThat(response.streamId).isEqualTo(1);
+    assertThat(response.headers).contains(new Header(":status", "431"));
+    assertThat(transportListener.streams).isEmpty();
+
+    // The rejected header block was fully decoded, so the connection can still be used.
+    clientFrameWriter.synStream(true, false, 3, 0, requestHeaders("application/grpc"));
+    clientFrameWriter.flush();
+    StreamCreation creation =
+        transportListener.streams.poll(TIME_OUT_MS, TimeUnit.MILLISECONDS);
+    assertNotNull(creation);
+    assertThat(creation.method).isEqualTo(METHOD);
+  }
+
+  @Test
+  public void handshakeTimeout_closesSocket() throws Exception {
+    InetAddress loopback = InetAddress.getLoopbackAddress();
+    Socket acceptedSocket;
+    try (ServerSocket listenSocket = new ServerSocket(0, 1, loopback);
+        Socket silentClient = new Socket(loopback, listenSocket.getLocalPort())) {
+      acceptedSocket = listenSocket.accept();
+      OkHttpServerBuilder builder = OkHttpServerBuilder.forPort(0)
+          .transportExecutor(executor)
+          .scheduledExecutorService(scheduler);
+      FakeTransportListener silentListener = new FakeTransportListener();
+      new OkHttpServerTransport(
+          new OkHttpServerTransport.Config(
+              builder,
+              Collections.<ServerStreamTracer.Factory>emptyList(),
+              TransportTracer.getDefaultFactory(),
+              /*handshakeTimeoutMillis=*/ 100),
+          acceptedSocket)
+          .start(silentListener);
+
+      // The client never sends the connection preface.
+      assertTrue(silentListener.terminated.await(TIME_OUT_MS, TimeUnit.MILLISECONDS));
+      assertThat(silentListener.ready.getCount()).isEqualTo(1L);
+      assertTrue(acceptedSocket.isClosed());
+    }
+  }
+
+  private static List<Header> requestHeaders(String contentType) {
+    return Arrays.asList(
+        new Header(Header.TARGET_SCHEME, "http"),
+        new Header(Header.TARGET_METHOD, "POST"),
+        new Header(Header.TARGET_AUTHORITY, "example.com:80"),
+        new Header(Header.TARGET_PATH, "/" + METHOD),
+        new Header("content-type", contentType),
+        new Header("te", "trailers"),
+        new Header("some-metadata", "value"));
+  }
+
+  private static Buffer grpcMessage(String message) throws IOException {
+    byte[] payload = message.getBytes("UTF-8");
+    Buffer buffer = new Buffer();
+    buffer.writeByte(0);
+    buffer.writeInt(payload.length);
+    buffer.write(payload);
+    return buffer;
+  }
+
+  private static final class StreamCreation {
+    final ServerStream stream;
+    final String method;
+    final Metadata headers;
+    final FakeStreamListener listener = new FakeStreamListener();
+
+    StreamCreation(ServerStream stream, String method, Metadata headers) {
+      this.stream = stream;
+      this.method = method;
+      this.headers = headers;
+    }
+  }
+
+  private static final class FakeTransportListener implements ServerTransportListener {
+    final BlockingQueue<StreamCreation> streams = new LinkedBlockingQueue<>();
+    final CountDownLatch ready = new CountDownLatch(1);
+    final CountDownLatch terminated = new CountDownLatch(1);
+    volatile Runnable onStreamCreated;
+
+    @Override
+    public void streamCreated(ServerStream stream, String method, Metadata headers) {
+      StreamCreation creation = new StreamCreation(stream, method, headers);
+      // Like ServerImpl, set the listener before the transport delivers anything else.
+      stream.setListener(creation.listener);
+      if (onStreamCreated != null) {
+        onStreamCreated.run();
+      }
+      streams.add(creation);
+    }
+
+    @Override
+    public Attributes transportReady(Attributes attributes) {
+      ready.countDown();
+      return attributes;
+    }
+
+    @Override
+    public void transportTerminated() {
+      terminated.countDown();
+    }
+  }
+
+  private static final class FakeStreamListener implements ServerStreamListener {
+    final BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+    final BlockingQueue<Status> status = new LinkedBlockingQueue<>();
+    final CountDownLatch halfClosed = new CountDownLatch(1);
+
+    @Override
+    public void messagesAvailable(MessageProducer producer) {
+      InputStream message;
+      while ((message = producer.next()) != null) {
+        try {
+          Buffer buffer = new Buffer();
+          buffer.readFrom(message);
+          messages.add(buffer.readUtf8());
+        } catch (IOException e) {
+          throw new AssertionError(e);
+        }
+      }
+    }
+
+    @Override
+    public void onReady() {}
+
+    @Override
+    public void halfClosed() {
+      halfClosed.countDown();
+    }
+
+    @Override
+    public void closed(Status status) {
+      this.status.add(status);
+    }
+  }
+
+  private enum FrameType {
+    DATA, HEADERS, RST_STREAM, SETTINGS, SETTINGS_ACK, PING, GOAWAY, WINDOW_UPDATE, OTHER
+  }
+
+  private static final class Frame {
+    final FrameType type;
+    int streamId;
+    boolean inFinished;
+    int length;
+    List<Header> headers = new ArrayList<>();
+    ErrorCode errorCode;
+
+    Frame(FrameType type) {
+      this.type = type;
+    }
+  }
+
+  /** Reads frames sent by the server, in order. */
+  private final class FrameCollector implements FrameReader.Handler {
+    private Frame frame;
+
+    Frame readUntil(FrameType type) throws IOException {
+      while (true) {
+        frame = null;
+        assertTrue("connection closed", clientFrameReader.nextFrame(this));
+        if (frame != null && frame.type == type) {
+          return frame;
+        }
+      }
+    }
+
+    @Override
+    public void data(boolean inFinished, int streamId, BufferedSource source, int length)
+        throws IOException {
+      source.skip(length);
+      frame = new Frame(FrameType.DATA);
+      frame.streamId = streamId;
+      frame.inFinished = inFinished;
+      frame.length = length;
+    }
+
+    @Override
+    public void headers(boolean outFinished, boolean inFinished, int streamId,
+        int associatedStreamId, List<Header> headerBlock, HeadersMode headersMode) {
+      frame = new Frame(FrameType.HEADERS);
+      frame.streamId = streamId;
+      frame.inFinished = inFinished;
+      frame.headers = headerBlock;
+    }
+
+    @Override
+    public void rstStream(int streamId, ErrorCode errorCode) {
+      frame = new Frame(FrameType.RST_STREAM);
+      frame.streamId = streamId;
+      frame.errorCode = errorCode;
+    }
+
+    @Override
+    public void settings(boolean clearPrevious, Settings settings) {
+      frame = new Frame(FrameType.SETTINGS);
+    }
+
+    @Override
+    public void ackSettings() {
+      frame = new Frame(FrameType.SETTINGS_ACK);
+    }
+
+    @Override
+    public void ping(boolean ack, int payload1, int payload2) {
+      frame = new Frame(FrameType.PING);
+    }
+
+    @Override
+    public void goAway(int lastGoodStreamId, ErrorCode errorCode, ByteString debugData) {
+      frame = new Frame(FrameType.GOAWAY);
+      frame.streamId = lastGoodStreamId;
+      frame.errorCode = errorCode;
+    }
+
+    @Override
+    public void windowUpdate(int streamId, long windowSizeIncrement) {
+      frame = new Frame(FrameType.WINDOW_UPDATE);
+      frame.streamId = streamId;
+    }
+
+    @Override
+    public void priority(int streamId, int streamDependency, int weight, boolean exclusive) {
+      frame = new Frame(FrameType.OTHER);
+    }
+
+    @Override
+    public void pushPromise(int streamId, int promisedStreamId, List<Header> requestHeaders) {
+      frame = new Frame(FrameType.OTHER);
+    }
+
+    @Override
+    public void alternateService(int streamId, String origin, ByteString protocol, String host,
+        int port, long maxAge) {
+      frame = new Frame(FrameType.OTHER);
+    }
+  }
+}
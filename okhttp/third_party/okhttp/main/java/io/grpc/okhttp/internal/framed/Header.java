@@ -22,6 +22,8 @@ public final class Header {
   /** Value in UTF-8 encoding. */
   public final ByteString value;
   final int hpackSize;
+  /** Whether HPACK adds this header to the dynamic table even though it is a pseudo header. */
+  final boolean indexPseudoHeader;
 
   // TODO: search for toLowerCase and consider moving logic here.
   public Header(String name, String value) {
@@ -33,9 +35,22 @@ public final class Header {
   }
 
   public Header(ByteString name, ByteString value) {
+    this(name, value, false);
+  }
+
+  private Header(ByteString name, ByteString value, boolean indexPseudoHeader) {
     this.name = name;
     this.value = value;
     this.hpackSize = 32 + name.size() + value.size();
+    this.indexPseudoHeader = indexPseudoHeader;
+  }
+
+  /**
+   * Returns a pseudo header that HPACK adds to the dynamic table, for a value that is sent again
+   * and again on the same connection. Other pseudo headers, except :authority, are never indexed.
+   */
+  public static Header indexedPseudoHeader(ByteString name, String value) {
+    return new Header(name, ByteString.encodeUtf8(value), true);
   }
 
   @Override public boolean equals(Object other) {
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -132,6 +133,8 @@ final class Hpack {
 
     private int headerTableSizeSetting;
     private int maxDynamicTableByteCount;
+    private int maxHeaderListSize = Integer.MAX_VALUE;
+    private long headerListSize;
     // Visible for testing.
     io.grpc.okhttp.internal.framed.Header[] dynamicTable = new io.grpc.okhttp.internal.framed.Header[8];
     // Array is populated back to front, so new entries always have lowest index.
@@ -154,6 +157,16 @@ final class Hpack {
       return maxDynamicTableByteCount;
     }
 
+    /**
+     * Limits the headers kept while decoding a header block, measured as defined for
+     * SETTINGS_MAX_HEADER_LIST_SIZE. Once the limit is exceeded the rest of the block is still
+     * decoded to keep the dynamic table in sync, but its headers are dropped. The header that
+     * crossed the limit is kept, so the returned list still measures larger than the limit.
+     */
+    void maxHeaderListSize(int maxHeaderListSize) {
+      this.maxHeaderListSize = maxHeaderListSize;
+    }
+
     /**
      * Called by the reader when the peer sent {@link Settings#HEADER_TABLE_SIZE}.
      * While this establishes the maximum dynamic table size, the
@@ -238,19 +251,28 @@ final class Hpack {
     public List<io.grpc.okhttp.internal.framed.Header> getAndResetHeaderList() {
       List<io.grpc.okhttp.internal.framed.Header> result = new ArrayList<>(headerList);
       headerList.clear();
+      headerListSize = 0;
       return result;
     }
 
+    private void addHeader(io.grpc.okhttp.internal.framed.Header header) {
+      if (headerListSize > maxHeaderListSize) {
+        return;
+      }
+      headerListSize += 32 + header.name.size() + header.value.size();
+      headerList.add(header);
+    }
+
     private void readIndexedHeader(int index) throws IOException {
       if (isStaticHeader(index)) {
         io.grpc.okhttp.internal.framed.Header staticEntry = STATIC_HEADER_TABLE[index];
-        headerList.add(staticEntry);
+        addHeader(staticEntry);
       } else {
         int dynamicTableIndex = dynamicTableIndex(index - STATIC_HEADER_TABLE.length);
         if (dynamicTableIndex < 0 || dynamicTableIndex > dynamicTable.length - 1) {
           throw new IOException("Header index too large " + (index + 1));
         }
-        headerList.add(dynamicTable[dynamicTableIndex]);
+        addHeader(dynamicTable[dynamicTableIndex]);
       }
     }
 
@@ -262,13 +284,13 @@ final class Hpack {
     private void readLiteralHeaderWithoutIndexingIndexedName(int index) throws IOException {
       ByteString name = getName(index);
       ByteString value = readByteString();
-      headerList.add(new io.grpc.okhttp.internal.framed.Header(name, value));
+      addHeader(new io.grpc.okhttp.internal.framed.Header(name, value));
     }
 
     private void readLiteralHeaderWithoutIndexingNewName() throws IOException {
       ByteString name = checkLowercase(readByteString());
       ByteString value = readByteString();
-      headerList.add(new io.grpc.okhttp.internal.framed.Header(name, value));
+      addHeader(new io.grpc.okhttp.internal.framed.Header(name, value));
     }
 
     private void readLiteralHeaderWithIncrementalIndexingIndexedName(int nameIndex)
@@ -302,7 +324,7 @@ final class Hpack {
 
     /** index == -1 when new. */
     private void insertIntoDynamicTable(int index, io.grpc.okhttp.internal.framed.Header entry) {
-      headerList.add(entry);
+      addHeader(entry);
 
       int delta = entry.hpackSize;
       if (index != -1) { // Index -1 == new header.
@@ -412,9 +434,20 @@ final class Hpack {
     private int nextDynamicTableIndex = dynamicTable.length - 1;
     private int dynamicTableByteCount;
 
-    // Disable Huffman encoding as for the CPU vs bandwidth trade-off.
+    /*
+     * Entries of the dynamic table keyed by lowercase name and value, and by lowercase name alone,
+     * so a header block is encoded without scanning the table once per header. Entries are
+     * identified by their insertion number; the one inserted last has dynamic index 1. Only the
+     * newest entry for a key is kept, which is the one a scan of the table would find first.
+     */
+    private final Map<Header, Integer> dynamicTableInsertions = new HashMap<>();
+    private final Map<ByteString, Integer> dynamicTableNameInsertions = new HashMap<>();
+    private int insertionCount;
+
+    // Huffman coding is only used for literals that it makes shorter. With the dynamic table, a
+    // literal is only written the first time a header is sent on a connection.
     Writer(Buffer out) {
-      this(SETTINGS_HEADER_TABLE_SIZE, false, out);
+      this(SETTINGS_HEADER_TABLE_SIZE, true, out);
     }
 
     // Visible for testing.
@@ -461,15 +494,15 @@ final class Hpack {
           }
         }
 
-        if (headerIndex == -1) {
-          for (int j = nextDynamicTableIndex + 1; j < dynamicTable.length; j++) {
-            if (dynamicTable[j].name.equals(name)) {
-              if (dynamicTable[j].value.equals(value)) {
-                headerIndex = j - nextDynamicTableIndex + STATIC_HEADER_TABLE.length;
-                break;
-              } else if (headerNameIndex == -1) {
-                headerNameIndex = j - nextDynamicTableIndex + STATIC_HEADER_TABLE.length;
-              }
+        if (headerIndex == -1 && dynamicTableHeaderCount > 0) {
+          Integer insertion = dynamicTableInsertions.get(name == header.name
+              ? header : new io.grpc.okhttp.internal.framed.Header(name, value));
+          if (insertion != null) {
+            headerIndex = dynamicTableIndex(insertion);
+          } else if (headerNameIndex == -1) {
+            insertion = dynamicTableNameInsertions.get(name);
+            if (insertion != null) {
+              headerNameIndex = dynamicTableIndex(insertion);
             }
           }
         }
@@ -483,9 +516,12 @@ final class Hpack {
           writeByteString(name);
           writeByteString(value);
           insertIntoDynamicTable(header);
-        } else if (name.startsWith(PSEUDO_PREFIX) && !io.grpc.okhttp.internal.framed.Header.TARGET_AUTHORITY.equals(name)) {
+        } else if (name.startsWith(PSEUDO_PREFIX)
+            && !io.grpc.okhttp.internal.framed.Header.TARGET_AUTHORITY.equals(name)
+            && !header.indexPseudoHeader) {
           // Follow Chromes lead - only include the :authority pseudo header, but exclude all other
-          // pseudo headers. Literal Header Field without Indexing - Indexed Name.
+          // pseudo headers unless the caller knows they repeat, like the :path of a gRPC method.
+          // Literal Header Field without Indexing - Indexed Name.
           writeInt(headerNameIndex, PREFIX_4_BITS, 0);
           writeByteString(value);
         } else {
@@ -519,12 +555,11 @@ final class Hpack {
     }
 
     void writeByteString(ByteString data) throws IOException {
-      if (useCompression && io.grpc.okhttp.internal.framed.Huffman.get().encodedLength(data.toByteArray()) < data.size()) {
-        Buffer huffmanBuffer = new Buffer();
-        io.grpc.okhttp.internal.framed.Huffman.get().encode(data.toByteArray(), huffmanBuffer.outputStream());
-        ByteString huffmanBytes = huffmanBuffer.readByteString();
-        writeInt(huffmanBytes.size(), PREFIX_7_BITS, 0x80);
-        out.write(huffmanBytes);
+      int huffmanLength;
+      if (useCompression
+          && (huffmanLength = Huffman.get().encodedLength(data)) < data.size()) {
+        writeInt(huffmanLength, PREFIX_7_BITS, 0x80);
+        Huffman.get().encode(data, out);
       } else {
         writeInt(data.size(), PREFIX_7_BITS, 0);
         out.write(data);
@@ -540,6 +575,13 @@ final class Hpack {
       nextDynamicTableIndex = dynamicTable.length - 1;
       dynamicTableHeaderCount = 0;
       dynamicTableByteCount = 0;
+      dynamicTableInsertions.clear();
+      dynamicTableNameInsertions.clear();
+    }
+
+    /** Returns the HPACK index of the dynamic table entry with the given insertion number. */
+    private int dynamicTableIndex(int insertion) {
+      return insertionCount - insertion + STATIC_HEADER_TABLE.length;
     }
 
     /** Returns the count of entries evicted. */
@@ -548,6 +590,7 @@ final class Hpack {
       if (bytesToRecover > 0) {
         // determine how many headers need to be evicted.
         for (int j = dynamicTable.length - 1; j >= nextDynamicTableIndex && bytesToRecover > 0; j--) {
+          forgetInsertion(dynamicTable[j], insertionCount - dynamicTableHeaderCount);
           bytesToRecover -= dynamicTable[j].hpackSize;
           dynamicTableByteCount -= dynamicTable[j].hpackSize;
           dynamicTableHeaderCount--;
@@ -560,6 +603,25 @@ final class Hpack {
       return entriesToEvict;
     }
 
+    private void forgetInsertion(io.grpc.okhttp.internal.framed.Header entry, int insertion) {
+      io.grpc.okhttp.internal.framed.Header key = lowercaseName(entry);
+      Integer newest = dynamicTableInsertions.get(key);
+      if (newest != null && newest == insertion) {
+        dynamicTableInsertions.remove(key);
+      }
+      newest = dynamicTableNameInsertions.get(key.name);
+      if (newest != null && newest == insertion) {
+        dynamicTableNameInsertions.remove(key.name);
+      }
+    }
+
+    private static io.grpc.okhttp.internal.framed.Header lowercaseName(
+        io.grpc.okhttp.internal.framed.Header entry) {
+      ByteString name = entry.name.toAsciiLowercase();
+      return name == entry.name
+          ? entry : new io.grpc.okhttp.internal.framed.Header(name, entry.value);
+    }
+
     private void insertIntoDynamicTable(io.grpc.okhttp.internal.framed.Header entry) {
       int delta = entry.hpackSize;
 
@@ -583,6 +645,10 @@ final class Hpack {
       dynamicTable[index] = entry;
       dynamicTableHeaderCount++;
       dynamicTableByteCount += delta;
+      io.grpc.okhttp.internal.framed.Header key = lowercaseName(entry);
+      int insertion = insertionCount++;
+      dynamicTableInsertions.put(key, insertion);
+      dynamicTableNameInsertions.put(key.name, insertion);
     }
 
     void resizeHeaderTable(int headerTableSizeSetting) {
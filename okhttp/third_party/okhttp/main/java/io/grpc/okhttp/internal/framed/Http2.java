@@ -86,6 +86,18 @@ public final class Http2 implements Variant {
     return new Reader(source, 4096, client);
   }
 
+  /**
+   * Creates a frame reader like {@link #newReader(BufferedSource, boolean)} that stops keeping
+   * the headers of a header block once they exceed {@code maxHeaderListSize}, so an oversized
+   * block is never fully buffered. The header that crosses the limit is still delivered, so the
+   * handler can tell the block was too large by measuring it.
+   */
+  public FrameReader newReader(BufferedSource source, boolean client, int maxHeaderListSize) {
+    Reader reader = new Reader(source, 4096, client);
+    reader.hpackReader.maxHeaderListSize(maxHeaderListSize);
+    return reader;
+  }
+
   @Override public io.grpc.okhttp.internal.framed.FrameWriter newWriter(BufferedSink sink, boolean client) {
     return new Writer(sink, client);
   }
@@ -58,7 +58,7 @@ public final class Settings {
   /** spdy/3: Retransmission rate. Percentage */
   static final int DOWNLOAD_RETRANS_RATE = 6;
   /** HTTP/2: Advisory only. Size in bytes of the largest header list the sender will accept. */
-  static final int MAX_HEADER_LIST_SIZE = 6;
+  public static final int MAX_HEADER_LIST_SIZE = 6;
   /** Window size in bytes. */
   public static final int INITIAL_WINDOW_SIZE = 7;
   /** spdy/3: Size of the client certificate vector. Unsupported. */
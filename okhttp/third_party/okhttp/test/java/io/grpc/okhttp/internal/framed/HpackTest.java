@@ -93,6 +93,24 @@ public class HpackTest {
     assertEquals(headerEntries("custom-key", "custom-header"), hpackReader.getAndResetHeaderList());
   }
 
+  @Test public void maxHeaderListSizeDropsHeadersPastTheLimit() throws IOException {
+    // Each entry is 32 + 1 + 1 = 34 bytes, so the second one crosses a limit of 40.
+    List<Header> headerBlock = headerEntries("a", "1", "b", "2", "c", "3");
+    hpackWriter.writeHeaders(headerBlock);
+    bytesIn.writeAll(bytesOut);
+    hpackReader.maxHeaderListSize(40);
+    hpackReader.readHeaders();
+
+    assertEquals(headerEntries("a", "1", "b", "2"), hpackReader.getAndResetHeaderList());
+    // Dropped headers are still indexed, so later header blocks decode correctly.
+    assertEquals(3, hpackReader.dynamicTableHeaderCount);
+
+    hpackWriter.writeHeaders(headerEntries("c", "3"));
+    bytesIn.writeAll(bytesOut);
+    hpackReader.readHeaders();
+    assertEquals(headerEntries("c", "3"), hpackReader.getAndResetHeaderList());
+  }
+
   @Test public void setMaxDynamicTableToZeroDoesNotClearHeaderList() throws IOException {
     bytesIn.writeByte(0x40); // Literal indexed
     bytesIn.writeByte(0x0a); // Literal name (len = 10)
@@ -1072,6 +1090,60 @@ public class HpackTest {
     assertEquals(0, hpackWriter.dynamicTableHeaderCount);
   }
 
+  @Test
+  public void incrementalIndexingWithIndexedPathPseudoHeader() throws IOException {
+    List<Header> headerBlock =
+        Arrays.asList(Header.indexedPseudoHeader(Header.TARGET_PATH, "/okhttp"));
+    hpackWriter.writeHeaders(headerBlock);
+    assertBytes(0x44, 7, '/', 'o', 'k', 'h', 't', 't', 'p');
+    assertEquals(1, hpackWriter.dynamicTableHeaderCount);
+
+    hpackWriter.writeHeaders(headerBlock);
+    assertBytes(0xbe);
+    assertEquals(1, hpackWriter.dynamicTableHeaderCount);
+  }
+
+  @Test
+  public void dynamicTableLookupUsesNewestEntry() throws IOException {
+    hpackWriter.writeHeaders(headerEntries("foo", "bar", "foo", "baz"));
+    assertBytes(0x40, 3, 'f', 'o', 'o', 3, 'b', 'a', 'r', 0x7e, 3, 'b', 'a', 'z');
+    assertEquals(2, hpackWriter.dynamicTableHeaderCount);
+
+    // Both entries are still found by value, and a new value reuses the newest name entry.
+    hpackWriter.writeHeaders(headerEntries("foo", "bar", "foo", "baz", "foo", "qux"));
+    assertBytes(0xbf, 0xbe, 0x7e, 3, 'q', 'u', 'x');
+    assertEquals(3, hpackWriter.dynamicTableHeaderCount);
+  }
+
+  @Test
+  public void evictedEntriesAreNotReferenced() throws IOException {
+    // Only room for one entry of 32 + 3 + 3 bytes.
+    Hpack.Writer writer = new Hpack.Writer(40, false, bytesOut);
+    writer.writeHeaders(headerEntries("foo", "bar"));
+    assertBytes(0x40, 3, 'f', 'o', 'o', 3, 'b', 'a', 'r');
+    writer.writeHeaders(headerEntries("baz", "qux"));
+    assertBytes(0x40, 3, 'b', 'a', 'z', 3, 'q', 'u', 'x');
+    assertEquals(1, writer.dynamicTableHeaderCount);
+
+    writer.writeHeaders(headerEntries("foo", "bar"));
+    assertBytes(0x40, 3, 'f', 'o', 'o', 3, 'b', 'a', 'r');
+    writer.writeHeaders(headerEntries("foo", "bar"));
+    assertBytes(0xbe);
+  }
+
+  @Test
+  public void huffmanEncodingUsedWhenShorter() throws IOException {
+    Hpack.Writer writer = new Hpack.Writer(4096, true, bytesOut);
+    // C.4.1 of the spec: "www.example.com" is 12 bytes Huffman encoded.
+    writer.writeHeaders(headerEntries(":authority", "www.example.com"));
+    assertBytes(0x41, 0x8c, 0xf1, 0xe3, 0xc2, 0xe5, 0xf2, 0x3a, 0x6b, 0xa0, 0xab, 0x90, 0xf4,
+        0xff);
+
+    // Huffman coding would make this value longer.
+    writer.writeHeaders(headerEntries("x", "{}"));
+    assertBytes(0x40, 1, 'x', 2, '{', '}');
+  }
+
   @Test
   public void incrementalIndexingWithAuthorityPseudoHeader() throws IOException {
     hpackWriter.writeHeaders(headerEntries(":authority", "foo.com"));
@@ -25,6 +25,7 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.MessageLite;
 import com.google.protobuf.Parser;
 import io.grpc.ExperimentalApi;
+import io.grpc.HasByteBuffer;
 import io.grpc.KnownLength;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor.Marshaller;
@@ -35,6 +36,10 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
 
 /**
  * Utility methods for using protobuf with grpc.
@@ -173,7 +178,11 @@ public final class ProtoLiteUtils {
       try {
         if (stream instanceof KnownLength) {
           int size = stream.available();
-          if (size > 0 && size <= DEFAULT_MAX_MESSAGE_SIZE) {
+          if (size > 0 && stream instanceof HasByteBuffer
+              && ((HasByteBuffer) stream).byteBufferSupported() && stream.markSupported()) {
+            cis = newZeroCopyInputStream(stream, size);
+          }
+          if (cis == null && size > 0 && size <= DEFAULT_MAX_MESSAGE_SIZE) {
             Reference<byte[]> ref;
             // buf should not be used after this method has returned.
             byte[] buf;
@@ -219,6 +228,49 @@ public final class ProtoLiteUtils {
       }
     }
 
+    /**
+     * Creates a {@link CodedInputStream} that reads directly from the {@link ByteBuffer}s backing
+     * {@code stream}, avoiding copying the message into an intermediate array. The stream is
+     * marked first so that the underlying buffers stay valid until the caller closes the stream,
+     * which releases them. Returns {@code null}, with the stream rewound, if the buffers can't be
+     * decoded without being copied anyway.
+     *
+     * <p>Aliasing is not enabled: the buffers may be pooled and are released when the stream is
+     * closed, so the parsed message must not reference them.
+     */
+    @Nullable
+    private static CodedInputStream newZeroCopyInputStream(InputStream stream, int size)
+        throws IOException {
+      stream.mark(size);
+      List<ByteBuffer> buffers = new ArrayList<>();
+      boolean allDirect = true;
+      int total = 0;
+      ByteBuffer buffer;
+      while (total < size && (buffer = ((HasByteBuffer) stream).getByteBuffer()) != null) {
+        int remaining = buffer.remaining();
+        if (remaining == 0) {
+          break;
+        }
+        buffers.add(buffer);
+        allDirect &= buffer.isDirect();
+        total += (int) stream.skip(remaining);
+      }
+      if (total != size) {
+        throw new RuntimeException("size inaccurate: " + size + " != " + total);
+      }
+      if (buffers.size() == 1) {
+        return CodedInputStream.newInstance(buffers.get(0));
+      }
+      if (allDirect) {
+        // Decoded in place when Unsafe is available, otherwise through a small staging buffer.
+        return CodedInputStream.newInstance(buffers);
+      }
+      // Heap buffers spread over several chunks would be streamed through a staging buffer, which
+      // is no better than copying them into a single array.
+      stream.reset();
+      return null;
+    }
+
     private T parseFrom(CodedInputStream stream) throws InvalidProtocolBufferException {
       T message = parser.parseFrom(stream, globalRegistry);
       try {
@@ -20,6 +20,7 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import com.google.common.io.ByteStreams;
@@ -29,17 +30,21 @@ import com.google.protobuf.Enum;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Type;
 import io.grpc.Drainable;
+import io.grpc.HasByteBuffer;
 import io.grpc.KnownLength;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor.Marshaller;
 import io.grpc.MethodDescriptor.PrototypeMarshaller;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
+import io.grpc.internal.CompositeReadableBuffer;
 import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.ReadableBuffers;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import org.junit.Rule;
 import org.junit.Test;
@@ -226,6 +231,44 @@ public class ProtoLiteUtilsTest {
     assertEquals(expect, result);
   }
 
+  @Test
+  public void parseFromByteBufferBackedStream() throws Exception {
+    Type expect = Type.newBuilder().setName("expected name").build();
+    InputStream is = ReadableBuffers.openStream(ReadableBuffers.wrap(expect.toByteArray()), true);
+    assertTrue(((HasByteBuffer) is).byteBufferSupported());
+
+    assertEquals(expect, marshaller.parse(is));
+    assertEquals(0, is.available());
+  }
+
+  @Test
+  public void parseFromFragmentedDirectBuffers() throws Exception {
+    Type expect = Type.newBuilder().setName(new String(new char[10 * 1024])).build();
+    byte[] bytes = expect.toByteArray();
+    CompositeReadableBuffer composite = new CompositeReadableBuffer();
+    for (int offset = 0; offset < bytes.length; offset += 1000) {
+      int length = Math.min(1000, bytes.length - offset);
+      ByteBuffer direct = ByteBuffer.allocateDirect(length);
+      direct.put(bytes, offset, length).flip();
+      composite.addBuffer(ReadableBuffers.wrap(direct));
+    }
+
+    assertEquals(expect, marshaller.parse(ReadableBuffers.openStream(composite, true)));
+  }
+
+  @Test
+  public void parseFromFragmentedHeapBuffers() throws Exception {
+    Type expect = Type.newBuilder().setName(new String(new char[10 * 1024])).build();
+    byte[] bytes = expect.toByteArray();
+    CompositeReadableBuffer composite = new CompositeReadableBuffer();
+    for (int offset = 0; offset < bytes.length; offset += 1000) {
+      composite.addBuffer(
+          ReadableBuffers.wrap(bytes, offset, Math.min(1000, bytes.length - offset)));
+    }
+
+    assertEquals(expect, marshaller.parse(ReadableBuffers.openStream(composite, true)));
+  }
+
   @Test
   public void defaultMaxMessageSize() {
     assertEquals(GrpcUtil.DEFAULT_MAX_MESSAGE_SIZE, ProtoLiteUtils.DEFAULT_MAX_MESSAGE_SIZE);
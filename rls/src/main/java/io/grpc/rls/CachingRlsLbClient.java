@@ -91,9 +91,9 @@ final class CachingRlsLbClient {
 
   // All cache status changes (pending, backoff, success) must be under this lock
   private final Object lock = new Object();
-  // LRU cache based on access order (BACKOFF and actual data will be here)
-  @GuardedBy("lock")
-  private final LinkedHashLruCache<RouteLookupRequest, CacheEntry> linkedHashLruCache;
+  // LRU cache based on access order (BACKOFF and actual data will be here). Reads are lock-free,
+  // modifications must be done under the lock.
+  private final ConcurrentLruCache<RouteLookupRequest, CacheEntry> lruCache;
   // any RPC on the fly will cached in this map
   @GuardedBy("lock")
   private final Map<RouteLookupRequest, PendingCacheEntry> pendingCallCache = new HashMap<>();
@@ -127,7 +127,7 @@ final class CachingRlsLbClient {
     callTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(rlsConfig.getLookupServiceTimeoutInMillis());
     timeProvider = checkNotNull(builder.timeProvider, "timeProvider");
     throttler = checkNotNull(builder.throttler, "throttler");
-    linkedHashLruCache =
+    lruCache =
         new RlsAsyncLruCache(
             rlsConfig.getCacheSizeBytes(),
             builder.evictionListener,
@@ -204,10 +204,23 @@ final class CachingRlsLbClient {
    */
   @CheckReturnValue
   final CachedRouteLookupResponse get(final RouteLookupRequest request) {
+    // Fast path without locking, taken by almost all picks: fresh data, data being refreshed, or
+    // backed-off request. Expired entries are not evicted here, because eviction releases child
+    // policies, which must only happen under the lock.
+    CacheEntry cachedEntry = lruCache.peek(request);
+    if (cachedEntry instanceof DataCacheEntry) {
+      DataCacheEntry dataEntry = (DataCacheEntry) cachedEntry;
+      if (dataEntry.refreshing || !dataEntry.isStaled(timeProvider.currentTimeNanos())) {
+        return CachedRouteLookupResponse.dataEntry(dataEntry);
+      }
+    } else if (cachedEntry instanceof BackoffCacheEntry) {
+      return CachedRouteLookupResponse.backoffEntry((BackoffCacheEntry) cachedEntry);
+    }
+
     synchronizationContext.throwIfNotInThisSynchronizationContext();
     synchronized (lock) {
       final CacheEntry cacheEntry;
-      cacheEntry = linkedHashLruCache.read(request);
+      cacheEntry = lruCache.read(request);
       if (cacheEntry == null) {
         return handleNewRequest(request);
       }
@@ -228,7 +241,7 @@ final class CachingRlsLbClient {
   void close() {
     synchronized (lock) {
       // all childPolicyWrapper will be returned via AutoCleaningEvictionListener
-      linkedHashLruCache.close();
+      lruCache.close();
       // TODO(creamsoup) maybe cancel all pending requests
       pendingCallCache.clear();
       rlsChannel.shutdown();
@@ -258,12 +271,12 @@ final class CachingRlsLbClient {
         try {
           RouteLookupResponse response = asyncCall.get();
           DataCacheEntry dataEntry = new DataCacheEntry(request, response);
-          linkedHashLruCache.cache(request, dataEntry);
+          lruCache.cache(request, dataEntry);
           return CachedRouteLookupResponse.dataEntry(dataEntry);
         } catch (Exception e) {
           BackoffCacheEntry backoffEntry =
               new BackoffCacheEntry(request, Status.fromThrowable(e), backoffProvider.get());
-          linkedHashLruCache.cache(request, backoffEntry);
+          lruCache.cache(request, backoffEntry);
           return CachedRouteLookupResponse.backoffEntry(backoffEntry);
         }
       }
@@ -410,13 +423,13 @@ final class CachingRlsLbClient {
 
     private void transitionToDataEntry(RouteLookupResponse routeLookupResponse) {
       synchronized (lock) {
-        linkedHashLruCache.cache(request, new DataCacheEntry(request, routeLookupResponse));
+        lruCache.cache(request, new DataCacheEntry(request, routeLookupResponse));
       }
     }
 
     private void transitionToBackOff(Status status) {
       synchronized (lock) {
-        linkedHashLruCache.cache(request, new BackoffCacheEntry(request, status, backoffPolicy));
+        lruCache.cache(request, new BackoffCacheEntry(request, status, backoffPolicy));
       }
     }
 
@@ -456,6 +469,8 @@ final class CachingRlsLbClient {
     private final long expireTime;
     private final long staleTime;
     private ChildPolicyWrapper childPolicyWrapper;
+    // Set once a refresh is requested, the entry will be replaced when the refresh finishes.
+    volatile boolean refreshing;
 
     DataCacheEntry(RouteLookupRequest request, final RouteLookupResponse response) {
       super(request);
@@ -513,6 +528,7 @@ final class CachingRlsLbClient {
      */
     void maybeRefresh() {
       synchronized (lock) {
+        refreshing = true;
         if (pendingCallCache.containsKey(request)) {
           // pending already requested
           return;
@@ -524,13 +540,13 @@ final class CachingRlsLbClient {
           // async call returned finished future is most likely throttled
           try {
             RouteLookupResponse response = asyncCall.get();
-            linkedHashLruCache.cache(request, new DataCacheEntry(request, response));
+            lruCache.cache(request, new DataCacheEntry(request, response));
           } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
           } catch (Exception e) {
             BackoffCacheEntry backoffEntry =
                 new BackoffCacheEntry(request, Status.fromThrowable(e), backoffProvider.get());
-            linkedHashLruCache.cache(request, backoffEntry);
+            lruCache.cache(request, backoffEntry);
           }
         }
       }
@@ -626,15 +642,15 @@ final class CachingRlsLbClient {
         if (!call.isDone()) {
           PendingCacheEntry pendingEntry = new PendingCacheEntry(request, call, backoffPolicy);
           pendingCallCache.put(request, pendingEntry);
-          linkedHashLruCache.invalidate(request);
+          lruCache.invalidate(request);
         } else {
           try {
             RouteLookupResponse response = call.get();
-            linkedHashLruCache.cache(request, new DataCacheEntry(request, response));
+            lruCache.cache(request, new DataCacheEntry(request, response));
           } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
           } catch (Exception e) {
-            linkedHashLruCache.cache(
+            lruCache.cache(
                 request,
                 new BackoffCacheEntry(request, Status.fromThrowable(e), backoffPolicy));
           }
@@ -778,9 +794,9 @@ final class CachingRlsLbClient {
     }
   }
 
-  /** Implementation of {@link LinkedHashLruCache} for RLS. */
+  /** Implementation of {@link ConcurrentLruCache} for RLS. */
   private static final class RlsAsyncLruCache
-      extends LinkedHashLruCache<RouteLookupRequest, CacheEntry> {
+      extends ConcurrentLruCache<RouteLookupRequest, CacheEntry> {
 
     RlsAsyncLruCache(long maxEstimatedSizeBytes,
         @Nullable EvictionListener<RouteLookupRequest, CacheEntry> evictionListener,
@@ -832,7 +848,7 @@ final class CachingRlsLbClient {
       if (prevState == ConnectivityState.TRANSIENT_FAILURE
           && newState == ConnectivityState.READY) {
         synchronized (lock) {
-          for (CacheEntry value : linkedHashLruCache.values()) {
+          for (CacheEntry value : lruCache.values()) {
             if (value instanceof BackoffCacheEntry) {
               ((BackoffCacheEntry) value).forceRefresh();
             }
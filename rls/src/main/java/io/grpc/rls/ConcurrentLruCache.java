@@ -0,0 +1,513 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.rls;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.MoreObjects;
+import io.grpc.internal.TimeProvider;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A ConcurrentLruCache is a drop-in replacement of {@link LinkedHashLruCache} for read heavy
+ * workloads. It has the same eviction semantics (size based LRU eviction preferring already
+ * expired entries, entry level expiration and periodic cleanup), but reads do not take any lock.
+ *
+ * <p>Entries are stored in a {@link ConcurrentHashMap}. The access order is kept in a linked list
+ * that is only modified while holding the eviction lock. Reads record the access in one of several
+ * striped, lossy read buffers, which are replayed onto the access order list on the next write or
+ * whenever a buffer fills up and the eviction lock is free. Access order is thus approximate under
+ * heavy concurrent reads, while the size accounting is always exact.
+ */
+@ThreadSafe
+abstract class ConcurrentLruCache<K, V> implements LruCache<K, V> {
+
+  @VisibleForTesting
+  static final int READ_BUFFER_SIZE = 16;
+  private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+  private static final int MAX_READ_BUFFERS = 64;
+
+  private final ConcurrentHashMap<K, Node<K, V>> data;
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  // Sentinel of the circular access order list, eldest entry is next to the sentinel.
+  @GuardedBy("evictionLock")
+  private final Node<K, V> accessOrder = new Node<>(null, null, 0);
+  private final ReadBuffer<K, V>[] readBuffers;
+  private final PeriodicCleaner periodicCleaner;
+  private final TimeProvider timeProvider;
+  @Nullable
+  private final EvictionListener<K, V> evictionListener;
+  private final AtomicLong estimatedSizeBytes = new AtomicLong();
+  @GuardedBy("evictionLock")
+  private long estimatedMaxSizeBytes;
+
+  ConcurrentLruCache(
+      long estimatedMaxSizeBytes,
+      @Nullable EvictionListener<K, V> evictionListener,
+      int cleaningInterval,
+      TimeUnit cleaningIntervalUnit,
+      ScheduledExecutorService ses,
+      TimeProvider timeProvider) {
+    checkState(estimatedMaxSizeBytes > 0, "max estimated cache size should be positive");
+    this.estimatedMaxSizeBytes = estimatedMaxSizeBytes;
+    this.evictionListener = evictionListener;
+    this.timeProvider = checkNotNull(timeProvider, "timeProvider");
+    // rough estimate or minimum hashmap default
+    data = new ConcurrentHashMap<>(Math.max((int) (estimatedMaxSizeBytes / 1000), 16));
+    accessOrder.prev = accessOrder;
+    accessOrder.next = accessOrder;
+    readBuffers = newReadBuffers(
+        Math.min(
+            Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1),
+            MAX_READ_BUFFERS));
+    periodicCleaner = new PeriodicCleaner(ses, cleaningInterval, cleaningIntervalUnit).start();
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static <K, V> ReadBuffer<K, V>[] newReadBuffers(int count) {
+    ReadBuffer<K, V>[] buffers = new ReadBuffer[count];
+    for (int i = 0; i < count; i++) {
+      buffers[i] = new ReadBuffer<>();
+    }
+    return buffers;
+  }
+
+  /**
+   * Determines if the eldest entry should be kept or not when the cache size limit is reached. Note
+   * that LruCache is access level and the eldest is determined by access pattern.
+   */
+  @SuppressWarnings("unused")
+  protected boolean shouldInvalidateEldestEntry(K eldestKey, V eldestValue) {
+    return true;
+  }
+
+  /** Determines if the entry is already expired or not. */
+  protected abstract boolean isExpired(K key, V value, long nowNanos);
+
+  /**
+   * Returns estimated size of entry to keep track. If it always returns 1, the max size bytes
+   * behaves like max number of entry (default behavior).
+   */
+  @SuppressWarnings("unused")
+  protected int estimateSizeOf(K key, V value) {
+    return 1;
+  }
+
+  /** Updates size for given key if entry exists. It is useful if the cache value is mutated. */
+  public void updateEntrySize(K key) {
+    checkNotNull(key, "key");
+    evictionLock.lock();
+    try {
+      Node<K, V> node = data.get(key);
+      if (node == null) {
+        return;
+      }
+      int prevSize = node.size;
+      int newSize = estimateSizeOf(key, node.value);
+      node.size = newSize;
+      estimatedSizeBytes.addAndGet(newSize - prevSize);
+      evictIfNeeded();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * Returns estimated cache size bytes. Each entry size is calculated by {@link
+   * #estimateSizeOf(java.lang.Object, java.lang.Object)}.
+   */
+  public long estimatedSizeBytes() {
+    return estimatedSizeBytes.get();
+  }
+
+  @Override
+  @Nullable
+  public final V cache(K key, V value) {
+    checkNotNull(key, "key");
+    checkNotNull(value, "value");
+    Node<K, V> node = new Node<>(key, value, estimateSizeOf(key, value));
+    evictionLock.lock();
+    try {
+      drainReadBuffers();
+      estimatedSizeBytes.addAndGet(node.size);
+      Node<K, V> existing = data.put(key, node);
+      if (existing != null) {
+        unlink(existing);
+        onEviction(existing, EvictionType.REPLACED);
+      }
+      linkLast(node);
+      evictIfNeeded();
+      return existing == null ? null : existing.value;
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  @Nullable
+  @CheckReturnValue
+  public final V read(K key) {
+    Node<K, V> node = readInternal(key);
+    if (node != null) {
+      return node.value;
+    }
+    return null;
+  }
+
+  /**
+   * Returns the value for the key if it is present and not expired. Unlike {@link #read}, an
+   * expired entry is left in the cache, so the eviction listener is never called from this method.
+   * The entry is removed by a later {@link #read}, a write or the periodic cleanup instead.
+   */
+  @Nullable
+  @CheckReturnValue
+  public final V peek(K key) {
+    checkNotNull(key, "key");
+    Node<K, V> node = data.get(key);
+    if (node == null || isExpired(key, node.value, timeProvider.currentTimeNanos())) {
+      return null;
+    }
+    recordAccess(node);
+    return node.value;
+  }
+
+  @Nullable
+  @CheckReturnValue
+  private Node<K, V> readInternal(K key) {
+    checkNotNull(key, "key");
+    Node<K, V> node = data.get(key);
+    if (node == null) {
+      return null;
+    }
+    if (isExpired(key, node.value, timeProvider.currentTimeNanos())) {
+      evictionLock.lock();
+      try {
+        if (data.remove(key, node)) {
+          unlink(node);
+          onEviction(node, EvictionType.EXPIRED);
+        }
+      } finally {
+        evictionLock.unlock();
+      }
+      return null;
+    }
+    recordAccess(node);
+    return node;
+  }
+
+  private void recordAccess(Node<K, V> node) {
+    int index = (int) Thread.currentThread().getId() & (readBuffers.length - 1);
+    if (readBuffers[index].offer(node) && evictionLock.tryLock()) {
+      try {
+        drainReadBuffers();
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+  }
+
+  @Override
+  @Nullable
+  public final V invalidate(K key) {
+    return invalidate(key, EvictionType.EXPLICIT);
+  }
+
+  @Nullable
+  private V invalidate(K key, EvictionType cause) {
+    checkNotNull(key, "key");
+    checkNotNull(cause, "cause");
+    evictionLock.lock();
+    try {
+      Node<K, V> existing = data.remove(key);
+      if (existing != null) {
+        unlink(existing);
+        onEviction(existing, cause);
+      }
+      return existing == null ? null : existing.value;
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  public final void invalidateAll(Iterable<K> keys) {
+    checkNotNull(keys, "keys");
+    evictionLock.lock();
+    try {
+      for (K key : keys) {
+        invalidate(key, EvictionType.EXPLICIT);
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  @CheckReturnValue
+  public final boolean hasCacheEntry(K key) {
+    // call readInternal to filter already expired entry in the cache
+    return readInternal(key) != null;
+  }
+
+  /** Returns shallow copied values in the cache. */
+  public final List<V> values() {
+    List<V> list = new ArrayList<>(data.size());
+    for (Node<K, V> node : data.values()) {
+      list.add(node.value);
+    }
+    return Collections.unmodifiableList(list);
+  }
+
+  /**
+   * Resizes cache. If new size is smaller than current estimated size, it will free up space by
+   * removing expired entries and removing oldest entries by LRU order.
+   */
+  public final void resize(int newSizeBytes) {
+    long now = timeProvider.currentTimeNanos();
+    evictionLock.lock();
+    try {
+      this.estimatedMaxSizeBytes = newSizeBytes;
+      if (estimatedSizeBytes.get() <= newSizeBytes) {
+        // new size is larger no need to do cleanup
+        return;
+      }
+      // cleanup expired entries
+      cleanupExpiredEntries(Integer.MAX_VALUE, now);
+
+      // cleanup eldest entry until new size limit
+      drainReadBuffers();
+      while (accessOrder.next != accessOrder
+          && estimatedMaxSizeBytes < estimatedSizeBytes.get()) {
+        removeNode(accessOrder.next, EvictionType.SIZE);
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  @CheckReturnValue
+  public final int estimatedSize() {
+    return data.size();
+  }
+
+  /**
+   * Evicts entries until the size is within the limit. Like {@link LinkedHashLruCache}, an already
+   * expired entry is removed in preference to the eldest entry.
+   */
+  @GuardedBy("evictionLock")
+  private void evictIfNeeded() {
+    while (estimatedSizeBytes.get() > estimatedMaxSizeBytes && accessOrder.next != accessOrder) {
+      if (cleanupExpiredEntries(1, timeProvider.currentTimeNanos())) {
+        continue;
+      }
+      Node<K, V> eldest = accessOrder.next;
+      if (!shouldInvalidateEldestEntry(eldest.key, eldest.value)) {
+        return;
+      }
+      removeNode(eldest, EvictionType.SIZE);
+    }
+  }
+
+  // maxExpiredEntries is by number of entries
+  private boolean cleanupExpiredEntries(int maxExpiredEntries, long now) {
+    checkArgument(maxExpiredEntries > 0, "maxExpiredEntries must be positive");
+    boolean removedAny = false;
+    evictionLock.lock();
+    try {
+      Node<K, V> node = accessOrder.next;
+      while (node != accessOrder && maxExpiredEntries > 0) {
+        Node<K, V> next = node.next;
+        if (isExpired(node.key, node.value, now)) {
+          removeNode(node, EvictionType.EXPIRED);
+          removedAny = true;
+          maxExpiredEntries--;
+        }
+        node = next;
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+    return removedAny;
+  }
+
+  @GuardedBy("evictionLock")
+  private void removeNode(Node<K, V> node, EvictionType cause) {
+    data.remove(node.key, node);
+    unlink(node);
+    onEviction(node, cause);
+  }
+
+  @GuardedBy("evictionLock")
+  private void onEviction(Node<K, V> node, EvictionType cause) {
+    estimatedSizeBytes.addAndGet(-1 * node.size);
+    if (evictionListener != null) {
+      evictionListener.onEviction(node.key, node.value, cause);
+    }
+  }
+
+  /** Replays the accesses recorded in the read buffers onto the access order list. */
+  @GuardedBy("evictionLock")
+  private void drainReadBuffers() {
+    for (ReadBuffer<K, V> buffer : readBuffers) {
+      for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+        Node<K, V> node = buffer.nodes.getAndSet(i, null);
+        // an unlinked node was already removed from the cache
+        if (node != null && node.next != null) {
+          unlink(node);
+          linkLast(node);
+        }
+      }
+    }
+  }
+
+  @GuardedBy("evictionLock")
+  private void linkLast(Node<K, V> node) {
+    node.prev = accessOrder.prev;
+    node.next = accessOrder;
+    accessOrder.prev.next = node;
+    accessOrder.prev = node;
+  }
+
+  @GuardedBy("evictionLock")
+  private void unlink(Node<K, V> node) {
+    if (node.next == null) {
+      return;
+    }
+    node.prev.next = node.next;
+    node.next.prev = node.prev;
+    node.prev = null;
+    node.next = null;
+  }
+
+  @Override
+  public final void close() {
+    evictionLock.lock();
+    try {
+      periodicCleaner.stop();
+      doClose();
+      data.clear();
+      for (ReadBuffer<K, V> buffer : readBuffers) {
+        for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+          buffer.nodes.set(i, null);
+        }
+      }
+      accessOrder.prev = accessOrder;
+      accessOrder.next = accessOrder;
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  protected void doClose() {}
+
+  /** Periodically cleans up the expired entries. */
+  private final class PeriodicCleaner {
+
+    private final ScheduledExecutorService ses;
+    private final int interval;
+    private final TimeUnit intervalUnit;
+    private ScheduledFuture<?> scheduledFuture;
+
+    PeriodicCleaner(ScheduledExecutorService ses, int interval, TimeUnit intervalUnit) {
+      this.ses = checkNotNull(ses, "ses");
+      checkState(interval > 0, "interval must be positive");
+      this.interval = interval;
+      this.intervalUnit = checkNotNull(intervalUnit, "intervalUnit");
+    }
+
+    PeriodicCleaner start() {
+      checkState(scheduledFuture == null, "cleaning task can be started only once");
+      this.scheduledFuture =
+          ses.scheduleAtFixedRate(new CleaningTask(), interval, interval, intervalUnit);
+      return this;
+    }
+
+    void stop() {
+      if (scheduledFuture != null) {
+        scheduledFuture.cancel(false);
+        scheduledFuture = null;
+      }
+    }
+
+    private class CleaningTask implements Runnable {
+
+      @Override
+      public void run() {
+        cleanupExpiredEntries(Integer.MAX_VALUE, timeProvider.currentTimeNanos());
+      }
+    }
+  }
+
+  /**
+   * A lossy ring buffer of recently read entries. When readers wrap around before the buffer is
+   * drained, the older accesses are overwritten, which only makes the access order less precise.
+   */
+  private static final class ReadBuffer<K, V> {
+    final AtomicReferenceArray<Node<K, V>> nodes = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+    final AtomicLong writeCount = new AtomicLong();
+
+    /** Records a read, returns {@code true} if the buffer became full and should be drained. */
+    boolean offer(Node<K, V> node) {
+      long count = writeCount.getAndIncrement();
+      nodes.lazySet((int) (count & READ_BUFFER_MASK), node);
+      return (count & READ_BUFFER_MASK) == READ_BUFFER_MASK;
+    }
+  }
+
+  private static final class Node<K, V> {
+    final K key;
+    final V value;
+    volatile int size;
+    // access order links, null if the node is not in the cache
+    @Nullable
+    Node<K, V> prev;
+    @Nullable
+    Node<K, V> next;
+
+    Node(K key, V value, int size) {
+      this.key = key;
+      this.value = value;
+      this.size = size;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("key", key)
+          .add("size", size)
+          .add("value", value)
+          .toString();
+    }
+  }
+}
@@ -0,0 +1,531 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.services;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.protobuf.MessageLite;
+import io.grpc.ExperimentalApi;
+import io.grpc.internal.GrpcUtil;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link BinaryLogSink} that writes log entries to files in a directory without blocking the
+ * threads that log.
+ *
+ * <p>{@link #write} only puts the entry into a preallocated ring buffer. A dedicated writer thread
+ * serializes queued entries in batches and writes each batch with a single {@link FileChannel}
+ * write, optionally as a gzip member. Files are rotated when they reach a maximum size or age. If
+ * the writer falls behind and the queue is full, new entries are dropped and counted in {@link
+ * #getDroppedEntries} instead of slowing down RPCs.
+ *
+ * <p>Each file contains length delimited {@code GrpcLogEntry} messages, see {@link
+ * MessageLite#writeDelimitedTo}. Files are named {@code <prefix>.<millis>.<sequence>.binlog}, with
+ * a {@code .gz} suffix when gzip is enabled.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/4017")
+public final class AsyncFileSink implements BinaryLogSink {
+  private static final Logger logger = Logger.getLogger(AsyncFileSink.class.getName());
+
+  @VisibleForTesting
+  static final int MAX_BATCH_BYTES = 256 * 1024;
+
+  // A gzip member header: deflate compression, no flags, no modification time, unknown OS.
+  private static final byte[] GZIP_HEADER =
+      new byte[] {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+  private final File directory;
+  private final String filePrefix;
+  private final int wakeUpThreshold;
+  private final long maxFileSizeBytes;
+  private final long maxFileAgeNanos;
+  private final long flushIntervalNanos;
+  private final boolean gzipEnabled;
+
+  private final RingBuffer queue;
+  private final AtomicLong droppedEntries = new AtomicLong();
+  private final AtomicLong writtenEntries = new AtomicLong();
+  private final AtomicLong writtenBytes = new AtomicLong();
+  private final AtomicInteger rotations = new AtomicInteger();
+  private final Thread writerThread;
+  // Set by the writer thread before it parks for a flush interval. Producers clear it when they
+  // wake the writer, so that only one of them pays for the unpark.
+  private final AtomicBoolean writerParked = new AtomicBoolean();
+  private volatile boolean closed;
+
+  // The fields below are only accessed by the writer thread.
+  private final BatchBuffer batch = new BatchBuffer(MAX_BATCH_BYTES);
+  private final BatchBuffer compressedBatch = new BatchBuffer(MAX_BATCH_BYTES);
+  // Reused for every batch, so that zlib's native state is only allocated once. Only set when
+  // gzip is enabled.
+  @Nullable
+  private final Deflater deflater;
+  private final CRC32 crc = new CRC32();
+  private final byte[] deflateScratch = new byte[8 * 1024];
+  private int batchEntries;
+  @Nullable
+  private FileOutputStream fileOut;
+  @Nullable
+  private FileChannel channel;
+  private long fileBytes;
+  private long fileOpenedNanos;
+  private int fileSequence;
+
+  private AsyncFileSink(Builder builder) {
+    directory = builder.directory;
+    filePrefix = builder.filePrefix;
+    queue = new RingBuffer(builder.queueCapacity);
+    wakeUpThreshold = Math.max(1, builder.queueCapacity / 4);
+    maxFileSizeBytes = builder.maxFileSizeBytes;
+    maxFileAgeNanos = builder.maxFileAgeNanos;
+    flushIntervalNanos = builder.flushIntervalNanos;
+    gzipEnabled = builder.gzipEnabled;
+    deflater = gzipEnabled ? new Deflater(Deflater.DEFAULT_COMPRESSION, /* nowrap= */ true) : null;
+    writerThread = builder.threadFactory.newThread(new Writer());
+    writerThread.start();
+  }
+
+  /** Creates a builder for a sink writing into the given existing directory. */
+  public static Builder newBuilder(File directory) {
+    return new Builder(directory);
+  }
+
+  @Override
+  public void write(MessageLite message) {
+    if (closed) {
+      logger.log(Level.FINEST, "Attempt to write after AsyncFileSink is closed.");
+      return;
+    }
+    int queued = queue.offer(message);
+    if (queued == RingBuffer.CLOSED) {
+      logger.log(Level.FINEST, "Attempt to write after AsyncFileSink is closed.");
+      return;
+    }
+    if (queued == 0) {
+      droppedEntries.incrementAndGet();
+      return;
+    }
+    // The writer wakes up on its own every flush interval, only wake it up early when a
+    // significant part of the queue is in use.
+    if (queued >= wakeUpThreshold && writerParked.compareAndSet(true, false)) {
+      LockSupport.unpark(writerThread);
+    }
+  }
+
+  /**
+   * Writes out the entries that are still queued and closes the current file. Entries written
+   * after this method is called are ignored.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    // Close the queue first, so that the writer sees every entry that will ever be queued once it
+    // sees the flag.
+    queue.close();
+    closed = true;
+    LockSupport.unpark(writerThread);
+    boolean interrupted = false;
+    while (true) {
+      try {
+        writerThread.join();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    // Only left over if the writer thread died unexpectedly.
+    discardQueue();
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Returns the number of entries dropped because the queue was full or writing failed. */
+  public long getDroppedEntries() {
+    return droppedEntries.get();
+  }
+
+  /** Returns the number of entries written to files. */
+  public long getWrittenEntries() {
+    return writtenEntries.get();
+  }
+
+  /** Returns the number of bytes written to files, after compression if enabled. */
+  public long getWrittenBytes() {
+    return writtenBytes.get();
+  }
+
+  /** Returns the number of files that were closed because of their size or age. */
+  public int getRotations() {
+    return rotations.get();
+  }
+
+  private final class Writer implements Runnable {
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          // Read the flag before draining, so that everything enqueued before close() is written.
+          boolean closing = closed;
+          drainQueue(closing);
+          if (closing) {
+            break;
+          }
+          writerParked.set(true);
+          // Producers that queued past the threshold before the flag was set didn't wake us up.
+          if (queue.size() < wakeUpThreshold) {
+            LockSupport.parkNanos(this, flushIntervalNanos);
+          }
+          writerParked.set(false);
+        }
+      } catch (IOException e) {
+        logger.log(Level.SEVERE, "Caught exception while writing, binary logging is disabled", e);
+        queue.close();
+        closed = true;
+        droppedEntries.addAndGet(batchEntries);
+        discardQueue();
+      } finally {
+        closeFile();
+        if (deflater != null) {
+          deflater.end();
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes out the queued entries. When {@code closing}, the queue is closed and this also waits
+   * for entries whose slot was claimed but not yet published, so that none is left behind.
+   */
+  private void drainQueue(boolean closing) throws IOException {
+    while (true) {
+      MessageLite message = queue.poll();
+      if (message == null) {
+        if (!closing || queue.size() == 0) {
+          break;
+        }
+        Thread.yield();
+        continue;
+      }
+      message.writeDelimitedTo(batch);
+      batchEntries++;
+      if (batch.size() >= MAX_BATCH_BYTES) {
+        writeBatch();
+      }
+    }
+    if (batchEntries > 0) {
+      writeBatch();
+    }
+  }
+
+  /** Counts the entries of the closed queue as dropped, including the ones not yet published. */
+  private void discardQueue() {
+    while (queue.size() != 0) {
+      if (queue.poll() != null) {
+        droppedEntries.incrementAndGet();
+      } else {
+        Thread.yield();
+      }
+    }
+  }
+
+  private void writeBatch() throws IOException {
+    ByteBuffer buffer;
+    if (gzipEnabled) {
+      compressBatch();
+      buffer = compressedBatch.asByteBuffer();
+    } else {
+      buffer = batch.asByteBuffer();
+    }
+    FileChannel channel = currentChannel();
+    int length = buffer.remaining();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    fileBytes += length;
+    writtenBytes.addAndGet(length);
+    writtenEntries.addAndGet(batchEntries);
+    batch.reset();
+    batchEntries = 0;
+  }
+
+  /**
+   * Writes the batch into {@code compressedBatch} as a complete gzip member. A concatenation of
+   * members is a valid gzip file.
+   */
+  private void compressBatch() {
+    compressedBatch.reset();
+    compressedBatch.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+    crc.reset();
+    batch.updateChecksum(crc);
+    deflater.reset();
+    batch.setDeflaterInput(deflater);
+    deflater.finish();
+    while (!deflater.finished()) {
+      int length = deflater.deflate(deflateScratch);
+      compressedBatch.write(deflateScratch, 0, length);
+    }
+    writeIntLittleEndian(compressedBatch, (int) crc.getValue());
+    writeIntLittleEndian(compressedBatch, batch.size());
+  }
+
+  private static void writeIntLittleEndian(BatchBuffer out, int value) {
+    out.write(value);
+    out.write(value >> 8);
+    out.write(value >> 16);
+    out.write(value >> 24);
+  }
+
+  private FileChannel currentChannel() throws IOException {
+    long now = System.nanoTime();
+    if (channel != null
+        && (fileBytes >= maxFileSizeBytes || now - fileOpenedNanos >= maxFileAgeNanos)) {
+      closeFile();
+      rotations.incrementAndGet();
+    }
+    if (channel == null) {
+      File file = new File(
+          directory,
+          filePrefix + "." + System.currentTimeMillis() + "." + fileSequence++ + ".binlog"
+              + (gzipEnabled ? ".gz" : ""));
+      logger.log(Level.FINE, "Writing binary logs to {0}", file.getAbsolutePath());
+      fileOut = new FileOutputStream(file);
+      channel = fileOut.getChannel();
+      fileBytes = 0;
+      fileOpenedNanos = now;
+    }
+    return channel;
+  }
+
+  private void closeFile() {
+    if (fileOut == null) {
+      return;
+    }
+    try {
+      fileOut.close();
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, "Caught exception while closing", e);
+    } finally {
+      fileOut = null;
+      channel = null;
+    }
+  }
+
+  /** A {@link ByteArrayOutputStream} whose content can be written without copying. */
+  private static final class BatchBuffer extends ByteArrayOutputStream {
+    BatchBuffer(int initialSize) {
+      super(initialSize);
+    }
+
+    ByteBuffer asByteBuffer() {
+      return ByteBuffer.wrap(buf, 0, count);
+    }
+
+    void updateChecksum(CRC32 crc) {
+      crc.update(buf, 0, count);
+    }
+
+    void setDeflaterInput(Deflater deflater) {
+      deflater.setInput(buf, 0, count);
+    }
+  }
+
+  /**
+   * A bounded queue of entries backed by an array that is allocated once, for many producers and
+   * the single writer thread. Producers claim a slot by advancing {@code producerIndex} and then
+   * publish the entry into it; the writer empties a slot before advancing {@code consumerIndex},
+   * which frees the slot for reuse. Closing the queue sets a bit in {@code producerIndex}, after
+   * which no slot can be claimed, so the entries still to be polled are known.
+   */
+  private static final class RingBuffer {
+    /** Returned by {@link #offer} once the queue is closed. */
+    static final int CLOSED = -1;
+    private static final long CLOSED_BIT = 1L << 62;
+
+    private final AtomicReferenceArray<MessageLite> slots;
+    private final AtomicLong producerIndex = new AtomicLong();
+    // Only written by the writer thread.
+    private volatile long consumerIndex;
+
+    RingBuffer(int capacity) {
+      slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Adds the entry and returns the number of entries in the queue, including the new one,
+     * {@code 0} if the queue is full or {@link #CLOSED} if it is closed.
+     */
+    int offer(MessageLite message) {
+      long index;
+      int queued;
+      do {
+        index = producerIndex.get();
+        if ((index & CLOSED_BIT) != 0) {
+          return CLOSED;
+        }
+        queued = (int) (index - consumerIndex) + 1;
+        if (queued > slots.length()) {
+          return 0;
+        }
+      } while (!producerIndex.compareAndSet(index, index + 1));
+      slots.set(slot(index), message);
+      return queued;
+    }
+
+    /**
+     * Removes the oldest entry, or returns {@code null} if there is none. Only one thread may poll
+     * at a time. An entry whose slot is claimed but not yet published ends the poll early; it is
+     * returned by a later call.
+     */
+    @Nullable
+    MessageLite poll() {
+      long index = consumerIndex;
+      if (index == claimed()) {
+        return null;
+      }
+      int slot = slot(index);
+      MessageLite message = slots.get(slot);
+      if (message == null) {
+        return null;
+      }
+      slots.lazySet(slot, null);
+      consumerIndex = index + 1;
+      return message;
+    }
+
+    /** Stops accepting entries. Entries whose slot is already claimed can still be polled. */
+    void close() {
+      long index;
+      do {
+        index = producerIndex.get();
+      } while ((index & CLOSED_BIT) == 0
+          && !producerIndex.compareAndSet(index, index | CLOSED_BIT));
+    }
+
+    /** Returns the number of claimed slots, including the ones not yet published. */
+    int size() {
+      return (int) (claimed() - consumerIndex);
+    }
+
+    private long claimed() {
+      return producerIndex.get() & ~CLOSED_BIT;
+    }
+
+    private int slot(long index) {
+      return (int) (index % slots.length());
+    }
+  }
+
+  /** Builder for {@link AsyncFileSink}. */
+  public static final class Builder {
+    private final File directory;
+    private String filePrefix = "BINARY_INFO";
+    private int queueCapacity = 64 * 1024;
+    private long maxFileSizeBytes = 64L * 1024 * 1024;
+    private long maxFileAgeNanos = TimeUnit.HOURS.toNanos(1);
+    private long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(100);
+    private boolean gzipEnabled;
+    private ThreadFactory threadFactory =
+        GrpcUtil.getThreadFactory("grpc-binlog-writer-%d", true);
+
+    private Builder(File directory) {
+      this.directory = checkNotNull(directory, "directory");
+    }
+
+    /** Sets the prefix of the file names. Defaults to {@code BINARY_INFO}. */
+    public Builder setFilePrefix(String filePrefix) {
+      this.filePrefix = checkNotNull(filePrefix, "filePrefix");
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of entries waiting to be written. Entries logged while the queue is
+     * full are dropped. Defaults to 65536.
+     */
+    public Builder setQueueCapacity(int queueCapacity) {
+      checkArgument(queueCapacity > 0, "queueCapacity must be positive");
+      this.queueCapacity = queueCapacity;
+      return this;
+    }
+
+    /**
+     * Sets the size after which a new file is started. A file may exceed this size by up to one
+     * batch. Defaults to 64 MiB.
+     */
+    public Builder setMaxFileSizeBytes(long maxFileSizeBytes) {
+      checkArgument(maxFileSizeBytes > 0, "maxFileSizeBytes must be positive");
+      this.maxFileSizeBytes = maxFileSizeBytes;
+      return this;
+    }
+
+    /** Sets the age after which a new file is started. Defaults to one hour. */
+    public Builder setMaxFileAge(long maxFileAge, TimeUnit unit) {
+      checkArgument(maxFileAge > 0, "maxFileAge must be positive");
+      this.maxFileAgeNanos = unit.toNanos(maxFileAge);
+      return this;
+    }
+
+    /**
+     * Sets the maximum time entries wait in the queue when logging is light. Defaults to 100
+     * milliseconds.
+     */
+    public Builder setFlushInterval(long flushInterval, TimeUnit unit) {
+      checkArgument(flushInterval > 0, "flushInterval must be positive");
+      this.flushIntervalNanos = unit.toNanos(flushInterval);
+      return this;
+    }
+
+    /** Enables gzip compression of the files. Disabled by default. */
+    public Builder setGzipEnabled(boolean gzipEnabled) {
+      this.gzipEnabled = gzipEnabled;
+      return this;
+    }
+
+    @VisibleForTesting
+    Builder setThreadFactory(ThreadFactory threadFactory) {
+      this.threadFactory = checkNotNull(threadFactory, "threadFactory");
+      return this;
+    }
+
+    /** Creates the sink and starts its writer thread. */
+    public AsyncFileSink build() {
+      checkArgument(directory.isDirectory(), "%s is not a directory", directory);
+      return new AsyncFileSink(this);
+    }
+  }
+}
@@ -27,6 +27,7 @@ import io.grpc.ConnectivityState;
 import io.grpc.InternalChannelz;
 import io.grpc.InternalChannelz.ChannelStats;
 import io.grpc.InternalChannelz.ChannelTrace.Event;
+import io.grpc.InternalChannelz.ConcurrencyLimitStats;
 import io.grpc.InternalChannelz.RootChannelList;
 import io.grpc.InternalChannelz.ServerList;
 import io.grpc.InternalChannelz.ServerSocketsList;
@@ -48,9 +49,12 @@ import io.grpc.channelz.v1.ChannelRef;
 import io.grpc.channelz.v1.ChannelTrace;
 import io.grpc.channelz.v1.ChannelTraceEvent;
 import io.grpc.channelz.v1.ChannelTraceEvent.Severity;
+import io.grpc.channelz.v1.ConcurrencyLimit;
 import io.grpc.channelz.v1.GetServerSocketsResponse;
 import io.grpc.channelz.v1.GetServersResponse;
 import io.grpc.channelz.v1.GetTopChannelsResponse;
+import io.grpc.channelz.v1.Histogram;
+import io.grpc.channelz.v1.MethodStats;
 import io.grpc.channelz.v1.Security;
 import io.grpc.channelz.v1.Security.OtherSecurity;
 import io.grpc.channelz.v1.Security.Tls;
@@ -72,6 +76,7 @@ import java.security.cert.CertificateEncodingException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
@@ -132,13 +137,61 @@ final class ChannelzProtoUtil {
   }
 
   static ServerData toServerData(ServerStats stats) {
-    return ServerData
+    ServerData.Builder builder = ServerData
         .newBuilder()
         .setCallsStarted(stats.callsStarted)
         .setCallsSucceeded(stats.callsSucceeded)
         .setCallsFailed(stats.callsFailed)
         .setLastCallStartedTimestamp(Timestamps.fromNanos(stats.lastCallStartedNanos))
-        .build();
+        .addAllMethodStats(toMethodStats(stats.methodStats));
+    if (stats.concurrencyLimit != null) {
+      builder.setConcurrencyLimit(toConcurrencyLimit(stats.concurrencyLimit));
+    }
+    return builder.build();
+  }
+
+  static ConcurrencyLimit toConcurrencyLimit(ConcurrencyLimitStats stats) {
+    ConcurrencyLimit.Builder builder = ConcurrencyLimit
+        .newBuilder()
+        .setLimit(stats.limit)
+        .setCallsInFlight(stats.callsInFlight)
+        .setCallsRejected(stats.callsRejected);
+    if (stats.minLatencyNanos > 0) {
+      builder.setMinLatency(Durations.fromNanos(stats.minLatencyNanos));
+    }
+    return builder.build();
+  }
+
+  static List<MethodStats> toMethodStats(
+      Map<String, InternalChannelz.MethodStats> methodStatsMap) {
+    List<MethodStats> methodStats = new ArrayList<>(methodStatsMap.size());
+    for (Entry<String, InternalChannelz.MethodStats> entry : methodStatsMap.entrySet()) {
+      InternalChannelz.MethodStats stats = entry.getValue();
+      methodStats.add(MethodStats
+          .newBuilder()
+          .setMethod(entry.getKey())
+          .setCallLatencyNanos(toHistogram(stats.callLatencyNanos))
+          .setSentMessageSizeBytes(toHistogram(stats.sentMessageSizeBytes))
+          .setReceivedMessageSizeBytes(toHistogram(stats.receivedMessageSizeBytes))
+          .setQueueTimeNanos(toHistogram(stats.queueTimeNanos))
+          .build());
+    }
+    return methodStats;
+  }
+
+  static Histogram toHistogram(InternalChannelz.Histogram histogram) {
+    Histogram.Builder builder = Histogram
+        .newBuilder()
+        .setCount(histogram.count)
+        .setSum(histogram.sum)
+        .setMax(histogram.max);
+    for (int i = 0; i < histogram.getBucketCount(); i++) {
+      builder.addBuckets(Histogram.Bucket
+          .newBuilder()
+          .setUpperBound(histogram.getBucketUpperBound(i))
+          .setCount(histogram.getBucketValueCount(i)));
+    }
+    return builder.build();
   }
 
   static Security toSecurity(InternalChannelz.Security security) {
@@ -358,7 +411,8 @@ final class ChannelzProtoUtil {
         .setCallsStarted(stats.callsStarted)
         .setCallsSucceeded(stats.callsSucceeded)
         .setCallsFailed(stats.callsFailed)
-        .setLastCallStartedTimestamp(Timestamps.fromNanos(stats.lastCallStartedNanos));
+        .setLastCallStartedTimestamp(Timestamps.fromNanos(stats.lastCallStartedNanos))
+        .addAllMethodStats(toMethodStats(stats.methodStats));
     if (stats.channelTrace != null) {
       builder.setTrace(toChannelTrace(stats.channelTrace));
     }
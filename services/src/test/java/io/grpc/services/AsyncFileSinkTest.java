@@ -0,0 +1,252 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.services;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import io.grpc.binarylog.v1.GrpcLogEntry;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link AsyncFileSink}.
+ */
+@RunWith(JUnit4.class)
+public class AsyncFileSinkTest {
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void readMyWrite() throws Exception {
+    File dir = tempFolder.newFolder();
+    AsyncFileSink sink = AsyncFileSink.newBuilder(dir).build();
+    GrpcLogEntry e1 = GrpcLogEntry.newBuilder()
+        .setCallId(1234)
+        .build();
+    GrpcLogEntry e2 = GrpcLogEntry.newBuilder()
+        .setCallId(5678)
+        .build();
+    sink.write(e1);
+    sink.write(e2);
+    sink.close();
+
+    assertThat(readAll(dir, false)).containsExactly(e1, e2).inOrder();
+    assertThat(sink.getWrittenEntries()).isEqualTo(2);
+    assertThat(sink.getDroppedEntries()).isEqualTo(0);
+  }
+
+  @Test
+  public void gzip() throws Exception {
+    File dir = tempFolder.newFolder();
+    AsyncFileSink sink = AsyncFileSink.newBuilder(dir).setGzipEnabled(true).build();
+    List<GrpcLogEntry> entries = writeEntries(sink, 1000);
+    sink.close();
+
+    assertThat(dir.listFiles()).hasLength(1);
+    assertThat(dir.listFiles()[0].getName()).endsWith(".binlog.gz");
+    assertThat(readAll(dir, true)).containsExactlyElementsIn(entries).inOrder();
+  }
+
+  @Test
+  public void gzip_multipleBatchesShareOneFile() throws Exception {
+    File dir = tempFolder.newFolder();
+    CountDownLatch writerGate = new CountDownLatch(1);
+    AsyncFileSink sink = AsyncFileSink.newBuilder(dir)
+        .setGzipEnabled(true)
+        .setThreadFactory(new GatedThreadFactory(writerGate))
+        .build();
+    // About 10 bytes per entry, more than two batches in total.
+    List<GrpcLogEntry> entries = writeEntries(sink, 60000);
+    writerGate.countDown();
+    sink.close();
+
+    assertThat(dir.listFiles()).hasLength(1);
+    assertThat(readAll(dir, true)).containsExactlyElementsIn(entries).inOrder();
+  }
+
+  @Test
+  public void rotatesBySize() throws Exception {
+    File dir = tempFolder.newFolder();
+    AsyncFileSink sink = AsyncFileSink.newBuilder(dir).setMaxFileSizeBytes(1).build();
+    List<GrpcLogEntry> entries = writeEntries(sink, 1);
+    // wait for the entry to be written, so that the next one is written in a separate batch
+    while (sink.getWrittenEntries() == 0) {
+      Thread.sleep(1);
+    }
+    entries.addAll(writeEntries(sink, 1));
+    sink.close();
+
+    assertThat(sink.getRotations()).isEqualTo(1);
+    assertThat(dir.listFiles()).hasLength(2);
+    assertThat(readAll(dir, false)).containsExactlyElementsIn(entries).inOrder();
+  }
+
+  @Test
+  public void batchIsNotSplitAcrossFiles() throws Exception {
+    File dir = tempFolder.newFolder();
+    CountDownLatch writerGate = new CountDownLatch(1);
+    AsyncFileSink sink = AsyncFileSink.newBuilder(dir)
+        .setMaxFileSizeBytes(1)
+        .setThreadFactory(new GatedThreadFactory(writerGate))
+        .build();
+    List<GrpcLogEntry> entries = writeEntries(sink, 10);
+    writerGate.countDown();
+    sink.close();
+
+    assertThat(sink.getRotations()).isEqualTo(0);
+    assertThat(dir.listFiles()).hasLength(1);
+    assertThat(readAll(dir, false)).containsExactlyElementsIn(entries).inOrder();
+  }
+
+  @Test
+  public void dropsWhenQueueIsFull() throws Exception {
+    File dir = tempFolder.newFolder();
+    CountDownLatch writerGate = new CountDownLatch(1);
+    AsyncFileSink sink = AsyncFileSink.newBuilder(dir)
+        .setQueueCapacity(10)
+        .setThreadFactory(new GatedThreadFactory(writerGate))
+        .build();
+    List<GrpcLogEntry> entries = writeEntries(sink, 15);
+    writerGate.countDown();
+    sink.close();
+
+    assertThat(sink.getDroppedEntries()).isEqualTo(5);
+    assertThat(sink.getWrittenEntries()).isEqualTo(10);
+    assertThat(readAll(dir, false)).containsExactlyElementsIn(entries.subList(0, 10)).inOrder();
+  }
+
+  @Test
+  public void writeAfterCloseIsSilent() throws IOException {
+    AsyncFileSink sink = AsyncFileSink.newBuilder(tempFolder.newFolder()).build();
+    sink.close();
+    sink.write(GrpcLogEntry.newBuilder()
+        .setCallId(1234)
+        .build());
+    assertThat(sink.getWrittenEntries()).isEqualTo(0);
+  }
+
+  @Test
+  public void writesRacingWithCloseAreWrittenOrCounted() throws Exception {
+    File dir = tempFolder.newFolder();
+    final AsyncFileSink sink = AsyncFileSink.newBuilder(dir).setQueueCapacity(100).build();
+    final int writesBeforeClose = 1000;
+    final CountDownLatch written = new CountDownLatch(4);
+    final AtomicBoolean stop = new AtomicBoolean();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          GrpcLogEntry entry = GrpcLogEntry.newBuilder().setCallId(1234).build();
+          for (int i = 0; i < writesBeforeClose; i++) {
+            sink.write(entry);
+          }
+          written.countDown();
+          // Keep writing while the sink closes.
+          while (!stop.get()) {
+            sink.write(entry);
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    written.await();
+    sink.close();
+    stop.set(true);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(sink.getWrittenEntries() + sink.getDroppedEntries())
+        .isAtLeast(4L * writesBeforeClose);
+    assertThat((long) readAll(dir, false).size()).isEqualTo(sink.getWrittenEntries());
+  }
+
+  private static List<GrpcLogEntry> writeEntries(AsyncFileSink sink, int count) {
+    List<GrpcLogEntry> entries = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      GrpcLogEntry entry = GrpcLogEntry.newBuilder()
+          .setCallId(i)
+          .setSequenceIdWithinCall(i)
+          .build();
+      sink.write(entry);
+      entries.add(entry);
+    }
+    return entries;
+  }
+
+  private static List<GrpcLogEntry> readAll(File dir, boolean gzip) throws IOException {
+    File[] files = dir.listFiles();
+    Arrays.sort(files);
+    List<GrpcLogEntry> entries = new ArrayList<>();
+    for (File file : files) {
+      InputStream input = new BufferedInputStream(new FileInputStream(file));
+      if (gzip) {
+        input = new GZIPInputStream(input);
+      }
+      try {
+        GrpcLogEntry entry;
+        while ((entry = GrpcLogEntry.parseDelimitedFrom(input)) != null) {
+          entries.add(entry);
+        }
+      } finally {
+        input.close();
+      }
+    }
+    return entries;
+  }
+
+  /** Creates threads that only start running once the gate is opened. */
+  private static final class GatedThreadFactory implements ThreadFactory {
+    private final CountDownLatch gate;
+
+    GatedThreadFactory(CountDownLatch gate) {
+      this.gate = gate;
+    }
+
+    @Override
+    public Thread newThread(final Runnable r) {
+      return new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            gate.await();
+          } catch (InterruptedException e) {
+            throw new AssertionError(e);
+          }
+          r.run();
+        }
+      });
+    }
+  }
+}
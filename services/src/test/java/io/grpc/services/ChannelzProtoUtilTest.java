@@ -36,6 +36,7 @@ import io.grpc.InternalChannelz;
 import io.grpc.InternalChannelz.ChannelStats;
 import io.grpc.InternalChannelz.ChannelTrace.Event;
 import io.grpc.InternalChannelz.ChannelTrace.Event.Severity;
+import io.grpc.InternalChannelz.ConcurrencyLimitStats;
 import io.grpc.InternalChannelz.RootChannelList;
 import io.grpc.InternalChannelz.ServerList;
 import io.grpc.InternalChannelz.ServerSocketsList;
@@ -55,10 +56,12 @@ import io.grpc.channelz.v1.ChannelData;
 import io.grpc.channelz.v1.ChannelRef;
 import io.grpc.channelz.v1.ChannelTrace;
 import io.grpc.channelz.v1.ChannelTraceEvent;
+import io.grpc.channelz.v1.ConcurrencyLimit;
 import io.grpc.channelz.v1.GetChannelRequest;
 import io.grpc.channelz.v1.GetServerSocketsResponse;
 import io.grpc.channelz.v1.GetServersResponse;
 import io.grpc.channelz.v1.GetTopChannelsResponse;
+import io.grpc.channelz.v1.MethodStats;
 import io.grpc.channelz.v1.Security;
 import io.grpc.channelz.v1.Security.OtherSecurity;
 import io.grpc.channelz.v1.Security.Tls;
@@ -315,6 +318,30 @@ public final class ChannelzProtoUtilTest {
               .setPort(1000))
       .build();
 
+  private final InternalChannelz.Histogram latency = new InternalChannelz.Histogram(
+      new long[] {10, 20}, new long[] {1, 2}, /*sum=*/ 45, /*max=*/ 18);
+  private final io.grpc.channelz.v1.Histogram latencyProto = io.grpc.channelz.v1.Histogram
+      .newBuilder()
+      .setCount(3)
+      .setSum(45)
+      .setMax(18)
+      .addBuckets(io.grpc.channelz.v1.Histogram.Bucket.newBuilder().setUpperBound(10).setCount(1))
+      .addBuckets(io.grpc.channelz.v1.Histogram.Bucket.newBuilder().setUpperBound(20).setCount(2))
+      .build();
+  private final InternalChannelz.MethodStats methodStats = new InternalChannelz.MethodStats(
+      latency,
+      InternalChannelz.Histogram.EMPTY,
+      InternalChannelz.Histogram.EMPTY,
+      InternalChannelz.Histogram.EMPTY);
+  private final MethodStats methodStatsProto = MethodStats
+      .newBuilder()
+      .setMethod("service/method")
+      .setCallLatencyNanos(latencyProto)
+      .setSentMessageSizeBytes(io.grpc.channelz.v1.Histogram.getDefaultInstance())
+      .setReceivedMessageSizeBytes(io.grpc.channelz.v1.Histogram.getDefaultInstance())
+      .setQueueTimeNanos(io.grpc.channelz.v1.Histogram.getDefaultInstance())
+      .build();
+
   private final ChannelTrace channelTrace = ChannelTrace
       .newBuilder()
       .setNumEventsLogged(1234)
@@ -568,6 +595,42 @@ public final class ChannelzProtoUtilTest {
     assertEquals(serverData, ChannelzProtoUtil.toServerData(server.serverStats));
   }
 
+  @Test
+  public void toServerData_methodStats() throws Exception {
+    server.serverStats = toBuilder(server.serverStats)
+        .setMethodStats(Collections.singletonMap("service/method", methodStats))
+        .build();
+    assertEquals(
+        serverData.toBuilder().addMethodStats(methodStatsProto).build(),
+        ChannelzProtoUtil.toServerData(server.serverStats));
+  }
+
+  @Test
+  public void toServerData_concurrencyLimit() throws Exception {
+    server.serverStats = toBuilder(server.serverStats)
+        .setConcurrencyLimit(new ConcurrencyLimitStats(
+            /*limit=*/ 20, /*callsInFlight=*/ 5, /*callsRejected=*/ 7, /*minLatencyNanos=*/ 1000))
+        .build();
+    assertEquals(
+        serverData
+            .toBuilder()
+            .setConcurrencyLimit(ConcurrencyLimit
+                .newBuilder()
+                .setLimit(20)
+                .setCallsInFlight(5)
+                .setCallsRejected(7)
+                .setMinLatency(Durations.fromNanos(1000)))
+            .build(),
+        ChannelzProtoUtil.toServerData(server.serverStats));
+  }
+
+  @Test
+  public void toConcurrencyLimit_noLatencyYet() {
+    assertEquals(
+        ConcurrencyLimit.newBuilder().setLimit(20).build(),
+        ChannelzProtoUtil.toConcurrencyLimit(new ConcurrencyLimitStats(20, 0, 0, 0)));
+  }
+
   @Test
   public void toChannel() throws Exception {
     assertEquals(channelProto, ChannelzProtoUtil.toChannel(channel));
@@ -601,6 +664,24 @@ public final class ChannelzProtoUtilTest {
     assertEquals(channelData, ChannelzProtoUtil.extractChannelData(channel.stats));
   }
 
+  @Test
+  public void extractChannelData_methodStats() {
+    channel.stats = toBuilder(channel.stats)
+        .setMethodStats(Collections.singletonMap("service/method", methodStats))
+        .build();
+    assertEquals(
+        channelData.toBuilder().addMethodStats(methodStatsProto).build(),
+        ChannelzProtoUtil.extractChannelData(channel.stats));
+  }
+
+  @Test
+  public void toHistogram() {
+    assertEquals(
+        io.grpc.channelz.v1.Histogram.getDefaultInstance(),
+        ChannelzProtoUtil.toHistogram(InternalChannelz.Histogram.EMPTY));
+    assertEquals(latencyProto, ChannelzProtoUtil.toHistogram(latency));
+  }
+
   @Test
   public void toSubchannel_noChildren() throws Exception {
     assertEquals(
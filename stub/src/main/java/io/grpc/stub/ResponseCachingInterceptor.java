@@ -0,0 +1,790 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.grpc.stub;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Deadline;
+import io.grpc.ExperimentalApi;
+import io.grpc.ForwardingClientCallListener.SimpleForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * A {@link ClientInterceptor} that caches the responses of {@linkplain MethodDescriptor#isSafe
+ * safe} unary methods, keyed by the method name and the serialized request.
+ *
+ * <p>Responses are kept for a per-method time-to-live, in an LRU cache bounded by the total size
+ * of the cached requests and responses. Identical calls that start while a call for the same key
+ * is in flight wait for its result instead of reaching the server; they receive its response, or
+ * its status if it fails. If enabled, {@code cache-control} response headers and trailers are
+ * honored: {@code no-cache} and {@code no-store} prevent caching and {@code max-age} overrides the
+ * time-to-live.
+ *
+ * <p>The request headers are not part of the cache key, so this should only be used for methods
+ * whose responses don't depend on them (e.g., on the caller's credentials). Calls answered from
+ * the cache or by another call receive empty headers and trailers. While they wait, their own
+ * deadline and context still apply. Set {@link #BYPASS_CACHE} on a call to always send it to the
+ * server.
+ *
+ * <p>The listeners of calls that don't reach the server are called on the call's executor, if
+ * {@linkplain CallOptions#withExecutor set}, or else on the interceptor's {@linkplain
+ * Builder#setExecutor executor}; never inline on the caller's thread, in the callbacks of the call
+ * they waited for, or on the deadline timer.
+ */
+@ExperimentalApi("Client-side response caching is experimental")
+public final class ResponseCachingInterceptor implements ClientInterceptor {
+  /** When {@code true}, the call is sent to the server and its response is not cached. */
+  public static final CallOptions.Key<Boolean> BYPASS_CACHE =
+      CallOptions.Key.createWithDefault("io.grpc.stub.bypassResponseCache", false);
+
+  private static final Metadata.Key<String> CACHE_CONTROL_KEY =
+      Metadata.Key.of("cache-control", Metadata.ASCII_STRING_MARSHALLER);
+  private static final Splitter CACHE_CONTROL_SPLITTER =
+      Splitter.on(',').trimResults().omitEmptyStrings();
+
+  private final ResponseCache cache;
+  private final long defaultTtlNanos;
+  private final Map<String, Long> methodTtlNanos;
+  private final boolean honorCacheControl;
+  private final Deadline.Ticker ticker;
+  @Nullable
+  private final ScheduledExecutorService scheduler;
+  @Nullable
+  private final Executor executor;
+  private final ConcurrentMap<CacheKey, InFlightCall> inFlightCalls = new ConcurrentHashMap<>();
+
+  private ResponseCachingInterceptor(Builder builder) {
+    this.cache = new ResponseCache(builder.maxCacheSizeBytes);
+    this.defaultTtlNanos = builder.defaultTtlNanos;
+    this.methodTtlNanos = Collections.unmodifiableMap(new HashMap<>(builder.methodTtlNanos));
+    this.honorCacheControl = builder.honorCacheControl;
+    this.ticker = builder.ticker;
+    this.scheduler = builder.scheduler;
+    this.executor = builder.executor;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  @Override
+  public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+      MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+    if (!method.isSafe()
+        || method.getType() != MethodDescriptor.MethodType.UNARY
+        || callOptions.getOption(BYPASS_CACHE)
+        || getTtlNanos(method.getFullMethodName()) <= 0) {
+      return next.newCall(method, callOptions);
+    }
+    return new CachingCall<>(method, callOptions, next);
+  }
+
+  private long getTtlNanos(String fullMethodName) {
+    Long ttlNanos = methodTtlNanos.get(fullMethodName);
+    return ttlNanos != null ? ttlNanos : defaultTtlNanos;
+  }
+
+  private ScheduledExecutorService getScheduler() {
+    return scheduler != null ? scheduler : DefaultScheduler.INSTANCE;
+  }
+
+  private Executor getExecutor() {
+    return executor != null ? executor : DefaultExecutor.INSTANCE;
+  }
+
+  /** Removes all cached responses. */
+  public void clear() {
+    cache.clear();
+  }
+
+  @VisibleForTesting
+  int getCachedResponseCount() {
+    return cache.size();
+  }
+
+  /** Builder for {@link ResponseCachingInterceptor}. */
+  public static final class Builder {
+    private long maxCacheSizeBytes = 16 * 1024 * 1024;
+    private long defaultTtlNanos = TimeUnit.MINUTES.toNanos(1);
+    private final Map<String, Long> methodTtlNanos = new HashMap<>();
+    private boolean honorCacheControl = true;
+    private Deadline.Ticker ticker = Deadline.getSystemTicker();
+    @Nullable
+    private ScheduledExecutorService scheduler;
+    @Nullable
+    private Executor executor;
+
+    private Builder() {}
+
+    /**
+     * Sets the maximum total size of the cached requests and responses. Least recently used
+     * entries are evicted first. Defaults to 16 MiB.
+     */
+    public Builder setMaxCacheSizeBytes(long maxCacheSizeBytes) {
+      checkArgument(maxCacheSizeBytes > 0, "maxCacheSizeBytes must be positive");
+      this.maxCacheSizeBytes = maxCacheSizeBytes;
+      return this;
+    }
+
+    /**
+     * Sets how long responses are cached for methods without their own time-to-live. Zero
+     * disables caching for them. Defaults to one minute.
+     */
+    public Builder setDefaultTtl(long ttl, TimeUnit unit) {
+      checkArgument(ttl >= 0, "ttl must not be negative");
+      this.defaultTtlNanos = unit.toNanos(ttl);
+      return this;
+    }
+
+    /**
+     * Sets how long responses of the given method are cached. Zero disables caching for it.
+     */
+    public Builder setMethodTtl(String fullMethodName, long ttl, TimeUnit unit) {
+      checkNotNull(fullMethodName, "fullMethodName");
+      checkArgument(ttl >= 0, "ttl must not be negative");
+      methodTtlNanos.put(fullMethodName, unit.toNanos(ttl));
+      return this;
+    }
+
+    /**
+     * Sets whether {@code cache-control} response headers and trailers are honored. Defaults to
+     * {@code true}.
+     */
+    public Builder setHonorCacheControl(boolean honorCacheControl) {
+      this.honorCacheControl = honorCacheControl;
+      return this;
+    }
+
+    /**
+     * Sets the executor used to fail calls whose deadline passes while they wait for an identical
+     * call. By default, a daemon thread shared by all interceptors is created when first needed.
+     */
+    public Builder setScheduledExecutorService(ScheduledExecutorService scheduler) {
+      this.scheduler = checkNotNull(scheduler, "scheduler");
+      return this;
+    }
+
+    /**
+     * Sets the executor that calls the listeners of calls answered from the cache or by an
+     * identical call, unless the call has an executor of its own. By default, a pool of daemon
+     * threads shared by all interceptors is created when first needed.
+     */
+    public Builder setExecutor(Executor executor) {
+      this.executor = checkNotNull(executor, "executor");
+      return this;
+    }
+
+    @VisibleForTesting
+    Builder setTicker(Deadline.Ticker ticker) {
+      this.ticker = checkNotNull(ticker, "ticker");
+      return this;
+    }
+
+    public ResponseCachingInterceptor build() {
+      return new ResponseCachingInterceptor(this);
+    }
+  }
+
+  private static final class DefaultScheduler {
+    static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("grpc-response-cache-timer-%d")
+            .build());
+  }
+
+  private static final class DefaultExecutor {
+    static final Executor INSTANCE = Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("grpc-response-cache-%d")
+            .build());
+  }
+
+  private static final class CacheKey {
+    final String fullMethodName;
+    final byte[] request;
+    final int hashCode;
+
+    CacheKey(String fullMethodName, byte[] request) {
+      this.fullMethodName = fullMethodName;
+      this.request = request;
+      this.hashCode = 31 * fullMethodName.hashCode() + Arrays.hashCode(request);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof CacheKey)) {
+        return false;
+      }
+      CacheKey that = (CacheKey) other;
+      return hashCode == that.hashCode
+          && fullMethodName.equals(that.fullMethodName)
+          && Arrays.equals(request, that.request);
+    }
+  }
+
+  private static final class CacheEntry {
+    final byte[] response;
+    final long expireAtNanos;
+
+    CacheEntry(byte[] response, long expireAtNanos) {
+      this.response = response;
+      this.expireAtNanos = expireAtNanos;
+    }
+  }
+
+  /** An LRU map of serialized responses, bounded by the total size of keys and responses. */
+  private static final class ResponseCache {
+    private final long maxSizeBytes;
+    @GuardedBy("this")
+    private final LinkedHashMap<CacheKey, CacheEntry> entries =
+        new LinkedHashMap<>(16, 0.75f, /* accessOrder= */ true);
+    @GuardedBy("this")
+    private long sizeBytes;
+
+    ResponseCache(long maxSizeBytes) {
+      this.maxSizeBytes = maxSizeBytes;
+    }
+
+    @Nullable
+    synchronized CacheEntry get(CacheKey key, long nowNanos) {
+      CacheEntry entry = entries.get(key);
+      if (entry != null && nowNanos - entry.expireAtNanos >= 0) {
+        remove(key);
+        return null;
+      }
+      return entry;
+    }
+
+    synchronized void put(CacheKey key, CacheEntry entry) {
+      long size = sizeOf(key, entry);
+      if (size > maxSizeBytes) {
+        return;
+      }
+      CacheEntry previous = entries.put(key, entry);
+      if (previous != null) {
+        sizeBytes -= sizeOf(key, previous);
+      }
+      sizeBytes += size;
+      Iterator<Map.Entry<CacheKey, CacheEntry>> it = entries.entrySet().iterator();
+      while (sizeBytes > maxSizeBytes && it.hasNext()) {
+        Map.Entry<CacheKey, CacheEntry> eldest = it.next();
+        sizeBytes -= sizeOf(eldest.getKey(), eldest.getValue());
+        it.remove();
+      }
+    }
+
+    @GuardedBy("this")
+    private void remove(CacheKey key) {
+      CacheEntry entry = entries.remove(key);
+      if (entry != null) {
+        sizeBytes -= sizeOf(key, entry);
+      }
+    }
+
+    synchronized void clear() {
+      entries.clear();
+      sizeBytes = 0;
+    }
+
+    synchronized int size() {
+      return entries.size();
+    }
+
+    private static long sizeOf(CacheKey key, CacheEntry entry) {
+      return key.request.length + entry.response.length;
+    }
+  }
+
+  /** A call to the server whose result is shared with identical calls started meanwhile. */
+  private final class InFlightCall {
+    final CacheKey key;
+    @GuardedBy("this")
+    private List<CachingCall<?, ?>> waiters = new ArrayList<>();
+
+    InFlightCall(CacheKey key) {
+      this.key = key;
+    }
+
+    /** Returns {@code false} if the call already completed. */
+    synchronized boolean addWaiter(CachingCall<?, ?> waiter) {
+      if (waiters == null) {
+        return false;
+      }
+      waiters.add(waiter);
+      return true;
+    }
+
+    synchronized void removeWaiter(CachingCall<?, ?> waiter) {
+      if (waiters != null) {
+        waiters.remove(waiter);
+      }
+    }
+
+    void complete(Status status, @Nullable byte[] response) {
+      inFlightCalls.remove(key, this);
+      List<CachingCall<?, ?>> toNotify;
+      synchronized (this) {
+        toNotify = waiters;
+        waiters = null;
+      }
+      for (CachingCall<?, ?> waiter : toNotify) {
+        if (status.isOk() && response != null) {
+          waiter.deliver(response);
+        } else if (status.isOk()) {
+          waiter.deliverFailure(
+              Status.INTERNAL.withDescription("Coalesced call completed without a response"));
+        } else if (status.getCode() == Status.Code.CANCELLED
+            || status.getCode() == Status.Code.DEADLINE_EXCEEDED) {
+          // The call was cancelled, or ran out of time, for its own caller. That says nothing
+          // about this one, whose own deadline is enforced by the waiter itself.
+          waiter.deliverFailure(Status.UNAVAILABLE.withDescription(
+              "Coalesced call failed with " + status.getCode()));
+        } else {
+          waiter.deliverFailure(status);
+        }
+      }
+    }
+  }
+
+  private final class CachingCall<ReqT, RespT> extends ClientCall<ReqT, RespT> {
+    private final MethodDescriptor<ReqT, RespT> method;
+    private final CallOptions callOptions;
+    private final Channel next;
+    // Each call runs a single callback task, which calls the listener from onHeaders to onClose, so
+    // no further serialization is needed.
+    private final Executor callbackExecutor;
+    private final Context context;
+    private Listener<RespT> listener;
+    private Metadata headers;
+    private Boolean messageCompression;
+    private boolean messageSent;
+    // Set once the call goes to the server
+    private ClientCall<ReqT, RespT> delegate;
+    // Set while waiting for an identical call
+    private InFlightCall waitingFor;
+    @GuardedBy("this")
+    private int pendingRequests;
+    // A response that arrived before the listener requested it
+    @GuardedBy("this")
+    private byte[] pendingResponse;
+    @GuardedBy("this")
+    private ScheduledFuture<?> deadlineFuture;
+    @GuardedBy("this")
+    private Context.CancellationListener cancellationListener;
+    @GuardedBy("this")
+    private boolean closed;
+
+    CachingCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+      this.method = method;
+      this.callOptions = callOptions;
+      this.next = next;
+      this.callbackExecutor = callOptions.getExecutor() != null
+          ? callOptions.getExecutor() : getExecutor();
+      this.context = Context.current();
+    }
+
+    @Override
+    public void start(Listener<RespT> responseListener, Metadata headers) {
+      checkState(listener == null, "Already started");
+      this.listener = checkNotNull(responseListener, "responseListener");
+      this.headers = checkNotNull(headers, "headers");
+    }
+
+    @Override
+    public void request(int numMessages) {
+      if (delegate != null) {
+        delegate.request(numMessages);
+        return;
+      }
+      byte[] response;
+      synchronized (this) {
+        pendingRequests += numMessages;
+        response = pendingResponse;
+        if (response == null || !closeLocked()) {
+          return;
+        }
+      }
+      callbackExecutor.execute(new DeliverResponse(response));
+    }
+
+    @Override
+    public void setMessageCompression(boolean enabled) {
+      if (delegate != null) {
+        delegate.setMessageCompression(enabled);
+      } else {
+        messageCompression = enabled;
+      }
+    }
+
+    @Override
+    public void sendMessage(ReqT message) {
+      checkState(listener != null, "Not started");
+      if (messageSent || isClosed()) {
+        return;
+      }
+      messageSent = true;
+      byte[] request;
+      try {
+        request = toBytes(method.streamRequest(message));
+      } catch (IOException e) {
+        // Not cacheable, e.g. a failing marshaller. Let the real call report the error.
+        startDelegate(null).sendMessage(message);
+        return;
+      }
+      CacheKey key = new CacheKey(method.getFullMethodName(), request);
+      CacheEntry entry = cache.get(key, ticker.nanoTime());
+      if (entry != null) {
+        deliver(entry.response);
+        startWaiting();
+        return;
+      }
+      InFlightCall inFlight = new InFlightCall(key);
+      InFlightCall existing = inFlightCalls.putIfAbsent(key, inFlight);
+      if (existing != null) {
+        if (existing.addWaiter(this)) {
+          waitingFor = existing;
+          startWaiting();
+          return;
+        }
+        // Completed in the meantime; just make an uncoalesced call
+        inFlight = null;
+      }
+      startDelegate(new CachingListener(key, inFlight)).sendMessage(message);
+    }
+
+    private ClientCall<ReqT, RespT> startDelegate(@Nullable CachingListener cachingListener) {
+      delegate = next.newCall(method, callOptions);
+      if (messageCompression != null) {
+        delegate.setMessageCompression(messageCompression);
+      }
+      delegate.start(cachingListener != null ? cachingListener : listener, headers);
+      int requests;
+      synchronized (this) {
+        requests = pendingRequests;
+      }
+      if (requests > 0) {
+        delegate.request(requests);
+      }
+      return delegate;
+    }
+
+    /**
+     * Fails the call locally when its deadline passes or its context is cancelled, as the call
+     * whose result it waits for has a deadline and context of its own.
+     */
+    private void startWaiting() {
+      if (context.isCancelled()) {
+        failWaiting(Contexts.statusFromCancelled(context));
+        return;
+      }
+      Deadline deadline = effectiveDeadline();
+      if (deadline != null && deadline.isExpired()) {
+        failWaiting(deadlineExceeded());
+        return;
+      }
+      Context.CancellationListener cancellationListener;
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+        if (deadline != null) {
+          deadlineFuture = deadline.runOnExpiration(new Runnable() {
+            @Override
+            public void run() {
+              failWaiting(deadlineExceeded());
+            }
+          }, getScheduler());
+        }
+        cancellationListener = new Context.CancellationListener() {
+          @Override
+          public void cancelled(Context context) {
+            failWaiting(Contexts.statusFromCancelled(context));
+          }
+        };
+        this.cancellationListener = cancellationListener;
+      }
+      context.addListener(cancellationListener, MoreExecutors.directExecutor());
+    }
+
+    @Nullable
+    private Deadline effectiveDeadline() {
+      Deadline deadline = callOptions.getDeadline();
+      Deadline contextDeadline = context.getDeadline();
+      if (deadline == null) {
+        return contextDeadline;
+      }
+      return contextDeadline == null ? deadline : deadline.minimum(contextDeadline);
+    }
+
+    private Status deadlineExceeded() {
+      return Status.DEADLINE_EXCEEDED.withDescription(
+          "Deadline exceeded while waiting for an identical call");
+    }
+
+    private void failWaiting(Status status) {
+      if (waitingFor != null) {
+        waitingFor.removeWaiter(this);
+      }
+      deliverFailure(status);
+    }
+
+    @Override
+    public void halfClose() {
+      if (delegate != null) {
+        delegate.halfClose();
+      }
+    }
+
+    @Override
+    public void cancel(@Nullable String message, @Nullable Throwable cause) {
+      if (delegate != null) {
+        delegate.cancel(message, cause);
+        return;
+      }
+      if (listener == null) {
+        synchronized (this) {
+          closeLocked();
+        }
+        return;
+      }
+      Status status = Status.CANCELLED;
+      if (message != null) {
+        status = status.withDescription(message);
+      } else {
+        status = status.withDescription("Call cancelled without message");
+      }
+      if (cause != null) {
+        status = status.withCause(cause);
+      }
+      failWaiting(status);
+    }
+
+    @Override
+    public boolean isReady() {
+      return delegate != null && delegate.isReady();
+    }
+
+    @Override
+    public Attributes getAttributes() {
+      return delegate != null ? delegate.getAttributes() : Attributes.EMPTY;
+    }
+
+    private synchronized boolean isClosed() {
+      return closed;
+    }
+
+    /** Returns {@code false} if the listener was already closed. */
+    @GuardedBy("this")
+    private boolean closeLocked() {
+      if (closed) {
+        return false;
+      }
+      closed = true;
+      pendingResponse = null;
+      if (deadlineFuture != null) {
+        deadlineFuture.cancel(false);
+        deadlineFuture = null;
+      }
+      if (cancellationListener != null) {
+        context.removeListener(cancellationListener);
+        cancellationListener = null;
+      }
+      return true;
+    }
+
+    /**
+     * Delivers a cached or shared response. Like a response from the server, it is only delivered
+     * once the listener has requested a message.
+     */
+    void deliver(byte[] response) {
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+        if (pendingRequests == 0) {
+          pendingResponse = response;
+          return;
+        }
+        closeLocked();
+      }
+      callbackExecutor.execute(new DeliverResponse(response));
+    }
+
+    void deliverFailure(final Status status) {
+      synchronized (this) {
+        if (!closeLocked()) {
+          return;
+        }
+      }
+      callbackExecutor.execute(new Runnable() {
+        @Override
+        public void run() {
+          listener.onClose(status, new Metadata());
+        }
+      });
+    }
+
+    private final class DeliverResponse implements Runnable {
+      private final byte[] response;
+
+      DeliverResponse(byte[] response) {
+        this.response = response;
+      }
+
+      @Override
+      public void run() {
+        RespT message;
+        try {
+          message = method.parseResponse(new ByteArrayInputStream(response));
+        } catch (RuntimeException e) {
+          listener.onClose(
+              Status.INTERNAL.withDescription("Failed to parse cached response").withCause(e),
+              new Metadata());
+          return;
+        }
+        listener.onHeaders(new Metadata());
+        listener.onMessage(message);
+        listener.onClose(Status.OK, new Metadata());
+      }
+    }
+
+    /** Caches the response of a call to the server and shares it with waiting calls. */
+    private final class CachingListener extends SimpleForwardingClientCallListener<RespT> {
+      private final CacheKey key;
+      @Nullable
+      private final InFlightCall inFlight;
+      private byte[] response;
+      private boolean cacheable = true;
+      private long ttlNanos = getTtlNanos(method.getFullMethodName());
+
+      CachingListener(CacheKey key, @Nullable InFlightCall inFlight) {
+        super(listener);
+        this.key = key;
+        this.inFlight = inFlight;
+      }
+
+      @Override
+      public void onHeaders(Metadata headers) {
+        readCacheControl(headers);
+        super.onHeaders(headers);
+      }
+
+      @Override
+      public void onMessage(RespT message) {
+        if (response == null) {
+          try {
+            response = toBytes(method.streamResponse(message));
+          } catch (IOException e) {
+            cacheable = false;
+          }
+        }
+        super.onMessage(message);
+      }
+
+      @Override
+      public void onClose(Status status, Metadata trailers) {
+        try {
+          readCacheControl(trailers);
+          if (status.isOk() && response != null && cacheable && ttlNanos > 0) {
+            cache.put(key, new CacheEntry(response, ticker.nanoTime() + ttlNanos));
+          }
+          if (inFlight != null) {
+            inFlight.complete(status, response);
+          }
+        } finally {
+          super.onClose(status, trailers);
+        }
+      }
+
+      private void readCacheControl(Metadata metadata) {
+        if (!honorCacheControl) {
+          return;
+        }
+        Iterable<String> values = metadata.getAll(CACHE_CONTROL_KEY);
+        if (values == null) {
+          return;
+        }
+        for (String value : values) {
+          for (String directive : CACHE_CONTROL_SPLITTER.split(value)) {
+            String lowerCase = directive.toLowerCase(Locale.US);
+            if (lowerCase.equals("no-cache") || lowerCase.equals("no-store")) {
+              cacheable = false;
+            } else if (lowerCase.startsWith("max-age=")) {
+              try {
+                ttlNanos = TimeUnit.SECONDS.toNanos(
+                    Long.parseLong(lowerCase.substring("max-age=".length()).trim()));
+              } catch (NumberFormatException e) {
+                // Ignore malformed directives
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private static byte[] toBytes(InputStream stream) throws IOException {
+    try {
+      return ByteStreams.toByteArray(stream);
+    } finally {
+      stream.close();
+    }
+  }
+}
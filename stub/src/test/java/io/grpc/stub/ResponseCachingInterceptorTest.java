@@ -0,0 +1,441 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.grpc.stub;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.io.ByteStreams;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.MethodDescriptor.MethodType;
+import io.grpc.Status;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ResponseCachingInterceptor}. */
+@RunWith(JUnit4.class)
+public class ResponseCachingInterceptorTest {
+  private static final MethodDescriptor.Marshaller<String> STRING_MARSHALLER =
+      new MethodDescriptor.Marshaller<String>() {
+        @Override
+        public InputStream stream(String value) {
+          return new ByteArrayInputStream(value.getBytes(UTF_8));
+        }
+
+        @Override
+        public String parse(InputStream stream) {
+          try {
+            return new String(ByteStreams.toByteArray(stream), UTF_8);
+          } catch (IOException e) {
+            throw new RuntimeException(e);
+          }
+        }
+      };
+
+  private static final MethodDescriptor<String, String> SAFE_METHOD =
+      MethodDescriptor.<String, String>newBuilder()
+          .setType(MethodType.UNARY)
+          .setFullMethodName("service/safe")
+          .setRequestMarshaller(STRING_MARSHALLER)
+          .setResponseMarshaller(STRING_MARSHALLER)
+          .setSafe(true)
+          .build();
+
+  private static final Metadata.Key<String> CACHE_CONTROL_KEY =
+      Metadata.Key.of("cache-control", Metadata.ASCII_STRING_MARSHALLER);
+
+  private final FakeTicker ticker = new FakeTicker();
+  private final FakeChannel channel = new FakeChannel();
+  private final QueueExecutor executor = new QueueExecutor();
+  private final ResponseCachingInterceptor interceptor = ResponseCachingInterceptor.newBuilder()
+      .setDefaultTtl(10, TimeUnit.SECONDS)
+      .setTicker(ticker)
+      .setExecutor(executor)
+      .build();
+
+  @Test
+  public void cachesSafeMethodResponses() {
+    RecordingListener first = startCall(SAFE_METHOD, "request", CallOptions.DEFAULT);
+    assertEquals(1, channel.calls.size());
+    channel.calls.get(0).respond("response", Status.OK, new Metadata());
+    assertEquals("response", first.message);
+    assertSame(Status.OK, first.status);
+
+    RecordingListener second = startCall(SAFE_METHOD, "request", CallOptions.DEFAULT);
+    assertEquals(1, channel.calls.size());
+    executor.drain();
+    assertEquals("response", second.message);
+    assertSame(Status.OK, second.status);
+
+    startCall(SAFE_METHOD, "other request", CallOptions.DEFAULT);
+    assertEquals(2, channel.calls.size());
+  }
+
+  @Test
+  public void cacheHitsAreNotDeliveredInline() {
+    startCall(SAFE_METHOD, "request", CallOptions.DEFAULT);
+    channel.calls.get(0).respond("response", Status.OK, new Metadata());
+
+    RecordingListener second = startCall(SAFE_METHOD, "request", CallOptions.DEFAULT);
+    assertNull(second.status);
+    executor.drain();
+    assertSame(Status.OK, second.status);
+  }
+
+  @Test
+  public void callExecutorIsPreferred() {
+    startCall(SAFE_METHOD, "request", CallOptions.DEFAULT);
+    channel.calls.get(0).respond("response", Status.OK, new Metadata());
+
+    QueueExecutor callExecutor = new QueueExecutor();
+    RecordingListener second =
+        startCall(SAFE_METHOD, "request", CallOptions.DEFAULT.withExecutor(callExecutor));
+    executor.drain();
+    assertNull(second.status);
+    callExecutor.drain();
+    assertSame(Status.OK, second.status);
+  }
+
+  @Test
+  public void entriesExpire() {
+    startCall(SAFE_METHOD, "request", CallOptions.DEFAULT);
+    channel.calls.get(0).respond("response", Status.OK, new Metadata());
+
+    ticker.nanos += TimeUnit.SECONDS.toNanos(10);
+    startCall(SAFE_METHOD, "request", CallOptions.DEFAULT);
+    assertEquals(2, channel.calls.size());
+  }
+
+  @Test
+  public void unsafeMethodsAreNotCached() {
+    MethodDescriptor<String, String> method = SAFE_METHOD.toBuilder().setSafe(false).build();
+    startCall(method, "request", CallOptions.DEFAULT);
+    channel.calls.get(0).respond("response", Status.OK, new Metadata());
+    startCall(method, "request", CallOptions.DEFAULT);
+
+    assertEquals(2, channel.calls.size());
+  }
+
+  @Test
+  public void bypassCache() {
+    startCall(SAFE_METHOD, "request", CallOptions.DEFAULT);
+    channel.calls.get(0).respond("response", Status.OK, new Metadata());
+    CallOptions bypass =
+        CallOptions.DEFAULT.withOption(ResponseCachingInterceptor.BYPASS_CACHE, true);
+    startCall(SAFE_METHOD, "request", bypass);
+
+    assertEquals(2, channel.calls.size());
+  }
+
+  @Test
+  public void failedResponsesAreNotCached() {
+    startCall(SAFE_METHOD, "request", CallOptions.DEFAULT);
+    channel.calls.get(0).respond(null, Status.UNAVAILABLE, new Metadata());
+    startCall(SAFE_METHOD, "request", CallOptions.DEFAULT);
+
+    assertEquals(2, channel.calls.size());
+    assertEquals(0, interceptor.getCachedResponseCount());
+  }
+
+  @Test
+  public void cacheControlNoStore() {
+    startCall(SAFE_METHOD, "request", CallOptions.DEFAULT);
+    Metadata trailers = new Metadata();
+    trailers.put(CACHE_CONTROL_KEY, "private, no-store");
+    channel.calls.get(0).respond("response", Status.OK, trailers);
+
+    assertEquals(0, interceptor.getCachedResponseCount());
+  }
+
+  @Test
+  public void cacheControlMaxAge() {
+    startCall(SAFE_METHOD, "request", CallOptions.DEFAULT);
+    Metadata trailers = new Metadata();
+    trailers.put(CACHE_CONTROL_KEY, "max-age=100");
+    channel.calls.get(0).respond("response", Status.OK, trailers);
+
+    ticker.nanos += TimeUnit.SECONDS.toNanos(50);
+    startCall(SAFE_METHOD, "request", CallOptions.DEFAULT);
+    assertEquals(1, channel.calls.size());
+  }
+
+  @Test
+  public void identicalInFlightCallsAreCoalesced() {
+    RecordingListener first = startCall(SAFE_METHOD, "request", CallOptions.DEFAULT);
+    RecordingListener second = startCall(SAFE_METHOD, "request", CallOptions.DEFAULT);
+    assertEquals(1, channel.calls.size());
+    assertNull(second.status);
+
+    channel.calls.get(0).respond("response", Status.OK, new Metadata());
+    assertEquals("response", first.message);
+    // The waiter is not called back from within the first call's listener.
+    assertNull(second.status);
+    executor.drain();
+    assertEquals("response", second.message);
+    assertSame(Status.OK, second.status);
+  }
+
+  @Test
+  public void coalescedCallsShareFailure() {
+    startCall(SAFE_METHOD, "request", CallOptions.DEFAULT);
+    RecordingListener second = startCall(SAFE_METHOD, "request", CallOptions.DEFAULT);
+
+    channel.calls.get(0).respond(null, Status.UNAVAILABLE, new Metadata());
+    executor.drain();
+    assertSame(Status.UNAVAILABLE, second.status);
+  }
+
+  @Test
+  public void coalescedCallsDoNotShareDeadlineExceeded() {
+    startCall(SAFE_METHOD, "request", CallOptions.DEFAULT);
+    RecordingListener second = startCall(SAFE_METHOD, "request", CallOptions.DEFAULT);
+
+    channel.calls.get(0).respond(null, Status.DEADLINE_EXCEEDED, new Metadata());
+    executor.drain();
+    assertEquals(Status.Code.UNAVAILABLE, second.status.getCode());
+  }
+
+  @Test
+  public void waiterFailsAtItsOwnDeadline() throws Exception {
+    startCall(SAFE_METHOD, "request", CallOptions.DEFAULT);
+    RecordingListener second = startCall(
+        SAFE_METHOD, "request", CallOptions.DEFAULT.withDeadlineAfter(10, TimeUnit.MILLISECONDS));
+    assertTrue(executor.runNext(5, TimeUnit.SECONDS));
+    assertTrue(second.closed.await(5, TimeUnit.SECONDS));
+    assertEquals(Status.Code.DEADLINE_EXCEEDED, second.status.getCode());
+
+    channel.calls.get(0).respond("response", Status.OK, new Metadata());
+    executor.drain();
+    assertNull(second.message);
+    assertEquals(1, channel.calls.size());
+  }
+
+  @Test
+  public void waiterWithExpiredDeadlineFailsImmediately() {
+    startCall(SAFE_METHOD, "request", CallOptions.DEFAULT);
+    CallOptions expired = CallOptions.DEFAULT.withDeadline(Deadline.after(-1, TimeUnit.SECONDS));
+    RecordingListener second = startCall(SAFE_METHOD, "request", expired);
+    executor.drain();
+    assertEquals(Status.Code.DEADLINE_EXCEEDED, second.status.getCode());
+  }
+
+  @Test
+  public void waiterFailsWhenItsContextIsCancelled() {
+    startCall(SAFE_METHOD, "request", CallOptions.DEFAULT);
+    Context.CancellableContext context = Context.current().withCancellation();
+    RecordingListener second;
+    Context previous = context.attach();
+    try {
+      second = startCall(SAFE_METHOD, "request", CallOptions.DEFAULT);
+    } finally {
+      context.detach(previous);
+    }
+    assertNull(second.status);
+
+    context.cancel(null);
+    executor.drain();
+    assertEquals(Status.Code.CANCELLED, second.status.getCode());
+    channel.calls.get(0).respond("response", Status.OK, new Metadata());
+    executor.drain();
+    assertNull(second.message);
+  }
+
+  @Test
+  public void responseDeliveredOnlyWhenRequested() {
+    startCall(SAFE_METHOD, "request", CallOptions.DEFAULT);
+    RecordingListener second = new RecordingListener();
+    ClientCall<String, String> call =
+        interceptor.interceptCall(SAFE_METHOD, CallOptions.DEFAULT, channel);
+    call.start(second, new Metadata());
+    call.sendMessage("request");
+    call.halfClose();
+
+    channel.calls.get(0).respond("response", Status.OK, new Metadata());
+    executor.drain();
+    assertNull(second.message);
+    assertNull(second.status);
+
+    call.request(1);
+    executor.drain();
+    assertEquals("response", second.message);
+    assertSame(Status.OK, second.status);
+  }
+
+  @Test
+  public void cancelWhileWaiting() {
+    startCall(SAFE_METHOD, "request", CallOptions.DEFAULT);
+    RecordingListener second = new RecordingListener();
+    ClientCall<String, String> call =
+        interceptor.interceptCall(SAFE_METHOD, CallOptions.DEFAULT, channel);
+    call.start(second, new Metadata());
+    call.sendMessage("request");
+    call.cancel("gave up", null);
+    executor.drain();
+    assertEquals(Status.Code.CANCELLED, second.status.getCode());
+
+    channel.calls.get(0).respond("response", Status.OK, new Metadata());
+    executor.drain();
+    assertNull(second.message);
+  }
+
+  @Test
+  public void lruEviction() {
+    ResponseCachingInterceptor interceptor = ResponseCachingInterceptor.newBuilder()
+        .setMaxCacheSizeBytes(20)
+        .setTicker(ticker)
+        .build();
+    for (String request : new String[] {"aaaa", "bbbb", "cccc"}) {
+      ClientCall<String, String> call =
+          interceptor.interceptCall(SAFE_METHOD, CallOptions.DEFAULT, channel);
+      call.start(new RecordingListener(), new Metadata());
+      call.sendMessage(request);
+      call.halfClose();
+      channel.calls.get(channel.calls.size() - 1).respond("012345", Status.OK, new Metadata());
+    }
+
+    assertEquals(2, interceptor.getCachedResponseCount());
+  }
+
+  private RecordingListener startCall(
+      MethodDescriptor<String, String> method, String request, CallOptions callOptions) {
+    RecordingListener listener = new RecordingListener();
+    ClientCall<String, String> call = interceptor.interceptCall(method, callOptions, channel);
+    call.start(listener, new Metadata());
+    call.request(2);
+    call.sendMessage(request);
+    call.halfClose();
+    return listener;
+  }
+
+  private static final class RecordingListener extends ClientCall.Listener<String> {
+    final CountDownLatch closed = new CountDownLatch(1);
+    volatile String message;
+    volatile Status status;
+
+    @Override
+    public void onMessage(String message) {
+      this.message = message;
+    }
+
+    @Override
+    public void onClose(Status status, Metadata trailers) {
+      this.status = status;
+      closed.countDown();
+    }
+  }
+
+  /** Runs tasks only when asked to, so tests can tell whether a callback ran inline. */
+  private static final class QueueExecutor implements Executor {
+    final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+
+    @Override
+    public void execute(Runnable task) {
+      tasks.add(task);
+    }
+
+    void drain() {
+      Runnable task;
+      while ((task = tasks.poll()) != null) {
+        task.run();
+      }
+    }
+
+    boolean runNext(long timeout, TimeUnit unit) throws InterruptedException {
+      Runnable task = tasks.poll(timeout, unit);
+      if (task == null) {
+        return false;
+      }
+      task.run();
+      return true;
+    }
+  }
+
+  private static final class FakeTicker extends Deadline.Ticker {
+    long nanos;
+
+    @Override
+    public long nanoTime() {
+      return nanos;
+    }
+  }
+
+  private static final class FakeChannel extends Channel {
+    final List<FakeCall> calls = new ArrayList<>();
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(
+        MethodDescriptor<ReqT, RespT> method, CallOptions callOptions) {
+      FakeCall call = new FakeCall();
+      calls.add(call);
+      return (ClientCall<ReqT, RespT>) call;
+    }
+
+    @Override
+    public String authority() {
+      return "fake";
+    }
+  }
+
+  private static final class FakeCall extends ClientCall<String, String> {
+    Listener<String> listener;
+
+    void respond(String response, Status status, Metadata trailers) {
+      listener.onHeaders(new Metadata());
+      if (response != null) {
+        listener.onMessage(response);
+      }
+      listener.onClose(status, trailers);
+    }
+
+    @Override
+    public void start(Listener<String> listener, Metadata headers) {
+      this.listener = listener;
+    }
+
+    @Override
+    public void request(int numMessages) {}
+
+    @Override
+    public void cancel(String message, Throwable cause) {}
+
+    @Override
+    public void halfClose() {}
+
+    @Override
+    public void sendMessage(String message) {}
+  }
+}
@@ -0,0 +1,427 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.grpc.ConnectivityState.CONNECTING;
+import static io.grpc.ConnectivityState.IDLE;
+import static io.grpc.ConnectivityState.READY;
+import static io.grpc.ConnectivityState.SHUTDOWN;
+import static io.grpc.ConnectivityState.TRANSIENT_FAILURE;
+
+import com.github.udpa.udpa.data.orca.v1.OrcaLoadReport;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+import io.grpc.Attributes;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ClientStreamTracer.StreamInfo;
+import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.xds.LeastRequestLoadBalancerProvider.LeastRequestConfig;
+import io.grpc.xds.OrcaPerRequestUtil.OrcaPerRequestReportListener;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A {@link LoadBalancer} that picks, for each RPC, the least loaded of a few randomly sampled
+ * READY subchannels ("power of two choices"). The load of a subchannel is the number of RPCs
+ * currently in flight on it, optionally scaled by the utilization its backend reports via
+ * per-request ORCA load reports.
+ */
+final class LeastRequestLoadBalancer extends LoadBalancer {
+  @VisibleForTesting
+  static final Attributes.Key<Ref<ConnectivityStateInfo>> STATE_INFO =
+      Attributes.Key.create("state-info");
+  @VisibleForTesting
+  static final Attributes.Key<SubchannelLoad> LOAD = Attributes.Key.create("subchannel-load");
+
+  private static final Status EMPTY_OK = Status.OK.withDescription("no subchannels ready");
+
+  private final Helper helper;
+  private final ThreadSafeRandom random;
+  private final Map<EquivalentAddressGroup, Subchannel> subchannels = new HashMap<>();
+
+  private LeastRequestConfig config = LeastRequestConfig.DEFAULT;
+  private ConnectivityState currentState;
+  private LeastRequestPicker currentPicker = new EmptyPicker(EMPTY_OK);
+
+  LeastRequestLoadBalancer(Helper helper) {
+    this(helper, ThreadSafeRandom.ThreadSafeRandomImpl.instance);
+  }
+
+  @VisibleForTesting
+  LeastRequestLoadBalancer(Helper helper, ThreadSafeRandom random) {
+    this.helper = checkNotNull(helper, "helper");
+    this.random = checkNotNull(random, "random");
+  }
+
+  @Override
+  public void handleResolvedAddresses(ResolvedAddresses resolvedAddresses) {
+    Object lbConfig = resolvedAddresses.getLoadBalancingPolicyConfig();
+    if (lbConfig instanceof LeastRequestConfig) {
+      config = (LeastRequestConfig) lbConfig;
+    }
+    List<EquivalentAddressGroup> servers = resolvedAddresses.getAddresses();
+    Map<EquivalentAddressGroup, EquivalentAddressGroup> latestAddrs = stripAttrs(servers);
+    Set<EquivalentAddressGroup> removedAddrs =
+        setsDifference(subchannels.keySet(), latestAddrs.keySet());
+
+    for (Map.Entry<EquivalentAddressGroup, EquivalentAddressGroup> latestEntry :
+        latestAddrs.entrySet()) {
+      EquivalentAddressGroup strippedAddressGroup = latestEntry.getKey();
+      EquivalentAddressGroup originalAddressGroup = latestEntry.getValue();
+      Subchannel existingSubchannel = subchannels.get(strippedAddressGroup);
+      if (existingSubchannel != null) {
+        // EAG's Attributes may have changed.
+        existingSubchannel.updateAddresses(Collections.singletonList(originalAddressGroup));
+        continue;
+      }
+      Attributes subchannelAttrs = Attributes.newBuilder()
+          .set(STATE_INFO, new Ref<>(ConnectivityStateInfo.forNonError(IDLE)))
+          .set(LOAD, new SubchannelLoad())
+          .build();
+      final Subchannel subchannel = checkNotNull(
+          helper.createSubchannel(CreateSubchannelArgs.newBuilder()
+              .setAddresses(originalAddressGroup)
+              .setAttributes(subchannelAttrs)
+              .build()),
+          "subchannel");
+      subchannel.start(new SubchannelStateListener() {
+        @Override
+        public void onSubchannelState(ConnectivityStateInfo state) {
+          processSubchannelState(subchannel, state);
+        }
+      });
+      subchannels.put(strippedAddressGroup, subchannel);
+      subchannel.requestConnection();
+    }
+
+    List<Subchannel> removedSubchannels = new ArrayList<>();
+    for (EquivalentAddressGroup addressGroup : removedAddrs) {
+      removedSubchannels.add(subchannels.remove(addressGroup));
+    }
+
+    // Update the picker before shutting down the subchannels, to reduce the chance of the race
+    // between picking a subchannel and shutting it down.
+    updateBalancingState();
+
+    for (Subchannel removedSubchannel : removedSubchannels) {
+      shutdownSubchannel(removedSubchannel);
+    }
+  }
+
+  @Override
+  public void handleNameResolutionError(Status error) {
+    // ready pickers aren't affected by status changes
+    updateBalancingState(TRANSIENT_FAILURE,
+        currentPicker instanceof ReadyPicker ? currentPicker : new EmptyPicker(error));
+  }
+
+  private void processSubchannelState(Subchannel subchannel, ConnectivityStateInfo stateInfo) {
+    if (subchannels.get(stripAttrs(subchannel.getAddresses())) != subchannel) {
+      return;
+    }
+    if (stateInfo.getState() == IDLE) {
+      subchannel.requestConnection();
+    }
+    Ref<ConnectivityStateInfo> subchannelStateRef = getSubchannelStateInfoRef(subchannel);
+    if (subchannelStateRef.value.getState().equals(TRANSIENT_FAILURE)) {
+      if (stateInfo.getState().equals(CONNECTING) || stateInfo.getState().equals(IDLE)) {
+        return;
+      }
+    }
+    subchannelStateRef.value = stateInfo;
+    updateBalancingState();
+  }
+
+  private void shutdownSubchannel(Subchannel subchannel) {
+    subchannel.shutdown();
+    getSubchannelStateInfoRef(subchannel).value = ConnectivityStateInfo.forNonError(SHUTDOWN);
+  }
+
+  @Override
+  public void shutdown() {
+    for (Subchannel subchannel : getSubchannels()) {
+      shutdownSubchannel(subchannel);
+    }
+    subchannels.clear();
+  }
+
+  /**
+   * Updates picker with the list of active subchannels (state == READY).
+   */
+  @SuppressWarnings("ReferenceEquality")
+  private void updateBalancingState() {
+    List<Subchannel> activeList = new ArrayList<>(subchannels.size());
+    for (Subchannel subchannel : getSubchannels()) {
+      if (getSubchannelStateInfoRef(subchannel).value.getState() == READY) {
+        activeList.add(subchannel);
+      }
+    }
+    if (activeList.isEmpty()) {
+      // No READY subchannels, determine aggregate state and error status
+      boolean isConnecting = false;
+      Status aggStatus = EMPTY_OK;
+      for (Subchannel subchannel : getSubchannels()) {
+        ConnectivityStateInfo stateInfo = getSubchannelStateInfoRef(subchannel).value;
+        if (stateInfo.getState() == CONNECTING || stateInfo.getState() == IDLE) {
+          isConnecting = true;
+        }
+        if (aggStatus == EMPTY_OK || !aggStatus.isOk()) {
+          aggStatus = stateInfo.getStatus();
+        }
+      }
+      updateBalancingState(isConnecting ? CONNECTING : TRANSIENT_FAILURE,
+          new EmptyPicker(aggStatus));
+    } else {
+      updateBalancingState(READY,
+          new ReadyPicker(activeList, config.choiceCount, config.enableOrcaWeighting, random));
+    }
+  }
+
+  private void updateBalancingState(ConnectivityState state, LeastRequestPicker picker) {
+    if (state != currentState || !picker.isEquivalentTo(currentPicker)) {
+      helper.updateBalancingState(state, picker);
+      currentState = state;
+      currentPicker = picker;
+    }
+  }
+
+  /**
+   * Converts list of {@link EquivalentAddressGroup} to {@link EquivalentAddressGroup} set and
+   * remove all attributes. The values are the original EAGs.
+   */
+  private static Map<EquivalentAddressGroup, EquivalentAddressGroup> stripAttrs(
+      List<EquivalentAddressGroup> groupList) {
+    Map<EquivalentAddressGroup, EquivalentAddressGroup> addrs = new HashMap<>(groupList.size() * 2);
+    for (EquivalentAddressGroup group : groupList) {
+      addrs.put(stripAttrs(group), group);
+    }
+    return addrs;
+  }
+
+  private static EquivalentAddressGroup stripAttrs(EquivalentAddressGroup eag) {
+    return new EquivalentAddressGroup(eag.getAddresses());
+  }
+
+  @VisibleForTesting
+  Collection<Subchannel> getSubchannels() {
+    return subchannels.values();
+  }
+
+  private static Ref<ConnectivityStateInfo> getSubchannelStateInfoRef(Subchannel subchannel) {
+    return checkNotNull(subchannel.getAttributes().get(STATE_INFO), "STATE_INFO");
+  }
+
+  private static SubchannelLoad getSubchannelLoad(Subchannel subchannel) {
+    return checkNotNull(subchannel.getAttributes().get(LOAD), "LOAD");
+  }
+
+  private static <T> Set<T> setsDifference(Set<T> a, Set<T> b) {
+    Set<T> aCopy = new HashSet<>(a);
+    aCopy.removeAll(b);
+    return aCopy;
+  }
+
+  /**
+   * Load of a single subchannel: the number of RPCs in flight on it and the utilization last
+   * reported by its backend. Shared by all pickers created for the subchannel, so counts survive
+   * picker updates.
+   */
+  @ThreadSafe
+  @VisibleForTesting
+  static final class SubchannelLoad implements OrcaPerRequestReportListener {
+    // Keeps a backend reporting full utilization pickable, just heavily penalized.
+    private static final double MIN_HEADROOM = 0.05;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double utilization;
+    private final ClientStreamTracer.Factory countingTracerFactory =
+        new ClientStreamTracer.Factory() {
+          @Override
+          public ClientStreamTracer newClientStreamTracer(StreamInfo info, Metadata headers) {
+            return new InFlightTracer();
+          }
+        };
+    private final ClientStreamTracer.Factory orcaTracerFactory =
+        OrcaPerRequestUtil.getInstance().newOrcaClientStreamTracerFactory(
+            countingTracerFactory, this);
+
+    @Override
+    public void onLoadReport(OrcaLoadReport report) {
+      utilization = report.getCpuUtilization();
+    }
+
+    int getInFlight() {
+      return inFlight.get();
+    }
+
+    /**
+     * Returns the score used to compare subchannels, lower is better. Counts the RPC about to be
+     * started so an idle but saturated backend doesn't look free.
+     */
+    double score(boolean orcaWeighting) {
+      double requests = inFlight.get() + 1;
+      if (!orcaWeighting) {
+        return requests;
+      }
+      return requests / Math.max(1 - utilization, MIN_HEADROOM);
+    }
+
+    ClientStreamTracer.Factory tracerFactory(boolean orcaWeighting) {
+      return orcaWeighting ? orcaTracerFactory : countingTracerFactory;
+    }
+
+    private final class InFlightTracer extends ClientStreamTracer {
+      InFlightTracer() {
+        inFlight.incrementAndGet();
+      }
+
+      @Override
+      public void streamClosed(Status status) {
+        inFlight.decrementAndGet();
+      }
+    }
+  }
+
+  // Only subclasses are ReadyPicker or EmptyPicker
+  private abstract static class LeastRequestPicker extends SubchannelPicker {
+    abstract boolean isEquivalentTo(LeastRequestPicker picker);
+  }
+
+  @VisibleForTesting
+  static final class ReadyPicker extends LeastRequestPicker {
+    private final List<Subchannel> list; // non-empty
+    private final int choiceCount;
+    private final boolean orcaWeighting;
+    private final ThreadSafeRandom random;
+
+    ReadyPicker(
+        List<Subchannel> list, int choiceCount, boolean orcaWeighting, ThreadSafeRandom random) {
+      checkArgument(!list.isEmpty(), "empty list");
+      this.list = list;
+      this.choiceCount = choiceCount;
+      this.orcaWeighting = orcaWeighting;
+      this.random = random;
+    }
+
+    @Override
+    public PickResult pickSubchannel(PickSubchannelArgs args) {
+      Subchannel picked = nextSubchannel();
+      return PickResult.withSubchannel(
+          picked, getSubchannelLoad(picked).tracerFactory(orcaWeighting));
+    }
+
+    private Subchannel nextSubchannel() {
+      int size = list.size();
+      Subchannel candidate = list.get(random.nextInt(size));
+      if (size == 1) {
+        return candidate;
+      }
+      double candidateScore = getSubchannelLoad(candidate).score(orcaWeighting);
+      for (int i = 1; i < choiceCount; i++) {
+        Subchannel sampled = list.get(random.nextInt(size));
+        double sampledScore = getSubchannelLoad(sampled).score(orcaWeighting);
+        if (sampledScore < candidateScore) {
+          candidate = sampled;
+          candidateScore = sampledScore;
+        }
+      }
+      return candidate;
+    }
+
+    @VisibleForTesting
+    List<Subchannel> getList() {
+      return list;
+    }
+
+    @Override
+    boolean isEquivalentTo(LeastRequestPicker picker) {
+      if (!(picker instanceof ReadyPicker)) {
+        return false;
+      }
+      ReadyPicker other = (ReadyPicker) picker;
+      // the lists cannot contain duplicate subchannels
+      return other == this
+          || (choiceCount == other.choiceCount
+              && orcaWeighting == other.orcaWeighting
+              && list.size() == other.list.size()
+              && new HashSet<>(list).containsAll(other.list));
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(ReadyPicker.class)
+          .add("list", list)
+          .add("choiceCount", choiceCount)
+          .add("orcaWeighting", orcaWeighting)
+          .toString();
+    }
+  }
+
+  @VisibleForTesting
+  static final class EmptyPicker extends LeastRequestPicker {
+    private final Status status;
+
+    EmptyPicker(@Nonnull Status status) {
+      this.status = checkNotNull(status, "status");
+    }
+
+    @Override
+    public PickResult pickSubchannel(PickSubchannelArgs args) {
+      return status.isOk() ? PickResult.withNoResult() : PickResult.withError(status);
+    }
+
+    @Override
+    boolean isEquivalentTo(LeastRequestPicker picker) {
+      return picker instanceof EmptyPicker && (Objects.equal(status, ((EmptyPicker) picker).status)
+          || (status.isOk() && ((EmptyPicker) picker).status.isOk()));
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(EmptyPicker.class).add("status", status).toString();
+    }
+  }
+
+  /**
+   * A lighter weight Reference than AtomicReference.
+   */
+  @VisibleForTesting
+  static final class Ref<T> {
+    T value;
+
+    Ref(T value) {
+      this.value = value;
+    }
+  }
+}
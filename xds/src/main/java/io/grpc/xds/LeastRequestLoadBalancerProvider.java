@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.MoreObjects;
+import io.grpc.Internal;
+import io.grpc.LoadBalancer;
+import io.grpc.LoadBalancer.Helper;
+import io.grpc.LoadBalancerProvider;
+import io.grpc.LoadBalancerRegistry;
+import io.grpc.NameResolver.ConfigOrError;
+import io.grpc.Status;
+import io.grpc.internal.JsonUtil;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The provider for the least_request balancing policy.  This class should not be directly
+ * referenced in code.  The policy should be accessed through {@link
+ * LoadBalancerRegistry#getProvider} with the name "least_request_experimental".
+ */
+@Internal
+public final class LeastRequestLoadBalancerProvider extends LoadBalancerProvider {
+
+  static final int DEFAULT_CHOICE_COUNT = 2;
+  // Sampling more subchannels than this gives diminishing returns and makes each pick slower.
+  static final int MAX_CHOICE_COUNT = 10;
+
+  @Override
+  public boolean isAvailable() {
+    return true;
+  }
+
+  @Override
+  public int getPriority() {
+    return 5;
+  }
+
+  @Override
+  public String getPolicyName() {
+    return XdsLbPolicies.LEAST_REQUEST_POLICY_NAME;
+  }
+
+  @Override
+  public LoadBalancer newLoadBalancer(Helper helper) {
+    return new LeastRequestLoadBalancer(helper);
+  }
+
+  @Override
+  public ConfigOrError parseLoadBalancingPolicyConfig(Map<String, ?> rawConfig) {
+    try {
+      Integer choiceCount = JsonUtil.getNumberAsInteger(rawConfig, "choiceCount");
+      if (choiceCount == null) {
+        choiceCount = DEFAULT_CHOICE_COUNT;
+      }
+      if (choiceCount < 2) {
+        return ConfigOrError.fromError(Status.INTERNAL.withDescription(
+            "Wrong choiceCount in least_request LB policy:\n " + rawConfig));
+      }
+      Boolean enableOrcaWeighting = JsonUtil.getBoolean(rawConfig, "enableOrcaWeighting");
+      return ConfigOrError.fromConfig(new LeastRequestConfig(
+          Math.min(choiceCount, MAX_CHOICE_COUNT),
+          enableOrcaWeighting != null && enableOrcaWeighting));
+    } catch (RuntimeException e) {
+      return ConfigOrError.fromError(
+          Status.fromThrowable(e).withDescription(
+              "Failed to parse least_request LB config: " + rawConfig));
+    }
+  }
+
+  /** The lb config for LeastRequestLoadBalancer. */
+  static final class LeastRequestConfig {
+    static final LeastRequestConfig DEFAULT = new LeastRequestConfig(DEFAULT_CHOICE_COUNT, false);
+
+    final int choiceCount;
+    final boolean enableOrcaWeighting;
+
+    @VisibleForTesting
+    LeastRequestConfig(int choiceCount, boolean enableOrcaWeighting) {
+      this.choiceCount = choiceCount;
+      this.enableOrcaWeighting = enableOrcaWeighting;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      LeastRequestConfig that = (LeastRequestConfig) o;
+      return choiceCount == that.choiceCount && enableOrcaWeighting == that.enableOrcaWeighting;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(choiceCount, enableOrcaWeighting);
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("choiceCount", choiceCount)
+          .add("enableOrcaWeighting", enableOrcaWeighting)
+          .toString();
+    }
+  }
+}
@@ -61,9 +61,22 @@ final class RouteMatch {
    * <p>Match is not deterministic if a runtime fraction match rule presents in this RouteMatch.
    */
   boolean matches(String path, Map<String, Set<String>> headers) {
-    if (!pathMatch.matches(path)) {
-      return false;
-    }
+    return pathMatch.matches(path) && matchesHeadersAndFraction(headers);
+  }
+
+  /**
+   * Returns {@code true} if the given path passes the path matching rule of this RouteMatch.
+   * Unlike the other rules, the result only depends on the path, so it can be cached per method.
+   */
+  boolean matchesPath(String path) {
+    return pathMatch.matches(path);
+  }
+
+  /**
+   * Returns {@code true} if the given headers pass the header rules and the runtime fraction rule
+   * (if any) of this RouteMatch.
+   */
+  boolean matchesHeadersAndFraction(Map<String, Set<String>> headers) {
     for (HeaderMatcher headerMatcher : headerMatchers) {
       if (!headerMatcher.matchesValue(headers.get(headerMatcher.getName()))) {
         return false;
@@ -72,6 +85,14 @@ final class RouteMatch {
     return fractionMatch == null || fractionMatch.matches();
   }
 
+  /**
+   * Returns {@code true} if this RouteMatch only has a path matching rule, so whether it matches a
+   * request is fully determined by the request's path.
+   */
+  boolean isPathOnly() {
+    return headerMatchers.isEmpty() && fractionMatch == null;
+  }
+
   PathMatcher getPathMatch() {
     return pathMatch;
   }
@@ -21,6 +21,7 @@ final class XdsLbPolicies {
   static final String EDS_POLICY_NAME = "eds_experimental";
   static final String WEIGHTED_TARGET_POLICY_NAME = "weighted_target_experimental";
   static final String XDS_ROUTING_POLICY_NAME = "xds_routing_experimental";
+  static final String LEAST_REQUEST_POLICY_NAME = "least_request_experimental";
 
   private XdsLbPolicies() {}
 }
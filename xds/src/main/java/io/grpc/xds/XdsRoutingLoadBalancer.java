@@ -37,16 +37,20 @@ import io.grpc.SynchronizationContext.ScheduledHandle;
 import io.grpc.internal.ServiceConfigUtil.PolicySelection;
 import io.grpc.util.ForwardingLoadBalancerHelper;
 import io.grpc.util.GracefulSwitchLoadBalancer;
+import io.grpc.xds.RouteMatch.HeaderMatcher;
 import io.grpc.xds.XdsLogger.XdsLogLevel;
 import io.grpc.xds.XdsRoutingLoadBalancerProvider.Route;
 import io.grpc.xds.XdsRoutingLoadBalancerProvider.XdsRoutingConfig;
 import io.grpc.xds.XdsSubchannelPickers.ErrorPicker;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
@@ -251,40 +255,130 @@ final class XdsRoutingLoadBalancer extends LoadBalancer {
     }
   }
 
+  /**
+   * A picker that routes RPCs to the child picker of the first route that matches.
+   *
+   * <p>Routes are compiled when the picker is created: path rules are evaluated at most once per
+   * method and the per-method list of routes whose path matches is cached, only the headers
+   * referenced by some route are looked up, and they are looked up only if a candidate route
+   * actually has header rules. Candidates after the first path-only route are dropped, so a method
+   * whose first candidate route has no header or fraction rules is routed without examining any
+   * headers.
+   */
   @VisibleForTesting
   static final class RouteMatchingSubchannelPicker extends SubchannelPicker {
+    @VisibleForTesting
+    static final int MAX_CACHED_METHODS = 1024;
+
+    private static final int[] NO_CANDIDATES = new int[0];
 
     @VisibleForTesting
     final Map<RouteMatch, SubchannelPicker> routePickers;
+    private final RouteMatch[] routeMatches;
+    private final SubchannelPicker[] pickers;
+    // Keys of the ASCII headers referenced by header rules of any route.
+    private final List<Metadata.Key<String>> referencedHeaderKeys;
+    // Indexes (into routeMatches) of routes whose path rule matches the method, in route order.
+    private final ConcurrentMap<String, int[]> candidatesByMethod = new ConcurrentHashMap<>();
 
     RouteMatchingSubchannelPicker(Map<RouteMatch, SubchannelPicker> routePickers) {
       this.routePickers = routePickers;
+      routeMatches = new RouteMatch[routePickers.size()];
+      pickers = new SubchannelPicker[routePickers.size()];
+      Map<String, Metadata.Key<String>> headerKeys = new LinkedHashMap<>();
+      int i = 0;
+      for (Map.Entry<RouteMatch, SubchannelPicker> entry : routePickers.entrySet()) {
+        routeMatches[i] = entry.getKey();
+        pickers[i] = entry.getValue();
+        i++;
+        for (HeaderMatcher headerMatcher : entry.getKey().getHeaderMatchers()) {
+          String name = headerMatcher.getName();
+          if (headerKeys.containsKey(name) || name.endsWith(Metadata.BINARY_HEADER_SUFFIX)) {
+            continue;
+          }
+          Metadata.Key<String> key = asciiKeyOrNull(name);
+          if (key != null) {
+            headerKeys.put(name, key);
+          }
+        }
+      }
+      referencedHeaderKeys = ImmutableList.copyOf(headerKeys.values());
     }
 
     @Override
     public PickResult pickSubchannel(PickSubchannelArgs args) {
-      // Index ASCII headers by keys.
+      int[] candidates = getCandidates(args.getMethodDescriptor().getFullMethodName());
+      Map<String, Set<String>> asciiHeaders = null;
+      for (int index : candidates) {
+        RouteMatch routeMatch = routeMatches[index];
+        if (!routeMatch.isPathOnly()) {
+          if (asciiHeaders == null) {
+            asciiHeaders = indexReferencedHeaders(args.getHeaders());
+          }
+          if (!routeMatch.matchesHeadersAndFraction(asciiHeaders)) {
+            continue;
+          }
+        }
+        return pickers[index].pickSubchannel(args);
+      }
+      return PickResult.withError(Status.UNAVAILABLE.withDescription("no matching route found"));
+    }
+
+    private int[] getCandidates(String fullMethodName) {
+      int[] candidates = candidatesByMethod.get(fullMethodName);
+      if (candidates != null) {
+        return candidates;
+      }
+      String path = "/" + fullMethodName;
+      int count = 0;
+      int[] matched = new int[routeMatches.length];
+      for (int i = 0; i < routeMatches.length; i++) {
+        if (routeMatches[i].matchesPath(path)) {
+          matched[count++] = i;
+          // Routes after a path-only match can never be chosen.
+          if (routeMatches[i].isPathOnly()) {
+            break;
+          }
+        }
+      }
+      candidates = count == 0 ? NO_CANDIDATES : Arrays.copyOf(matched, count);
+      // Bound the cache so that a client calling many distinct methods does not grow it without
+      // limit; uncached methods simply re-evaluate the path rules.
+      if (candidatesByMethod.size() < MAX_CACHED_METHODS) {
+        candidatesByMethod.putIfAbsent(fullMethodName, candidates);
+      }
+      return candidates;
+    }
+
+    private Map<String, Set<String>> indexReferencedHeaders(Metadata headers) {
       Map<String, Set<String>> asciiHeaders = new HashMap<>();
-      Metadata headers = args.getHeaders();
-      for (String headerName : headers.keys()) {
-        if (headerName.endsWith(Metadata.BINARY_HEADER_SUFFIX)) {
+      for (Metadata.Key<String> key : referencedHeaderKeys) {
+        Iterable<String> values = headers.getAll(key);
+        if (values == null) {
           continue;
         }
         Set<String> headerValues = new HashSet<>();
-        Metadata.Key<String> key = Metadata.Key.of(headerName, Metadata.ASCII_STRING_MARSHALLER);
-        for (String value : headers.getAll(key)) {
+        for (String value : values) {
           headerValues.add(value);
         }
-        asciiHeaders.put(headerName, headerValues);
+        asciiHeaders.put(key.name(), headerValues);
       }
-      for (Map.Entry<RouteMatch, SubchannelPicker> entry : routePickers.entrySet()) {
-        RouteMatch routeMatch = entry.getKey();
-        if (routeMatch.matches(
-            "/" + args.getMethodDescriptor().getFullMethodName(), asciiHeaders)) {
-          return entry.getValue().pickSubchannel(args);
-        }
+      return asciiHeaders;
+    }
+
+    /**
+     * Returns the key for the given header name, or {@code null} if no header with exactly that
+     * name can be present in {@link Metadata} (header names are always lower case there).
+     */
+    @Nullable
+    private static Metadata.Key<String> asciiKeyOrNull(String name) {
+      Metadata.Key<String> key;
+      try {
+        key = Metadata.Key.of(name, Metadata.ASCII_STRING_MARSHALLER);
+      } catch (IllegalArgumentException e) {
+        return null;
       }
-      return PickResult.withError(Status.UNAVAILABLE.withDescription("no matching route found"));
+      return key.name().equals(name) ? key : null;
     }
   }
 }
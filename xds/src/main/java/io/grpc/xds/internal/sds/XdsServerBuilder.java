@@ -57,6 +57,18 @@ public final class XdsServerBuilder extends ServerBuilder<XdsServerBuilder> {
     return this;
   }
 
+  @Override
+  public XdsServerBuilder adaptiveConcurrencyLimit(int initialLimit, int maxLimit) {
+    delegate.adaptiveConcurrencyLimit(initialLimit, maxLimit);
+    return this;
+  }
+
+  @Override
+  public XdsServerBuilder virtualThreadExecutor() {
+    delegate.virtualThreadExecutor();
+    return this;
+  }
+
   @Override
   public XdsServerBuilder directExecutor() {
     delegate.directExecutor();
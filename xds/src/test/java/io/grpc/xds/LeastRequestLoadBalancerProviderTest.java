@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import io.grpc.LoadBalancerProvider;
+import io.grpc.LoadBalancerRegistry;
+import io.grpc.NameResolver.ConfigOrError;
+import io.grpc.Status;
+import io.grpc.internal.JsonParser;
+import io.grpc.xds.LeastRequestLoadBalancerProvider.LeastRequestConfig;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link LeastRequestLoadBalancerProvider}. */
+@RunWith(JUnit4.class)
+public class LeastRequestLoadBalancerProviderTest {
+  private final LeastRequestLoadBalancerProvider provider = new LeastRequestLoadBalancerProvider();
+
+  @Test
+  public void providesLoadBalancer() {
+    LoadBalancerProvider registered = LoadBalancerRegistry.getDefaultRegistry()
+        .getProvider(XdsLbPolicies.LEAST_REQUEST_POLICY_NAME);
+    assertThat(registered).isInstanceOf(LeastRequestLoadBalancerProvider.class);
+  }
+
+  @Test
+  public void parseConfig_defaults() throws Exception {
+    ConfigOrError configOrError = provider.parseLoadBalancingPolicyConfig(parse("{}"));
+    assertThat(configOrError.getConfig()).isEqualTo(LeastRequestConfig.DEFAULT);
+  }
+
+  @Test
+  public void parseConfig() throws Exception {
+    ConfigOrError configOrError = provider.parseLoadBalancingPolicyConfig(
+        parse("{\"choiceCount\": 3, \"enableOrcaWeighting\": true}"));
+    assertThat(configOrError.getConfig()).isEqualTo(new LeastRequestConfig(3, true));
+  }
+
+  @Test
+  public void parseConfig_choiceCountCapped() throws Exception {
+    ConfigOrError configOrError =
+        provider.parseLoadBalancingPolicyConfig(parse("{\"choiceCount\": 100}"));
+    assertThat(configOrError.getConfig()).isEqualTo(
+        new LeastRequestConfig(LeastRequestLoadBalancerProvider.MAX_CHOICE_COUNT, false));
+  }
+
+  @Test
+  public void parseConfig_choiceCountTooSmall() throws Exception {
+    ConfigOrError configOrError =
+        provider.parseLoadBalancingPolicyConfig(parse("{\"choiceCount\": 1}"));
+    assertThat(configOrError.getError()).isNotNull();
+    assertThat(configOrError.getError().getCode()).isEqualTo(Status.Code.INTERNAL);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, ?> parse(String json) throws Exception {
+    return (Map<String, ?>) JsonParser.parse(json);
+  }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2020 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import static com.google.common.truth.Truth.assertThat;
+import static io.grpc.ConnectivityState.CONNECTING;
+import static io.grpc.ConnectivityState.READY;
+import static io.grpc.ConnectivityState.TRANSIENT_FAILURE;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.github.udpa.udpa.data.orca.v1.OrcaLoadReport;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ClientStreamTracer.StreamInfo;
+import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer.CreateSubchannelArgs;
+import io.grpc.LoadBalancer.Helper;
+import io.grpc.LoadBalancer.PickResult;
+import io.grpc.LoadBalancer.PickSubchannelArgs;
+import io.grpc.LoadBalancer.ResolvedAddresses;
+import io.grpc.LoadBalancer.Subchannel;
+import io.grpc.LoadBalancer.SubchannelPicker;
+import io.grpc.LoadBalancer.SubchannelStateListener;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.xds.LeastRequestLoadBalancer.EmptyPicker;
+import io.grpc.xds.LeastRequestLoadBalancer.ReadyPicker;
+import io.grpc.xds.LeastRequestLoadBalancer.SubchannelLoad;
+import io.grpc.xds.LeastRequestLoadBalancerProvider.LeastRequestConfig;
+import java.net.SocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/** Unit tests for {@link LeastRequestLoadBalancer}. */
+@RunWith(JUnit4.class)
+public class LeastRequestLoadBalancerTest {
+  private final List<EquivalentAddressGroup> servers = new ArrayList<>();
+  private final Map<List<EquivalentAddressGroup>, Subchannel> subchannels = new LinkedHashMap<>();
+  private final Map<Subchannel, SubchannelStateListener> subchannelStateListeners =
+      new LinkedHashMap<>();
+  private final FakeRandom random = new FakeRandom();
+
+  @Captor
+  private ArgumentCaptor<SubchannelPicker> pickerCaptor;
+  @Captor
+  private ArgumentCaptor<ConnectivityState> stateCaptor;
+  @Mock
+  private Helper helper;
+  @Mock
+  private PickSubchannelArgs pickArgs;
+
+  private LeastRequestLoadBalancer loadBalancer;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+    for (int i = 0; i < 3; i++) {
+      EquivalentAddressGroup eag = new EquivalentAddressGroup(new FakeSocketAddress("server" + i));
+      servers.add(eag);
+      subchannels.put(Arrays.asList(eag), mock(Subchannel.class));
+    }
+    when(helper.createSubchannel(any(CreateSubchannelArgs.class)))
+        .then(new Answer<Subchannel>() {
+          @Override
+          public Subchannel answer(InvocationOnMock invocation) {
+            CreateSubchannelArgs args = (CreateSubchannelArgs) invocation.getArguments()[0];
+            final Subchannel subchannel = subchannels.get(args.getAddresses());
+            when(subchannel.getAllAddresses()).thenReturn(args.getAddresses());
+            when(subchannel.getAttributes()).thenReturn(args.getAttributes());
+            doAnswer(
+                new Answer<Void>() {
+                  @Override
+                  public Void answer(InvocationOnMock invocation) {
+                    subchannelStateListeners.put(
+                        subchannel, (SubchannelStateListener) invocation.getArguments()[0]);
+                    return null;
+                  }
+                }).when(subchannel).start(any(SubchannelStateListener.class));
+            return subchannel;
+          }
+        });
+    loadBalancer = new LeastRequestLoadBalancer(helper, random);
+  }
+
+  @Test
+  public void connectingUntilSubchannelReady() {
+    resolve(LeastRequestConfig.DEFAULT);
+    verify(helper, times(3)).createSubchannel(any(CreateSubchannelArgs.class));
+    for (Subchannel subchannel : subchannels.values()) {
+      verify(subchannel).requestConnection();
+    }
+    verify(helper).updateBalancingState(stateCaptor.capture(), pickerCaptor.capture());
+    assertThat(stateCaptor.getValue()).isEqualTo(CONNECTING);
+    assertThat(pickerCaptor.getValue()).isInstanceOf(EmptyPicker.class);
+
+    Subchannel readySubchannel = subchannels.values().iterator().next();
+    deliverSubchannelState(readySubchannel, ConnectivityStateInfo.forNonError(READY));
+    verify(helper, times(2)).updateBalancingState(stateCaptor.capture(), pickerCaptor.capture());
+    assertThat(stateCaptor.getValue()).isEqualTo(READY);
+    assertThat(((ReadyPicker) pickerCaptor.getValue()).getList())
+        .containsExactly(readySubchannel);
+  }
+
+  @Test
+  public void allSubchannelsFailing_transientFailure() {
+    resolve(LeastRequestConfig.DEFAULT);
+    Status error = Status.UNAVAILABLE.withDescription("boom");
+    for (Subchannel subchannel : subchannels.values()) {
+      deliverSubchannelState(subchannel, ConnectivityStateInfo.forTransientFailure(error));
+    }
+    verify(helper, atLeast(2)).updateBalancingState(stateCaptor.capture(), pickerCaptor.capture());
+    assertThat(stateCaptor.getValue()).isEqualTo(TRANSIENT_FAILURE);
+    assertThat(pickerCaptor.getValue().pickSubchannel(pickArgs).getStatus()).isEqualTo(error);
+  }
+
+  @Test
+  public void picksSubchannelWithFewerRequestsInFlight() {
+    SubchannelPicker picker = resolveAllReady(LeastRequestConfig.DEFAULT);
+    List<Subchannel> list = ((ReadyPicker) picker).getList();
+    Subchannel busy = list.get(0);
+    Subchannel idle = list.get(1);
+
+    random.add(0, 0);
+    ClientStreamTracer tracer = startStream(picker.pickSubchannel(pickArgs), busy);
+    assertThat(load(busy).getInFlight()).isEqualTo(1);
+
+    random.add(0, 1);
+    startStream(picker.pickSubchannel(pickArgs), idle);
+    random.add(1, 0);
+    startStream(picker.pickSubchannel(pickArgs), idle);
+
+    // idle now has more RPCs in flight than busy.
+    random.add(1, 0);
+    startStream(picker.pickSubchannel(pickArgs), busy);
+    tracer.streamClosed(Status.OK);
+    assertThat(load(busy).getInFlight()).isEqualTo(1);
+    assertThat(load(idle).getInFlight()).isEqualTo(2);
+    assertThat(random.values).isEmpty();
+  }
+
+  @Test
+  public void orcaWeighting_penalizesUtilizedBackend() {
+    SubchannelPicker picker = resolveAllReady(new LeastRequestConfig(2, true));
+    List<Subchannel> list = ((ReadyPicker) picker).getList();
+    Subchannel hot = list.get(0);
+    Subchannel cold = list.get(1);
+    load(hot).onLoadReport(OrcaLoadReport.newBuilder().setCpuUtilization(0.9).build());
+    load(cold).onLoadReport(OrcaLoadReport.newBuilder().setCpuUtilization(0.1).build());
+
+    // cold already has two RPCs in flight, but hot is almost out of headroom.
+    load(cold).tracerFactory(false).newClientStreamTracer(
+        StreamInfo.newBuilder().build(), new Metadata());
+    load(cold).tracerFactory(false).newClientStreamTracer(
+        StreamInfo.newBuilder().build(), new Metadata());
+    random.add(0, 1);
+    assertThat(picker.pickSubchannel(pickArgs).getSubchannel()).isSameInstanceAs(cold);
+  }
+
+  @Test
+  public void orcaWeightingDisabled_ignoresUtilization() {
+    SubchannelPicker picker = resolveAllReady(LeastRequestConfig.DEFAULT);
+    List<Subchannel> list = ((ReadyPicker) picker).getList();
+    load(list.get(0)).onLoadReport(OrcaLoadReport.newBuilder().setCpuUtilization(0.9).build());
+    load(list.get(1)).tracerFactory(false).newClientStreamTracer(
+        StreamInfo.newBuilder().build(), new Metadata());
+
+    random.add(0, 1);
+    assertThat(picker.pickSubchannel(pickArgs).getSubchannel()).isSameInstanceAs(list.get(0));
+  }
+
+  @Test
+  public void configChange_updatesPicker() {
+    resolveAllReady(LeastRequestConfig.DEFAULT);
+    resolve(new LeastRequestConfig(3, false));
+    verify(helper, times(5)).updateBalancingState(stateCaptor.capture(), pickerCaptor.capture());
+    assertThat(stateCaptor.getValue()).isEqualTo(READY);
+
+    List<Subchannel> list = ((ReadyPicker) pickerCaptor.getValue()).getList();
+    load(list.get(0)).tracerFactory(false).newClientStreamTracer(
+        StreamInfo.newBuilder().build(), new Metadata());
+    load(list.get(1)).tracerFactory(false).newClientStreamTracer(
+        StreamInfo.newBuilder().build(), new Metadata());
+    random.add(0, 1, 2);
+    assertThat(pickerCaptor.getValue().pickSubchannel(pickArgs).getSubchannel())
+        .isSameInstanceAs(list.get(2));
+  }
+
+  @Test
+  public void removedAddress_shutsDownSubchannel() {
+    resolve(LeastRequestConfig.DEFAULT);
+    Subchannel removed = subchannels.get(Collections.singletonList(servers.get(2)));
+    loadBalancer.handleResolvedAddresses(
+        ResolvedAddresses.newBuilder()
+            .setAddresses(servers.subList(0, 2))
+            .setLoadBalancingPolicyConfig(LeastRequestConfig.DEFAULT)
+            .build());
+    verify(removed).shutdown();
+    for (Subchannel subchannel : subchannels.values()) {
+      if (subchannel != removed) {
+        verify(subchannel, never()).shutdown();
+      }
+    }
+
+    loadBalancer.shutdown();
+    for (Subchannel subchannel : subchannels.values()) {
+      verify(subchannel).shutdown();
+    }
+  }
+
+  private void resolve(LeastRequestConfig config) {
+    loadBalancer.handleResolvedAddresses(
+        ResolvedAddresses.newBuilder()
+            .setAddresses(servers)
+            .setLoadBalancingPolicyConfig(config)
+            .build());
+  }
+
+  private SubchannelPicker resolveAllReady(LeastRequestConfig config) {
+    resolve(config);
+    for (Subchannel subchannel : subchannels.values()) {
+      deliverSubchannelState(subchannel, ConnectivityStateInfo.forNonError(READY));
+    }
+    verify(helper, times(4)).updateBalancingState(stateCaptor.capture(), pickerCaptor.capture());
+    assertThat(stateCaptor.getValue()).isEqualTo(READY);
+    SubchannelPicker picker = pickerCaptor.getValue();
+    assertThat(((ReadyPicker) picker).getList()).hasSize(3);
+    return picker;
+  }
+
+  private void deliverSubchannelState(Subchannel subchannel, ConnectivityStateInfo newState) {
+    subchannelStateListeners.get(subchannel).onSubchannelState(newState);
+  }
+
+  private static SubchannelLoad load(Subchannel subchannel) {
+    return subchannel.getAttributes().get(LeastRequestLoadBalancer.LOAD);
+  }
+
+  private static ClientStreamTracer startStream(PickResult result, Subchannel expected) {
+    assertThat(result.getSubchannel()).isSameInstanceAs(expected);
+    return result.getStreamTracerFactory().newClientStreamTracer(
+        StreamInfo.newBuilder().build(), new Metadata());
+  }
+
+  private static final class FakeRandom implements ThreadSafeRandom {
+    final Queue<Integer> values = new ArrayDeque<>();
+
+    void add(Integer... next) {
+      values.addAll(Arrays.asList(next));
+    }
+
+    @Override
+    public int nextInt(int bound) {
+      int value = values.remove();
+      assertThat(value).isLessThan(bound);
+      return value;
+    }
+  }
+
+  private static final class FakeSocketAddress extends SocketAddress {
+    final String name;
+
+    FakeSocketAddress(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public String toString() {
+      return "FakeSocketAddress-" + name;
+    }
+  }
+}
@@ -247,6 +247,61 @@ public class XdsRoutingLoadBalancerTest {
         .isSameInstanceAs(subchannel3);
   }
 
+  @Test
+  public void routeMatchingSubchannelPicker_headerRoutesReevaluatedForCachedMethod() {
+    Subchannel subchannel1 = mock(Subchannel.class);
+    Subchannel subchannel3 = mock(Subchannel.class);
+    RouteMatchingSubchannelPicker routeMatchingPicker =
+        new RouteMatchingSubchannelPicker(
+            ImmutableMap.of(
+                routeMatch1, pickerOf(subchannel1),
+                routeMatch3, pickerOf(subchannel3)));
+
+    for (int i = 0; i < 2; i++) {
+      PickSubchannelArgs args1 =
+          createPickSubchannelArgs(
+              "FooService", "barMethod",
+              ImmutableMap.of("user-agent", "gRPC-Java", "grpc-encoding", "gzip"));
+      assertThat(routeMatchingPicker.pickSubchannel(args1).getSubchannel())
+          .isSameInstanceAs(subchannel1);
+
+      PickSubchannelArgs args2 =
+          createPickSubchannelArgs(
+              "FooService", "barMethod", ImmutableMap.of("user-agent", "gRPC-Java"));
+      assertThat(routeMatchingPicker.pickSubchannel(args2).getSubchannel())
+          .isSameInstanceAs(subchannel3);
+    }
+  }
+
+  @Test
+  public void routeMatchingSubchannelPicker_noMatchingRoute() {
+    RouteMatch upperCaseHeaderRoute =
+        new RouteMatch(
+            new PathMatcher(null, "/FooService/", null),
+            Arrays.asList(
+                new HeaderMatcher("User-Agent", "gRPC-Java", null, null, null, null, null, false)),
+            null);
+    RouteMatchingSubchannelPicker routeMatchingPicker =
+        new RouteMatchingSubchannelPicker(
+            ImmutableMap.of(
+                upperCaseHeaderRoute, pickerOf(mock(Subchannel.class)),
+                routeMatch2, pickerOf(mock(Subchannel.class))));
+
+    // Header names in Metadata are lower case, so a rule on "User-Agent" never matches.
+    PickSubchannelArgs args1 =
+        createPickSubchannelArgs(
+            "FooService", "barMethod", ImmutableMap.of("user-agent", "gRPC-Java"));
+    PickResult result1 = routeMatchingPicker.pickSubchannel(args1);
+    assertThat(result1.getStatus().getCode()).isEqualTo(Status.Code.UNAVAILABLE);
+    assertThat(result1.getStatus().getDescription()).isEqualTo("no matching route found");
+
+    PickSubchannelArgs args2 =
+        createPickSubchannelArgs(
+            "BarService", "bazMethod", Collections.<String, String>emptyMap());
+    assertThat(routeMatchingPicker.pickSubchannel(args2).getStatus().getCode())
+        .isEqualTo(Status.Code.UNAVAILABLE);
+  }
+
   private static SubchannelPicker pickerOf(final Subchannel subchannel) {
     return new SubchannelPicker() {
       @Override